@@ -26,22 +26,29 @@ package PolyGlot;
  */
 public class ConWord extends DictNode {
 
+    // type and gender of words not in a collection, never renamed
+    private static final SharedName NO_NAME = new SharedName("");
+
     // so long as the conword is not blank, this can be blank
     private String localWord;
-    private String wordType;
+    private SharedName wordType;
     private String definition;
     private String pronunciation;
-    private String gender;
+    private SharedName gender;
     private boolean procOverride;
     private boolean autoDeclensionOverride;
+    // store holding values of word while it is in a collection (null if held
+    // by word itself), and slot of word in store
+    private WordStore store = null;
+    private int slot;
 
     public ConWord() {
         value = "";
         localWord = "";
-        wordType = "";
+        wordType = NO_NAME;
         definition = "";
         pronunciation = "";
-        gender = "";
+        gender = NO_NAME;
         id = -1;
         procOverride = false;
         autoDeclensionOverride = false;
@@ -49,7 +56,7 @@ public class ConWord extends DictNode {
     
     @Override
     public String toString() {
-        return value;
+        return getValue();
     }
 
     /**
@@ -61,45 +68,91 @@ public class ConWord extends DictNode {
         
         this.setValue(set.getValue());
         this.setLocalWord(set.getLocalWord());
-        this.setWordType(set.getWordType());
+        // copies carry names of their own, out of reach of collection renames
+        this.setWordTypeName(ownName(set.getWordTypeName()));
         this.setDefinition(set.getDefinition());
         this.setPronunciation(set.getPronunciation());
         this.setId(set.getId());
-        this.setGender(set.getGender());
+        this.setGenderName(ownName(set.getGenderName()));
         this.setProcOverride(set.isProcOverride());
         this.setOverrideAutoDeclen(set.isOverrideAutoDeclen());
     }
 
+    @Override
+    public Integer getId() {
+        return store == null ? id : store.getId(slot);
+    }
+
+    /**
+     * Sets id of word. A word in a collection given a new id is first
+     * detached from the collection, keeping its values.
+     * @param _id new id
+     */
+    @Override
+    public void setId(Integer _id) {
+        if (store != null && !_id.equals(store.getId(slot))) {
+            store.detach(this);
+        }
+
+        id = _id;
+    }
+
+    @Override
+    public String getValue() {
+        return store == null ? value : store.getValue(slot);
+    }
+
+    @Override
+    public void setValue(String conWord) {
+        if (store == null) {
+            value = conWord.trim();
+        } else {
+            store.setValue(slot, conWord.trim());
+        }
+    }
+
     public boolean isOverrideAutoDeclen() {
-        return autoDeclensionOverride;
+        return store == null ? autoDeclensionOverride : store.isOverrideAutoDeclen(slot);
     }
     
     public void setOverrideAutoDeclen(boolean _autoDeclensionOverride) {
-        autoDeclensionOverride = _autoDeclensionOverride;
+        if (store == null) {
+            autoDeclensionOverride = _autoDeclensionOverride;
+        } else {
+            store.setOverrideAutoDeclen(slot, _autoDeclensionOverride);
+        }
     }
     
     public boolean isProcOverride() {
-        return procOverride;
+        return store == null ? procOverride : store.isProcOverride(slot);
     }
     
     public void setProcOverride(boolean _procOverride) {
-        procOverride = _procOverride;
+        if (store == null) {
+            procOverride = _procOverride;
+        } else {
+            store.setProcOverride(slot, _procOverride);
+        }
     }
     
     public String getLocalWord() {
-        return localWord;
+        return store == null ? localWord : store.getLocalWord(slot);
     }
 
     public void setLocalWord(String localWord) {
-        this.localWord = localWord.trim();
+        if (store == null) {
+            this.localWord = localWord.trim();
+        } else {
+            store.setLocalWord(slot, localWord.trim());
+        }
     }
 
     public String getWordType() {
-        return wordType;
+        return getWordTypeName().getValue();
     }
 
     public void setWordType(String wordType) {
-        this.wordType = wordType.trim();
+        setWordTypeName(changeName(getWordTypeName(), wordType.trim()));
     }
 
     /**
@@ -111,32 +164,135 @@ public class ConWord extends DictNode {
         boolean ret = true;
 
         // There might be no local translation, but the constructed word must exist
-        ret = ret && (!value.equals(""));
+        ret = ret && (!getValue().equals(""));
 
         return ret;
     }
 
     public String getDefinition() {
-        return definition;
+        return store == null ? definition : store.getDefinition(slot);
     }
 
     public void setDefinition(String definition) {
-        this.definition = definition;
+        if (store == null) {
+            this.definition = definition;
+        } else {
+            store.setDefinition(slot, definition);
+        }
     }
 
     public String getPronunciation() {
-        return pronunciation;
+        return store == null ? pronunciation : store.getPronunciation(slot);
     }
 
     public void setPronunciation(String pronunciation) {
-        this.pronunciation = pronunciation;
+        if (store == null) {
+            this.pronunciation = pronunciation;
+        } else {
+            store.setPronunciation(slot, pronunciation);
+        }
     }
 
     public String getGender() {
-        return gender;
+        return getGenderName().getValue();
     }
 
     public void setGender(String gender) {
-        this.gender = gender;
+        setGenderName(changeName(getGenderName(), gender));
+    }
+
+    SharedName getWordTypeName() {
+        return store == null ? wordType : store.getWordTypeName(slot);
+    }
+
+    void setWordTypeName(SharedName _wordType) {
+        if (store == null) {
+            wordType = _wordType;
+        } else {
+            store.setWordTypeName(slot, _wordType);
+        }
+    }
+
+    SharedName getGenderName() {
+        return store == null ? gender : store.getGenderName(slot);
+    }
+
+    void setGenderName(SharedName _gender) {
+        if (store == null) {
+            gender = _gender;
+        } else {
+            store.setGenderName(slot, _gender);
+        }
+    }
+
+    /**
+     * Makes word a view of a slot of a store, reading and writing its values
+     * there rather than holding them itself. Only to be called by the store,
+     * or by its collection for views it never hands out.
+     * @param _store store holding values of word
+     * @param _slot slot of word in store
+     */
+    void bind(WordStore _store, int _slot) {
+        store = _store;
+        slot = _slot;
+        value = null;
+        localWord = null;
+        wordType = null;
+        definition = null;
+        pronunciation = null;
+        gender = null;
+    }
+
+    /**
+     * Takes copies of the values of word out of its store, which it no longer
+     * reads or writes, as when word leaves its collection. Type and gender
+     * names of its own are taken, so that renames within the collection no
+     * longer reach it. Only to be called by the store.
+     */
+    void unbind() {
+        WordStore from = store;
+
+        store = null;
+        id = from.getId(slot);
+        value = from.getValue(slot);
+        localWord = from.getLocalWord(slot);
+        wordType = ownName(from.getWordTypeName(slot));
+        definition = from.getDefinition(slot);
+        pronunciation = from.getPronunciation(slot);
+        gender = ownName(from.getGenderName(slot));
+        procOverride = from.isProcOverride(slot);
+        autoDeclensionOverride = from.isOverrideAutoDeclen(slot);
+    }
+
+    /**
+     * Detaches word from the store it is a view of, if any, keeping its
+     * values
+     */
+    void detach() {
+        if (store != null) {
+            store.detach(this);
+        }
+    }
+
+    /**
+     * @param _store store to test
+     * @param _slot slot to test
+     * @return true if word is view of given slot of given store
+     */
+    boolean isViewOf(WordStore _store, int _slot) {
+        return store == _store && slot == _slot;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    private static SharedName ownName(SharedName name) {
+        return name.getValue().equals("") ? NO_NAME : new SharedName(name.getValue());
+    }
+
+    // names carried are shared, so a new value always means a new name
+    private static SharedName changeName(SharedName name, String value) {
+        return name.getValue().equals(value) ? name : new SharedName(value);
     }
 }
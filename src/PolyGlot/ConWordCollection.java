@@ -20,29 +20,43 @@
 package PolyGlot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import java.util.Set;
+import javax.xml.stream.XMLStreamException;
 
 /**
+ * Words of a dictionary. Words are kept in a WordStore, in columns rather
+ * than as an object each, and handed out as views of the store (see
+ * WordStore), so the node map of DictionaryCollection is unused here.
+ *
  * @author draque
  *
  */
 public class ConWordCollection extends DictionaryCollection {
 
     private final DictCore core;
-    Map<String, Integer> allConWords;
-    Map<String, Integer> allLocalWords;
+    private final WordStore store = new WordStore();
+    private final ConWordIndex wordIndex = new ConWordIndex();
+
+    // ids of words inserted, modified or deleted since changes were last cleared
+    private final BitSet changedIds = new BitSet();
+
+    // each type and gender name carried by words, shared by all words carrying it
+    private final Map<String, SharedName> typeNames = new HashMap<String, SharedName>();
+    private final Map<String, SharedName> genderNames = new HashMap<String, SharedName>();
 
     public ConWordCollection(DictCore _core) {
         bufferNode = new ConWord();
-        allConWords = new HashMap<String, Integer>();
-        allLocalWords = new HashMap<String, Integer>();
         core = _core;
     }
 
@@ -57,13 +71,7 @@ public class ConWordCollection extends DictionaryCollection {
     public Integer insert(Integer _id) throws Exception {
         Integer ret;
 
-        ConWord insWord = new ConWord();
-        insWord.setEqual(bufferNode);
-        insWord.setId(_id);
-
-        ret = super.insert(_id, bufferNode);
-
-        balanceWordCounts(insWord, true);
+        ret = insert(_id, bufferNode);
 
         bufferNode = new ConWord();
 
@@ -82,13 +90,185 @@ public class ConWordCollection extends DictionaryCollection {
 
         ret = super.insert(bufferNode);
 
-        balanceWordCounts((ConWord) bufferNode, true);
-
         bufferNode = new ConWord();
 
         return ret;
     }
 
+    /**
+     * Inserts new words in one batch, giving them ids in the order given.
+     * Words are inserted as they are, not copied, so must not be altered by
+     * the caller afterward.
+     *
+     * @param words words to insert
+     * @return ids of inserted words, in the order given
+     * @throws Exception
+     */
+    public List<Integer> addAll(Collection<ConWord> words) throws Exception {
+        List<ConWord> batch = new ArrayList<ConWord>(words);
+        List<Integer> ret = new ArrayList<Integer>(batch.size());
+        int id = getNextNodeId();
+
+        for (ConWord word : batch) {
+            word.setId(id);
+            ret.add(id++);
+        }
+
+        insertBatch(batch);
+
+        return ret;
+    }
+
+    /**
+     * Inserts words read from file, each with its id already set. Nothing is
+     * inserted if any id is invalid or already in use.
+     *
+     * @param nodes words to insert (inserted as they are, not copied)
+     * @throws Exception on duplicate or invalid id
+     */
+    @Override
+    protected void insertBatch(List<? extends DictNode> nodes) throws Exception {
+        Set<Integer> batchIds = new HashSet<Integer>();
+        List<ConWord> words = new ArrayList<ConWord>(nodes.size());
+
+        for (DictNode node : nodes) {
+            Integer id = node.getId();
+
+            if (id < 1) {
+                throw new Exception("Collection node ID may never be zero or less.");
+            }
+            if (exists(id) || !batchIds.add(id)) {
+                throw new Exception("Duplicate ID " + id.toString() + " for collection object: " + node.getValue());
+            }
+        }
+
+        for (DictNode node : nodes) {
+            ConWord word = (ConWord) node;
+            word.detach();
+            word.setAlphaOrder(alphaOrder);
+            shareNames(word);
+            noteNodeId(word.getId());
+            changedIds.set(word.getId());
+            words.add(word);
+        }
+
+        store.insertAll(words);
+        wordIndex.addWords(words);
+    }
+
+    /**
+     * Gives every word of one type another type. Words of a type all carry
+     * the same shared name, which is simply renamed, unless words of the new
+     * type already exist, in which case the words are moved over to its
+     * name. Types are matched as filteredList would match them. As word
+     * values are untouched, words keep their places in alphabetical order.
+     *
+     * @param oldType type to replace (no action if blank)
+     * @param newType type to give words
+     * @return number of words changed
+     */
+    public int replaceWordType(String oldType, String newType) {
+        return replaceName(typeNames, oldType, newType, true);
+    }
+
+    /**
+     * Gives every word of one gender another gender, in the same way as
+     * replaceWordType
+     *
+     * @param oldGender gender to replace (no action if blank)
+     * @param newGender gender to give words ("" to clear)
+     * @return number of words changed
+     */
+    public int replaceGender(String oldGender, String newGender) {
+        return replaceName(genderNames, oldGender, newGender, false);
+    }
+
+    private int replaceName(Map<String, SharedName> names, String oldValue,
+            String newValue, boolean type) {
+        if (oldValue.trim().equals("")) {
+            return 0;
+        }
+
+        boolean ignoreCase = core.getPropertiesManager().isIgnoreCase();
+        String match = ignoreCase ? ConWordIndex.foldCase(oldValue) : oldValue;
+        List<SharedName> matched = new ArrayList<SharedName>();
+        int ret = 0;
+
+        for (SharedName name : names.values()) {
+            String curValue = name.getValue();
+
+            if ((ignoreCase ? ConWordIndex.foldCase(curValue) : curValue).equals(match)
+                    && !curValue.equals(newValue)) {
+                matched.add(name);
+            }
+        }
+
+        for (SharedName name : matched) {
+            String curValue = name.getValue();
+            SharedName target = names.get(newValue);
+            BitSet candidates = type ? wordIndex.getTypeCandidates(curValue, false)
+                    : wordIndex.getGenderCandidates(curValue, false);
+
+            names.remove(curValue);
+
+            if (target == null) {
+                name.setValue(newValue);
+                names.put(newValue, name);
+            }
+
+            if (type) {
+                wordIndex.renameType(curValue, newValue);
+            } else {
+                wordIndex.renameGender(curValue, newValue);
+            }
+
+            // words are only visited to move them to a name already in use,
+            // and to record them as changed for the journal
+            for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                int slot = store.slotOf(id);
+
+                if (slot == -1 || (type ? store.getWordTypeName(slot) : store.getGenderName(slot)) != name) {
+                    continue;
+                }
+
+                if (target != null) {
+                    if (type) {
+                        store.setWordTypeName(slot, target);
+                    } else {
+                        store.setGenderName(slot, target);
+                    }
+                }
+
+                changedIds.set(id);
+                ret++;
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Has word carry the collection's shared type and gender names
+     *
+     * @param word word to update
+     */
+    private void shareNames(ConWord word) {
+        word.setWordTypeName(getSharedName(typeNames, word.getWordType()));
+        word.setGenderName(getSharedName(genderNames, word.getGender()));
+    }
+
+    private static SharedName getSharedName(Map<String, SharedName> names, String value) {
+        SharedName ret = names.get(value);
+
+        // names of other collections are never adopted, as they may be renamed
+        if (ret == null) {
+            ret = new SharedName(value);
+            names.put(value, ret);
+        }
+
+        return ret;
+    }
+
     /**
      * Tests whether collection contains a particular local word
      *
@@ -96,13 +276,27 @@ public class ConWordCollection extends DictionaryCollection {
      * @return whether multiples of local word exists in collection
      */
     public boolean containsLocalMultiples(String local) {
-        boolean ret = false;
+        if (wordIndex.needsRebuild(store.size())) {
+            rebuildIndex();
+        }
 
-        if (allLocalWords.containsKey(local)) {
-            ret = allLocalWords.get(local) > 1;
+        int[] candidates = wordIndex.getCandidates(ConWordIndex.FIELD_LOCAL, local);
+        int count = 0;
+
+        if (candidates == null) {
+            // too short to index: every word is a candidate
+            candidates = store.getIds();
         }
 
-        return ret;
+        for (int id : candidates) {
+            int slot = store.slotOf(id);
+
+            if (slot != -1 && store.getLocalWord(slot).equals(local) && ++count > 1) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -112,50 +306,150 @@ public class ConWordCollection extends DictionaryCollection {
      * @return whether multiples of conword exists in the collection
      */
     public boolean containsWord(String word) {
-        boolean ret = false;
+        int count = 0;
 
-        if (allConWords.containsKey(word)) {
-            ret = allConWords.get(word) > 1;
+        if (wordIndex.needsRebuild(store.size())) {
+            rebuildIndex();
         }
 
-        return ret;
-    }
+        for (int id : wordIndex.getValueCandidates(word)) {
+            int slot = store.slotOf(id);
 
-    /**
-     * Balances count of conwords and localwords (string values)
-     *
-     * @param insWord word to factor into counts
-     * @param additive true if adding, false if removing
-     */
-    private void balanceWordCounts(ConWord insWord, boolean additive) {
-        Integer curCount = allConWords.containsKey(insWord.getValue())
-                ? allConWords.get(insWord.getValue()) : 0;
-        allConWords.remove(insWord.getValue());
-        allConWords.put(insWord.getValue(), curCount + (additive ? 1 : -1));
+            if (slot != -1 && store.getValue(slot).equals(word) && ++count > 1) {
+                return true;
+            }
+        }
 
-        curCount = allLocalWords.containsKey(insWord.getLocalWord())
-                ? allLocalWords.get(insWord.getLocalWord()) : 0;
-        allLocalWords.remove(insWord.getLocalWord());
-        allLocalWords.put(insWord.getLocalWord(), curCount + (additive ? 1 : -1));
+        return false;
     }
 
     @Override
     public void deleteNodeById(Integer _id) throws Exception {
-        ConWord deleteWord = this.getNodeById(_id);
+        int slot = getSlot(_id);
 
-        balanceWordCounts(deleteWord, false);
-
-        super.deleteNodeById(_id);
+        store.remove(slot);
+        wordIndex.removeWord();
+        changedIds.set(_id);
     }
 
     @Override
     public void modifyNode(Integer _id, DictNode _modNode) throws Exception {
-        // do bookkeepingfor word counts
-        ConWord oldWord = getNodeById(_id);
-        balanceWordCounts(oldWord, false);
-        balanceWordCounts((ConWord) _modNode, true);
+        int slot = getSlot(_id);
+        ConWord modWord = (ConWord) _modNode;
+
+        if (!modWord.isViewOf(store, slot)) {
+            modWord.detach();
+        }
+
+        modWord.setId(_id);
+        modWord.setAlphaOrder(alphaOrder);
+        shareNames(modWord);
+        store.replace(slot, modWord);
+        wordIndex.modifyWord(modWord);
+        changedIds.set(_id);
+    }
+
+    @Override
+    protected Integer insert(Integer _id, DictNode _buffer) throws Exception {
+        ConWord word = (ConWord) _buffer;
+
+        if (exists(_id)) {
+            throw new Exception("Duplicate ID " + _id.toString() + " for collection object: " + word.getValue());
+        }
+        if (_id < 1) {
+            throw new Exception("Collection node ID may never be zero or less.");
+        }
+
+        word.detach();
+        word.setId(_id);
+        word.setAlphaOrder(alphaOrder);
+        shareNames(word);
+        store.insert(word);
+        wordIndex.addWord(word);
+        noteNodeId(_id);
+        changedIds.set(_id);
+
+        return _id;
+    }
+
+    @Override
+    public boolean exists(Integer objectId) {
+        return store.slotOf(objectId) != -1;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return store.size();
+    }
+
+    @Override
+    public Object getNodeAt(int index) {
+        return store.getView(store.getSlotAt(index));
+    }
+
+    @Override
+    protected List<DictNode> getSortedNodes() {
+        return Collections.<DictNode>unmodifiableList(store.getViews());
+    }
+
+    // raw, as the method overridden is
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void setAlphaOrder(Map _alphaOrder) {
+        super.setAlphaOrder(_alphaOrder);
+        store.setAlphaOrder(alphaOrder);
+    }
+
+    @Override
+    protected void removeAllNodes() {
+        store.clear();
+        wordIndex.clear();
+    }
+
+    /**
+     * Finds word by exact (case sensitive) value. Where several words share
+     * a value, the one with the lowest id is found.
+     *
+     * @param _name value to find
+     * @return found word, null if none or name empty
+     */
+    @Override
+    protected DictNode findNodeByName(String _name) {
+        int found = -1;
 
-        super.modifyNode(_id, _modNode);
+        if (_name.equals("")) {
+            return null;
+        }
+        if (wordIndex.needsRebuild(store.size())) {
+            rebuildIndex();
+        }
+
+        for (int id : wordIndex.getValueCandidates(_name)) {
+            int slot = store.slotOf(id);
+
+            if (slot != -1 && store.getValue(slot).equals(_name)) {
+                found = slot;
+                break;
+            }
+        }
+
+        return found == -1 ? null : store.getView(found);
+    }
+
+    /**
+     * @param _id id of word
+     * @return slot of word in store
+     * @throws Exception if no word has id
+     */
+    private int getSlot(Integer _id) throws Exception {
+        int ret = store.slotOf(_id);
+
+        if (ret == -1) {
+            throw new Exception("Node with id: " + _id.toString()
+                    + " does not exist!");
+        }
+
+        return ret;
     }
 
     /**
@@ -164,17 +458,70 @@ public class ConWordCollection extends DictionaryCollection {
      * @throws java.lang.Exception
      */
     void recalcAllProcs() throws Exception {
-        Iterator<ConWord> it = this.getNodeIterator();
+        ProcRecalculation recalc = prepareProcRecalc();
 
-        while (it.hasNext()) {
-            ConWord curWord = it.next();
+        recalc.compute(null);
+        recalc.apply();
+    }
+
+    /**
+     * Snapshots lexicon and pronunciation guide for recalculation of all
+     * non-overridden pronunciations, which may then be computed on any thread
+     *
+     * @return recalculation ready to be computed
+     */
+    public ProcRecalculation prepareProcRecalc() {
+        return new ProcRecalculation(this, core.getPronunciationMgr().getMatcher());
+    }
+
+    /**
+     * Sets recalculated pronunciations of words in a single pass. A word is
+     * skipped if deleted, overridden or changed in value since its
+     * pronunciation was calculated.
+     *
+     * @param ids ids of words
+     * @param values values of words pronunciations were calculated from
+     * @param procs pronunciations of words (length governs number of words)
+     */
+    void applyPronunciations(int[] ids, String[] values, String[] procs) {
+        ConWord cursor = new ConWord();
 
-            // only runs if word's pronunciation not overridden
-            if (!curWord.isProcOverride()) {
-                curWord.setPronunciation(core.getPronunciation(curWord.getValue()));
-                this.modifyNode(curWord.getId(), curWord);
+        for (int i = 0; i < procs.length; i++) {
+            int slot = store.slotOf(ids[i]);
+
+            if (slot == -1 || store.isProcOverride(slot)
+                    || !store.getValue(slot).equals(values[i])
+                    || store.getPronunciation(slot).equals(procs[i])) {
+                continue;
             }
+
+            // no bookkeeping or reordering depends on pronunciation
+            store.setPronunciation(slot, procs[i]);
+            cursor.bind(store, slot);
+            wordIndex.modifyPronunciation(cursor);
+            changedIds.set(ids[i]);
+        }
+    }
+
+    /**
+     * @return ids of words inserted, modified or deleted since changes were
+     * last cleared
+     */
+    Set<Integer> getChangedIds() {
+        Set<Integer> ret = new HashSet<Integer>();
+
+        for (int id = changedIds.nextSetBit(0); id >= 0; id = changedIds.nextSetBit(id + 1)) {
+            ret.add(id);
         }
+
+        return ret;
+    }
+
+    /**
+     * Forgets all changes made so far, once they are saved
+     */
+    void clearChanges() {
+        changedIds.clear();
     }
 
     /**
@@ -184,58 +531,115 @@ public class ConWordCollection extends DictionaryCollection {
      * @return list of matching words
      */
     public List<ConWord> getSuggestedTransWords(String _match) {
-        List<ConWord> localEquals = new ArrayList<ConWord>();
-        List<ConWord> localContains = new ArrayList<ConWord>();
-        List<RankedObject> definitionContains = new ArrayList<RankedObject>();
-        Iterator<Entry<Integer, ConWord>> allWords = nodeMap.entrySet().iterator();
+        return getSuggestedTransWords(_match, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns list of words in descending list of synonym match: words equal
+     * to the match first, then words containing it, then words whose
+     * definitions contain it (ranked by position in definition). Equal
+     * rankings are ordered alphabetically.
+     *
+     * @param _match The string value to match for
+     * @param maxResults maximum number of words to return
+     * @return list of best matching words
+     */
+    public List<ConWord> getSuggestedTransWords(String _match, int maxResults) {
+        final boolean ignoreCase = core.getPropertiesManager().isIgnoreCase();
+        final String compare = ignoreCase ? ConWordIndex.foldCase(_match) : _match;
+        List<ConWord> ret = new ArrayList<ConWord>();
 
         // on empty, return empty list
         if (_match.equals("")) {
-            return localEquals;
+            return ret;
         }
 
-        Entry<Integer, ConWord> curEntry;
-        ConWord curWord;
+        if (wordIndex.needsRebuild(store.size())) {
+            rebuildIndex();
+        }
 
-        // cycles through all words, searching for matches
-        while (allWords.hasNext()) {
-            curEntry = allWords.next();
-            curWord = curEntry.getValue();
+        // local word equility is the highest ranking match
+        List<ConWord> localEquals = new ArrayList<ConWord>();
 
-            String word = curWord.getValue();
-            String compare = _match;
-            String definition = curWord.getDefinition();
+        for (int id : wordIndex.getValueCandidates(_match)) {
+            int slot = store.slotOf(id);
 
-            // on ignore case, force all to lowercase
-            if (core.getPropertiesManager().isIgnoreCase()) {
-                word = word.toLowerCase();
-                compare = compare.toLowerCase();
-                definition = definition.toLowerCase();
+            if (slot != -1 && matchRank(store.getValue(slot), compare, ignoreCase) == 0) {
+                localEquals.add(store.getView(slot));
             }
+        }
+
+        Collections.sort(localEquals);
+        addLimited(ret, localEquals, maxResults);
 
-            if (word.equals(compare)) {
-                // local word equility is the highest ranking match
-                localEquals.add(curWord);
-            } else if (word.contains(compare)) {
-                // local word contains value is the second highest ranking match
-                localContains.add(curWord);
-            } else if (definition.contains(compare)) {
-                // definition contains is ranked third, and itself raked inernally
-                // by match position
-                definitionContains.add(new RankedObject(curWord, definition.indexOf(compare)));
+        // local word contains value is the second highest ranking match
+        int[] candidates = wordIndex.getCandidates(ConWordIndex.FIELD_VALUE, _match);
+
+        if (candidates == null) {
+            // too short to index: in order walk which may stop early
+            for (int i = 0; i < store.size(); i++) {
+                int slot = store.getSlotAt(i);
+
+                if (ret.size() >= maxResults) {
+                    break;
+                }
+
+                if (matchRank(store.getValue(slot), compare, ignoreCase) == 1) {
+                    ret.add(store.getView(slot));
+                }
+            }
+        } else {
+            List<ConWord> localContains = new ArrayList<ConWord>();
+
+            for (int id : candidates) {
+                int slot = store.slotOf(id);
+
+                if (slot != -1 && matchRank(store.getValue(slot), compare, ignoreCase) == 1) {
+                    localContains.add(store.getView(slot));
+                }
+            }
+
+            Collections.sort(localContains);
+            addLimited(ret, localContains, maxResults);
+        }
+
+        if (ret.size() >= maxResults) {
+            return ret;
+        }
+
+        // definition contains is ranked third, and itself raked inernally
+        // by match position
+        List<RankedObject> definitionContains = new ArrayList<RankedObject>();
+        candidates = wordIndex.getCandidates(ConWordIndex.FIELD_DEFINITION, _match);
+
+        if (candidates == null) {
+            for (int i = 0; i < store.size(); i++) {
+                addDefinitionMatch(definitionContains, store.getSlotAt(i), compare, ignoreCase);
+            }
+        } else {
+            for (int id : candidates) {
+                int slot = store.slotOf(id);
+
+                if (slot != -1) {
+                    addDefinitionMatch(definitionContains, slot, compare, ignoreCase);
+                }
             }
         }
 
-        Collections.sort(definitionContains);
+        Collections.sort(definitionContains, new Comparator<RankedObject>() {
+            @Override
+            public int compare(RankedObject o1, RankedObject o2) {
+                if (o1.getRank() != o2.getRank()) {
+                    return o1.getRank() < o2.getRank() ? -1 : 1;
+                }
 
-        // concatinate results
-        ArrayList<ConWord> ret = new ArrayList<ConWord>();
-        ret.addAll(localEquals);
-        ret.addAll(localContains);
+                return ((ConWord) o1.getHolder()).compareTo((ConWord) o2.getHolder());
+            }
+        });
 
         // must add through iteration here
         Iterator<RankedObject> it = definitionContains.iterator();
-        while (it.hasNext()) {
+        while (it.hasNext() && ret.size() < maxResults) {
             RankedObject curObject = it.next();
             ConWord curDefMatch = (ConWord) curObject.getHolder();
 
@@ -245,102 +649,318 @@ public class ConWordCollection extends DictionaryCollection {
         return ret;
     }
 
+    /**
+     * Ranks how a word value matches a suggestion search
+     * @param value word value
+     * @param compare search value (folded if ignoring case)
+     * @param ignoreCase whether to ignore case
+     * @return 0 if equal, 1 if contained, -1 if no match
+     */
+    private static int matchRank(String value, String compare, boolean ignoreCase) {
+        if (ignoreCase) {
+            if (value.length() == compare.length()
+                    && ConWordIndex.containsFolded(value, compare)) {
+                return 0;
+            }
+
+            return ConWordIndex.containsFolded(value, compare) ? 1 : -1;
+        }
+
+        if (value.equals(compare)) {
+            return 0;
+        }
+
+        return value.contains(compare) ? 1 : -1;
+    }
+
+    /**
+     * Adds word to definition matches if its definition contains the search
+     * value and it has not already been matched by its value
+     */
+    private void addDefinitionMatch(List<RankedObject> matches, int slot,
+            String compare, boolean ignoreCase) {
+        if (matchRank(store.getValue(slot), compare, ignoreCase) != -1) {
+            return;
+        }
+
+        String definition = store.getDefinition(slot);
+        int position = ignoreCase ? ConWordIndex.indexOfFolded(definition, compare)
+                : definition.indexOf(compare);
+
+        if (position != -1) {
+            matches.add(new RankedObject(store.getView(slot), position));
+        }
+    }
+
+    private static void addLimited(List<ConWord> ret, List<ConWord> add, int maxResults) {
+        for (ConWord curWord : add) {
+            if (ret.size() >= maxResults) {
+                return;
+            }
+
+            ret.add(curWord);
+        }
+    }
+
+    /**
+     * Returns words matching all non blank values of filter, in alphabetical
+     * order. Text values match if contained in the word's value, exact match
+     * is required for type and gender. Returned words are copies.
+     *
+     * @param _filter word holding values to filter on
+     * @return iterator of matching words
+     * @throws Exception
+     */
     public Iterator<ConWord> filteredList(ConWord _filter) throws Exception {
-        ConWordCollection retValues = new ConWordCollection(core);
-        retValues.setAlphaOrder(alphaOrder);
-
-        Iterator<Entry<Integer, ConWord>> filterList = nodeMap.entrySet()
-                .iterator();
-        Entry<Integer, ConWord> curEntry;
-        ConWord curWord;
-
-        while (filterList.hasNext()) {
-            curEntry = filterList.next();
-            curWord = curEntry.getValue();
-
-            // set filter to lowercase if ignoring case
-            if (core.getPropertiesManager().isIgnoreCase()) {
-                _filter.setDefinition(_filter.getDefinition().toLowerCase());
-                _filter.setWordType(_filter.getWordType().toLowerCase());
-                _filter.setLocalWord(_filter.getLocalWord().toLowerCase());
-                _filter.setValue(_filter.getValue().toLowerCase());
-                _filter.setGender(_filter.getGender().toLowerCase());
-                _filter.setPronunciation(_filter.getPronunciation().toLowerCase());
-            }
-
-            try {
-                String definition, type, local, value, gender, proc;
-
-                // if set to ignore case, set up caseless matches, normal otherwise
-                if (core.getPropertiesManager().isIgnoreCase()) {
-                    definition = curWord.getDefinition().toLowerCase();
-                    type = curWord.getWordType().toLowerCase();
-                    local = curWord.getLocalWord().toLowerCase();
-                    value = curWord.getValue().toLowerCase();
-                    gender = curWord.getGender().toLowerCase();
-                    proc = curWord.getPronunciation().toLowerCase();
-                } else {
-                    definition = curWord.getDefinition();
-                    type = curWord.getWordType();
-                    local = curWord.getLocalWord();
-                    value = curWord.getValue();
-                    gender = curWord.getGender();
-                    proc = curWord.getPronunciation();
-                }
+        final boolean ignoreCase = core.getPropertiesManager().isIgnoreCase();
+        List<ConWord> retList = new ArrayList<ConWord>();
 
-                // each filter test split up to minimize compares                
-                // definition
-                if (!_filter.getDefinition().trim().equals("")
-                        && !definition.contains(
-                                _filter.getDefinition())) {
-                    continue;
-                }
+        if (wordIndex.needsRebuild(store.size())) {
+            rebuildIndex();
+        }
 
-                // type (exact match only)
-                if (!_filter.getWordType().trim().equals("")
-                        && !type.equals(_filter.getWordType())) {
-                    continue;
-                }
+        // null means every word is a candidate
+        int[] candidates = null;
+        candidates = narrowCandidates(candidates, ConWordIndex.FIELD_DEFINITION, _filter.getDefinition());
+        candidates = narrowCandidates(candidates, ConWordIndex.FIELD_LOCAL, _filter.getLocalWord());
+        candidates = narrowCandidates(candidates, ConWordIndex.FIELD_VALUE, _filter.getValue());
+        candidates = narrowCandidates(candidates, ConWordIndex.FIELD_PRONUNCIATION, _filter.getPronunciation());
 
-                // local word
-                if (!_filter.getLocalWord().trim().equals("")
-                        && !local.contains(
-                                _filter.getLocalWord())) {
-                    continue;
-                }
+        if (!_filter.getWordType().trim().equals("")) {
+            candidates = narrowCandidates(candidates,
+                    wordIndex.getTypeCandidates(_filter.getWordType(), ignoreCase));
+        }
+        if (!_filter.getGender().trim().equals("")) {
+            candidates = narrowCandidates(candidates,
+                    wordIndex.getGenderCandidates(_filter.getGender(), ignoreCase));
+        }
 
-                // con word
-                if (!_filter.getValue().trim().equals("")
-                        && !value.contains(_filter.getValue())) {
-                    continue;
+        WordFilter filter = new WordFilter(_filter, ignoreCase, typeNames, genderNames);
+
+        // words are tested and copied through one view, rather than a view each
+        ConWord curWord = new ConWord();
+
+        try {
+            if (candidates == null) {
+                for (int i = 0; i < store.size(); i++) {
+                    curWord.bind(store, store.getSlotAt(i));
+
+                    if (filter.matches(curWord)) {
+                        retList.add(copyWord(curWord));
+                    }
                 }
+            } else {
+                BitSet matchIds = new BitSet();
+                int matchCount = 0;
 
-                // gender (exact match only)
-                if (!_filter.getGender().trim().equals("")
-                        && !gender.equals(_filter.getGender())) {
-                    continue;
+                for (int id : candidates) {
+                    int slot = store.slotOf(id);
+
+                    // index entries may be stale
+                    if (slot == -1) {
+                        continue;
+                    }
+
+                    curWord.bind(store, slot);
+
+                    if (filter.matches(curWord)) {
+                        retList.add(copyWord(curWord));
+                        matchIds.set(id);
+                        matchCount++;
+                    }
                 }
 
-                // pronunciation
-                if (!_filter.getPronunciation().trim().equals("")
-                        && !proc.contains(_filter.getPronunciation())) {
-                    continue;
+                // large result sets are cheaper to pull in order from the collection than sort
+                if (matchCount > 1024 && matchCount * 16 > store.size()) {
+                    retList.clear();
+
+                    for (int i = 0; i < store.size(); i++) {
+                        int slot = store.getSlotAt(i);
+
+                        if (matchIds.get(store.getId(slot))) {
+                            curWord.bind(store, slot);
+                            retList.add(copyWord(curWord));
+                        }
+                    }
+                } else {
+                    Collections.sort(retList);
                 }
+            }
+        } catch (Exception e) {
+            throw new Exception("FILTERING ERROR" + e.getMessage());
+        }
+
+        return retList.iterator();
+    }
+
+    /**
+     * Narrows candidates for filtering to those which may contain text in a
+     * given field
+     * @param candidates current candidate ids (null for all)
+     * @param field field to search
+     * @param text filter text (no narrowing if blank or too short to index)
+     * @return narrowed candidate ids
+     */
+    private int[] narrowCandidates(int[] candidates, int field, String text) {
+        if (text.trim().equals("")) {
+            return candidates;
+        }
+
+        int[] fieldCandidates = wordIndex.getCandidates(field, text);
+
+        if (fieldCandidates == null) {
+            return candidates;
+        }
+        if (candidates == null) {
+            return fieldCandidates;
+        }
+
+        return intersect(candidates, fieldCandidates);
+    }
+
+    private int[] narrowCandidates(int[] candidates, BitSet ids) {
+        int[] ret;
+        int count = 0;
+
+        if (candidates == null) {
+            ret = new int[ids.cardinality()];
+
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                ret[count++] = id;
+            }
+
+            return ret;
+        }
+
+        ret = new int[candidates.length];
+
+        for (int id : candidates) {
+            if (ids.get(id)) {
+                ret[count++] = id;
+            }
+        }
+
+        return Arrays.copyOf(ret, count);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] ret = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                ret[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(ret, count);
+    }
+
+    private ConWord copyWord(ConWord word) {
+        ConWord ret = new ConWord();
+
+        ret.setEqual(word);
+        ret.setAlphaOrder(alphaOrder);
+
+        return ret;
+    }
+
+    /**
+     * Rebuilds search index from scratch, clearing out stale entries
+     */
+    private void rebuildIndex() {
+        ConWord cursor = new ConWord();
 
-                retValues.getBufferWord().setEqual(curWord);
-                retValues.insert(curWord.getId());
-            } catch (Exception e) {
-                throw new Exception("FILTERING ERROR" + e.getMessage());
+        wordIndex.clear();
+
+        // in id order, so that id lists are built in sorted order
+        for (int id : store.getIds()) {
+            cursor.bind(store, store.slotOf(id));
+            wordIndex.addWord(cursor);
+        }
+
+        wordIndex.trim();
+    }
+
+    /**
+     * Tests words against the values of a filter word. Filter values are
+     * prepared once, rather than per word tested.
+     */
+    private static class WordFilter {
+        private final boolean ignoreCase;
+        private final String definition;
+        private final String type;
+        private final String local;
+        private final String value;
+        private final String gender;
+        private final String proc;
+        private final SharedName typeName;
+        private final SharedName genderName;
+
+        public WordFilter(ConWord _filter, boolean _ignoreCase,
+                Map<String, SharedName> typeNames, Map<String, SharedName> genderNames) {
+            ignoreCase = _ignoreCase;
+            definition = prepare(_filter.getDefinition());
+            type = prepare(_filter.getWordType());
+            local = prepare(_filter.getLocalWord());
+            value = prepare(_filter.getValue());
+            gender = prepare(_filter.getGender());
+            proc = prepare(_filter.getPronunciation());
+            typeName = type == null ? null : typeNames.get(type);
+            genderName = gender == null ? null : genderNames.get(gender);
+        }
+
+        // blank filter values are not tested (null)
+        private String prepare(String filterValue) {
+            if (filterValue.trim().equals("")) {
+                return null;
             }
 
+            return ignoreCase ? ConWordIndex.foldCase(filterValue) : filterValue;
         }
 
-        return retValues.getNodeIterator();
+        private boolean contains(String text, String filterValue) {
+            if (filterValue == null) {
+                return true;
+            }
+
+            return ignoreCase ? ConWordIndex.containsFolded(text, filterValue)
+                    : text.contains(filterValue);
+        }
+
+        private boolean equals(SharedName name, String filterValue, SharedName filterName) {
+            if (filterValue == null) {
+                return true;
+            }
+
+            // words in collection carry its shared names, one per distinct name
+            return ignoreCase ? ConWordIndex.foldCase(name.getValue()).equals(filterValue)
+                    : name == filterName;
+        }
+
+        public boolean matches(ConWord word) {
+            // each filter test split up to minimize compares, definitions
+            // only read if filtered on, as they may need decoding
+            return (definition == null || contains(word.getDefinition(), definition))
+                    && equals(word.getWordTypeName(), type, typeName)
+                    && contains(word.getLocalWord(), local)
+                    && contains(word.getValue(), value)
+                    && equals(word.getGenderName(), gender, genderName)
+                    && contains(word.getPronunciation(), proc);
+        }
     }
 
     @Override
     public ConWord getNodeById(Integer _id) throws Exception {
-        return (ConWord) super.getNodeById(_id);
+        return store.getView(getSlot(_id));
     }
 
     /**
@@ -365,9 +985,7 @@ public class ConWordCollection extends DictionaryCollection {
      * @return
      */
     public Iterator<ConWord> getNodeIterator() {
-        List<ConWord> retList = new ArrayList<ConWord>(nodeMap.values());
-
-        Collections.sort(retList);
+        List<ConWord> retList = copySortedNodes(ConWord.class);
 
         return retList.iterator();
     }
@@ -390,13 +1008,12 @@ public class ConWordCollection extends DictionaryCollection {
         Map<String, Integer> phonemeCount = new HashMap<String, Integer>();
         Map<String, Integer> charCount = new HashMap<String, Integer>();
         Map<String, Integer> phonemeCombo2 = new HashMap<String, Integer>();
-        Integer wordCount = nodeMap.size();
-
-        Iterator<ConWord> wordIt = new ArrayList<ConWord>(nodeMap.values()).iterator();
+        Integer wordCount = store.size();
+        ConWord curWord = new ConWord();
 
         // Put values into maps to count/record... 
-        while (wordIt.hasNext()) {
-            ConWord curWord = wordIt.next();
+        for (int wordPos = 0; wordPos < wordCount; wordPos++) {
+            curWord.bind(store, store.getSlotAt(wordPos));
             final String curValue = curWord.getValue();
             final int curValueLength = curValue.length();
             final String curType = curWord.getWordType();
@@ -606,59 +1223,50 @@ public class ConWordCollection extends DictionaryCollection {
     }
     
     /**
-     * Writes all word information to XML document
-     * @param doc Document to write to
-     * @param rootElement root element of document
+     * Writes all word information to XML stream
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public void writeXML(Document doc, Element rootElement) {
-        Iterator<ConWord> wordLoop = getNodeIterator();
-        Element wordNode;
-        Element wordValue;
-        ConWord curWord;
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
+        ConWord curWord = new ConWord();
         
-        while (wordLoop.hasNext()) {
-            curWord = wordLoop.next();
-
-            wordNode = doc.createElement(XMLIDs.wordXID);
-            rootElement.appendChild(wordNode);
-
-            wordValue = doc.createElement(XMLIDs.wordIdXID);
-            Integer wordId = curWord.getId();
-            wordValue.appendChild(doc.createTextNode(wordId.toString()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.localWordXID);
-            wordValue.appendChild(doc.createTextNode(curWord.getLocalWord()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.conWordXID);
-            wordValue.appendChild(doc.createTextNode(curWord.getValue()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordTypeXID);
-            wordValue.appendChild(doc.createTextNode(curWord.getWordType()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.pronunciationXID);
-            wordValue
-                    .appendChild(doc.createTextNode(curWord.getPronunciation()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordGenderXID);
-            wordValue.appendChild(doc.createTextNode(curWord.getGender()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.definitionXID);
-            wordValue.appendChild(doc.createTextNode(curWord.getDefinition()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordProcOverrideXID);
-            wordValue.appendChild(doc.createTextNode(curWord.isProcOverride() ? "T" : "F"));
-            wordNode.appendChild(wordValue);
-            
-            wordValue = doc.createElement(XMLIDs.wordAutoDeclenOverrideXID);
-            wordValue.appendChild(doc.createTextNode(curWord.isOverrideAutoDeclen() ? "T" : "F"));
-            wordNode.appendChild(wordValue);
+        for (int i = 0; i < store.size(); i++) {
+            curWord.bind(store, store.getSlotAt(i));
+            writeXML(writer, curWord);
         }
     }
+
+    /**
+     * Writes information of given words to XML stream. Ids of words no
+     * longer in the collection are skipped.
+     * @param writer XML stream to write to
+     * @param ids ids of words to write
+     * @throws javax.xml.stream.XMLStreamException on write failure
+     */
+    void writeXML(DictXMLWriter writer, Collection<Integer> ids) throws XMLStreamException {
+        ConWord curWord = new ConWord();
+
+        for (Integer id : ids) {
+            int slot = store.slotOf(id);
+
+            if (slot != -1) {
+                curWord.bind(store, slot);
+                writeXML(writer, curWord);
+            }
+        }
+    }
+
+    private void writeXML(DictXMLWriter writer, ConWord curWord) throws XMLStreamException {
+        writer.startElement(XMLIDs.wordXID);
+        writer.textElement(XMLIDs.wordIdXID, curWord.getId().toString());
+        writer.textElement(XMLIDs.localWordXID, curWord.getLocalWord());
+        writer.textElement(XMLIDs.conWordXID, curWord.getValue());
+        writer.textElement(XMLIDs.wordTypeXID, curWord.getWordType());
+        writer.textElement(XMLIDs.pronunciationXID, curWord.getPronunciation());
+        writer.textElement(XMLIDs.wordGenderXID, curWord.getGender());
+        writer.textElement(XMLIDs.definitionXID, curWord.getDefinition());
+        writer.textElement(XMLIDs.wordProcOverrideXID, curWord.isProcOverride() ? "T" : "F");
+        writer.textElement(XMLIDs.wordAutoDeclenOverrideXID, curWord.isOverrideAutoDeclen() ? "T" : "F");
+        writer.endElement();
+    }
 }
\ No newline at end of file
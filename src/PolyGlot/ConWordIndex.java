@@ -0,0 +1,660 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Search index over the words of a ConWordCollection. Text fields are indexed
+ * by case folded trigrams, word values by hash of folded value and word
+ * types and genders by exact value. Results are candidates only: entries are
+ * never removed when a word changes (the index is simply rebuilt once enough
+ * changes pile up), so callers must verify each candidate against the word
+ * itself.
+ *
+ * @author draque
+ */
+public class ConWordIndex {
+
+    public static final int FIELD_VALUE = 0;
+    public static final int FIELD_LOCAL = 1;
+    public static final int FIELD_DEFINITION = 2;
+    public static final int FIELD_PRONUNCIATION = 3;
+    private static final int FIELD_COUNT = 4;
+    private static final int GRAM_LENGTH = 3;
+
+    private final List<Map<Long, IdList>> fieldGrams = new ArrayList<Map<Long, IdList>>();
+    private final HashedIds valueIds = new HashedIds();
+    private final Map<String, BitSet> typeIds = new HashMap<String, BitSet>();
+    private final Map<String, BitSet> genderIds = new HashMap<String, BitSet>();
+    private int staleCount = 0;
+
+    public ConWordIndex() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            fieldGrams.add(new HashMap<Long, IdList>());
+        }
+    }
+
+    /**
+     * Wipes all index entries
+     */
+    public void clear() {
+        for (Map<Long, IdList> grams : fieldGrams) {
+            grams.clear();
+        }
+
+        valueIds.clear();
+        typeIds.clear();
+        genderIds.clear();
+        staleCount = 0;
+    }
+
+    /**
+     * Adds entries for all indexed values of word
+     * @param word word to index
+     */
+    public void addWord(ConWord word) {
+        int id = word.getId();
+
+        addGrams(FIELD_VALUE, id, word.getValue());
+        addValue(id, word.getValue());
+        addGrams(FIELD_LOCAL, id, word.getLocalWord());
+        addGrams(FIELD_DEFINITION, id, word.getDefinition());
+        addGrams(FIELD_PRONUNCIATION, id, word.getPronunciation());
+        addExact(typeIds, id, word.getWordType());
+        addExact(genderIds, id, word.getGender());
+    }
+
+    /**
+     * Adds entries for all indexed values of a batch of words, in id order
+     * so that id lists are built in sorted order
+     * @param words words to index
+     */
+    public void addWords(Collection<ConWord> words) {
+        List<ConWord> byId = new ArrayList<ConWord>(words);
+
+        Collections.sort(byId, new Comparator<ConWord>() {
+            @Override
+            public int compare(ConWord o1, ConWord o2) {
+                return o1.getId().compareTo(o2.getId());
+            }
+        });
+
+        for (ConWord word : byId) {
+            addWord(word);
+        }
+
+        trim();
+    }
+
+    /**
+     * Drops spare capacity of all entries, once no more words are expected
+     * for a while
+     */
+    public void trim() {
+        for (Map<Long, IdList> grams : fieldGrams) {
+            for (IdList posting : grams.values()) {
+                posting.trim();
+            }
+        }
+
+        valueIds.trim();
+    }
+
+    /**
+     * Records that a word's values have changed. Old entries are left in
+     * place as stale candidates.
+     * @param word new values of word
+     */
+    public void modifyWord(ConWord word) {
+        staleCount++;
+        addWord(word);
+    }
+
+    /**
+     * Records that a word's pronunciation alone has changed
+     * @param word word with new pronunciation
+     */
+    public void modifyPronunciation(ConWord word) {
+        staleCount++;
+        addGrams(FIELD_PRONUNCIATION, word.getId(), word.getPronunciation());
+    }
+
+    /**
+     * Moves entries of all words of one type to another type
+     * @param oldType type words were indexed under
+     * @param newType new type of words
+     */
+    public void renameType(String oldType, String newType) {
+        renameExact(typeIds, oldType, newType);
+    }
+
+    /**
+     * Moves entries of all words of one gender to another gender
+     * @param oldGender gender words were indexed under
+     * @param newGender new gender of words
+     */
+    public void renameGender(String oldGender, String newGender) {
+        renameExact(genderIds, oldGender, newGender);
+    }
+
+    /**
+     * Records that a word was removed. Its entries are left in place as stale
+     * candidates.
+     */
+    public void removeWord() {
+        staleCount++;
+    }
+
+    /**
+     * Tests whether enough entries have gone stale that the index should be
+     * rebuilt
+     * @param wordCount number of words currently in collection
+     * @return true if index should be rebuilt
+     */
+    public boolean needsRebuild(int wordCount) {
+        return staleCount > 1000 && staleCount > wordCount;
+    }
+
+    /**
+     * Gets ids of words which may contain the given text in a field
+     * @param field field to search (FIELD_ constant)
+     * @param text text to search for (need not be folded)
+     * @return sorted candidate ids, or null if text too short to be indexed
+     */
+    public int[] getCandidates(int field, String text) {
+        String folded = foldCase(text);
+
+        if (folded.length() < GRAM_LENGTH) {
+            return null;
+        }
+
+        Map<Long, IdList> grams = fieldGrams.get(field);
+        Set<Long> queryGrams = new HashSet<Long>();
+        List<IdList> postings = new ArrayList<IdList>();
+
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            Long gram = gramAt(folded, i);
+
+            if (!queryGrams.add(gram)) {
+                continue;
+            }
+
+            IdList posting = grams.get(gram);
+
+            if (posting == null) {
+                return new int[0];
+            }
+
+            posting.sort();
+            postings.add(posting);
+        }
+
+        // intersect from the rarest gram up
+        IdList[] sorted = postings.toArray(new IdList[postings.size()]);
+        Arrays.sort(sorted);
+
+        int[] ret = sorted[0].toArray();
+
+        for (int i = 1; i < sorted.length && ret.length > 0; i++) {
+            ret = sorted[i].retainAll(ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets ids of words which may have the given value, ignoring case
+     * @param value value to match
+     * @return sorted candidate ids
+     */
+    public int[] getValueCandidates(String value) {
+        return valueIds.get(foldCase(value).hashCode());
+    }
+
+    /**
+     * Gets ids of words which may have the given type
+     * @param type type to match (exact)
+     * @param ignoreCase whether to match type case insensitively
+     * @return candidate ids
+     */
+    public BitSet getTypeCandidates(String type, boolean ignoreCase) {
+        return getExact(typeIds, type, ignoreCase);
+    }
+
+    /**
+     * Gets ids of words which may have the given gender
+     * @param gender gender to match (exact)
+     * @param ignoreCase whether to match gender case insensitively
+     * @return candidate ids
+     */
+    public BitSet getGenderCandidates(String gender, boolean ignoreCase) {
+        return getExact(genderIds, gender, ignoreCase);
+    }
+
+    /**
+     * Folds case of text one character at a time, so that folded text always
+     * has the same length as the original, and any match in the original is
+     * also a match in the folded text
+     * @param text text to fold
+     * @return case folded text
+     */
+    public static String foldCase(String text) {
+        char[] chars = null;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char folded = foldChar(c);
+
+            if (folded != c) {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+
+        return chars == null ? text : new String(chars);
+    }
+
+    /**
+     * Tests whether text contains folded value, ignoring case, without
+     * building a folded copy of text
+     * @param text text to search
+     * @param foldedValue value to find, already passed through foldCase
+     * @return true if found
+     */
+    public static boolean containsFolded(String text, String foldedValue) {
+        return indexOfFolded(text, foldedValue) != -1;
+    }
+
+    /**
+     * Finds position of folded value in text, ignoring case
+     * @param text text to search
+     * @param foldedValue value to find, already passed through foldCase
+     * @return index of first match, -1 if none
+     */
+    public static int indexOfFolded(String text, String foldedValue) {
+        int last = text.length() - foldedValue.length();
+
+        for (int i = 0; i <= last; i++) {
+            int j = 0;
+
+            while (j < foldedValue.length()
+                    && foldChar(text.charAt(i + j)) == foldedValue.charAt(j)) {
+                j++;
+            }
+
+            if (j == foldedValue.length()) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static char foldChar(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static Long gramAt(String folded, int start) {
+        return ((long) folded.charAt(start) << 32)
+                | ((long) folded.charAt(start + 1) << 16)
+                | folded.charAt(start + 2);
+    }
+
+    private void addGrams(int field, int id, String text) {
+        String folded = foldCase(text);
+        Map<Long, IdList> grams = fieldGrams.get(field);
+
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            Long gram = gramAt(folded, i);
+            IdList posting = grams.get(gram);
+
+            if (posting == null) {
+                posting = new IdList();
+                grams.put(gram, posting);
+            }
+
+            posting.add(id);
+        }
+    }
+
+    private void addValue(int id, String value) {
+        valueIds.add(foldCase(value).hashCode(), id);
+    }
+
+    private static void addExact(Map<String, BitSet> index, int id, String value) {
+        BitSet ids = index.get(value);
+
+        if (ids == null) {
+            ids = new BitSet();
+            index.put(value, ids);
+        }
+
+        ids.set(id);
+    }
+
+    private static void renameExact(Map<String, BitSet> index, String oldValue, String newValue) {
+        BitSet ids = index.remove(oldValue);
+
+        if (ids == null) {
+            return;
+        }
+
+        BitSet existing = index.get(newValue);
+
+        if (existing == null) {
+            index.put(newValue, ids);
+        } else {
+            existing.or(ids);
+        }
+    }
+
+    private static BitSet getExact(Map<String, BitSet> index, String value, boolean ignoreCase) {
+        BitSet ret = new BitSet();
+
+        if (!ignoreCase) {
+            BitSet ids = index.get(value);
+
+            if (ids != null) {
+                ret.or(ids);
+            }
+
+            return ret;
+        }
+
+        String folded = foldCase(value);
+
+        for (Entry<String, BitSet> entry : index.entrySet()) {
+            if (foldCase(entry.getKey()).equals(folded)) {
+                ret.or(entry.getValue());
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Word ids keyed by a hash of some value, chained through plain int
+     * arrays rather than held in a map entry and id list per value. Values
+     * sharing a hash share their ids, so ids found are candidates only.
+     */
+    private static class HashedIds {
+        // per bucket, position of the newest entry plus one (0 for none)
+        private int[] heads = new int[16];
+        private int[] hashes = new int[16];
+        private int[] ids = new int[16];
+        // per entry, position of the next entry of its bucket plus one
+        private int[] next = new int[16];
+        private int size = 0;
+
+        public void add(int hash, int id) {
+            if (size == ids.length) {
+                resize(size * 2);
+            }
+            if (size >= heads.length) {
+                rehash(heads.length * 2);
+            }
+
+            int bucket = bucket(hash);
+            hashes[size] = hash;
+            ids[size] = id;
+            next[size] = heads[bucket];
+            heads[bucket] = ++size;
+        }
+
+        /**
+         * @param hash hash to find ids of
+         * @return sorted, unique ids added under hash
+         */
+        public int[] get(int hash) {
+            int[] ret = new int[4];
+            int count = 0;
+
+            for (int entry = heads[bucket(hash)]; entry != 0; entry = next[entry - 1]) {
+                if (hashes[entry - 1] == hash) {
+                    if (count == ret.length) {
+                        ret = Arrays.copyOf(ret, count * 2);
+                    }
+
+                    ret[count++] = ids[entry - 1];
+                }
+            }
+
+            Arrays.sort(ret, 0, count);
+            int unique = 0;
+
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || ret[i] != ret[unique - 1]) {
+                    ret[unique++] = ret[i];
+                }
+            }
+
+            return Arrays.copyOf(ret, unique);
+        }
+
+        public void clear() {
+            heads = new int[16];
+            resize(16);
+            size = 0;
+        }
+
+        /**
+         * Drops spare entry capacity once no more ids are expected for a while
+         */
+        public void trim() {
+            if (size < ids.length) {
+                resize(Math.max(size, 16));
+            }
+        }
+
+        private int bucket(int hash) {
+            return (hash ^ hash >>> 16) & (heads.length - 1);
+        }
+
+        private void resize(int capacity) {
+            hashes = Arrays.copyOf(hashes, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+
+        private void rehash(int bucketCount) {
+            heads = new int[bucketCount];
+
+            for (int i = 0; i < size; i++) {
+                int bucket = bucket(hashes[i]);
+                next[i] = heads[bucket];
+                heads[bucket] = i + 1;
+            }
+        }
+    }
+
+    /**
+     * List of unique word ids. Ids arriving in ascending order, as they do
+     * when words are indexed in id order, are stored as variable length
+     * differences from the previous id, taking one or two bytes each rather
+     * than four. Ids arriving out of order (words loaded from file come in
+     * alphabetical order, modified words are re-added) are held aside and
+     * merged in when the list is next read. Orders by size, smallest first.
+     */
+    private static class IdList implements Comparable<IdList> {
+        private byte[] deltas = new byte[2];
+        private int length = 0;
+        private int size = 0;
+        private int last = -1;
+        private int[] pending = null;
+        private int pendingSize = 0;
+
+        /**
+         * @param id id to add, never negative
+         */
+        public void add(int id) {
+            if (id > last) {
+                append(id);
+            } else if (id != last) {
+                if (pending == null) {
+                    pending = new int[4];
+                } else if (pendingSize == pending.length) {
+                    pending = Arrays.copyOf(pending, pendingSize * 2);
+                }
+
+                pending[pendingSize++] = id;
+            }
+        }
+
+        private void append(int id) {
+            int delta = id - last;
+
+            if (length + 5 > deltas.length) {
+                deltas = Arrays.copyOf(deltas, Math.max(length + 5, deltas.length * 2));
+            }
+
+            while (delta > 0x7F) {
+                deltas[length++] = (byte) (delta & 0x7F | 0x80);
+                delta >>>= 7;
+            }
+
+            deltas[length++] = (byte) delta;
+            last = id;
+            size++;
+        }
+
+        /**
+         * Merges in ids which arrived out of order, dropping duplicates
+         */
+        public void sort() {
+            if (pendingSize == 0) {
+                return;
+            }
+
+            int[] ids = Arrays.copyOf(decode(), size + pendingSize);
+            System.arraycopy(pending, 0, ids, size, pendingSize);
+            Arrays.sort(ids);
+
+            deltas = new byte[ids.length + 4];
+            length = 0;
+            size = 0;
+            last = -1;
+            pending = null;
+            pendingSize = 0;
+
+            for (int id : ids) {
+                if (id != last) {
+                    append(id);
+                }
+            }
+
+            trim();
+        }
+
+        /**
+         * Drops spare capacity once no more ids are expected for a while
+         */
+        public void trim() {
+            if (deltas.length > length) {
+                deltas = Arrays.copyOf(deltas, length);
+            }
+        }
+
+        private int[] decode() {
+            int[] ret = new int[size];
+            int id = -1;
+            int pos = 0;
+
+            for (int i = 0; i < size; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+
+                do {
+                    b = deltas[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                id += delta;
+                ret[i] = id;
+            }
+
+            return ret;
+        }
+
+        public int[] toArray() {
+            sort();
+            return decode();
+        }
+
+        /**
+         * @param sortedIds sorted ids to intersect with
+         * @return ids found both in sortedIds and this list
+         */
+        public int[] retainAll(int[] sortedIds) {
+            sort();
+            int[] ret = new int[Math.min(sortedIds.length, size)];
+            int count = 0;
+            int next = 0;
+            int id = -1;
+            int pos = 0;
+
+            for (int i = 0; i < size && next < sortedIds.length; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+
+                do {
+                    b = deltas[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                id += delta;
+
+                while (next < sortedIds.length && sortedIds[next] < id) {
+                    next++;
+                }
+
+                if (next < sortedIds.length && sortedIds[next] == id) {
+                    ret[count++] = id;
+                    next++;
+                }
+            }
+
+            return Arrays.copyOf(ret, count);
+        }
+
+        @Override
+        public int compareTo(IdList o) {
+            return size < o.size ? -1 : (size == o.size ? 0 : 1);
+        }
+    }
+}
@@ -30,6 +30,7 @@ public class CustHandler extends DefaultHandler{
 
 	ConWordCollection wordCollection;
 	TypeCollection typeCollection;
+	WordChunkParser wordChunks;
 	
 	public ConWordCollection getWordCollection() {
 		return wordCollection;
@@ -46,4 +47,16 @@ public class CustHandler extends DefaultHandler{
 	public void setTypeCollection(TypeCollection typeCollection) {
 		this.typeCollection = typeCollection;
 	}
+
+	public WordChunkParser getWordChunks() {
+		return wordChunks;
+	}
+
+	/**
+	 * @param wordChunks parser of words removed from the document, to be
+	 * inserted in place of its placeholder element
+	 */
+	public void setWordChunks(WordChunkParser wordChunks) {
+		this.wordChunks = wordChunks;
+	}
 }
@@ -20,11 +20,11 @@
 package PolyGlot;
 
 import java.awt.Font;
-import java.io.InputStream;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
@@ -37,32 +37,242 @@ import org.xml.sax.SAXException;
  */
 public class CustHandlerFactory {
 
+    // codes of elements read by the versioned handlers
+    private static final int EL_UNKNOWN = 0;
+    private static final int EL_WORD = 1;
+    private static final int EL_LOCAL_WORD = 2;
+    private static final int EL_CON_WORD = 3;
+    private static final int EL_WORD_TYPE = 4;
+    private static final int EL_WORD_ID = 5;
+    private static final int EL_DEFINITION = 6;
+    private static final int EL_WORD_PLUR = 7;
+    private static final int EL_WORD_PROC_OVERRIDE = 8;
+    private static final int EL_WORD_AUTO_DECL_OVERRIDE = 9;
+    private static final int EL_WORD_GENDER = 10;
+    private static final int EL_PRONUNCIATION = 11;
+    private static final int EL_FONT_CON = 12;
+    private static final int EL_CLASS = 13;
+    private static final int EL_CLASS_NAME = 14;
+    private static final int EL_CLASS_ID = 15;
+    private static final int EL_CLASS_NOTES = 16;
+    private static final int EL_CLASS_GENDER_MAN = 17;
+    private static final int EL_CLASS_PROC_MAN = 18;
+    private static final int EL_CLASS_PLUR_MAN = 19;
+    private static final int EL_CLASS_DEF_MAN = 20;
+    private static final int EL_GENDER = 21;
+    private static final int EL_GENDER_NAME = 22;
+    private static final int EL_GENDER_ID = 23;
+    private static final int EL_GENDER_NOTES = 24;
+    private static final int EL_LANG_NAME = 25;
+    private static final int EL_FONT_SIZE = 26;
+    private static final int EL_FONT_STYLE = 27;
+    private static final int EL_ALPHA_ORDER = 28;
+    private static final int EL_TYPE_MANDATORY = 29;
+    private static final int EL_LOCAL_MANDATORY = 30;
+    private static final int EL_WORD_UNIQUENESS = 31;
+    private static final int EL_LOCAL_UNIQUENESS = 32;
+    private static final int EL_IGNORE_CASE = 33;
+    private static final int EL_DISABLE_PROC_REGEX = 34;
+    private static final int EL_DECLENSION = 35;
+    private static final int EL_DEC_ID = 36;
+    private static final int EL_DEC_TEXT = 37;
+    private static final int EL_DEC_COMB_ID = 38;
+    private static final int EL_DEC_NOTES = 39;
+    private static final int EL_DEC_IS_TEMP = 40;
+    private static final int EL_DEC_REL_ID = 41;
+    private static final int EL_DEC_MANDATORY = 42;
+    private static final int EL_DIM_NODE = 43;
+    private static final int EL_DIM_ID = 44;
+    private static final int EL_DIM_MAND = 45;
+    private static final int EL_DIM_NAME = 46;
+    private static final int EL_PRO_GUIDE = 47;
+    private static final int EL_PRO_BASE = 48;
+    private static final int EL_PRO_PHON = 49;
+    private static final int EL_PRO_AUTO_POP = 50;
+    private static final int EL_THES_NODE = 51;
+    private static final int EL_THES_NOTES = 52;
+    private static final int EL_THES_NAME = 53;
+    private static final int EL_THES_WORD = 54;
+    private static final int EL_RULE = 55;
+    private static final int EL_RULE_TYPE = 56;
+    private static final int EL_RULE_COMB = 57;
+    private static final int EL_RULE_REGEX = 58;
+    private static final int EL_RULE_NAME = 59;
+    private static final int EL_TRANS = 60;
+    private static final int EL_TRANS_REGEX = 61;
+    private static final int EL_TRANS_REPLACE = 62;
+    private static final int EL_PARSED_WORDS = 63;
+
+    // element names are matched ignoring case, so keyed in lower case
+    private static final Map<String, Integer> elementCodes = new HashMap<String, Integer>();
+
+    static {
+        addElement(XMLIDs.wordXID, EL_WORD);
+        addElement(XMLIDs.localWordXID, EL_LOCAL_WORD);
+        addElement(XMLIDs.conWordXID, EL_CON_WORD);
+        addElement(XMLIDs.wordTypeXID, EL_WORD_TYPE);
+        addElement(XMLIDs.wordIdXID, EL_WORD_ID);
+        addElement(XMLIDs.definitionXID, EL_DEFINITION);
+        addElement(XMLIDs.wordPlurXID, EL_WORD_PLUR);
+        addElement(XMLIDs.wordProcOverrideXID, EL_WORD_PROC_OVERRIDE);
+        addElement(XMLIDs.wordAutoDeclenOverrideXID, EL_WORD_AUTO_DECL_OVERRIDE);
+        addElement(XMLIDs.wordGenderXID, EL_WORD_GENDER);
+        addElement(XMLIDs.pronunciationXID, EL_PRONUNCIATION);
+        addElement(XMLIDs.fontConXID, EL_FONT_CON);
+        addElement(XMLIDs.wordClassXID, EL_CLASS);
+        addElement(XMLIDs.wordClassNameXID, EL_CLASS_NAME);
+        addElement(XMLIDs.wordClassIdXID, EL_CLASS_ID);
+        addElement(XMLIDs.wordClassNotesXID, EL_CLASS_NOTES);
+        addElement(XMLIDs.wordClassGenderManXID, EL_CLASS_GENDER_MAN);
+        addElement(XMLIDs.wordClassProcManXID, EL_CLASS_PROC_MAN);
+        addElement(XMLIDs.wordClassPlurManXID, EL_CLASS_PLUR_MAN);
+        addElement(XMLIDs.wordClassDefManXID, EL_CLASS_DEF_MAN);
+        addElement(XMLIDs.genderXID, EL_GENDER);
+        addElement(XMLIDs.genderNameXID, EL_GENDER_NAME);
+        addElement(XMLIDs.genderIdXID, EL_GENDER_ID);
+        addElement(XMLIDs.genderNotesXID, EL_GENDER_NOTES);
+        addElement(XMLIDs.langPropLangNameXID, EL_LANG_NAME);
+        addElement(XMLIDs.langPropFontSizeXID, EL_FONT_SIZE);
+        addElement(XMLIDs.langPropFontStyleXID, EL_FONT_STYLE);
+        addElement(XMLIDs.langPropAlphaOrderXID, EL_ALPHA_ORDER);
+        addElement(XMLIDs.langPropTypeMandatoryXID, EL_TYPE_MANDATORY);
+        addElement(XMLIDs.langPropLocalMandatoryXID, EL_LOCAL_MANDATORY);
+        addElement(XMLIDs.langPropWordUniquenessXID, EL_WORD_UNIQUENESS);
+        addElement(XMLIDs.langPropLocalUniquenessXID, EL_LOCAL_UNIQUENESS);
+        addElement(XMLIDs.langPropIgnoreCase, EL_IGNORE_CASE);
+        addElement(XMLIDs.langPropDisableProcRegex, EL_DISABLE_PROC_REGEX);
+        addElement(XMLIDs.declensionXID, EL_DECLENSION);
+        addElement(XMLIDs.declensionIdXID, EL_DEC_ID);
+        addElement(XMLIDs.declensionTextXID, EL_DEC_TEXT);
+        addElement(XMLIDs.declensionComDimIdXID, EL_DEC_COMB_ID);
+        addElement(XMLIDs.declensionNotesXID, EL_DEC_NOTES);
+        addElement(XMLIDs.declensionIsTemplateXID, EL_DEC_IS_TEMP);
+        addElement(XMLIDs.declensionRelatedIdXID, EL_DEC_REL_ID);
+        addElement(XMLIDs.declensionMandatoryXID, EL_DEC_MANDATORY);
+        addElement(XMLIDs.dimensionNodeXID, EL_DIM_NODE);
+        addElement(XMLIDs.dimensionIdXID, EL_DIM_ID);
+        addElement(XMLIDs.dimensionMandXID, EL_DIM_MAND);
+        addElement(XMLIDs.dimensionNameXID, EL_DIM_NAME);
+        addElement(XMLIDs.proGuideXID, EL_PRO_GUIDE);
+        addElement(XMLIDs.proGuideBaseXID, EL_PRO_BASE);
+        addElement(XMLIDs.proGuidePhonXID, EL_PRO_PHON);
+        addElement(XMLIDs.proAutoPopXID, EL_PRO_AUTO_POP);
+        addElement(XMLIDs.thesNodeXID, EL_THES_NODE);
+        addElement(XMLIDs.thesNotesXID, EL_THES_NOTES);
+        addElement(XMLIDs.thesNameXID, EL_THES_NAME);
+        addElement(XMLIDs.thesWordXID, EL_THES_WORD);
+        addElement(XMLIDs.decGenRuleXID, EL_RULE);
+        addElement(XMLIDs.decGenRuleTypeXID, EL_RULE_TYPE);
+        addElement(XMLIDs.decGenRuleCombXID, EL_RULE_COMB);
+        addElement(XMLIDs.decGenRuleRegexXID, EL_RULE_REGEX);
+        addElement(XMLIDs.decGenRuleNameXID, EL_RULE_NAME);
+        addElement(XMLIDs.decGenTransXID, EL_TRANS);
+        addElement(XMLIDs.decGenTransRegexXID, EL_TRANS_REGEX);
+        addElement(XMLIDs.decGenTransReplaceXID, EL_TRANS_REPLACE);
+        addElement(WordChunkParser.PLACEHOLDER_XID, EL_PARSED_WORDS);
+    }
+
+    private static void addElement(String name, int code) {
+        elementCodes.put(name.toLowerCase(Locale.ENGLISH), code);
+    }
+
+    /**
+     * Creates a handler which reads the version of PolyGlot the file was saved
+     * with from the head of the stream, then hands all further parsing off to
+     * the appropriate versioned handler. This allows a file to be loaded in a
+     * single SAX pass.
+     *
+     * @param core dictionary core
+     * @return a handler which selects its reader once the version is known
+     */
+    public static CustHandler getCustHandler(final DictCore core) {
+        return new CustHandler() {
+
+            CustHandler delegate = null;
+            boolean bversion = false;
+            final StringBuilder versionText = new StringBuilder();
+            int depth = 0;
+
+            @Override
+            public void startElement(String uri, String localName,
+                    String qName, Attributes attributes)
+                    throws SAXException {
+                depth++;
+
+                if (delegate == null) {
+                    // root node carries no data
+                    if (depth == 1) {
+                        return;
+                    }
+
+                    // version is always written first; its absence means pre 0.6
+                    if (qName.equalsIgnoreCase(XMLIDs.pgVersionXID)) {
+                        bversion = true;
+                        return;
+                    }
+
+                    selectHandler("0");
+                }
+
+                delegate.startElement(uri, localName, qName, attributes);
+            }
+
+            @Override
+            public void endElement(String uri, String localName,
+                    String qName) throws SAXException {
+                depth--;
+
+                if (bversion) {
+                    bversion = false;
+                    selectHandler(versionText.toString());
+                } else if (delegate != null) {
+                    delegate.endElement(uri, localName, qName);
+                }
+            }
+
+            @Override
+            public void characters(char ch[], int start, int length)
+                    throws SAXException {
+                if (bversion) {
+                    versionText.append(ch, start, length);
+                } else if (delegate != null) {
+                    delegate.characters(ch, start, length);
+                }
+            }
+
+            @Override
+            public void endDocument() throws SAXException {
+                if (delegate != null) {
+                    delegate.endDocument();
+                }
+            }
+
+            private void selectHandler(String versionNumber) throws SAXException {
+                try {
+                    delegate = getHandlerForVersion(versionNumber, core);
+                } catch (Exception e) {
+                    throw new SAXException(e.getMessage());
+                }
+
+                delegate.setWordCollection(this.getWordCollection());
+                delegate.setTypeCollection(this.getTypeCollection());
+                delegate.setWordChunks(this.getWordChunks());
+            }
+        };
+    }
+
     /**
      * Creates appropriate handler to read file (based on version of PolyGlot
      * file was saved with)
      *
-     * @param fileStream stream of file to be loaded
+     * @param versionNumber version of PolyGlot the file was saved with
      * @param core dictionary core
      * @return an appropriate handler for the xml file
-     * @throws java.lang.Exception when unable to read given file or if file is
-     * from newer version of PolyGlot
+     * @throws java.lang.Exception if file is from newer version of PolyGlot
      */
-    public static CustHandler getCustHandler(InputStream fileStream, DictCore core) throws Exception {
-        //File XMLFile = new File(fileName);
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc;
-
-        doc = dBuilder.parse(fileStream);
-        doc.getDocumentElement().normalize();
-        Node versionNode;
-        String versionNumber;
+    private static CustHandler getHandlerForVersion(String versionNumber, DictCore core) throws Exception {
         CustHandler ret = null;
 
-        // test for version number in pgd file, set to 0 if none found (pre 0.6)
-        versionNode = doc.getDocumentElement().getElementsByTagName(XMLIDs.pgVersionXID).item(0);
-        versionNumber = versionNode == null ? "0" : versionNode.getTextContent();
-
         // switch not used to maintain Java 6 compatibility... fucking 6. X(
         switch (versionNumber) {
             case "0":
@@ -93,48 +303,102 @@ public class CustHandlerFactory {
         return ret;
     }
 
+    /**
+     * Base of the versioned handlers. Each element name is resolved to its
+     * code once per handler, and the text of each element is gathered in a
+     * single reused buffer (the parser may deliver it in any number of
+     * pieces). Subclasses act on codes: on an element's start, on its text
+     * (only if it has any) and on its end.
+     */
+    private abstract static class TableHandler extends CustHandler {
+
+        // parsers generally hand over the same name instance for each element
+        private static final int MAX_NAMES = 512;
+        private final Map<String, Integer> names = new HashMap<String, Integer>();
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public final void startElement(String uri, String localName,
+                String qName, Attributes attributes)
+                throws SAXException {
+            text.setLength(0);
+            start(resolve(qName));
+        }
+
+        @Override
+        public final void endElement(String uri, String localName,
+                String qName) throws SAXException {
+            int code = resolve(qName);
+
+            if (text.length() > 0) {
+                value(code, text.toString());
+                text.setLength(0);
+            }
+
+            end(code);
+        }
+
+        @Override
+        public final void characters(char ch[], int start, int length)
+                throws SAXException {
+            text.append(ch, start, length);
+        }
+
+        private int resolve(String qName) {
+            Integer ret = names.get(qName);
+
+            if (ret == null) {
+                ret = elementCodes.get(qName.toLowerCase(Locale.ENGLISH));
+
+                if (ret == null) {
+                    ret = EL_UNKNOWN;
+                }
+
+                if (names.size() < MAX_NAMES) {
+                    names.put(qName, ret);
+                }
+            }
+
+            return ret;
+        }
+
+        /**
+         * Called on start of element
+         *
+         * @param code element code
+         * @throws SAXException
+         */
+        protected void start(int code) throws SAXException {
+        }
+
+        /**
+         * Called on end of element with text, before end()
+         *
+         * @param code element code
+         * @param value full text of element
+         * @throws SAXException
+         */
+        protected void value(int code, String value) throws SAXException {
+        }
+
+        /**
+         * Called on end of element
+         *
+         * @param code element code
+         * @throws SAXException
+         */
+        protected void end(int code) throws SAXException {
+        }
+    }
+
     private static CustHandler get7orLowerHandler(final DictCore core) {
-        return new CustHandler() {
+        return new TableHandler() {
 
             PronunciationNode proBuffer;
-            boolean blocalWord = false;
-            boolean bconWord = false;
-            boolean btype = false;
-            boolean bId = false;
-            boolean bdef = false;
-            boolean bfontcon = false;
-            boolean bfontlocal = false;
-            boolean bwordClassName = false;
-            boolean bwordClassId = false;
-            boolean bwordClassNotes = false;
-            boolean bpronuncation = false;
-            boolean bgenderId = false;
-            boolean bgenderNotes = false;
-            boolean bgenderName = false;
-            boolean bgender = false;
-            boolean blangName = false;
-            boolean bfontSize = false;
-            boolean bfontStyle = false;
-            boolean balphaOrder = false;
-            boolean bDecId = false;
-            boolean bDecText = false;
-            boolean bDecNotes = false;
-            boolean bDecIsTemp = false;
-            boolean bDecRelId = false;
-            boolean bpronBase = false;
-            boolean bpronPhon = false;
-            boolean bproAutoPop = false;
-            boolean bwordPlur = false;
-            boolean blangPropTypeMandatory = false;
-            boolean blangPropLocalMandatory = false;
-            boolean blangPropWordUniqueness = false;
-            boolean blangPropLocalUniqueness = false;
-            boolean bdeclensionMandatory = false;
-            boolean bwordClassDefMan = false;
-            boolean bwordClassGenderMan = false;
-            boolean bwordClassProcMan = false;
-            boolean bwordClassPlurMan = false;
-            boolean bwordProcOverride = false;
+
+            // words read are inserted in one batch, ahead of the next element outside them
+            ConWord word;
+            List<ConWord> words = new ArrayList<ConWord>();
 
             int wId;
             int wCId;
@@ -146,447 +410,247 @@ public class CustHandlerFactory {
             PropertiesManager propertiesManager = core.getPropertiesManager();
 
             @Override
-            public void startElement(String uri, String localName,
-                    String qName, Attributes attributes)
-                    throws SAXException {
+            public void endDocument() throws SAXException {
+                insertWords(this, words);
+            }
+
+            @Override
+            protected void start(int code) throws SAXException {
+                if (word == null && code != EL_WORD) {
+                    insertWords(this, words);
+                }
 
-                // test to see whether this is the first node in a word
-                if (qName.equalsIgnoreCase(XMLIDs.wordXID)) {
-                    this.getWordCollection().clear();
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideXID)) {
-                    proBuffer = new PronunciationNode();
-                } else if (qName.equalsIgnoreCase(XMLIDs.localWordXID)) {
-                    blocalWord = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.conWordXID)) {
-                    bconWord = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordTypeXID)) {
-                    btype = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordIdXID)) {
-                    bId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.definitionXID)) {
-                    bdef = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordPlurXID)) {
-                    // plurality made into declension-deprecated from main screen
-                    declensionMgr.clearBuffer();
-                    bwordPlur = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontConXID)) {
-                    bfontcon = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontLocalXID)) {
-                    bfontlocal = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassIdXID)) {
-                    bwordClassId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNameXID)) {
-                    bwordClassName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNotesXID)) {
-                    bwordClassNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.pronunciationXID)) {
-                    bpronuncation = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordGenderXID)) {
-                    bgender = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderIdXID)) {
-                    bgenderId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNameXID)) {
-                    bgenderName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNotesXID)) {
-                    bgenderNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLangNameXID)) {
-                    blangName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontSizeXID)) {
-                    bfontSize = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontStyleXID)) {
-                    bfontStyle = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropAlphaOrderXID)) {
-                    balphaOrder = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionXID)) {
-                    // from old versions, declensions are loaded as dimensions of a master declension
-                    declensionMgr.getBuffer().clearBuffer();
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIdXID)) {
-                    bDecId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionTextXID)) {
-                    bDecText = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionNotesXID)) {
-                    bDecNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIsTemplateXID)) {
-                    bDecIsTemp = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionRelatedIdXID)) {
-                    bDecRelId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideBaseXID)) {
-                    bpronBase = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuidePhonXID)) {
-                    bpronPhon = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proAutoPopXID)) {
-                    bproAutoPop = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordProcOverrideXID)) {
-                    bwordProcOverride = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassPlurManXID)) {
-                    bwordClassPlurMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassProcManXID)) {
-                    bwordClassProcMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassGenderManXID)) {
-                    bwordClassGenderMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassDefManXID)) {
-                    bwordClassDefMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionMandatoryXID)) {
-                    bdeclensionMandatory = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLocalUniquenessXID)) {
-                    blangPropLocalUniqueness = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropWordUniquenessXID)) {
-                    blangPropWordUniqueness = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLocalMandatoryXID)) {
-                    blangPropLocalMandatory = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropTypeMandatoryXID)) {
-                    blangPropTypeMandatory = true;
+                switch (code) {
+                    case EL_WORD:
+                        // first node in a word, which may have no id of its own
+                        word = new ConWord();
+                        wId = -1;
+                        break;
+                    case EL_PRO_GUIDE:
+                        proBuffer = new PronunciationNode();
+                        break;
+                    case EL_WORD_PLUR:
+                        // plurality made into declension-deprecated from main screen
+                        declensionMgr.clearBuffer();
+                        break;
+                    case EL_DECLENSION:
+                        // from old versions, declensions are loaded as dimensions of a master declension
+                        declensionMgr.clearBuffer();
+                        break;
                 }
             }
 
             @Override
-            public void endElement(String uri, String localName,
-                    String qName) throws SAXException {
-
-                // save word to word collection
-                if (qName.equalsIgnoreCase(XMLIDs.wordXID)) {
-                    ConWord curWord = this.getWordCollection()
-                            .getBufferWord();
+            protected void value(int code, String value) throws SAXException {
+                switch (code) {
+                    case EL_LOCAL_WORD:
+                        word.setLocalWord(value);
+                        break;
+                    case EL_CON_WORD:
+                        word.setValue(value);
+                        break;
+                    case EL_WORD_TYPE:
+                        word.setWordType(value);
+                        break;
+                    case EL_WORD_ID:
+                        wId = Integer.parseInt(value);
+                        break;
+                    case EL_DEFINITION:
+                        word.setDefinition(value);
+                        break;
+                    case EL_WORD_PLUR:
+                        // plurality now handled as declension
+                        declensionMgr.setBufferDecTemp(false);
+                        declensionMgr.setBufferDecText(value);
+                        declensionMgr.setBufferDecNotes("Plural");
+                        break;
+                    case EL_WORD_PROC_OVERRIDE:
+                        word.setProcOverride(value.equals("T"));
+                        break;
+                    case EL_FONT_CON:
+                        propertiesManager.setFontCon(new Font(value, 0, 0));
+                        propertiesManager.setFontName(value);
+                        break;
+                    case EL_CLASS_NOTES:
+                        this.getTypeCollection().getBufferType().setNotes(value);
+                        break;
+                    case EL_CLASS_NAME:
+                        this.getTypeCollection().getBufferType().setValue(value);
+                        break;
+                    case EL_CLASS_ID:
+                        wCId = Integer.parseInt(value);
+                        break;
+                    case EL_PRONUNCIATION:
+                        word.setPronunciation(value);
+                        break;
+                    case EL_WORD_GENDER:
+                        word.setGender(value);
+                        break;
+                    case EL_GENDER_ID:
+                        wGId = Integer.parseInt(value);
+                        break;
+                    case EL_GENDER_NAME:
+                        genderCollection.getGenderBuffer().setValue(value);
+                        break;
+                    case EL_GENDER_NOTES:
+                        genderCollection.getGenderBuffer().setNotes(value);
+                        break;
+                    case EL_LANG_NAME:
+                        propertiesManager.setLangName(value);
+                        break;
+                    case EL_FONT_SIZE:
+                        propertiesManager.setFontSize(Integer.parseInt(value));
+                        break;
+                    case EL_FONT_STYLE:
+                        propertiesManager.setFontStyle(Integer.parseInt(value));
+                        break;
+                    case EL_ALPHA_ORDER:
+                        propertiesManager.setAlphaOrder(value);
+                        break;
+                    case EL_DEC_ID:
+                        declensionMgr.setBufferId(Integer.parseInt(value));
+                        break;
+                    case EL_DEC_TEXT:
+                        declensionMgr.setBufferDecText(value);
+                        break;
+                    case EL_DEC_NOTES:
+                        declensionMgr.setBufferDecNotes(value);
+                        break;
+                    case EL_DEC_IS_TEMP:
+                        declensionMgr.setBufferDecTemp(value.equals("1"));
+                        break;
+                    case EL_DEC_REL_ID:
+                        declensionMgr.setBufferRelId(Integer.parseInt(value));
+                        break;
+                    case EL_PRO_BASE:
+                        proBuffer.setValue(value);
+                        break;
+                    case EL_PRO_PHON:
+                        proBuffer.setPronunciation(value);
+                        break;
+                    case EL_PRO_AUTO_POP:
+                        propertiesManager.setProAutoPop(value.equalsIgnoreCase("T"));
+                        break;
+                    case EL_CLASS_PLUR_MAN:
+                        typeCollection.getBufferType().setPluralMandatory(value.equals("T"));
+                        break;
+                    case EL_CLASS_PROC_MAN:
+                        typeCollection.getBufferType().setProcMandatory(value.equals("T"));
+                        break;
+                    case EL_CLASS_GENDER_MAN:
+                        typeCollection.getBufferType().setGenderMandatory(value.equals("T"));
+                        break;
+                    case EL_CLASS_DEF_MAN:
+                        typeCollection.getBufferType().setDefMandatory(value.equals("T"));
+                        break;
+                    case EL_DEC_MANDATORY:
+                        declensionMgr.setBufferDecMandatory(value.equals("T"));
+                        break;
+                    case EL_LOCAL_UNIQUENESS:
+                        propertiesManager.setLocalUniqueness(value.equals("T"));
+                        break;
+                    case EL_WORD_UNIQUENESS:
+                        propertiesManager.setWordUniqueness(value.equals("T"));
+                        break;
+                    case EL_LOCAL_MANDATORY:
+                        propertiesManager.setLocalMandatory(value.equals("T"));
+                        break;
+                    case EL_TYPE_MANDATORY:
+                        propertiesManager.setTypesMandatory(value.equals("T"));
+                        break;
+                }
+            }
 
-                    try {
-                        // if word is valid, save. Throw error otherwise
-                        if (curWord.checkValid()) {
-                            this.getWordCollection().insert(wId);
-                        } else {
-                            throw new Exception("Word ("
-                                    + curWord.getLocalWord() + " : "
-                                    + curWord.getValue()
-                                    + ") is a malformed entry.");
+            @Override
+            protected void end(int code) throws SAXException {
+                switch (code) {
+                    case EL_WORD:
+                        word.setId(wId);
+                        endWord(words, word);
+                        word = null;
+                        break;
+                    case EL_CLASS:
+                        // insertion for word types is much simpler
+                        try {
+                            this.getTypeCollection().insert(wCId);
+                        } catch (Exception e) {
+                            throw new SAXException();
                         }
-                    } catch (Exception e) {
-                        throw new SAXException();
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassXID)) {
-                    // insertion for word types is much simpler
-                    try {
-                        this.getTypeCollection().insert(wCId);
-                    } catch (Exception e) {
-                        throw new SAXException();
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderXID)) {
-                    try {
-                        genderCollection.insert(wGId);
-                    } catch (Exception e) {
-                        throw new SAXException();
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideXID)) {
-                    pronuncMgr.addPronunciation(proBuffer);
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordGenderXID)) {
-                    bgender = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionXID)) {
-                    Integer relId = declensionMgr.getBufferRelId();
-
-                    // dec templates handled differently than actual saved declensions for words
-                    if (declensionMgr.isBufferDecTemp()) {
-                        // old style declensions/conjugations all thrown into a single bucket by type
-                        TypeNode parentType;
+                        break;
+                    case EL_GENDER:
                         try {
-                            parentType = core.getTypes().getNodeById(relId);
+                            genderCollection.insert(wGId);
                         } catch (Exception e) {
-                            throw new SAXException(e);
+                            throw new SAXException();
                         }
+                        break;
+                    case EL_PRO_GUIDE:
+                        pronuncMgr.addPronunciation(proBuffer);
+                        break;
+                    case EL_DECLENSION:
+                        endDeclension();
+                        break;
+                    case EL_WORD_PLUR:
+                        endPlural(declensionMgr, wId);
+                        break;
+                    case EL_PARSED_WORDS:
+                        insertParsedWords(this);
+                        break;
+                }
+            }
 
-                        DeclensionNode head = core.getDeclensionManager().getDeclension(relId, relId);
-                        String headerName = parentType.getValue() + " decl/conj";
-
-                        if (head == null) {
-                            head = new DeclensionNode(relId);
-                            head.setNotes("Autogenerated from pre-0.7.5 version of PolyGlot.");
-                            head.setValue(headerName);
+            private void endDeclension() throws SAXException {
+                Integer relId = declensionMgr.getBufferRelId();
 
-                            try {
-                                core.getDeclensionManager().addDeclensionTemplate(relId, head);
-                            } catch (Exception e) {
-                                throw new SAXException(e);
-                            }
-                        }
+                // dec templates handled differently than actual saved declensions for words
+                if (declensionMgr.isBufferDecTemp()) {
+                    // old style declensions/conjugations all thrown into a single bucket by type
+                    TypeNode parentType;
+                    try {
+                        parentType = core.getTypes().getNodeById(relId);
+                    } catch (Exception e) {
+                        throw new SAXException(e);
+                    }
 
-                        DeclensionDimension newDim = new DeclensionDimension(declensionMgr.getBuffer().getId());
+                    DeclensionNode head = core.getDeclensionManager().getDeclension(relId, relId);
+                    String headerName = parentType.getValue() + " decl/conj";
 
-                        newDim.setValue(declensionMgr.getBuffer().getValue());
-                        newDim.setMandatory(declensionMgr.getBuffer().isMandatory());
+                    if (head == null) {
+                        head = new DeclensionNode(relId);
+                        head.setNotes("Autogenerated from pre-0.7.5 version of PolyGlot.");
+                        head.setValue(headerName);
 
-                        head.addDimension(newDim);
-                    } else {
-                        // adding a declension to a word is easier than making a template...
-                        declensionMgr.getBuffer().setCombinedDimId("," + declensionMgr.getBuffer().getId().toString() + ",");
-                        declensionMgr.addDeclensionToWord(relId, declensionMgr.getBuffer().getId(), declensionMgr.getBuffer());
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.localWordXID)) {
-                    blocalWord = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.conWordXID)) {
-                    bconWord = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordPlurXID)) {
-                    // plurality now a declension (as it should be)
-                    // special position granted to plurals... fixes awful ID collision error
-                    
-                    // skip if empty
-                    if (!declensionMgr.getBuffer().getValue().trim().equals("")) {
-                        declensionMgr.getBuffer().setCombinedDimId("," + wId + "," + XMLIDs.wordPlurXID + ",");
-                        declensionMgr.addDeclensionToWord(wId, Integer.MAX_VALUE, declensionMgr.getBuffer());
+                        try {
+                            core.getDeclensionManager().addDeclensionTemplate(relId, head);
+                        } catch (Exception e) {
+                            throw new SAXException(e);
+                        }
                     }
-                    
-                    declensionMgr.clearBuffer();
-                    bwordPlur = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordTypeXID)) {
-                    btype = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordIdXID)) {
-                    bId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.definitionXID)) {
-                    bdef = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontConXID)) {
-                    bfontcon = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontLocalXID)) {
-                    bfontlocal = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNameXID)) {
-                    bwordClassName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNotesXID)) {
-                    bwordClassNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassPlurManXID)) {
-                    bwordClassPlurMan = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassProcManXID)) {
-                    bwordClassProcMan = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassGenderManXID)) {
-                    bwordClassGenderMan = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassDefManXID)) {
-                    bwordClassDefMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.pronunciationXID)) {
-                    bpronuncation = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderIdXID)) {
-                    bgenderId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNameXID)) {
-                    bgenderName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNotesXID)) {
-                    bgenderNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLangNameXID)) {
-                    blangName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontSizeXID)) {
-                    bfontSize = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontStyleXID)) {
-                    bfontStyle = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropAlphaOrderXID)) {
-                    balphaOrder = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIdXID)) {
-                    bDecId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionTextXID)) {
-                    bDecText = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionNotesXID)) {
-                    bDecNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIsTemplateXID)) {
-                    bDecIsTemp = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionRelatedIdXID)) {
-                    bDecRelId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionMandatoryXID)) {
-                    bdeclensionMandatory = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideBaseXID)) {
-                    bpronBase = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuidePhonXID)) {
-                    bpronPhon = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proAutoPopXID)) {
-                    bproAutoPop = false;
-                }
-            }
 
-            @Override
-            public void characters(char ch[], int start, int length)
-                    throws SAXException {
+                    DeclensionDimension newDim = new DeclensionDimension(declensionMgr.getBuffer().getId());
 
-                if (blocalWord) {
-                    this.getWordCollection().getBufferWord()
-                            .setLocalWord(new String(ch, start, length));
-                    blocalWord = false;
-                } else if (bconWord) {
-                    this.getWordCollection().getBufferWord()
-                            .setValue(new String(ch, start, length));
-                    bconWord = false;
-                } else if (btype) {
-                    this.getWordCollection().getBufferWord()
-                            .setWordType(new String(ch, start, length));
-                    btype = false;
-                } else if (bId) {
-                    wId = Integer.parseInt(new String(ch, start, length));
-                    bId = false;
-                } else if (bdef) {
-                    this.getWordCollection().getBufferWord()
-                            .setDefinition(new String(ch, start, length));
-                    bdef = false;
-                } else if (bwordPlur) {
-                    // plurality now handled as declension
-                    declensionMgr.setBufferDecTemp(false);
-                    declensionMgr.setBufferDecText(new String(ch, start, length));
-                    declensionMgr.setBufferDecNotes("Plural");
-                    bwordPlur = false;
-                } else if (bwordProcOverride) {
-                    this.getWordCollection().getBufferWord()
-                            .setProcOverride(new String(ch, start, length).equals("T"));
-                    bwordProcOverride = false;
-                } else if (bfontcon) {
-                    propertiesManager.setFontCon(new Font(new String(ch, start, length), 0, 0));
-                    propertiesManager.setFontName(new String(ch, start, length));
-                    bfontcon = false;
-                } else if (bwordClassNotes) {
-                    this.getTypeCollection().getBufferType()
-                            .setNotes(new String(ch, start, length));
-                    bwordClassNotes = false;
-                } else if (bwordClassName) {
-                    this.getTypeCollection().getBufferType()
-                            .setValue(new String(ch, start, length));
-                    bwordClassName = false;
-                } else if (bwordClassId) {
-                    wCId = Integer.parseInt(new String(ch, start, length));
-                    bwordClassId = false;
-                } else if (bpronuncation) {
-                    wordCollection.getBufferWord().setPronunciation(
-                            new String(ch, start, length));
-                    bpronuncation = false;
-                } else if (bgender) {
-                    wordCollection.getBufferWord().setGender(
-                            new String(ch, start, length));
-                    bgender = false;
-                } else if (bgenderId) {
-                    wGId = Integer.parseInt(new String(ch, start, length));
-                    bgenderId = false;
-                } else if (bgenderName) {
-                    genderCollection.getGenderBuffer().setValue(
-                            new String(ch, start, length));
-                    bgenderName = false;
-                } else if (bgenderNotes) {
-                    genderCollection.getGenderBuffer().setNotes(
-                            new String(ch, start, length));
-                    bgenderNotes = false;
-                } else if (blangName) {
-                    propertiesManager.setLangName(new String(ch, start, length));
-                    blangName = false;
-                } else if (bfontSize) {
-                    propertiesManager.setFontSize(Integer.parseInt(new String(ch, start, length)));
-                    bfontSize = false;
-                } else if (bfontStyle) {
-                    propertiesManager.setFontStyle(Integer.parseInt(new String(ch, start, length)));
-                    bfontStyle = false;
-                } else if (balphaOrder) {
-                    propertiesManager.setAlphaOrder(new String(ch, start, length));
-                    balphaOrder = false;
-                } else if (bDecId) {
-                    declensionMgr.setBufferId(Integer.parseInt(new String(ch, start, length)));
-                    bDecId = false;
-                } else if (bDecText) {
-                    declensionMgr.setBufferDecText(new String(ch, start, length));
-                    bDecText = false;
-                } else if (bDecNotes) {
-                    declensionMgr.setBufferDecNotes(new String(ch, start, length));
-                    bDecNotes = false;
-                } else if (bDecIsTemp) {
-                    declensionMgr.setBufferDecTemp(new String(ch, start, length).equals("1"));
-                    bDecIsTemp = false;
-                } else if (bDecRelId) {
-                    declensionMgr.setBufferRelId(Integer.parseInt(new String(ch, start, length)));
-                    bDecRelId = false;
-                } else if (bpronBase) {
-                    proBuffer.setValue(new String(ch, start, length));
-                    bpronBase = false;
-                } else if (bpronPhon) {
-                    proBuffer.setPronunciation(new String(ch, start, length));
-                    bpronPhon = false;
-                } else if (bproAutoPop) {
-                    propertiesManager.setProAutoPop((new String(ch, start, length).equalsIgnoreCase("T")));
-                    bproAutoPop = false;
-                } else if (bwordClassPlurMan) {
-                    typeCollection.getBufferType().setPluralMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassPlurMan = false;
-                } else if (bwordClassProcMan) {
-                    typeCollection.getBufferType().setProcMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassProcMan = false;
-                } else if (bwordClassGenderMan) {
-                    typeCollection.getBufferType().setGenderMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassGenderMan = false;
-                } else if (bwordClassDefMan) {
-                    typeCollection.getBufferType().setDefMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassDefMan = false;
-                } else if (bdeclensionMandatory) {
-                    declensionMgr.setBufferDecMandatory(new String(ch, start, length).equals("T"));
-                    bdeclensionMandatory = false;
-                } else if (blangPropLocalUniqueness) {
-                    propertiesManager.setLocalUniqueness(new String(ch, start, length).equals("T"));
-                    blangPropLocalUniqueness = false;
-                } else if (blangPropWordUniqueness) {
-                    propertiesManager.setWordUniqueness(new String(ch, start, length).equals("T"));
-                    blangPropWordUniqueness = false;
-                } else if (blangPropLocalMandatory) {
-                    propertiesManager.setLocalMandatory(new String(ch, start, length).equals("T"));
-                    blangPropLocalMandatory = false;
-                } else if (blangPropTypeMandatory) {
-                    propertiesManager.setTypesMandatory(new String(ch, start, length).equals("T"));
-                    blangPropTypeMandatory = false;
+                    newDim.setValue(declensionMgr.getBuffer().getValue());
+                    newDim.setMandatory(declensionMgr.getBuffer().isMandatory());
+
+                    head.addDimension(newDim);
+                } else {
+                    // adding a declension to a word is easier than making a template...
+                    declensionMgr.getBuffer().setCombinedDimId("," + declensionMgr.getBuffer().getId().toString() + ",");
+                    declensionMgr.addDeclensionToWord(relId, declensionMgr.getBuffer().getId(), declensionMgr.getBuffer());
                 }
             }
         };
     }
 
     private static CustHandler get075Handler(final DictCore core) {
-        return new CustHandler() {
+        return new TableHandler() {
 
             PronunciationNode proBuffer;
-            boolean blocalWord = false;
-            boolean bconWord = false;
-            boolean btype = false;
-            boolean bId = false;
-            boolean bdef = false;
-            boolean bfontcon = false;
-            boolean bfontlocal = false;
-            boolean bwordClassName = false;
-            boolean bwordClassId = false;
-            boolean bwordClassNotes = false;
-            boolean bpronuncation = false;
-            boolean bgenderId = false;
-            boolean bgenderNotes = false;
-            boolean bgenderName = false;
-            boolean bgender = false;
-            boolean blangName = false;
-            boolean bfontSize = false;
-            boolean bfontStyle = false;
-            boolean balphaOrder = false;
-            boolean bDecId = false;
-            boolean bDecText = false;
-            boolean bDecNotes = false;
-            boolean bDecIsTemp = false;
-            boolean bDecRelId = false;
-            boolean bDecCombId = false;
-            boolean bpronBase = false;
-            boolean bpronPhon = false;
-            boolean bproAutoPop = false;
-            boolean bwordPlur = false;
-            boolean blangPropTypeMandatory = false;
-            boolean blangPropLocalMandatory = false;
-            boolean blangPropWordUniqueness = false;
-            boolean blangPropLocalUniqueness = false;
-            boolean bdeclensionMandatory = false;
-            boolean bwordClassDefMan = false;
-            boolean bwordClassGenderMan = false;
-            boolean bwordClassProcMan = false;
-            boolean bwordClassPlurMan = false;
-            boolean bwordProcOverride = false;
-            boolean bdimNode = false;
-            boolean bdimId = false;
-            boolean bdimMand = false;
-            boolean bdimName = false;
-            boolean bthesName = false;
-            boolean bthesNotes = false;
-            boolean bthesWord = false;
-            boolean bignoreCase = false;
-            boolean bdisableProcRegex = false;
-            boolean bwordoverAutoDec = false;
-            boolean bdecGenRuleComb = false;
-            boolean bdecGenRuleName = false;
-            boolean bdecGenRuleRegex = false;
-            boolean bdecGenRuleType = false;
-            boolean bdecGenTransRegex = false;
-            boolean bdecGenTransRep = false;
-            
+
+            // words read are inserted in one batch, ahead of the next element outside them
+            ConWord word;
+            List<ConWord> words = new ArrayList<ConWord>();
+
             int wId;
             int wCId;
             int wGId;
@@ -598,490 +662,433 @@ public class CustHandlerFactory {
             ThesaurusManager thesMgr = core.getThesManager();
 
             @Override
-            public void startElement(String uri, String localName,
-                    String qName, Attributes attributes)
-                    throws SAXException {
+            public void endDocument() throws SAXException {
+                insertWords(this, words);
+            }
+
+            @Override
+            protected void start(int code) throws SAXException {
+                if (word == null && code != EL_WORD) {
+                    insertWords(this, words);
+                }
 
-                // test to see whether this is the first node in a word
-                if (qName.equalsIgnoreCase(XMLIDs.wordXID)) {
-                    this.getWordCollection().clear();
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideXID)) {
-                    proBuffer = new PronunciationNode();
-                } else if (qName.equalsIgnoreCase(XMLIDs.localWordXID)) {
-                    blocalWord = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.conWordXID)) {
-                    bconWord = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordTypeXID)) {
-                    btype = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordIdXID)) {
-                    bId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.definitionXID)) {
-                    bdef = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordPlurXID)) {
-                    // plurality made into declension-deprecated from main screen
-                    declensionMgr.clearBuffer();
-                    bwordPlur = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontConXID)) {
-                    bfontcon = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontLocalXID)) {
-                    bfontlocal = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassIdXID)) {
-                    bwordClassId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNameXID)) {
-                    bwordClassName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNotesXID)) {
-                    bwordClassNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.pronunciationXID)) {
-                    bpronuncation = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordGenderXID)) {
-                    bgender = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderIdXID)) {
-                    bgenderId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNameXID)) {
-                    bgenderName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNotesXID)) {
-                    bgenderNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLangNameXID)) {
-                    blangName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontSizeXID)) {
-                    bfontSize = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontStyleXID)) {
-                    bfontStyle = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropAlphaOrderXID)) {
-                    balphaOrder = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordAutoDeclenOverrideXID)) {
-                    bwordoverAutoDec = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionXID)) {
-                    // from old versions, declensions are loaded as dimensions of a master declension
-                    declensionMgr.getBuffer().clearBuffer();
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIdXID)) {
-                    bDecId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionTextXID)) {
-                    bDecText = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionNotesXID)) {
-                    bDecNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIsTemplateXID)) {
-                    bDecIsTemp = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionRelatedIdXID)) {
-                    bDecRelId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideBaseXID)) {
-                    bpronBase = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuidePhonXID)) {
-                    bpronPhon = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proAutoPopXID)) {
-                    bproAutoPop = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordProcOverrideXID)) {
-                    bwordProcOverride = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassPlurManXID)) {
-                    bwordClassPlurMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassProcManXID)) {
-                    bwordClassProcMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassGenderManXID)) {
-                    bwordClassGenderMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassDefManXID)) {
-                    bwordClassDefMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionMandatoryXID)) {
-                    bdeclensionMandatory = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLocalUniquenessXID)) {
-                    blangPropLocalUniqueness = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropWordUniquenessXID)) {
-                    blangPropWordUniqueness = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLocalMandatoryXID)) {
-                    blangPropLocalMandatory = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropTypeMandatoryXID)) {
-                    blangPropTypeMandatory = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionNodeXID)) {
-                    bdimNode = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionIdXID)) {
-                    bdimId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionMandXID)) {
-                    bdimMand = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionNameXID)) {
-                    bdimName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionComDimIdXID)) {
-                    bDecCombId = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesNameXID)) {
-                    bthesName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesNodeXID)) {
-                    thesMgr.buildNewBuffer();
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesNotesXID)) {
-                    bthesNotes = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesWordXID)) {
-                    bthesWord = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropIgnoreCase)) {
-                    bignoreCase = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropDisableProcRegex)) {
-                    bdisableProcRegex = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleCombXID)) {
-                    bdecGenRuleComb = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleNameXID)) {
-                    bdecGenRuleName = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleRegexXID)) {
-                    bdecGenRuleRegex = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleTypeXID)) {
-                    bdecGenRuleType = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenTransRegexXID)) {
-                    bdecGenTransRegex = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenTransReplaceXID)) {
-                    bdecGenTransRep = true;
+                switch (code) {
+                    case EL_WORD:
+                        // first node in a word, which may have no id of its own
+                        word = new ConWord();
+                        wId = -1;
+                        break;
+                    case EL_PRO_GUIDE:
+                        proBuffer = new PronunciationNode();
+                        break;
+                    case EL_WORD_PLUR:
+                        // plurality made into declension-deprecated from main screen
+                        declensionMgr.clearBuffer();
+                        break;
+                    case EL_DECLENSION:
+                        // nothing carries over from the previous declension
+                        declensionMgr.clearBuffer();
+                        break;
+                    case EL_THES_NODE:
+                        thesMgr.buildNewBuffer();
+                        break;
                 }
             }
 
             @Override
-            public void endElement(String uri, String localName,
-                    String qName) throws SAXException {
-
-                // save word to word collection
-                if (qName.equalsIgnoreCase(XMLIDs.wordXID)) {
-                    ConWord curWord = this.getWordCollection()
-                            .getBufferWord();
+            protected void value(int code, String value) throws SAXException {
+                switch (code) {
+                    case EL_LOCAL_WORD:
+                        word.setLocalWord(value);
+                        break;
+                    case EL_CON_WORD:
+                        word.setValue(value);
+                        break;
+                    case EL_WORD_TYPE:
+                        word.setWordType(value);
+                        break;
+                    case EL_WORD_ID:
+                        wId = Integer.parseInt(value);
+                        break;
+                    case EL_DEFINITION:
+                        word.setDefinition(value);
+                        break;
+                    case EL_WORD_PLUR:
+                        // plurality now handled as declension
+                        declensionMgr.setBufferDecTemp(false);
+                        declensionMgr.setBufferDecText(value);
+                        declensionMgr.setBufferDecNotes("Plural");
+                        break;
+                    case EL_WORD_PROC_OVERRIDE:
+                        word.setProcOverride(value.equals("T"));
+                        break;
+                    case EL_WORD_AUTO_DECL_OVERRIDE:
+                        word.setOverrideAutoDeclen(value.equals("T"));
+                        break;
+                    case EL_FONT_CON:
+                        propertiesManager.setFontCon(new Font(value, 0, 0));
+                        break;
+                    case EL_CLASS_NOTES:
+                        this.getTypeCollection().getBufferType().setNotes(value);
+                        break;
+                    case EL_CLASS_NAME:
+                        this.getTypeCollection().getBufferType().setValue(value);
+                        break;
+                    case EL_CLASS_ID:
+                        wCId = Integer.parseInt(value);
+                        break;
+                    case EL_PRONUNCIATION:
+                        word.setPronunciation(value);
+                        break;
+                    case EL_WORD_GENDER:
+                        word.setGender(value);
+                        break;
+                    case EL_GENDER_ID:
+                        wGId = Integer.parseInt(value);
+                        break;
+                    case EL_GENDER_NAME:
+                        genderCollection.getGenderBuffer().setValue(value);
+                        break;
+                    case EL_GENDER_NOTES:
+                        genderCollection.getGenderBuffer().setNotes(value);
+                        break;
+                    case EL_LANG_NAME:
+                        propertiesManager.setLangName(value);
+                        break;
+                    case EL_FONT_SIZE:
+                        propertiesManager.setFontSize(Integer.parseInt(value));
+                        break;
+                    case EL_FONT_STYLE:
+                        propertiesManager.setFontStyle(Integer.parseInt(value));
+                        break;
+                    case EL_ALPHA_ORDER:
+                        propertiesManager.setAlphaOrder(value);
+                        break;
+                    case EL_DEC_ID:
+                        declensionMgr.setBufferId(Integer.parseInt(value));
+                        break;
+                    case EL_DEC_TEXT:
+                        declensionMgr.setBufferDecText(value);
+                        break;
+                    case EL_DEC_NOTES:
+                        declensionMgr.setBufferDecNotes(value);
+                        break;
+                    case EL_DEC_IS_TEMP:
+                        declensionMgr.setBufferDecTemp(value.equals("1"));
+                        break;
+                    case EL_DEC_COMB_ID:
+                        declensionMgr.getBuffer().setCombinedDimId(value);
+                        break;
+                    case EL_DEC_REL_ID:
+                        declensionMgr.setBufferRelId(Integer.parseInt(value));
+                        break;
+                    case EL_PRO_BASE:
+                        proBuffer.setValue(value);
+                        break;
+                    case EL_PRO_PHON:
+                        proBuffer.setPronunciation(value);
+                        break;
+                    case EL_PRO_AUTO_POP:
+                        propertiesManager.setProAutoPop(value.equalsIgnoreCase("T"));
+                        break;
+                    case EL_CLASS_PLUR_MAN:
+                        typeCollection.getBufferType().setPluralMandatory(value.equals("T"));
+                        break;
+                    case EL_CLASS_PROC_MAN:
+                        typeCollection.getBufferType().setProcMandatory(value.equals("T"));
+                        break;
+                    case EL_CLASS_GENDER_MAN:
+                        typeCollection.getBufferType().setGenderMandatory(value.equals("T"));
+                        break;
+                    case EL_CLASS_DEF_MAN:
+                        typeCollection.getBufferType().setDefMandatory(value.equals("T"));
+                        break;
+                    case EL_DEC_MANDATORY:
+                        declensionMgr.setBufferDecMandatory(value.equals("T"));
+                        break;
+                    case EL_LOCAL_UNIQUENESS:
+                        propertiesManager.setLocalUniqueness(value.equals("T"));
+                        break;
+                    case EL_WORD_UNIQUENESS:
+                        propertiesManager.setWordUniqueness(value.equals("T"));
+                        break;
+                    case EL_LOCAL_MANDATORY:
+                        propertiesManager.setLocalMandatory(value.equals("T"));
+                        break;
+                    case EL_TYPE_MANDATORY:
+                        propertiesManager.setTypesMandatory(value.equals("T"));
+                        break;
+                    case EL_DIM_MAND:
+                        declensionMgr.getBuffer().getBuffer().setMandatory(value.equals("T"));
+                        break;
+                    case EL_DIM_ID:
+                        declensionMgr.getBuffer().getBuffer().setId(Integer.parseInt(value));
+                        break;
+                    case EL_DIM_NAME:
+                        declensionMgr.getBuffer().getBuffer().setValue(value);
+                        break;
+                    case EL_THES_NAME:
+                        thesMgr.getBuffer().setValue(value);
+                        break;
+                    case EL_THES_NOTES:
+                        thesMgr.getBuffer().setNotes(value);
+                        break;
+                    case EL_THES_WORD:
+                        try {
+                            thesMgr.getBuffer().addWord(core.getWordById(Integer.parseInt(value)));
+                        } catch (Exception e) {
+                            // I really shouldn't have made the word search return error on not found...
+                        }
+                        break;
+                    case EL_IGNORE_CASE:
+                        propertiesManager.setIgnoreCase(value.equals("T"));
+                        break;
+                    case EL_DISABLE_PROC_REGEX:
+                        propertiesManager.setDisableProcRegex(value.equals("T"));
+                        break;
+                    case EL_RULE_COMB:
+                        declensionMgr.getRuleBuffer().setCombinationId(value);
+                        break;
+                    case EL_RULE_NAME:
+                        declensionMgr.getRuleBuffer().setName(value);
+                        break;
+                    case EL_RULE_REGEX:
+                        declensionMgr.getRuleBuffer().setRegex(value);
+                        break;
+                    case EL_RULE_TYPE:
+                        declensionMgr.getRuleBuffer().setTypeId(Integer.parseInt(value));
+                        break;
+                    case EL_TRANS_REGEX:
+                        declensionMgr.getRuleBuffer().getTransBuffer().regex = value;
+                        break;
+                    case EL_TRANS_REPLACE:
+                        declensionMgr.getRuleBuffer().getTransBuffer().replaceText = value;
+                        break;
+                }
+            }
 
-                    try {
-                        // if word is valid, save. Throw error otherwise
-                        if (curWord.checkValid()) {
-                            this.getWordCollection().insert(wId);
+            @Override
+            protected void end(int code) throws SAXException {
+                switch (code) {
+                    case EL_WORD:
+                        word.setId(wId);
+                        endWord(words, word);
+                        word = null;
+                        break;
+                    case EL_CLASS:
+                        // insertion for word types is much simpler
+                        try {
+                            this.getTypeCollection().insert(wCId);
+                        } catch (Exception e) {
+                            throw new SAXException();
+                        }
+                        break;
+                    case EL_GENDER:
+                        try {
+                            genderCollection.insert(wGId);
+                        } catch (Exception e) {
+                            throw new SAXException();
+                        }
+                        break;
+                    case EL_PRO_GUIDE:
+                        pronuncMgr.addPronunciation(proBuffer);
+                        break;
+                    case EL_DECLENSION:
+                        // dec templates handled differently than actual saved declensions for words
+                        if (declensionMgr.isBufferDecTemp()) {
+                            declensionMgr.insertBuffer();
+                            declensionMgr.clearBuffer();
                         } else {
-                            throw new Exception("Word ("
-                                    + curWord.getLocalWord() + " : "
-                                    + curWord.getValue()
-                                    + ") is a malformed entry.");
+                            declensionMgr.addDeclensionToWord(declensionMgr.getBufferRelId(),
+                                    declensionMgr.getBuffer().getId(), declensionMgr.getBuffer());
                         }
-                    } catch (Exception e) {
-                        throw new SAXException();
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassXID)) {
-                    // insertion for word types is much simpler
-                    try {
-                        this.getTypeCollection().insert(wCId);
-                    } catch (Exception e) {
-                        throw new SAXException();
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderXID)) {
-                    try {
-                        genderCollection.insert(wGId);
-                    } catch (Exception e) {
-                        throw new SAXException();
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideXID)) {
-                    pronuncMgr.addPronunciation(proBuffer);
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordGenderXID)) {
-                    bgender = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionXID)) {
-                    // dec templates handled differently than actual saved declensions for words
-                    if (declensionMgr.isBufferDecTemp()) {
-                        declensionMgr.insertBuffer();
-                        declensionMgr.clearBuffer();
-                    } else {
-                        Integer relId = declensionMgr.getBufferRelId();
-                        declensionMgr.getBuffer().setCombinedDimId(declensionMgr.getBuffer().getCombinedDimId());
-                        declensionMgr.addDeclensionToWord(relId, declensionMgr.getBuffer().getId(), declensionMgr.getBuffer());
-                    }
-                } else if (qName.equalsIgnoreCase(XMLIDs.localWordXID)) {
-                    blocalWord = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.conWordXID)) {
-                    bconWord = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordPlurXID)) {
-                    // plurality now a declension (as it should be)
-                    // special position granted to plurals... fixes awful ID collision error
-
-                    // skip insertion of empty
-                    if (!declensionMgr.getBuffer().getValue().trim().equals("")) {
-                        declensionMgr.getBuffer().setCombinedDimId("," + wId + "," + XMLIDs.wordPlurXID + ",");
-                        declensionMgr.addDeclensionToWord(wId, Integer.MAX_VALUE, declensionMgr.getBuffer());
-                    }
+                        break;
+                    case EL_WORD_PLUR:
+                        endPlural(declensionMgr, wId);
+                        break;
+                    case EL_PARSED_WORDS:
+                        insertParsedWords(this);
+                        break;
+                    case EL_DIM_NODE:
+                        try {
+                            declensionMgr.getBuffer().insertBuffer();
+                            declensionMgr.getBuffer().clearBuffer();
+                        } catch (Exception e) {
+                            throw new SAXException(e);
+                        }
+                        break;
+                    case EL_THES_NODE:
+                        thesMgr.bufferDone();
+                        break;
+                    case EL_RULE:
+                        declensionMgr.insRuleBuffer();
+                        break;
+                    case EL_TRANS:
+                        declensionMgr.getRuleBuffer().insertTransBuffer();
+                        break;
+                }
+            }
+        };
+    }
 
-                    declensionMgr.clearBuffer();
-                    bwordPlur = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordTypeXID)) {
-                    btype = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordIdXID)) {
-                    bId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.definitionXID)) {
-                    bdef = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontConXID)) {
-                    bfontcon = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.fontLocalXID)) {
-                    bfontlocal = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNameXID)) {
-                    bwordClassName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassNotesXID)) {
-                    bwordClassNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassPlurManXID)) {
-                    bwordClassPlurMan = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassProcManXID)) {
-                    bwordClassProcMan = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassGenderManXID)) {
-                    bwordClassGenderMan = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordClassDefManXID)) {
-                    bwordClassDefMan = true;
-                } else if (qName.equalsIgnoreCase(XMLIDs.pronunciationXID)) {
-                    bpronuncation = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderIdXID)) {
-                    bgenderId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNameXID)) {
-                    bgenderName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.genderNotesXID)) {
-                    bgenderNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.wordAutoDeclenOverrideXID)) {
-                    bwordoverAutoDec = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropLangNameXID)) {
-                    blangName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontSizeXID)) {
-                    bfontSize = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropFontStyleXID)) {
-                    bfontStyle = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropAlphaOrderXID)) {
-                    balphaOrder = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIdXID)) {
-                    bDecId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionTextXID)) {
-                    bDecText = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionNotesXID)) {
-                    bDecNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionIsTemplateXID)) {
-                    bDecIsTemp = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionRelatedIdXID)) {
-                    bDecRelId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionMandatoryXID)) {
-                    bdeclensionMandatory = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.declensionComDimIdXID)) {
-                    bDecCombId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuideBaseXID)) {
-                    bpronBase = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proGuidePhonXID)) {
-                    bpronPhon = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.proAutoPopXID)) {
-                    bproAutoPop = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionNodeXID)) {
-                    try {
-                        declensionMgr.getBuffer().insertBuffer();
-                        declensionMgr.getBuffer().clearBuffer();
-                    } catch (Exception e) {
-                        throw new SAXException(e);
-                    }
-                    bdimNode = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionIdXID)) {
-                    bdimId = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionMandXID)) {
-                    bdimMand = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.dimensionNameXID)) {
-                    bdimName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesNameXID)) {
-                    bthesName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesNodeXID)) {
-                    thesMgr.bufferDone();
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesNotesXID)) {
-                    bthesNotes = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.thesWordXID)) {
-                    bthesWord = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropIgnoreCase)) {
-                    bignoreCase = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.langPropDisableProcRegex)) {
-                    bdisableProcRegex = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleXID)) {
-                    core.getDeclensionManager().insRuleBuffer();
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleCombXID)) {
-                    bdecGenRuleComb = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleNameXID)) {
-                    bdecGenRuleName = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleRegexXID)) {
-                    bdecGenRuleRegex = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenRuleTypeXID)) {
-                    bdecGenRuleType = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenTransXID)) {
-                    core.getDeclensionManager().getRuleBuffer().insertTransBuffer();
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenTransRegexXID)) {
-                    bdecGenTransRegex = false;
-                } else if (qName.equalsIgnoreCase(XMLIDs.decGenTransReplaceXID)) {
-                    bdecGenTransRep = false;
+    /**
+     * Creates handler which reads the word records of a chunk of a
+     * dictionary (wrapped in a root element) into new words
+     *
+     * @param words list to add words to, in the order read
+     * @return handler for chunk
+     */
+    static CustHandler getWordChunkHandler(final List<ConWord> words) {
+        return new TableHandler() {
+
+            ConWord word;
+
+            @Override
+            protected void start(int code) throws SAXException {
+                if (code == EL_WORD) {
+                    word = new ConWord();
                 }
             }
 
             @Override
-            public void characters(char ch[], int start, int length)
-                    throws SAXException {
+            protected void value(int code, String value) throws SAXException {
+                switch (code) {
+                    case EL_WORD_ID:
+                        word.setId(Integer.parseInt(value));
+                        break;
+                    case EL_LOCAL_WORD:
+                        word.setLocalWord(value);
+                        break;
+                    case EL_CON_WORD:
+                        word.setValue(value);
+                        break;
+                    case EL_WORD_TYPE:
+                        word.setWordType(value);
+                        break;
+                    case EL_PRONUNCIATION:
+                        word.setPronunciation(value);
+                        break;
+                    case EL_WORD_GENDER:
+                        word.setGender(value);
+                        break;
+                    case EL_DEFINITION:
+                        word.setDefinition(value);
+                        break;
+                    case EL_WORD_PROC_OVERRIDE:
+                        word.setProcOverride(value.equals("T"));
+                        break;
+                    case EL_WORD_AUTO_DECL_OVERRIDE:
+                        word.setOverrideAutoDeclen(value.equals("T"));
+                        break;
+                }
+            }
 
-                if (blocalWord) {
-                    this.getWordCollection().getBufferWord()
-                            .setLocalWord(new String(ch, start, length));
-                    blocalWord = false;
-                } else if (bconWord) {
-                    this.getWordCollection().getBufferWord()
-                            .setValue(new String(ch, start, length));
-                    bconWord = false;
-                } else if (btype) {
-                    this.getWordCollection().getBufferWord()
-                            .setWordType(new String(ch, start, length));
-                    btype = false;
-                } else if (bId) {
-                    wId = Integer.parseInt(new String(ch, start, length));
-                    bId = false;
-                } else if (bdef) {
-                    this.getWordCollection().getBufferWord()
-                            .setDefinition(new String(ch, start, length));
-                    bdef = false;
-                } else if (bwordPlur) {
-                    // plurality now handled as declension
-                    declensionMgr.setBufferDecTemp(false);
-                    declensionMgr.setBufferDecText(new String(ch, start, length));
-                    declensionMgr.setBufferDecNotes("Plural");
-                    bwordPlur = false;
-                } else if (bwordProcOverride) {
-                    this.getWordCollection().getBufferWord()
-                            .setProcOverride(new String(ch, start, length).equals("T"));
-                    bwordProcOverride = false;
-                } else if (bwordoverAutoDec) {
-                    this.getWordCollection().getBufferWord()
-                            .setOverrideAutoDeclen(new String(ch, start, length).equals("T"));
-                    bwordoverAutoDec = false;
-                } else if (bfontcon) {
-                    propertiesManager.setFontCon(new Font(new String(ch, start, length), 0, 0));
-                    bfontcon = false;
-                } else if (bwordClassNotes) {
-                    this.getTypeCollection().getBufferType()
-                            .setNotes(new String(ch, start, length));
-                    bwordClassNotes = false;
-                } else if (bwordClassName) {
-                    this.getTypeCollection().getBufferType()
-                            .setValue(new String(ch, start, length));
-                    bwordClassName = false;
-                } else if (bwordClassId) {
-                    wCId = Integer.parseInt(new String(ch, start, length));
-                    bwordClassId = false;
-                } else if (bpronuncation) {
-                    wordCollection.getBufferWord().setPronunciation(
-                            new String(ch, start, length));
-                    bpronuncation = false;
-                } else if (bgender) {
-                    wordCollection.getBufferWord().setGender(
-                            new String(ch, start, length));
-                    bgender = false;
-                } else if (bgenderId) {
-                    wGId = Integer.parseInt(new String(ch, start, length));
-                    bgenderId = false;
-                } else if (bgenderName) {
-                    genderCollection.getGenderBuffer().setValue(
-                            new String(ch, start, length));
-                    bgenderName = false;
-                } else if (bgenderNotes) {
-                    genderCollection.getGenderBuffer().setNotes(
-                            new String(ch, start, length));
-                    bgenderNotes = false;
-                } else if (blangName) {
-                    propertiesManager.setLangName(new String(ch, start, length));
-                    blangName = false;
-                } else if (bfontSize) {
-                    propertiesManager.setFontSize(Integer.parseInt(new String(ch, start, length)));
-                    bfontSize = false;
-                } else if (bfontStyle) {
-                    propertiesManager.setFontStyle(Integer.parseInt(new String(ch, start, length)));
-                    bfontStyle = false;
-                } else if (balphaOrder) {
-                    propertiesManager.setAlphaOrder(new String(ch, start, length));
-                    balphaOrder = false;
-                } else if (bDecId) {
-                    declensionMgr.setBufferId(Integer.parseInt(new String(ch, start, length)));
-                    bDecId = false;
-                } else if (bDecText) {
-                    declensionMgr.setBufferDecText(new String(ch, start, length));
-                    bDecText = false;
-                } else if (bDecNotes) {
-                    declensionMgr.setBufferDecNotes(new String(ch, start, length));
-                    bDecNotes = false;
-                } else if (bDecIsTemp) {
-                    declensionMgr.setBufferDecTemp(new String(ch, start, length).equals("1"));
-                    bDecIsTemp = false;
-                } else if (bDecCombId) {
-                    declensionMgr.getBuffer().setCombinedDimId(new String(ch, start, length));
-                    bDecIsTemp = false;
-                } else if (bDecRelId) {
-                    declensionMgr.setBufferRelId(Integer.parseInt(new String(ch, start, length)));
-                    bDecRelId = false;
-                } else if (bpronBase) {
-                    proBuffer.setValue(new String(ch, start, length));
-                    bpronBase = false;
-                } else if (bpronPhon) {
-                    proBuffer.setPronunciation(new String(ch, start, length));
-                    bpronPhon = false;
-                } else if (bproAutoPop) {
-                    propertiesManager.setProAutoPop((new String(ch, start, length).equalsIgnoreCase("T")));
-                    bproAutoPop = false;
-                } else if (bwordClassPlurMan) {
-                    typeCollection.getBufferType().setPluralMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassPlurMan = false;
-                } else if (bwordClassProcMan) {
-                    typeCollection.getBufferType().setProcMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassProcMan = false;
-                } else if (bwordClassGenderMan) {
-                    typeCollection.getBufferType().setGenderMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassGenderMan = false;
-                } else if (bwordClassDefMan) {
-                    typeCollection.getBufferType().setDefMandatory(new String(ch, start, length).equals("T"));
-                    bwordClassDefMan = false;
-                } else if (bdeclensionMandatory) {
-                    declensionMgr.setBufferDecMandatory(new String(ch, start, length).equals("T"));
-                    bdeclensionMandatory = false;
-                } else if (blangPropLocalUniqueness) {
-                    propertiesManager.setLocalUniqueness(new String(ch, start, length).equals("T"));
-                    blangPropLocalUniqueness = false;
-                } else if (blangPropWordUniqueness) {
-                    propertiesManager.setWordUniqueness(new String(ch, start, length).equals("T"));
-                    blangPropWordUniqueness = false;
-                } else if (blangPropLocalMandatory) {
-                    propertiesManager.setLocalMandatory(new String(ch, start, length).equals("T"));
-                    blangPropLocalMandatory = false;
-                } else if (blangPropTypeMandatory) {
-                    propertiesManager.setTypesMandatory(new String(ch, start, length).equals("T"));
-                    blangPropTypeMandatory = false;
-                } else if (bdimMand) {
-                    declensionMgr.getBuffer().getBuffer().setMandatory(new String(ch, start, length).equals("T"));
-                    bdimMand = false;
-                } else if (bdimId) {
-                    declensionMgr.getBuffer().getBuffer().setId(Integer.parseInt(new String(ch, start, length)));
-                    bdimId = false;
-                } else if (bdimName) {
-                    declensionMgr.getBuffer().getBuffer().setValue(new String(ch, start, length));
-                    bdimName = false;
-                } else if (bthesName) {
-                    thesMgr.getBuffer().setValue(new String(ch, start, length));
-                    bthesName = false;
-                } else if (bthesNotes) {
-                    thesMgr.getBuffer().setNotes(new String(ch, start, length));
-                    bthesNotes = false;
-                } else if (bthesWord) {
-                    try {
-                        thesMgr.getBuffer().addWord(core.getWordById(
-                                Integer.parseInt(new String(ch, start, length))));
-                    } catch (Exception e) {
-                        // I really shouldn't have made the word search return error on not found...
-                    }
-                    bthesWord = false;
-                } else if (bignoreCase) {
-                    core.getPropertiesManager().setIgnoreCase(new String(ch, start, length).equals("T"));
-                    bignoreCase = false;
-                } else if (bdisableProcRegex) {
-                    core.getPropertiesManager().setDisableProcRegex(new String(ch, start, length).equals("T"));
-                    bdisableProcRegex = false;
-                } else if (bdecGenRuleComb) {
-                    core.getDeclensionManager().getRuleBuffer().setCombinationId(new String(ch, start, length));
-                    bdecGenRuleComb = false;
-                } else if (bdecGenRuleName) {
-                    core.getDeclensionManager().getRuleBuffer().setName(new String(ch, start, length));
-                    bdecGenRuleName = false;
-                } else if (bdecGenRuleRegex) {
-                    core.getDeclensionManager().getRuleBuffer().setRegex(new String(ch, start, length));
-                    bdecGenRuleRegex = false;
-                } else if (bdecGenRuleType) {
-                    core.getDeclensionManager().getRuleBuffer().setTypeId(Integer.parseInt(new String(ch, start, length)));
-                    bdecGenRuleType = false;
-                } else if (bdecGenTransRegex) {
-                    core.getDeclensionManager().getRuleBuffer().getTransBuffer().regex = new String(ch, start, length);
-                    bdecGenTransRegex = false;
-                } else if (bdecGenTransRep) {
-                    core.getDeclensionManager().getRuleBuffer().getTransBuffer().replaceText = new String(ch, start, length);
-                    bdecGenTransRep = false;
+            @Override
+            protected void end(int code) throws SAXException {
+                if (code == EL_WORD) {
+                    endWord(words, word);
                 }
             }
         };
     }
+
+    /**
+     * Inserts words parsed in parallel, in place of placeholder element
+     *
+     * @param handler handler which reached placeholder
+     * @throws SAXException if words could not be parsed or inserted
+     */
+    private static void insertParsedWords(CustHandler handler) throws SAXException {
+        if (handler.getWordChunks() == null) {
+            return;
+        }
+
+        try {
+            List<ConWord> words = handler.getWordChunks().getWords();
+            assignMissingIds(handler.getWordCollection(), words);
+            handler.getWordCollection().insertBatch(words);
+        } catch (SAXException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SAXException();
+        }
+    }
+
+    /**
+     * Adds word to those read so far, if valid
+     *
+     * @param words words read so far
+     * @param word word read
+     * @throws SAXException if word is malformed
+     */
+    private static void endWord(List<ConWord> words, ConWord word) throws SAXException {
+        if (!word.checkValid()) {
+            throw new SAXException("Word ("
+                    + word.getLocalWord() + " : "
+                    + word.getValue()
+                    + ") is a malformed entry.");
+        }
+
+        words.add(word);
+    }
+
+    /**
+     * Inserts words read so far into collection as one batch
+     *
+     * @param handler handler which read words
+     * @param words words read so far (emptied)
+     * @throws SAXException if words could not be inserted
+     */
+    private static void insertWords(CustHandler handler, List<ConWord> words) throws SAXException {
+        if (words.isEmpty()) {
+            return;
+        }
+
+        try {
+            assignMissingIds(handler.getWordCollection(), words);
+            handler.getWordCollection().insertBatch(words);
+        } catch (Exception e) {
+            throw new SAXException(e);
+        }
+
+        words.clear();
+    }
+
+    /**
+     * Gives words read without an id the id each would have been given had
+     * the words been inserted one at a time
+     *
+     * @param collection collection words are to be inserted into
+     * @param words words read, in order
+     */
+    private static void assignMissingIds(ConWordCollection collection, List<ConWord> words) {
+        int nextId = collection.getNextNodeId();
+
+        for (ConWord word : words) {
+            if (word.getId() < 1) {
+                word.setId(nextId);
+            }
+
+            nextId = Math.max(nextId, word.getId() + 1);
+        }
+    }
+
+    /**
+     * Adds buffered plural of word as declension, unless empty
+     *
+     * @param declensionMgr declension manager holding buffer
+     * @param wId id of word
+     */
+    private static void endPlural(DeclensionManager declensionMgr, int wId) {
+        // plurality now a declension (as it should be)
+        // special position granted to plurals... fixes awful ID collision error
+
+        // skip insertion of empty
+        if (!declensionMgr.getBuffer().getValue().trim().equals("")) {
+            declensionMgr.getBuffer().setCombinedDimId("," + wId + "," + XMLIDs.wordPlurXID + ",");
+            declensionMgr.addDeclensionToWord(wId, Integer.MAX_VALUE, declensionMgr.getBuffer());
+        }
+
+        declensionMgr.clearBuffer();
+    }
 }
@@ -21,6 +21,7 @@ package PolyGlot;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * class to contain declension transformation rule and all transformations
@@ -31,6 +32,7 @@ public class DeclensionGenRule {
     private int typeId;
     private String combinationId;
     private String regex = "";
+    private volatile Pattern regexPattern = null;
     private String name = "";
     private List<DeclensionGenTransform> transformations = new ArrayList<DeclensionGenTransform>();
     private DeclensionGenTransform transBuffer = new DeclensionGenTransform();
@@ -119,6 +121,24 @@ public class DeclensionGenRule {
     
     public void setRegex(String _regex) {
         regex = _regex;
+        regexPattern = null;
+    }
+    
+    /**
+     * Gets compiled word match regex, compiling it on first use after the
+     * regex is set
+     * @return compiled regex
+     * @throws java.util.regex.PatternSyntaxException if regex is invalid
+     */
+    public Pattern getRegexPattern() {
+        Pattern ret = regexPattern;
+        
+        if (ret == null) {
+            ret = Pattern.compile(regex);
+            regexPattern = ret;
+        }
+        
+        return ret;
     }
     
     @Override
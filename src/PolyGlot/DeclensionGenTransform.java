@@ -19,6 +19,8 @@
  */
 package PolyGlot;
 
+import java.util.regex.Pattern;
+
 /**
  * Container class for declension auto-transform transformation pairs
  * @author draque
@@ -26,6 +28,7 @@ package PolyGlot;
 public class DeclensionGenTransform {
     public String regex;
     public String replaceText;
+    private volatile Pattern pattern = null;
     
     public DeclensionGenTransform(String _regex, String _replaceText) {
         regex = _regex;
@@ -36,4 +39,21 @@ public class DeclensionGenTransform {
         regex = "";
         replaceText = "";
     }
+    
+    /**
+     * Gets compiled transform regex. Compiled on first use and again only
+     * if regex has since changed.
+     * @return compiled regex
+     * @throws java.util.regex.PatternSyntaxException if regex is invalid
+     */
+    public Pattern getPattern() {
+        Pattern ret = pattern;
+        
+        if (ret == null || !ret.pattern().equals(regex)) {
+            ret = Pattern.compile(regex);
+            pattern = ret;
+        }
+        
+        return ret;
+    }
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+
+/**
+ * Generation of every declension form of every word not set to override
+ * autogeneration, in three steps: creation takes a snapshot of the words,
+ * types and generation rules (their compiled patterns and replacement text,
+ * never the rule objects themselves, which may be edited meanwhile),
+ * compute() generates forms in parallel (safe to run off the event thread,
+ * as it touches only the snapshot), and
+ * apply() writes the results to the declension store in one pass.
+ *
+ * @author draque
+ */
+public class DeclensionGeneration {
+
+    // number of words below which a fork join task works rather than splits
+    private static final int CHUNK_SIZE = 256;
+
+    private final DeclensionManager decMan;
+    private final ConWordCollection wordCollection;
+    private final List<TypeRules> typeRules = new ArrayList<TypeRules>();
+    private final int[] ids;
+    private final String[] values;
+    private final int[] typeIndexes;
+    private final String[][] results;
+    private boolean complete = false;
+
+    /**
+     * Snapshots words, types and rules for generation
+     * @param _decMan declension manager to read rules from and write to
+     * @param _wordCollection words to generate declensions of
+     * @param types word types
+     * @throws java.util.regex.PatternSyntaxException if any rule regex is
+     * invalid
+     */
+    public DeclensionGeneration(DeclensionManager _decMan, ConWordCollection _wordCollection, TypeCollection types) {
+        Map<String, Integer> typeByName = new HashMap<String, Integer>();
+        int count = 0;
+
+        decMan = _decMan;
+        wordCollection = _wordCollection;
+
+        Iterator<TypeNode> typeIt = types.getNodeIterator();
+
+        while (typeIt.hasNext()) {
+            TypeNode curType = typeIt.next();
+            TypeRules curRules = new TypeRules(curType);
+
+            // types with no rules produce no forms, and need no work
+            if (curRules.hasRules && !typeByName.containsKey(curType.getValue())) {
+                typeByName.put(curType.getValue(), typeRules.size());
+                typeRules.add(curRules);
+            }
+        }
+
+        ids = new int[wordCollection.getNodeCount()];
+        values = new String[ids.length];
+        typeIndexes = new int[ids.length];
+
+        Iterator<ConWord> it = wordCollection.getNodeIterator();
+
+        while (it.hasNext()) {
+            ConWord curWord = it.next();
+            Integer typeIndex = typeByName.get(curWord.getWordType());
+
+            if (!curWord.isOverrideAutoDeclen() && typeIndex != null) {
+                ids[count] = curWord.getId();
+                values[count] = curWord.getValue();
+                typeIndexes[count] = typeIndex;
+                count++;
+            }
+        }
+
+        results = new String[count][];
+    }
+
+    /**
+     * @return number of words to generate declensions for
+     */
+    public int getWordCount() {
+        return results.length;
+    }
+
+    /**
+     * Generates declensions of all words in snapshot, across all available
+     * processors
+     * @param monitor monitor to report progress to and check for cancellation
+     * (may be null)
+     * @return true if completed, false if cancelled
+     */
+    public boolean compute(TaskMonitor monitor) {
+        TaskMonitor taskMonitor = monitor == null ? new TaskMonitor() : monitor;
+        ForkJoinPool pool = new ForkJoinPool();
+
+        taskMonitor.setTotal(results.length);
+
+        try {
+            pool.invoke(new GenerateTask(0, results.length, taskMonitor));
+        } finally {
+            pool.shutdown();
+        }
+
+        complete = !taskMonitor.isCancelled();
+
+        return complete;
+    }
+
+    /**
+     * Writes generated forms to the declension store, replacing existing
+     * values of the same combined ids. Words deleted, overridden, or changed
+     * in value or type since the snapshot was taken are left alone. Must be
+     * called from the same thread as any other changes to the lexicon.
+     * @return number of words given at least one generated form
+     * @throws Exception if generation was not completed
+     */
+    public int apply() throws Exception {
+        int ret = 0;
+
+        if (!complete) {
+            throw new Exception("Declension generation incomplete or cancelled.");
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            TypeRules curRules = typeRules.get(typeIndexes[i]);
+            String[] forms = results[i];
+
+            if (forms == null || !wordCollection.exists(ids[i])) {
+                continue;
+            }
+
+            ConWord curWord = wordCollection.getNodeById(ids[i]);
+
+            if (curWord.isOverrideAutoDeclen()
+                    || !curWord.getValue().equals(values[i])
+                    || !curWord.getWordType().equals(curRules.typeName)) {
+                continue;
+            }
+
+            for (int j = 0; j < forms.length; j++) {
+                if (forms[j] != null) {
+                    decMan.setGeneratedDeclension(ids[i], curRules.combinedIds[j], curRules.labels[j], forms[j]);
+                }
+            }
+
+            ret++;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Combined ids and compiled rules of a single word type
+     */
+    private class TypeRules {
+        private final String typeName;
+        private final String[] combinedIds;
+        private final String[] labels;
+        private final List<List<RuleSnapshot>> rules = new ArrayList<List<RuleSnapshot>>();
+        private boolean hasRules = false;
+
+        public TypeRules(TypeNode type) {
+            int typeId = type.getId();
+            List<DeclensionPair> pairs = decMan.getAllCombinedIds(typeId);
+
+            typeName = type.getValue();
+            combinedIds = new String[pairs.size()];
+            labels = new String[pairs.size()];
+
+            for (int i = 0; i < pairs.size(); i++) {
+                DeclensionPair curPair = pairs.get(i);
+                List<RuleSnapshot> combRules = new ArrayList<RuleSnapshot>();
+
+                for (DeclensionGenRule curRule : decMan.getDeclensionRules(typeId, curPair.combinedId)) {
+                    combRules.add(new RuleSnapshot(curRule));
+                }
+
+                combinedIds[i] = curPair.combinedId;
+                labels[i] = curPair.label;
+                rules.add(combRules);
+                hasRules |= !combRules.isEmpty();
+            }
+        }
+
+        /**
+         * @param base base word string
+         * @return generated form for each combined id, null if none at all
+         */
+        public String[] decline(String base) {
+            String[] ret = null;
+
+            for (int i = 0; i < combinedIds.length; i++) {
+                String form = applyRules(rules.get(i), base);
+
+                if (!form.equals("")) {
+                    if (ret == null) {
+                        ret = new String[combinedIds.length];
+                    }
+                    ret[i] = form;
+                }
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Applies rules in order to a base word, as DeclensionManager.applyRules
+     * does with live rules
+     * @param rules rules to apply
+     * @param base base word string
+     * @return new word value if any rule matched, empty string otherwise
+     */
+    private static String applyRules(List<RuleSnapshot> rules, String base) {
+        String ret = "";
+
+        for (RuleSnapshot curRule : rules) {
+            if (curRule.regex.matcher(base).matches()) {
+                for (int i = 0; i < curRule.transforms.length; i++) {
+                    base = curRule.transforms[i].matcher(base).replaceAll(curRule.replacements[i]);
+                    ret = base;
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Compiled regex and transforms of a generation rule as they were when
+     * the snapshot was taken
+     */
+    private static class RuleSnapshot {
+        private final Pattern regex;
+        private final Pattern[] transforms;
+        private final String[] replacements;
+
+        /**
+         * @param rule rule to copy
+         * @throws java.util.regex.PatternSyntaxException if any regex of rule
+         * is invalid
+         */
+        public RuleSnapshot(DeclensionGenRule rule) {
+            List<DeclensionGenTransform> ruleTransforms = rule.getTransforms();
+
+            regex = rule.getRegexPattern();
+            transforms = new Pattern[ruleTransforms.size()];
+            replacements = new String[ruleTransforms.size()];
+
+            for (int i = 0; i < transforms.length; i++) {
+                DeclensionGenTransform curTrans = ruleTransforms.get(i);
+
+                transforms[i] = curTrans.getPattern();
+                replacements[i] = curTrans.replaceText;
+            }
+        }
+    }
+
+    /**
+     * Generates declensions of a range of the snapshot, splitting in two
+     * while range is large
+     */
+    private class GenerateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int start;
+        private final int end;
+        private final TaskMonitor monitor;
+
+        public GenerateTask(int _start, int _end, TaskMonitor _monitor) {
+            start = _start;
+            end = _end;
+            monitor = _monitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (monitor.isCancelled()) {
+                return;
+            }
+
+            if (end - start > CHUNK_SIZE) {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new GenerateTask(start, middle, monitor),
+                        new GenerateTask(middle, end, monitor));
+            } else {
+                for (int i = start; i < end; i++) {
+                    results[i] = typeRules.get(typeIndexes[i]).decline(values[i]);
+                }
+
+                monitor.worked(end - start);
+            }
+        }
+    }
+}
@@ -22,13 +22,14 @@ package PolyGlot;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
@@ -36,17 +37,25 @@ import org.w3c.dom.Element;
  */
 public class DeclensionManager {
 
-    // Integer is ID of related word, list is list of declension nodes
-    private final Map dList = new HashMap<Integer, List<DeclensionNode>>();
+    // Integer is ID of related word, set holds the word's declension nodes
+    private final Map<Integer, DeclensionSet> dList = new HashMap<Integer, DeclensionSet>();
 
-    // Integer is ID of related type, list is list of declensions for this type
-    private final Map dTemplates = new HashMap<Integer, List<DeclensionNode>>();
+    // Integer is ID of related type, set holds the declensions for this type
+    private final Map<Integer, DeclensionSet> dTemplates = new HashMap<Integer, DeclensionSet>();
+
+    // ids of words whose declensions changed since changes were last cleared
+    private final Set<Integer> changedWordIds = new HashSet<Integer>();
 
     private Integer topId = 0;
     private boolean bufferDecTemp = false;
     private Integer bufferRelId = -1;
     private DeclensionNode buffer = new DeclensionNode(-1);
     private final List<DeclensionGenRule> generationRules = new ArrayList<DeclensionGenRule>();
+
+    // rules grouped by type id, then by combined id, each in generationRules order
+    // (rules must not change type or combined id once added)
+    private final Map<Integer, Map<String, List<DeclensionGenRule>>> rulesByType
+            = new HashMap<Integer, Map<String, List<DeclensionGenRule>>>();
     private DeclensionGenRule ruleBuffer = new DeclensionGenRule();
 
     /**
@@ -98,6 +107,7 @@ public class DeclensionManager {
      */
     public void addDeclensionGenRule(DeclensionGenRule newRule) {
         generationRules.add(newRule);
+        groupRule(newRule);
     }
     
     /**
@@ -111,9 +121,11 @@ public class DeclensionManager {
             DeclensionGenRule curRule = itRules.next();
             
             if (curRule.getTypeId() == typeId) {
-                generationRules.remove(curRule);
+                itRules.remove();
             }
         }
+        
+        rulesByType.remove(typeId);
     }
     
     /**
@@ -122,6 +134,38 @@ public class DeclensionManager {
      */
     public void deleteDeclensionGenRule(DeclensionGenRule delRule) {
         generationRules.remove(delRule);
+        
+        Map<String, List<DeclensionGenRule>> typeRules = rulesByType.get(delRule.getTypeId());
+        
+        if (typeRules != null) {
+            List<DeclensionGenRule> combRules = typeRules.get(delRule.getCombinationId());
+            
+            if (combRules != null) {
+                combRules.remove(delRule);
+            }
+        }
+    }
+    
+    /**
+     * adds rule to the end of its type and combination group
+     * @param rule rule to group
+     */
+    private void groupRule(DeclensionGenRule rule) {
+        Map<String, List<DeclensionGenRule>> typeRules = rulesByType.get(rule.getTypeId());
+        
+        if (typeRules == null) {
+            typeRules = new HashMap<String, List<DeclensionGenRule>>();
+            rulesByType.put(rule.getTypeId(), typeRules);
+        }
+        
+        List<DeclensionGenRule> combRules = typeRules.get(rule.getCombinationId());
+        
+        if (combRules == null) {
+            combRules = new ArrayList<DeclensionGenRule>();
+            typeRules.put(rule.getCombinationId(), combRules);
+        }
+        
+        combRules.add(rule);
     }
     
     /**
@@ -153,23 +197,34 @@ public class DeclensionManager {
      * @return new word value if exists, empty string otherwise
      */
     public String declineWord(int typeId, String combinedId, String base) {
-        Iterator<DeclensionGenRule> typeRules = getDeclensionRules(typeId).iterator();
+        Map<String, List<DeclensionGenRule>> typeRules = rulesByType.get(typeId);
+        List<DeclensionGenRule> combRules = typeRules == null ? null : typeRules.get(combinedId);
         String ret = "";
 
-        while (typeRules.hasNext()) {
-            DeclensionGenRule curRule = typeRules.next();
-            
-            // skip all entries not applicable to this particular combined word ID
-            if (!curRule.getCombinationId().equals(combinedId)) {
-                continue;
-            }
+        if (combRules == null) {
+            return ret;
+        }
+
+        return applyRules(combRules, base);
+    }
+
+    /**
+     * Applies generation rules in order to a base word. Safe to call from any
+     * thread so long as the rules are not edited meanwhile.
+     * @param rules rules to apply
+     * @param base base word string
+     * @return new word value if any rule matched, empty string otherwise
+     */
+    static String applyRules(List<DeclensionGenRule> rules, String base) {
+        String ret = "";
 
+        for (DeclensionGenRule curRule : rules) {
             // apply transforms within rule if rule matches current base
-            if (base.matches(curRule.getRegex())) {
+            if (curRule.getRegexPattern().matcher(base).matches()) {
                 List<DeclensionGenTransform> transforms = curRule.getTransforms();
                 
                 for (DeclensionGenTransform curTrans : transforms) {
-                    base = base.replaceAll(curTrans.regex, curTrans.replaceText);
+                    base = curTrans.getPattern().matcher(base).replaceAll(curTrans.replaceText);
                     
                     ret = base;
                 }
@@ -178,43 +233,111 @@ public class DeclensionManager {
         
         return ret;
     }
+
+    /**
+     * Gets the generation rules for a type and combined id
+     * @param typeId type to get rules of
+     * @param combinedId combined ID of word form to get rules of
+     * @return copy of rules in order applied (empty if none)
+     */
+    List<DeclensionGenRule> getDeclensionRules(int typeId, String combinedId) {
+        Map<String, List<DeclensionGenRule>> typeRules = rulesByType.get(typeId);
+        List<DeclensionGenRule> combRules = typeRules == null ? null : typeRules.get(combinedId);
+
+        return combRules == null ? new ArrayList<DeclensionGenRule>()
+                : new ArrayList<DeclensionGenRule>(combRules);
+    }
+
+    /**
+     * Snapshots words, types and generation rules for generation of every
+     * declension of every word not set to override autogeneration, which may
+     * then be computed on any thread
+     * @param words lexicon to generate declensions for
+     * @param types word types of lexicon
+     * @return generation run ready to be computed
+     */
+    public DeclensionGeneration prepareDeclensionGeneration(ConWordCollection words, TypeCollection types) {
+        return new DeclensionGeneration(this, words, types);
+    }
+
+    /**
+     * Sets value of a word's declension for a combined id, creating the
+     * declension if the word does not have it yet
+     * @param wordId word to set declension of
+     * @param combinedId combined dimension id of declension
+     * @param label label of declension, used as notes if created
+     * @param value new declension value
+     */
+    void setGeneratedDeclension(Integer wordId, String combinedId, String label, String value) {
+        DeclensionNode existing = getDeclensionByCombinedId(wordId, combinedId);
+
+        if (existing == null) {
+            DeclensionNode newNode = new DeclensionNode(-1);
+            newNode.setValue(value);
+            newNode.setCombinedDimId(combinedId);
+            newNode.setNotes(label);
+            addDeclensionToWord(wordId, -1, newNode);
+        } else if (!existing.getValue().equals(value)) {
+            DeclensionNode modified = new DeclensionNode(existing.getId());
+            modified.setEqual(existing);
+            modified.setValue(value);
+            updateDeclensionWord(wordId, existing.getId(), modified);
+        }
+    }
     
+    /**
+     * Gets copy of all declension templates, keyed by type id
+     * @return map of type ids to template lists in declension order
+     */
     public Map<Integer, List<DeclensionNode>> getTemplateMap() {
-        return dTemplates;
+        return copyDeclensionMap(dTemplates);
     }
 
+    /**
+     * Gets copy of all word declensions, keyed by word id
+     * @return map of word ids to declension lists
+     */
     public Map<Integer, List<DeclensionNode>> getDeclensionMap() {
-        return dList;
+        return copyDeclensionMap(dList);
+    }
+
+    private static Map<Integer, List<DeclensionNode>> copyDeclensionMap(Map<Integer, DeclensionSet> map) {
+        Map<Integer, List<DeclensionNode>> ret = new HashMap<Integer, List<DeclensionNode>>();
+
+        for (Entry<Integer, DeclensionSet> e : map.entrySet()) {
+            ret.put(e.getKey(), e.getValue().getNodes());
+        }
+
+        return ret;
     }
 
     public void addDeclensionToWord(Integer wordId, Integer declensionId, DeclensionNode declension) {
         addDeclension(wordId, declensionId, declension, dList);
+        changedWordIds.add(wordId);
     }
 
     public void deleteDeclensionFromWord(Integer wordId, Integer declensionId) {
         deleteDeclension(wordId, declensionId, dList);
+        changedWordIds.add(wordId);
     }
 
     public void updateDeclensionWord(Integer wordId, Integer declensionId, DeclensionNode declension) {
         updateDeclension(wordId, declensionId, declension, dList);
+        changedWordIds.add(wordId);
     }
 
     /**
      * sets all declensions to deprecated state
      */
     public void deprecateAllDeclensions() {
-        Iterator<Entry<Integer, List<DeclensionNode>>> decIt = dList.entrySet().iterator();
-
-        while (decIt.hasNext()) {
-            List<DeclensionNode> curList = decIt.next().getValue();
-
-            Iterator<DeclensionNode> nodeIt = curList.iterator();
-
-            while (nodeIt.hasNext()) {
-                DeclensionNode curNode = nodeIt.next();
+        changedWordIds.addAll(dList.keySet());
 
+        for (DeclensionSet curSet : dList.values()) {
+            for (DeclensionNode curNode : curSet.byId.values()) {
                 curNode.setCombinedDimId("D" + curNode.getCombinedDimId());
             }
+
+            curSet.reindex();
         }
     }
 
@@ -226,24 +349,9 @@ public class DeclensionManager {
      * @return the object representing the declension
      */
     public DeclensionNode getDeclension(Integer typeId, Integer declensionId) {
-        DeclensionNode ret = null;
-        List<DeclensionNode> decList = (List) dTemplates.get(typeId);
-
-        // only search farther if declension itself actually exists
-        if (decList != null) {
-            Iterator<DeclensionNode> decIt = decList.iterator();
-
-            while (decIt.hasNext()) {
-                DeclensionNode curNode = decIt.next();
+        DeclensionSet decSet = dTemplates.get(typeId);
 
-                if (curNode.getId().equals(declensionId)) {
-                    ret = curNode;
-                    break;
-                }
-            }
-        }
-
-        return ret;
+        return decSet == null ? null : decSet.byId.get(declensionId);
     }
 
     /**
@@ -336,6 +444,32 @@ public class DeclensionManager {
      */
     public void clearAllDeclensionsWord(Integer wordId) {
         clearAllDeclensions(wordId, dList);
+        changedWordIds.add(wordId);
+    }
+
+    /**
+     * @return ids of words whose declensions changed since changes were last
+     * cleared
+     */
+    Set<Integer> getChangedWordIds() {
+        return new HashSet<Integer>(changedWordIds);
+    }
+
+    /**
+     * Forgets all changes made so far, once they are saved
+     */
+    void clearChanges() {
+        changedWordIds.clear();
+    }
+
+    /**
+     * Removes all declension templates and autogeneration rules, leaving the
+     * declensions of words alone
+     */
+    void wipeTemplatesAndRules() {
+        dTemplates.clear();
+        generationRules.clear();
+        rulesByType.clear();
     }
 
     /**
@@ -410,20 +544,7 @@ public class DeclensionManager {
     }
 
     public DeclensionNode getDeclensionTemplate(Integer typeId, Integer templateId) {
-        List<DeclensionNode> searchList = (List<DeclensionNode>) dTemplates.get(typeId);
-        Iterator search = searchList.iterator();
-        DeclensionNode ret = null;
-
-        while (search.hasNext()) {
-            DeclensionNode test = (DeclensionNode) search.next();
-
-            if (test.getId().equals(templateId)) {
-                ret = test;
-                break;
-            }
-        }
-
-        return ret;
+        return getDeclension(typeId, templateId);
     }
 
     /**
@@ -497,40 +618,33 @@ public class DeclensionManager {
      * @throws java.lang.Exception Throws exception if you feed in a dupe node
      */
     public DeclensionNode addDeclensionTemplate(Integer typeId, DeclensionNode node) throws Exception {
-        List recList;
-
-        if (dTemplates.containsKey(node.getId())) {
-            recList = (List) dTemplates.get(node.getId());
-            recList.add(node);
-        } else {
-            recList = new ArrayList<DeclensionNode>();
-            recList.add(node);
-            dTemplates.put(typeId, recList);
-        }
+        getOrCreateSet(typeId, dTemplates).put(node);
 
         return node;
     }
 
-    private DeclensionNode addDeclension(Integer typeId, String declension, Map list) {
-        List wordList;
-
+    private DeclensionNode addDeclension(Integer typeId, String declension, Map<Integer, DeclensionSet> list) {
         topId++;
 
-        if (list.containsKey(typeId)) {
-            wordList = (List) list.get(typeId);
-        } else {
-            wordList = new ArrayList<DeclensionNode>();
-            list.put(typeId, wordList);
-        }
-
         DeclensionNode addNode = new DeclensionNode(topId);
         addNode.setValue(declension);
 
-        wordList.add(addNode);
+        getOrCreateSet(typeId, list).put(addNode);
 
         return addNode;
     }
 
+    private static DeclensionSet getOrCreateSet(Integer relId, Map<Integer, DeclensionSet> list) {
+        DeclensionSet ret = list.get(relId);
+
+        if (ret == null) {
+            ret = new DeclensionSet();
+            list.put(relId, ret);
+        }
+
+        return ret;
+    }
+
     /**
      * Adds declension to related object (type or word)
      *
@@ -540,26 +654,16 @@ public class DeclensionManager {
      * @param list list to add node to (word list or type list)
      * @return declension node created
      */
-    private DeclensionNode addDeclension(Integer relId, Integer declensionId, DeclensionNode declension, Map list) {
-        List wordList;
-
+    private DeclensionNode addDeclension(Integer relId, Integer declensionId, DeclensionNode declension, Map<Integer, DeclensionSet> list) {
         if (declensionId == -1) {
             declensionId = topId + 1;
         }
 
-        deleteDeclensionFromWord(relId, declensionId);
-
-        if (list.containsKey(relId)) {
-            wordList = (List) list.get(relId);
-        } else {
-            wordList = new ArrayList<DeclensionNode>();
-            list.put(relId, wordList);
-        }
-
         DeclensionNode addNode = new DeclensionNode(declensionId);
         addNode.setEqual(declension);
 
-        wordList.add(addNode);
+        // replaces (and moves to the end) any existing node with this id
+        getOrCreateSet(relId, list).put(addNode);
 
         if (declensionId > topId) {
             topId = declensionId;
@@ -576,71 +680,32 @@ public class DeclensionManager {
      * @return The declension node if found, null if otherwise
      */
     public DeclensionNode getDeclensionByCombinedId(Integer wordId, String dimId) {
-        DeclensionNode ret = null;
+        DeclensionSet searchSet = dList.get(wordId);
 
-        if (dList.containsKey(wordId)) {
-            List<DeclensionNode> searchList = (List<DeclensionNode>) dList.get(wordId);
-            Iterator<DeclensionNode> searchIt = searchList.iterator();
-
-            while (searchIt.hasNext()) {
-                DeclensionNode test = searchIt.next();
-
-                if (dimId.equals(test.getCombinedDimId())) {
-                    ret = test;
-                    break;
-                }
-            }
-        }
-
-        return ret;
+        return searchSet == null ? null : searchSet.byCombinedId.get(dimId);
     }
 
-    public void deleteDeclension(Integer typeId, Integer declensionId, Map list) {
-        if (list.containsKey(typeId)) {
-            List<DeclensionNode> copyTo = new ArrayList<DeclensionNode>();
-            Iterator<DeclensionNode> copyFrom = ((List) list.get(typeId)).iterator();
+    private void deleteDeclension(Integer typeId, Integer declensionId, Map<Integer, DeclensionSet> list) {
+        DeclensionSet decSet = list.get(typeId);
 
-            while (copyFrom.hasNext()) {
-                DeclensionNode curNode = copyFrom.next();
-
-                if (curNode.getId().equals(declensionId)) {
-                    continue;
-                }
-
-                copyTo.add(curNode);
-            }
-
-            list.remove(typeId);
+        if (decSet != null) {
+            decSet.remove(declensionId);
 
             // if unpopulated, allow to not exist. Cleaner.
-            if (copyTo.size() > 0) {
-                list.put(typeId, copyTo);
+            if (decSet.byId.isEmpty()) {
+                list.remove(typeId);
             }
         }
     }
 
-    private void updateDeclension(Integer typeId, Integer declensionId, DeclensionNode declension, Map list) {
-        if (list.containsKey(typeId)) {
-            List<DeclensionNode> copyTo = new ArrayList<DeclensionNode>();
-            Iterator<DeclensionNode> copyFrom = ((List) list.get(typeId)).iterator();
-
-            while (copyFrom.hasNext()) {
-                DeclensionNode curNode = copyFrom.next();
+    private void updateDeclension(Integer typeId, Integer declensionId, DeclensionNode declension, Map<Integer, DeclensionSet> list) {
+        DeclensionSet decSet = list.get(typeId);
 
-                if (curNode.getId().equals(declensionId)) {
-                    DeclensionNode modified = new DeclensionNode(declensionId);
-                    modified.setEqual(declension);
-                    copyTo.add(modified);
-                    continue;
-                }
-
-                copyTo.add(curNode);
-            }
-
-            list.remove(typeId);
-            list.put(typeId, copyTo);
+        if (decSet != null && decSet.byId.containsKey(declensionId)) {
+            DeclensionNode modified = new DeclensionNode(declensionId);
+            modified.setEqual(declension);
+            decSet.replace(modified);
         }
-
     }
 
     /**
@@ -648,20 +713,14 @@ public class DeclensionManager {
      *
      * @param wordId ID of word to clear of all declensions
      */
-    private void clearAllDeclensions(Integer wordId, Map list) {
-        if (list.containsKey(wordId)) {
-            list.remove(wordId);
-        }
+    private void clearAllDeclensions(Integer wordId, Map<Integer, DeclensionSet> list) {
+        list.remove(wordId);
     }
 
-    private List<DeclensionNode> getDeclensionList(Integer wordId, Map list) {
-        List<DeclensionNode> ret = new ArrayList<DeclensionNode>();
-
-        if (list.containsKey(wordId)) {
-            ret = (List<DeclensionNode>) list.get(wordId);
-        }
+    private List<DeclensionNode> getDeclensionList(Integer wordId, Map<Integer, DeclensionSet> list) {
+        DeclensionSet decSet = list.get(wordId);
 
-        return ret;
+        return decSet == null ? new ArrayList<DeclensionNode>() : decSet.getNodes();
     }
 
     /**
@@ -686,154 +745,213 @@ public class DeclensionManager {
      */
     public Map getWordDeclensions(Integer wordId) {
         Map<String, DeclensionNode> ret = new HashMap<String, DeclensionNode>();
+        DeclensionSet decSet = dList.get(wordId);
 
-        Iterator<DeclensionNode> decs = getDeclensionListWord(wordId).iterator();
-
-        while (decs.hasNext()) {
-            DeclensionNode curNode = decs.next();
-
-            ret.put(curNode.getCombinedDimId(), curNode);
+        if (decSet != null) {
+            for (DeclensionNode curNode : decSet.byId.values()) {
+                ret.put(curNode.getCombinedDimId(), curNode);
+            }
         }
 
         return ret;
     }
 
     /**
-     * Writes all declension information to XML document
+     * Writes all declension information to XML stream
      *
-     * @param doc Document to write to
-     * @param rootElement root element of document
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public void writeXML(Document doc, Element rootElement) {
-        Set<Entry<Integer, List<DeclensionNode>>> declensionSet;
-        Element wordNode;
-        Element wordValue;
-
-        // record declension templates
-        declensionSet = getTemplateMap().entrySet();
-
-        for (Entry<Integer, List<DeclensionNode>> e : declensionSet) {
-            Integer relatedId = e.getKey();
-
-            for (DeclensionNode curNode : e.getValue()) {
-                wordNode = doc.createElement(XMLIDs.declensionXID);
-                rootElement.appendChild(wordNode);
-
-                wordValue = doc.createElement(XMLIDs.declensionIdXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getId().toString()));
-                wordNode.appendChild(wordValue);
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
+        writeTemplateXML(writer);
+        writeWordXML(writer, dList.keySet());
+        writeRuleXML(writer);
+    }
 
-                wordValue = doc.createElement(XMLIDs.declensionTextXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getValue()));
-                wordNode.appendChild(wordValue);
+    /**
+     * Writes all declension templates to XML stream
+     *
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
+     */
+    void writeTemplateXML(DictXMLWriter writer) throws XMLStreamException {
+        for (Entry<Integer, DeclensionSet> e : dTemplates.entrySet()) {
+            String relatedId = e.getKey().toString();
+
+            for (DeclensionNode curNode : e.getValue().byId.values()) {
+                writer.startElement(XMLIDs.declensionXID);
+                writer.textElement(XMLIDs.declensionIdXID, curNode.getId().toString());
+                writer.textElement(XMLIDs.declensionTextXID, curNode.getValue());
+                writer.textElement(XMLIDs.declensionNotesXID, curNode.getNotes());
+                writer.textElement(XMLIDs.declensionIsTemplateXID, "1");
+                writer.textElement(XMLIDs.declensionRelatedIdXID, relatedId);
+                writer.textElement(XMLIDs.declensionMandatoryXID, curNode.isMandatory() ? "T" : "F");
+
+                for (DeclensionDimension curDim : curNode.getDimensions()) {
+                    writer.startElement(XMLIDs.dimensionNodeXID);
+                    writer.textElement(XMLIDs.dimensionIdXID, curDim.getId().toString());
+                    writer.textElement(XMLIDs.dimensionNameXID, curDim.getValue());
+                    writer.textElement(XMLIDs.dimensionMandXID, curDim.isMandatory() ? "T" : "F");
+                    writer.endElement();
+                }
 
-                wordValue = doc.createElement(XMLIDs.declensionNotesXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getNotes()));
-                wordNode.appendChild(wordValue);
+                writer.endElement();
+            }
+        }
+    }
 
-                wordValue = doc.createElement(XMLIDs.declensionIsTemplateXID);
-                wordValue.appendChild(doc.createTextNode("1"));
-                wordNode.appendChild(wordValue);
+    /**
+     * Writes declensions of given words to XML stream
+     *
+     * @param writer XML stream to write to
+     * @param wordIds ids of words to write declensions of
+     * @throws javax.xml.stream.XMLStreamException on write failure
+     */
+    void writeWordXML(DictXMLWriter writer, Collection<Integer> wordIds) throws XMLStreamException {
+        for (Integer wordId : wordIds) {
+            DeclensionSet decSet = dList.get(wordId);
 
-                wordValue = doc.createElement(XMLIDs.declensionRelatedIdXID);
-                wordValue.appendChild(doc.createTextNode(relatedId.toString()));
-                wordNode.appendChild(wordValue);
+            if (decSet == null) {
+                continue;
+            }
 
-                wordValue = doc.createElement(XMLIDs.declensionMandatoryXID);
-                wordValue.appendChild(doc.createTextNode(curNode.isMandatory() ? "T" : "F"));
-                wordNode.appendChild(wordValue);
+            String relatedId = wordId.toString();
+
+            for (DeclensionNode curNode : decSet.byId.values()) {
+                writer.startElement(XMLIDs.declensionXID);
+                writer.textElement(XMLIDs.declensionIdXID, curNode.getId().toString());
+                writer.textElement(XMLIDs.declensionTextXID, curNode.getValue());
+                writer.textElement(XMLIDs.declensionNotesXID, curNode.getNotes());
+                writer.textElement(XMLIDs.declensionRelatedIdXID, relatedId);
+                writer.textElement(XMLIDs.declensionComDimIdXID, curNode.getCombinedDimId());
+                writer.textElement(XMLIDs.declensionIsTemplateXID, "0");
+                writer.endElement();
+            }
+        }
+    }
 
-                Iterator<DeclensionDimension> dimIt = curNode.getDimensions().iterator();
-                while (dimIt.hasNext()) {
-                    wordValue = doc.createElement(XMLIDs.dimensionNodeXID);
+    /**
+     * Writes all declension autogeneration rules to XML stream
+     *
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
+     */
+    void writeRuleXML(DictXMLWriter writer) throws XMLStreamException {
+        for (DeclensionGenRule curRule : generationRules) {
+            writer.startElement(XMLIDs.decGenRuleXID);
+            writer.textElement(XMLIDs.decGenRuleCombXID, curRule.getCombinationId());
+            writer.textElement(XMLIDs.decGenRuleNameXID, curRule.getName());
+            writer.textElement(XMLIDs.decGenRuleRegexXID, curRule.getRegex());
+            writer.textElement(XMLIDs.decGenRuleTypeXID, Integer.toString(curRule.getTypeId()));
+            
+            for (DeclensionGenTransform curTransform : curRule.getTransforms()) {
+                writer.startElement(XMLIDs.decGenTransXID);
+                writer.textElement(XMLIDs.decGenTransRegexXID, curTransform.regex);
+                writer.textElement(XMLIDs.decGenTransReplaceXID, curTransform.replaceText);
+                writer.endElement();
+            }
 
-                    DeclensionDimension curDim = dimIt.next();
+            writer.endElement();
+        }
+    }
 
-                    Element dimNode = doc.createElement(XMLIDs.dimensionIdXID);
-                    dimNode.appendChild(doc.createTextNode(curDim.getId().toString()));
-                    wordValue.appendChild(dimNode);
+    /**
+     * Declensions of a single word or type. Nodes are kept in insertion order
+     * by declension id, with a second index on combined dimension id. Where
+     * several nodes share a combined id, the earliest is indexed and the rest
+     * are counted so that a replacement can be found when it is removed.
+     * Combined ids must not be changed on stored nodes without calling
+     * reindex().
+     */
+    private static class DeclensionSet {
+        private final Map<Integer, DeclensionNode> byId = new LinkedHashMap<Integer, DeclensionNode>();
+        private final Map<String, DeclensionNode> byCombinedId = new HashMap<String, DeclensionNode>();
+        private int shadowed = 0;
+
+        /**
+         * Adds node at the end of the set, replacing any node with same id
+         * @param node node to add
+         */
+        public void put(DeclensionNode node) {
+            DeclensionNode old = byId.remove(node.getId());
+
+            if (old != null) {
+                unindex(old);
+            }
 
-                    dimNode = doc.createElement(XMLIDs.dimensionNameXID);
-                    dimNode.appendChild(doc.createTextNode(curDim.getValue()));
-                    wordValue.appendChild(dimNode);
+            byId.put(node.getId(), node);
+            index(node);
+        }
 
-                    dimNode = doc.createElement(XMLIDs.dimensionMandXID);
-                    dimNode.appendChild(doc.createTextNode(curDim.isMandatory() ? "T" : "F"));
-                    wordValue.appendChild(dimNode);
+        /**
+         * Replaces node with same id in place, keeping its position
+         * @param node node to replace existing node with
+         */
+        public void replace(DeclensionNode node) {
+            DeclensionNode old = byId.put(node.getId(), node);
 
-                    wordNode.appendChild(wordValue);
+            if (old != null && old.getCombinedDimId().equals(node.getCombinedDimId())) {
+                if (byCombinedId.get(old.getCombinedDimId()) == old) {
+                    byCombinedId.put(node.getCombinedDimId(), node);
+                }
+            } else {
+                if (old != null) {
+                    unindex(old);
                 }
+                index(node);
             }
         }
 
-        // record word declensions
-        declensionSet = getDeclensionMap().entrySet();
-        for (Entry<Integer, List<DeclensionNode>> e : declensionSet) {
-            Integer relatedId = e.getKey();
+        public void remove(Integer declensionId) {
+            DeclensionNode old = byId.remove(declensionId);
 
-            for (DeclensionNode curNode : e.getValue()) {
-                wordNode = doc.createElement(XMLIDs.declensionXID);
-                rootElement.appendChild(wordNode);
+            if (old != null) {
+                unindex(old);
+            }
+        }
 
-                wordValue = doc.createElement(XMLIDs.declensionIdXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getId().toString()));
-                wordNode.appendChild(wordValue);
+        /**
+         * @return copy of nodes in set order
+         */
+        public List<DeclensionNode> getNodes() {
+            return new ArrayList<DeclensionNode>(byId.values());
+        }
 
-                wordValue = doc.createElement(XMLIDs.declensionTextXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getValue()));
-                wordNode.appendChild(wordValue);
+        public void reindex() {
+            byCombinedId.clear();
+            shadowed = 0;
 
-                wordValue = doc.createElement(XMLIDs.declensionNotesXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getNotes()));
-                wordNode.appendChild(wordValue);
+            for (DeclensionNode curNode : byId.values()) {
+                index(curNode);
+            }
+        }
 
-                wordValue = doc.createElement(XMLIDs.declensionRelatedIdXID);
-                wordValue.appendChild(doc.createTextNode(relatedId.toString()));
-                wordNode.appendChild(wordValue);
+        private void index(DeclensionNode node) {
+            if (byCombinedId.containsKey(node.getCombinedDimId())) {
+                shadowed++;
+            } else {
+                byCombinedId.put(node.getCombinedDimId(), node);
+            }
+        }
 
-                wordValue = doc.createElement(XMLIDs.declensionComDimIdXID);
-                wordValue.appendChild(doc.createTextNode(curNode.getCombinedDimId()));
-                wordNode.appendChild(wordValue);
+        private void unindex(DeclensionNode node) {
+            String combinedId = node.getCombinedDimId();
 
-                wordValue = doc.createElement(XMLIDs.declensionIsTemplateXID);
-                wordValue.appendChild(doc.createTextNode("0"));
-                wordNode.appendChild(wordValue);
+            if (byCombinedId.get(combinedId) != node) {
+                shadowed--;
+                return;
             }
-        }
-        
-        // record declension autogeneration rules
-        for(DeclensionGenRule curRule : generationRules) {
-            Element ruleNode = doc.createElement(XMLIDs.decGenRuleXID);
-            rootElement.appendChild(ruleNode);
-            
-            wordValue = doc.createElement(XMLIDs.decGenRuleCombXID);
-            wordValue.appendChild(doc.createTextNode(curRule.getCombinationId()));
-            ruleNode.appendChild(wordValue);
-            
-            wordValue = doc.createElement(XMLIDs.decGenRuleNameXID);
-            wordValue.appendChild(doc.createTextNode(curRule.getName()));
-            ruleNode.appendChild(wordValue);
-            
-            wordValue = doc.createElement(XMLIDs.decGenRuleRegexXID);
-            wordValue.appendChild(doc.createTextNode(curRule.getRegex()));
-            ruleNode.appendChild(wordValue);
-            
-            wordValue = doc.createElement(XMLIDs.decGenRuleTypeXID);
-            wordValue.appendChild(doc.createTextNode(Integer.toString(curRule.getTypeId())));
-            ruleNode.appendChild(wordValue);
-            
-            List<DeclensionGenTransform> transIt = curRule.getTransforms();
-            for (DeclensionGenTransform curTransform : transIt) {
-                Element transNode = doc.createElement(XMLIDs.decGenTransXID);
-                ruleNode.appendChild(transNode);
-                
-                wordValue = doc.createElement(XMLIDs.decGenTransRegexXID);
-                wordValue.appendChild(doc.createTextNode(curTransform.regex));
-                transNode.appendChild(wordValue);
-                
-                wordValue = doc.createElement(XMLIDs.decGenTransReplaceXID);
-                wordValue.appendChild(doc.createTextNode(curTransform.replaceText));
-                transNode.appendChild(wordValue);
+
+            byCombinedId.remove(combinedId);
+
+            if (shadowed > 0) {
+                for (DeclensionNode curNode : byId.values()) {
+                    if (curNode.getCombinedDimId().equals(combinedId)) {
+                        byCombinedId.put(combinedId, curNode);
+                        shadowed--;
+                        break;
+                    }
+                }
             }
         }
     }
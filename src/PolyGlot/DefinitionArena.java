@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store of word definitions outside the Java heap. Definitions are encoded as
+ * length prefixed UTF-8 in direct buffers, appended one after another, and
+ * decoded again on demand, the most recently read being kept decoded.
+ * Definitions are never overwritten in place: space of released definitions
+ * is only reclaimed by copying live definitions to a new arena, which the
+ * collection owning the arena does once enough has been released.
+ *
+ * @author draque
+ */
+final class DefinitionArena {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int CACHE_SIZE = 64;
+
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    private ByteBuffer current = null;
+    private long liveBytes = 0;
+    private long releasedBytes = 0;
+
+    // most recently read definitions by reference, least recent dropped first
+    private final Map<Long, String> decoded
+            = new LinkedHashMap<Long, String>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * Stores definition
+     * @param definition definition to store
+     * @return reference to read definition back with
+     */
+    synchronized long store(String definition) {
+        byte[] bytes = definition.getBytes(UTF8);
+        int length = bytes.length + 4;
+
+        if (current == null || current.remaining() < length) {
+            // definitions too long for a chunk get a chunk of their own
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, length));
+            chunks.add(current);
+        }
+
+        long ret = (long) (chunks.size() - 1) << 32 | current.position();
+        current.putInt(bytes.length);
+        current.put(bytes);
+        liveBytes += length;
+
+        return ret;
+    }
+
+    /**
+     * @param ref reference given when definition was stored
+     * @return definition
+     */
+    synchronized String load(long ref) {
+        String ret = decoded.get(ref);
+
+        if (ret == null) {
+            ByteBuffer chunk = chunks.get((int) (ref >>> 32)).duplicate();
+            chunk.position((int) ref);
+            byte[] bytes = new byte[chunk.getInt()];
+            chunk.get(bytes);
+            ret = new String(bytes, UTF8);
+            decoded.put(ref, ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Marks a stored definition as no longer used. Its reference must not be
+     * read again.
+     * @param ref reference given when definition was stored
+     */
+    synchronized void release(long ref) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int length = chunk.getInt((int) ref) + 4;
+
+        decoded.remove(ref);
+        liveBytes -= length;
+        releasedBytes += length;
+    }
+
+    /**
+     * Tests whether enough space has been released that live definitions
+     * should be copied to a new arena
+     * @return true if arena should be replaced
+     */
+    synchronized boolean needsCompaction() {
+        return releasedBytes > CHUNK_SIZE && releasedBytes > liveBytes;
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * A dictionary file opened for reading: either an archive holding the
+ * dictionary XML and possibly a font, or (from older versions) the raw XML
+ * itself. The file is opened once, through a single channel, and its zip
+ * central directory is read when it is opened; entries are then read with
+ * positional reads of that channel, so any number of entry streams may be
+ * read, one after another or at once, until the archive is closed. Entry
+ * streams check the entry's CRC once read to their end, as ZipFile's do.
+ *
+ * Only what PolyGlot writes is supported: stored and deflated entries, no
+ * Zip64.
+ *
+ * @author draque
+ */
+public class DictArchive implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int END_HEADER_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int BUFFER_SIZE = 16384;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final FileChannel channel;
+    private final long length;
+    private final boolean archive;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    private DictArchive(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+
+        try {
+            length = channel.size();
+            archive = length >= 4 && read(0, 4).getInt() == LOCAL_HEADER;
+
+            if (archive) {
+                readCentralDirectory();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a dictionary file. It must be closed once read.
+     *
+     * @param fileName dictionary file
+     * @return open file
+     * @throws IOException if file can not be opened, or is an archive whose
+     * directory can not be read
+     */
+    public static DictArchive open(String fileName) throws IOException {
+        return new DictArchive(new File(fileName));
+    }
+
+    /**
+     * @param dictFile dictionary file
+     * @return CRC of dictionary entry of file, -1 if file is missing, is not
+     * an archive (files from older versions) or has no dictionary entry
+     * @throws IOException if file can not be read
+     */
+    public static long getDictCrc(File dictFile) throws IOException {
+        if (!dictFile.exists()) {
+            return -1;
+        }
+
+        DictArchive archive = open(dictFile.getPath());
+
+        try {
+            return archive.getDictCrc();
+        } finally {
+            archive.close();
+        }
+    }
+
+    /**
+     * @return true if file is an archive, false if it is raw XML
+     */
+    public boolean isArchive() {
+        return archive;
+    }
+
+    /**
+     * @return length of file in bytes
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return names of entries, in the order they appear in the archive
+     */
+    public List<String> getEntryNames() {
+        return new ArrayList<String>(entries.keySet());
+    }
+
+    /**
+     * @param name entry name
+     * @return true if archive has entry of this name
+     */
+    public boolean hasEntry(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * @param name entry name
+     * @return CRC of entry as recorded in archive, -1 if no such entry
+     */
+    public long getEntryCrc(String name) {
+        Entry entry = entries.get(name);
+
+        return entry == null ? -1 : entry.crc;
+    }
+
+    /**
+     * @param name entry name
+     * @return uncompressed size of entry, -1 if no such entry
+     */
+    public long getEntrySize(String name) {
+        Entry entry = entries.get(name);
+
+        return entry == null ? -1 : entry.size;
+    }
+
+    /**
+     * @return CRC of dictionary entry, -1 if file is not an archive
+     */
+    public long getDictCrc() {
+        return getEntryCrc(XMLIDs.dictFileName);
+    }
+
+    /**
+     * Opens stream of dictionary XML, whether the file is an archive or raw
+     * XML. Closing the stream leaves the file open.
+     *
+     * @return stream of dictionary XML
+     * @throws IOException if file is an archive with no dictionary entry
+     */
+    public InputStream getDictStream() throws IOException {
+        if (!archive) {
+            return new ChannelInputStream(0, length, false);
+        }
+
+        InputStream ret = getEntryStream(XMLIDs.dictFileName);
+
+        if (ret == null) {
+            throw new IOException("File contains no dictionary.");
+        }
+
+        return ret;
+    }
+
+    /**
+     * Opens stream of an entry's uncompressed contents. Closing the stream
+     * leaves the file open.
+     *
+     * @param name entry name
+     * @return stream of entry, null if no such entry
+     * @throws IOException if entry can not be located
+     */
+    public InputStream getEntryStream(String name) throws IOException {
+        Entry entry = entries.get(name);
+
+        if (entry == null) {
+            return null;
+        }
+
+        ByteBuffer header = read(entry.headerOffset, LOCAL_HEADER_LENGTH);
+
+        if (header.getInt(0) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header for entry: " + name);
+        }
+
+        long dataOffset = entry.headerOffset + LOCAL_HEADER_LENGTH
+                + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+        InputStream data;
+
+        if (entry.method == STORED) {
+            data = new ChannelInputStream(dataOffset, entry.compressedSize, false);
+        } else {
+            final Inflater inflater = new Inflater(true);
+            data = new InflaterInputStream(new ChannelInputStream(dataOffset, entry.compressedSize, true),
+                    inflater, BUFFER_SIZE) {
+                        @Override
+                        public void close() throws IOException {
+                            inflater.end();
+                            super.close();
+                        }
+                    };
+        }
+
+        return new CheckedEntryStream(data, entry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int tailLength = (int) Math.min(length, END_HEADER_LENGTH + MAX_COMMENT_LENGTH);
+        ByteBuffer tail = read(length - tailLength, tailLength);
+        int end = -1;
+
+        for (int i = tailLength - END_HEADER_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) == END_HEADER
+                    && i + END_HEADER_LENGTH + (tail.getShort(i + 20) & 0xffff) == tailLength) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == -1) {
+            throw new ZipException("Archive has no central directory.");
+        }
+
+        int count = tail.getShort(end + 10) & 0xffff;
+        long directoryLength = tail.getInt(end + 12) & 0xffffffffL;
+        long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+
+        if (count == 0xffff || directoryOffset == 0xffffffffL
+                || directoryOffset + directoryLength > length) {
+            throw new ZipException("Unsupported archive.");
+        }
+
+        ByteBuffer directory = read(directoryOffset, (int) directoryLength);
+        int pos = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_HEADER_LENGTH > directory.limit()
+                    || directory.getInt(pos) != CENTRAL_HEADER) {
+                throw new ZipException("Invalid central directory.");
+            }
+
+            int method = directory.getShort(pos + 10) & 0xffff;
+            int nameLength = directory.getShort(pos + 28) & 0xffff;
+            int extraLength = directory.getShort(pos + 30) & 0xffff;
+            int commentLength = directory.getShort(pos + 32) & 0xffff;
+
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Unsupported compression method: " + method);
+            }
+
+            byte[] name = new byte[nameLength];
+            directory.position(pos + CENTRAL_HEADER_LENGTH);
+            directory.get(name);
+
+            Entry entry = new Entry();
+            entry.method = method;
+            entry.crc = directory.getInt(pos + 16) & 0xffffffffL;
+            entry.compressedSize = directory.getInt(pos + 20) & 0xffffffffL;
+            entry.size = directory.getInt(pos + 24) & 0xffffffffL;
+            entry.headerOffset = directory.getInt(pos + 42) & 0xffffffffL;
+            entries.put(new String(name, UTF8), entry);
+
+            pos += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+    }
+
+    /**
+     * Reads bytes at position of file into a little endian buffer
+     */
+    private ByteBuffer read(long position, int count) throws IOException {
+        ByteBuffer ret = ByteBuffer.allocate(count).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (ret.hasRemaining()) {
+            if (channel.read(ret, position + ret.position()) < 0) {
+                throw new ZipException("Unexpected end of file.");
+            }
+        }
+
+        ret.flip();
+
+        return ret;
+    }
+
+    /**
+     * Entry as recorded in the central directory
+     */
+    private static class Entry {
+        int method;
+        long crc;
+        long compressedSize;
+        long size;
+        long headerOffset;
+    }
+
+    /**
+     * Reads a range of the file through positional reads of the channel
+     */
+    private class ChannelInputStream extends InputStream {
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long position;
+        private final long end;
+        private boolean padding;
+
+        /**
+         * @param start position of first byte
+         * @param count number of bytes
+         * @param pad whether to give one dummy byte after the range, which
+         * the inflater may need to finish raw deflate data
+         */
+        ChannelInputStream(long start, long count, boolean pad) {
+            position = start;
+            end = start + count;
+            padding = pad;
+            buffer.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining() && !fill()) {
+                if (padding) {
+                    padding = false;
+                    b[off] = 0;
+                    return 1;
+                }
+
+                return -1;
+            }
+
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        private boolean fill() throws IOException {
+            if (position >= end) {
+                return false;
+            }
+
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+            int count = channel.read(buffer, position);
+
+            if (count < 0) {
+                throw new ZipException("Unexpected end of file.");
+            }
+
+            position += count;
+            buffer.flip();
+
+            return true;
+        }
+    }
+
+    /**
+     * Checks size and CRC of an entry once read to its end
+     */
+    private static class CheckedEntryStream extends FilterInputStream {
+        private final Entry entry;
+        private final CRC32 crc = new CRC32();
+        private long count = 0;
+
+        CheckedEntryStream(InputStream in, Entry _entry) {
+            super(in);
+            entry = _entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int ret = in.read(b, off, len);
+
+            if (ret == -1) {
+                if (count != entry.size || crc.getValue() != entry.crc) {
+                    throw new ZipException("Invalid entry size or CRC.");
+                }
+            } else {
+                crc.update(b, off, ret);
+                count += ret;
+            }
+
+            return ret;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long ret = 0;
+
+            while (ret < n) {
+                int read = read(buffer, 0, (int) Math.min(n - ret, buffer.length));
+
+                if (read == -1) {
+                    break;
+                }
+
+                ret += read;
+            }
+
+            return ret;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import org.xml.sax.SAXException;
+
+/**
+ * Binary copy of a dictionary file's contents, kept in a file beside it so
+ * that the dictionary can be opened without parsing its XML. Words and their
+ * declensions are stored as varint ids and indexes into a table of length
+ * prefixed UTF-8 strings, words in alphabetical order so each is inserted at
+ * the end of the sorted word list. Everything else is small, and is stored as
+ * XML. The cache is read into memory whole, rather than mapped, so that it
+ * is never held open and can always be replaced when the dictionary is saved.
+ *
+ * The cache header identifies the dictionary file by length and the CRC of
+ * its dictionary entry, and a CRC covers the cache's contents, so a cache
+ * which does not match the dictionary file is never read. Failing to read or
+ * write a cache is never an error: the dictionary file itself is read instead.
+ *
+ * @author draque
+ */
+public class DictCache {
+
+    public static final String EXTENSION = ".pgc";
+    private static final int MAGIC = 0x50474331;
+    private static final int HEADER_LENGTH = 20;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private DictCache() {
+    }
+
+    /**
+     * @param fileName dictionary file
+     * @return cache file beside dictionary file
+     */
+    public static File getFile(String fileName) {
+        return new File(new File(fileName).getAbsolutePath() + EXTENSION);
+    }
+
+    /**
+     * Reads cache of dictionary file into core, if the cache matches the file
+     *
+     * @param fileName dictionary file
+     * @param archive dictionary file, already open
+     * @param core empty core to read into
+     * @return true if read; if false, core is untouched
+     * @throws Exception if the cache matched but its contents could not be
+     * loaded (core may be partly loaded)
+     */
+    public static boolean read(String fileName, DictArchive archive, DictCore core) throws Exception {
+        File cacheFile = getFile(fileName);
+
+        if (!cacheFile.exists()) {
+            return false;
+        }
+
+        ByteBuffer buffer;
+
+        try {
+            long dictCrc = archive.getDictCrc();
+            buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+
+            if (dictCrc == -1 || buffer.limit() < HEADER_LENGTH + 4
+                    || buffer.getInt() != MAGIC
+                    || buffer.getLong() != archive.getLength()
+                    || buffer.getLong() != dictCrc
+                    || !checkContents(buffer)) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        new Reader(buffer, core).read();
+
+        return true;
+    }
+
+    /**
+     * Writes cache of dictionary file, which must hold the current contents
+     * of core. Nothing is written (and any old cache deleted) on failure.
+     *
+     * @param fileName dictionary file
+     * @param core core to cache
+     */
+    public static void write(String fileName, DictCore core) {
+        DictArchive archive;
+
+        try {
+            archive = DictArchive.open(fileName);
+        } catch (IOException e) {
+            getFile(fileName).delete();
+            return;
+        }
+
+        try {
+            write(fileName, archive, core);
+        } finally {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+
+    /**
+     * Writes cache of dictionary file, which must hold the current contents
+     * of core. Nothing is written (and any old cache deleted) on failure.
+     *
+     * @param fileName dictionary file
+     * @param archive dictionary file, already open
+     * @param core core to cache
+     */
+    public static void write(String fileName, DictArchive archive, DictCore core) {
+        File cacheFile = getFile(fileName);
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+
+        try {
+            long dictCrc = archive.getDictCrc();
+
+            if (dictCrc == -1) {
+                cacheFile.delete();
+                return;
+            }
+
+            byte[] contents = new Writer(core).write();
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.putInt(MAGIC);
+            header.putLong(archive.getLength());
+            header.putLong(dictCrc);
+
+            ByteBuffer trailer = ByteBuffer.allocate(4);
+            trailer.putInt((int) crc.getValue());
+
+            FileOutputStream out = new FileOutputStream(tempFile);
+
+            try {
+                out.write(header.array());
+                out.write(contents);
+                out.write(trailer.array());
+            } finally {
+                out.close();
+            }
+
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+            cacheFile.delete();
+        } catch (XMLStreamException e) {
+            tempFile.delete();
+            cacheFile.delete();
+        }
+    }
+
+    /**
+     * Checks CRC of contents, which follow the header, against the trailing
+     * CRC. Leaves buffer positioned at start of contents, limited to them.
+     */
+    private static boolean checkContents(ByteBuffer buffer) {
+        int end = buffer.limit() - 4;
+        int stored = buffer.getInt(end);
+        ByteBuffer contents = buffer.duplicate();
+        byte[] chunk = new byte[65536];
+        CRC32 crc = new CRC32();
+
+        contents.limit(end);
+
+        while (contents.hasRemaining()) {
+            int length = Math.min(chunk.length, contents.remaining());
+            contents.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+
+        buffer.limit(end);
+
+        return (int) crc.getValue() == stored;
+    }
+
+    /**
+     * Encodes cache contents: alphabetical order, string table, words, word
+     * declensions, then everything else as XML
+     */
+    private static class Writer {
+
+        private final DictCore core;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        public Writer(DictCore _core) {
+            core = _core;
+        }
+
+        public byte[] write() throws IOException, XMLStreamException {
+            List<ConWord> words = new ArrayList<ConWord>();
+            Iterator<ConWord> wordIt = core.getWordCollection().getNodeIterator();
+
+            while (wordIt.hasNext()) {
+                words.add(wordIt.next());
+            }
+
+            Map<Integer, List<DeclensionNode>> declensions = core.getDeclensionManager().getDeclensionMap();
+
+            // string table comes first, so collect all strings before writing
+            for (ConWord word : words) {
+                stringId(word.getValue());
+                stringId(word.getLocalWord());
+                stringId(word.getWordType());
+                stringId(word.getGender());
+                stringId(word.getPronunciation());
+                stringId(word.getDefinition());
+            }
+
+            for (List<DeclensionNode> decList : declensions.values()) {
+                for (DeclensionNode dec : decList) {
+                    stringId(dec.getValue());
+                    stringId(dec.getNotes());
+                    stringId(dec.getCombinedDimId());
+                }
+            }
+
+            writeBytes(core.getPropertiesManager().getAlphaPlainText().getBytes(UTF8));
+            writeVarInt(strings.size());
+
+            for (String string : strings) {
+                writeBytes(string.getBytes(UTF8));
+            }
+
+            writeVarInt(words.size());
+
+            for (ConWord word : words) {
+                writeVarInt(word.getId());
+                writeVarInt(stringIds.get(word.getValue()));
+                writeVarInt(stringIds.get(word.getLocalWord()));
+                writeVarInt(stringIds.get(word.getWordType()));
+                writeVarInt(stringIds.get(word.getGender()));
+                writeVarInt(stringIds.get(word.getPronunciation()));
+                writeVarInt(stringIds.get(word.getDefinition()));
+                out.write((word.isProcOverride() ? 1 : 0) | (word.isOverrideAutoDeclen() ? 2 : 0));
+            }
+
+            writeVarInt(declensions.size());
+
+            for (Entry<Integer, List<DeclensionNode>> e : declensions.entrySet()) {
+                writeVarInt(e.getKey());
+                writeVarInt(e.getValue().size());
+
+                for (DeclensionNode dec : e.getValue()) {
+                    writeVarInt(dec.getId());
+                    writeVarInt(stringIds.get(dec.getValue()));
+                    writeVarInt(stringIds.get(dec.getNotes()));
+                    writeVarInt(stringIds.get(dec.getCombinedDimId()));
+                }
+            }
+
+            ByteArrayOutputStream settings = new ByteArrayOutputStream();
+            DictXMLWriter writer = new DictXMLWriter(settings);
+            core.writeXML(writer, Collections.<Integer>emptyList(), true);
+            writer.close();
+            writeBytes(settings.toByteArray());
+
+            return out.toByteArray();
+        }
+
+        private void stringId(String string) {
+            if (!stringIds.containsKey(string)) {
+                stringIds.put(string, strings.size());
+                strings.add(string);
+            }
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Writes int in 7 bit groups, low first, zigzag encoded so that small
+         * negative values stay short
+         */
+        private void writeVarInt(int value) {
+            int zigzag = (value << 1) ^ (value >> 31);
+
+            while ((zigzag & ~0x7f) != 0) {
+                out.write((zigzag & 0x7f) | 0x80);
+                zigzag >>>= 7;
+            }
+
+            out.write(zigzag);
+        }
+    }
+
+    /**
+     * Decodes cache contents into core
+     */
+    private static class Reader {
+
+        private final ByteBuffer buffer;
+        private final DictCore core;
+        private byte[] scratch = new byte[256];
+
+        public Reader(ByteBuffer _buffer, DictCore _core) {
+            buffer = _buffer;
+            core = _core;
+        }
+
+        public void read() throws Exception {
+            // words sort as they are inserted, so alphabetical order comes first
+            core.getPropertiesManager().setAlphaOrder(readString());
+
+            String[] strings = new String[readVarInt()];
+
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+
+            int wordCount = readVarInt();
+            List<ConWord> words = new ArrayList<ConWord>(wordCount);
+
+            for (int i = wordCount; i > 0; i--) {
+                ConWord word = new ConWord();
+                word.setId(readVarInt());
+                word.setValue(strings[readVarInt()]);
+                word.setLocalWord(strings[readVarInt()]);
+                word.setWordType(strings[readVarInt()]);
+                word.setGender(strings[readVarInt()]);
+                word.setPronunciation(strings[readVarInt()]);
+                word.setDefinition(strings[readVarInt()]);
+
+                int flags = buffer.get();
+                word.setProcOverride((flags & 1) != 0);
+                word.setOverrideAutoDeclen((flags & 2) != 0);
+
+                words.add(word);
+            }
+
+            core.getWordCollection().insertBatch(words);
+
+            DeclensionManager declensionMgr = core.getDeclensionManager();
+
+            for (int i = readVarInt(); i > 0; i--) {
+                int wordId = readVarInt();
+
+                for (int j = readVarInt(); j > 0; j--) {
+                    DeclensionNode dec = new DeclensionNode(readVarInt());
+                    dec.setValue(strings[readVarInt()]);
+                    dec.setNotes(strings[readVarInt()]);
+                    dec.setCombinedDimId(strings[readVarInt()]);
+                    declensionMgr.addDeclensionToWord(wordId, dec.getId(), dec);
+                }
+            }
+
+            int settingsLength = readVarInt();
+            byte[] settings = new byte[settingsLength];
+            buffer.get(settings);
+
+            try {
+                core.readXML(new ByteArrayInputStream(settings));
+            } catch (ParserConfigurationException e) {
+                throw new IOException(e);
+            } catch (SAXException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private String readString() {
+            int length = readVarInt();
+
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+
+            buffer.get(scratch, 0, length);
+
+            return new String(scratch, 0, length, UTF8);
+        }
+
+        private int readVarInt() {
+            int zigzag = 0;
+            int shift = 0;
+            int b;
+
+            do {
+                b = buffer.get();
+                zigzag |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
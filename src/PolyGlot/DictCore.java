@@ -22,20 +22,23 @@ package PolyGlot;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontFormatException;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import javax.swing.JTextField;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.TransformerException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 import org.xml.sax.SAXException;
 
 public class DictCore {
@@ -48,6 +51,7 @@ public class DictCore {
     private final PropertiesManager propertiesManager = new PropertiesManager();
     private final PronunciationMgr pronuncMgr = new PronunciationMgr(this);
     private final ThesaurusManager thesManager = new ThesaurusManager(this);
+    private DictJournal journal = null;
 
     /**
      * Gets proper color for fields marked as required
@@ -152,6 +156,27 @@ public class DictCore {
         wordCollection.recalcAllProcs();
     }
 
+    /**
+     * Prepares recalculation of all non overridden pronunciations, to be
+     * computed in the background and applied once complete
+     *
+     * @return recalculation ready to be computed
+     */
+    public ProcRecalculation prepareProcRecalc() {
+        return wordCollection.prepareProcRecalc();
+    }
+
+    /**
+     * Prepares generation of all declensions of words not set to override
+     * autogeneration, to be computed in the background and applied once
+     * complete
+     *
+     * @return generation run ready to be computed
+     */
+    public DeclensionGeneration prepareDeclensionGeneration() {
+        return declensionMgr.prepareDeclensionGeneration(wordCollection, typeCollection);
+    }
+
     /**
      * Gets conlang's Font (minimizing display class use in core, but this is
      * just too common of a function to handle case by case
@@ -183,22 +208,50 @@ public class DictCore {
      * @throws Exception
      */
     public void readFile(String _fileName) throws Exception {
-        try {
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-
-            CustHandler handler = CustHandlerFactory.getCustHandler(IOHandler.getDictFile(_fileName), this);
-
-            handler.setWordCollection(wordCollection);
-            handler.setTypeCollection(typeCollection);
+        readFile(_fileName, true);
+    }
 
-            saxParser.parse(IOHandler.getDictFile(_fileName), handler);
-            
-            Font conFont = IOHandler.getFontFrom(_fileName);
-            if (conFont != null) {
-                propertiesManager.setFontCon(conFont);
+    /**
+     * Reads from given file
+     *
+     * @param _fileName filename to read from
+     * @param useCache whether to read the binary cache beside the file where
+     * it matches the file, and to write the cache where it does not
+     * @throws Exception
+     */
+    void readFile(String _fileName, boolean useCache) throws Exception {
+        try {
+            // the file is opened once for the cache check, XML, journal and font
+            DictArchive archive = DictArchive.open(_fileName);
+
+            try {
+                if (!useCache || !DictCache.read(_fileName, archive, this)) {
+                    // version is read from the head of the stream, so one pass suffices
+                    InputStream dictStream = archive.getDictStream();
+
+                    try {
+                        readXML(dictStream, archive.isArchive()
+                                ? archive.getEntrySize(XMLIDs.dictFileName) : archive.getLength());
+                    } finally {
+                        dictStream.close();
+                    }
+
+                    if (useCache) {
+                        DictCache.write(_fileName, archive, this);
+                    }
+                }
+
+                // apply changes saved since file was last written in full
+                journal = DictJournal.replay(_fileName, archive, this);
+
+                Font conFont = IOHandler.getFontFrom(archive);
+                if (conFont != null) {
+                    propertiesManager.setFontCon(conFont);
+                }
+            } finally {
+                archive.close();
             }
-            
+
             if (propertiesManager.getFontCon() == null
                     && !propertiesManager.getFontName().equals("")) {
                 throw new FontFormatException("Could not load font: " + propertiesManager.getFontName());
@@ -213,42 +266,259 @@ public class DictCore {
     }
 
     /**
-     * Writes to given file
+     * Reads dictionary XML, adding its contents to those of core
+     *
+     * @param in stream to read (the parser may close it)
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     * @throws IOException
+     */
+    void readXML(InputStream in) throws ParserConfigurationException, SAXException, IOException {
+        parseXML(in, null);
+    }
+
+    /**
+     * Reads dictionary XML, adding its contents to those of core. XML large
+     * enough to be worth it has its words parsed on all processors.
+     *
+     * @param in stream to read (the parser may close it)
+     * @param length length of XML in bytes
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     * @throws IOException
+     */
+    void readXML(InputStream in, long length) throws ParserConfigurationException, SAXException, IOException {
+        if (!WordChunkParser.isWorthSplitting(length)) {
+            parseXML(in, null);
+            return;
+        }
+
+        byte[] xml = new byte[(int) length];
+        DataInputStream dataIn = new DataInputStream(in);
+        dataIn.readFully(xml);
+
+        WordChunkParser wordChunks = WordChunkParser.split(xml);
+
+        if (wordChunks == null) {
+            parseXML(new ByteArrayInputStream(xml), null);
+        } else {
+            readXML(wordChunks);
+        }
+    }
+
+    /**
+     * Reads dictionary XML split into chunks of words, parsing chunks in the
+     * background while the rest of the document is read
+     *
+     * @param wordChunks split XML
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     * @throws IOException
+     */
+    void readXML(WordChunkParser wordChunks) throws ParserConfigurationException, SAXException, IOException {
+        wordChunks.start();
+
+        try {
+            parseXML(wordChunks.getRemainder(), wordChunks);
+        } finally {
+            wordChunks.shutdown();
+        }
+    }
+
+    private void parseXML(InputStream in, WordChunkParser wordChunks)
+            throws ParserConfigurationException, SAXException, IOException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        SAXParser saxParser = factory.newSAXParser();
+
+        CustHandler handler = CustHandlerFactory.getCustHandler(this);
+
+        handler.setWordCollection(wordCollection);
+        handler.setTypeCollection(typeCollection);
+        handler.setWordChunks(wordChunks);
+
+        saxParser.parse(in, handler);
+    }
+
+    /**
+     * Saves to given file. If the file was last read or written in full by
+     * this core, only changes made since are appended to its journal, unless
+     * the journal has grown large enough to be compacted into the file.
+     *
+     * @param _fileName filename to save to
+     * @throws javax.xml.stream.XMLStreamException
+     * @throws java.io.IOException
+     */
+    public void saveFile(String _fileName) throws XMLStreamException, IOException {
+        if (journal != null && journal.canAppend(_fileName)) {
+            journal.append();
+        } else {
+            writeFile(_fileName);
+        }
+    }
+
+    /**
+     * Tests whether changes saved to given file are held only in its journal,
+     * leaving the file itself out of date until it is compacted
+     *
+     * @param _fileName filename saved to
+     * @return true if the file's journal has any records
+     */
+    public boolean needsCompacting(String _fileName) {
+        return journal != null && journal.hasRecords(_fileName);
+    }
+
+    /**
+     * Compacts journal of given file into the file, writing it in full, if
+     * the journal has any records. Changes not yet saved are left out: the
+     * file is read back with its journal, and written from that.
+     *
+     * @param _fileName filename saved to
+     * @throws Exception on failure to read or write the file (its journal is
+     * kept)
+     */
+    public void compactFile(String _fileName) throws Exception {
+        if (!needsCompacting(_fileName)) {
+            return;
+        }
+
+        DictCore saved = new DictCore();
+        saved.readFile(_fileName);
+        saved.writeFile(_fileName);
+
+        // file no longer matches journal, so next save is written in full
+        journal = null;
+    }
+
+    /**
+     * Writes to given file in full, discarding its journal and refreshing its
+     * cache
      *
      * @param _fileName filename to write to
-     * @throws javax.xml.parsers.ParserConfigurationException
-     * @throws javax.xml.transform.TransformerException
+     * @throws javax.xml.stream.XMLStreamException
      * @throws java.io.FileNotFoundException
      */
     public void writeFile(String _fileName)
-            throws ParserConfigurationException, TransformerException, FileNotFoundException, IOException {        
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-        Element wordValue;
+            throws XMLStreamException, FileNotFoundException, IOException {
+        writeFile(_fileName, false);
+    }
+
+    /**
+     * Writes to given file in full, discarding its journal and refreshing its
+     * cache
+     *
+     * @param _fileName filename to write to
+     * @param deepVerify whether to verify the written file by fully loading
+     * it, rather than by checking archive integrity and content digests
+     * @throws javax.xml.stream.XMLStreamException
+     * @throws java.io.FileNotFoundException
+     */
+    public void writeFile(String _fileName, boolean deepVerify)
+            throws XMLStreamException, FileNotFoundException, IOException {
+        // have IOHandler stream dictionary to file
+        IOHandler.writeFile(_fileName, this, deepVerify);
+        DictCache.write(_fileName, this);
+        journal = DictJournal.start(_fileName, this);
+    }
 
-        // root elements
-        Document doc = docBuilder.newDocument();
-        Element rootElement = doc.createElement(XMLIDs.dictionaryXID);
-        doc.appendChild(rootElement);
+    /**
+     * Writes XML representation of all dictionary elements
+     *
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException
+     */
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
+        writer.startElement(XMLIDs.dictionaryXID);
 
         // store version of PolyGlot
-        wordValue = doc.createElement(XMLIDs.pgVersionXID);
-        wordValue.appendChild(doc.createTextNode(version));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.pgVersionXID, version);
 
         // collect XML representation of all dictionary elements
-        propertiesManager.writeXML(doc, rootElement);
-        genderCollection.writeXML(doc, rootElement);
-        typeCollection.writeXML(doc, rootElement);
-        wordCollection.writeXML(doc, rootElement);
-        declensionMgr.writeXML(doc, rootElement);
-        pronuncMgr.writeXML(doc, rootElement);
+        propertiesManager.writeXML(writer);
+        genderCollection.writeXML(writer);
+        typeCollection.writeXML(writer);
+        wordCollection.writeXML(writer);
+        declensionMgr.writeXML(writer);
+        pronuncMgr.writeXML(writer);
 
         // write thesaurus entries
-        rootElement.appendChild(thesManager.writeToSaveXML(doc));
-        
-        // have IOHandler write constructed document to file
-        IOHandler.writeFile(_fileName, doc, this);
+        thesManager.writeXML(writer);
+
+        writer.endElement();
+    }
+
+    /**
+     * Writes XML of given words with their declensions and, optionally, of
+     * everything other than words, in the form of a full dictionary, so that
+     * it may be read on top of an already loaded one
+     *
+     * @param writer XML stream to write to
+     * @param wordIds ids of words to write (ids of deleted words are skipped)
+     * @param settings whether to write everything other than words
+     * @throws javax.xml.stream.XMLStreamException
+     */
+    void writeXML(DictXMLWriter writer, Collection<Integer> wordIds, boolean settings)
+            throws XMLStreamException {
+        writer.startElement(XMLIDs.dictionaryXID);
+        writer.textElement(XMLIDs.pgVersionXID, version);
+
+        if (settings) {
+            propertiesManager.writeXML(writer);
+            genderCollection.writeXML(writer);
+            typeCollection.writeXML(writer);
+        }
+
+        wordCollection.writeXML(writer, wordIds);
+
+        if (settings) {
+            declensionMgr.writeTemplateXML(writer);
+        }
+
+        declensionMgr.writeWordXML(writer, wordIds);
+
+        // thesaurus entries refer to words, so come after them
+        if (settings) {
+            declensionMgr.writeRuleXML(writer);
+            pronuncMgr.writeXML(writer);
+            thesManager.writeXML(writer);
+        }
+
+        writer.endElement();
+    }
+
+    /**
+     * Removes everything other than words and their declensions, so that it
+     * may be read again. Text properties are blanked, as blank values are
+     * written as empty elements, which reading skips. All other properties
+     * are always written with a value, so reading overwrites them. The font
+     * is left alone, as changing it forces a full save.
+     */
+    void clearSettings() {
+        propertiesManager.setLangName("");
+        propertiesManager.setAlphaOrder("");
+        genderCollection.removeAllNodes();
+        typeCollection.removeAllNodes();
+        declensionMgr.wipeTemplatesAndRules();
+        pronuncMgr.setPronunciations(new ArrayList<PronunciationNode>());
+        thesManager.clear();
+    }
+
+    /**
+     * @return ids of words which were inserted, modified or deleted, or had
+     * declensions changed, since changes were last cleared (ascending)
+     */
+    Set<Integer> getChangedWordIds() {
+        Set<Integer> ret = new TreeSet<Integer>(wordCollection.getChangedIds());
+        ret.addAll(declensionMgr.getChangedWordIds());
+
+        return ret;
+    }
+
+    /**
+     * Forgets all changes to words made so far, once they are saved
+     */
+    void clearChanges() {
+        wordCollection.clearChanges();
+        declensionMgr.clearChanges();
     }
 
     /**
@@ -301,6 +571,17 @@ public class DictCore {
         return wordCollection.getSuggestedTransWords(_match);
     }
 
+    /**
+     * Returns list of best matching words in descending list of synonym match
+     *
+     * @param _match The string value to match for
+     * @param maxResults maximum number of words to return
+     * @return List of matching words
+     */
+    public List<ConWord> getSuggestedTransWords(String _match, int maxResults) {
+        return wordCollection.getSuggestedTransWords(_match, maxResults);
+    }
+
     public List<DeclensionNode> getDeclensionListWord(Integer typeId) {
         return declensionMgr.getDeclensionListWord(typeId);
     }
@@ -381,6 +662,18 @@ public class DictCore {
         return ret;
     }
 
+    /**
+     * Inserts new words into dictionary as one batch. Words are inserted as
+     * they are, not copied.
+     *
+     * @param _addWords words to be inserted
+     * @return IDs of newly inserted words, in the order given
+     * @throws Exception
+     */
+    public List<Integer> addWords(Collection<ConWord> _addWords) throws Exception {
+        return wordCollection.addAll(_addWords);
+    }
+
     /**
      * Safely modify a type (updates words of this type automatically)
      *
@@ -389,26 +682,7 @@ public class DictCore {
      * @throws Exception
      */
     public void modifyType(Integer id, TypeNode modType) throws Exception {
-        Iterator<ConWord> it;
-        ConWord typeWord = new ConWord();
-
-        typeWord.setWordType(typeCollection.getNodeById(id).getValue());
-        typeWord.setValue("");
-        typeWord.setDefinition("");
-        typeWord.setGender("");
-        typeWord.setLocalWord("");
-        typeWord.setPronunciation("");
-
-        it = wordCollection.filteredList(typeWord);
-
-        while (it.hasNext()) {
-            ConWord modWord = it.next();
-
-            modWord.setWordType(modType.getValue());
-
-            wordCollection.modifyNode(modWord.getId(), modWord);
-        }
-
+        wordCollection.replaceWordType(typeCollection.getNodeById(id).getValue(), modType.getValue());
         typeCollection.modifyNode(id, modType);
     }
 
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import org.xml.sax.SAXException;
+
+/**
+ * Append only journal of changes saved since a dictionary file was last
+ * written in full, kept in a file beside it. Each save appends one record
+ * holding the ids of all changed words, then, in the form of dictionary XML,
+ * the current state of those still existing along with their declensions and,
+ * if anything other than words has changed, everything other than words.
+ * Records are synced to disk as they are appended. On load, records are
+ * applied on top of the dictionary file in order; a torn record at the end
+ * (left by a crash mid save) is dropped.
+ *
+ * The journal header identifies the dictionary file by length and the CRC of
+ * its dictionary entry, so a journal left over from before the file was last
+ * written in full is ignored.
+ *
+ * @author draque
+ */
+public class DictJournal {
+
+    public static final String EXTENSION = ".pgj";
+    private static final int MAGIC = 0x50474a31;
+    private static final int HEADER_LENGTH = 20;
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    // journal is compacted once larger than this or half of dictionary file
+    private static final long MIN_COMPACT_LENGTH = 256 * 1024;
+
+    private final DictCore core;
+    private final File dictFile;
+    private final File file;
+    private final long dictLength;
+    private final long dictCrc;
+    private long length = 0;
+    private long settingsChecksum;
+    private String fontName;
+
+    private DictJournal(DictCore _core, String fileName, long _dictLength, long _dictCrc) {
+        core = _core;
+        dictFile = new File(fileName).getAbsoluteFile();
+        file = new File(dictFile.getPath() + EXTENSION);
+        dictLength = _dictLength;
+        dictCrc = _dictCrc;
+    }
+
+    /**
+     * Starts an empty journal for a dictionary file just written in full,
+     * deleting any journal left from before
+     *
+     * @param fileName dictionary file
+     * @param core core the file was written from
+     * @return journal to append later changes to
+     * @throws IOException if the file can not be read
+     */
+    public static DictJournal start(String fileName, DictCore core) throws IOException {
+        File dictFile = new File(fileName);
+        DictJournal ret = new DictJournal(core, fileName, dictFile.length(),
+                DictArchive.getDictCrc(dictFile));
+
+        if (ret.file.exists() && !ret.file.delete()) {
+            throw new IOException("Unable to delete old journal: " + ret.file.getPath());
+        }
+
+        ret.changesSaved();
+
+        return ret;
+    }
+
+    /**
+     * Applies the journal of a dictionary file, if any, to a core the file
+     * has just been read into
+     *
+     * @param fileName dictionary file
+     * @param archive dictionary file, already open
+     * @param core core the file was read into
+     * @return journal to append later changes to
+     * @throws IOException if the journal can not be read
+     * @throws SAXException if a journal record can not be parsed
+     */
+    public static DictJournal replay(String fileName, DictArchive archive, DictCore core)
+            throws IOException, SAXException {
+        DictJournal ret = new DictJournal(core, fileName, archive.getLength(),
+                archive.getDictCrc());
+
+        if (ret.dictCrc != -1 && ret.file.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(ret.file)));
+
+            try {
+                ret.replay(in);
+            } finally {
+                in.close();
+            }
+        }
+
+        ret.changesSaved();
+
+        return ret;
+    }
+
+    /**
+     * Tests whether changes may be saved to a dictionary file by appending to
+     * this journal, rather than writing the file in full
+     *
+     * @param fileName dictionary file to save to
+     * @return true if appending is possible and the journal is not due to be
+     * compacted
+     * @throws IOException if the dictionary file can not be read
+     */
+    public boolean canAppend(String fileName) throws IOException {
+        File target = new File(fileName).getAbsoluteFile();
+
+        // fonts are stored in the dictionary file alone
+        return target.equals(dictFile)
+                && dictCrc != -1
+                && length <= Math.max(MIN_COMPACT_LENGTH, dictLength / 2)
+                && getFontName().equals(fontName)
+                && dictFile.length() == dictLength
+                && DictArchive.getDictCrc(dictFile) == dictCrc;
+    }
+
+    /**
+     * Tests whether this journal holds changes saved to a dictionary file
+     * which are not yet in the file itself
+     *
+     * @param fileName dictionary file
+     * @return true if this is the file's journal and it has any records
+     */
+    public boolean hasRecords(String fileName) {
+        return new File(fileName).getAbsoluteFile().equals(dictFile) && length > HEADER_LENGTH;
+    }
+
+    /**
+     * Appends record of all changes since the last save, if any, and syncs it
+     * to disk
+     *
+     * @throws IOException on write failure
+     * @throws XMLStreamException on failure to serialize changes
+     */
+    public void append() throws IOException, XMLStreamException {
+        Set<Integer> wordIds = core.getChangedWordIds();
+        long curSettingsChecksum = getSettingsChecksum();
+        boolean settings = curSettingsChecksum != settingsChecksum;
+
+        if (wordIds.isEmpty() && !settings) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        // room for record header, filled in below
+        data.writeInt(0);
+        data.writeInt(0);
+        data.writeInt(wordIds.size());
+
+        for (Integer id : wordIds) {
+            data.writeInt(id);
+        }
+
+        data.writeBoolean(settings);
+        data.flush();
+
+        DictXMLWriter writer = new DictXMLWriter(bytes);
+        core.writeXML(writer, wordIds, settings);
+        writer.close();
+
+        byte[] record = bytes.toByteArray();
+        int payloadLength = record.length - RECORD_HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        crc.update(record, RECORD_HEADER_LENGTH, payloadLength);
+        putInt(record, 0, payloadLength);
+        putInt(record, 4, (int) crc.getValue());
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+
+        try {
+            // drops any torn record, or journal left from before
+            out.setLength(length);
+            out.seek(length);
+
+            if (length == 0) {
+                out.writeInt(MAGIC);
+                out.writeLong(dictLength);
+                out.writeLong(dictCrc);
+            }
+
+            out.write(record);
+            out.getChannel().force(true);
+            length = out.length();
+        } finally {
+            out.close();
+        }
+
+        core.clearChanges();
+        settingsChecksum = curSettingsChecksum;
+    }
+
+    /**
+     * @return journal file beside dictionary file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    private void replay(DataInputStream in) throws IOException, SAXException {
+        try {
+            if (in.readInt() != MAGIC || in.readLong() != dictLength || in.readLong() != dictCrc) {
+                // left from before file was last written; dropped on next save
+                return;
+            }
+        } catch (EOFException e) {
+            return;
+        }
+
+        length = HEADER_LENGTH;
+
+        while (true) {
+            byte[] payload;
+            int crc;
+
+            try {
+                int payloadLength = in.readInt();
+                crc = in.readInt();
+
+                if (payloadLength < 0 || payloadLength > file.length() - length - RECORD_HEADER_LENGTH) {
+                    return;
+                }
+
+                payload = new byte[payloadLength];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                return;
+            }
+
+            CRC32 check = new CRC32();
+            check.update(payload);
+
+            if ((int) check.getValue() != crc) {
+                return;
+            }
+
+            apply(payload);
+            length += RECORD_HEADER_LENGTH + payload.length;
+        }
+    }
+
+    private void apply(byte[] payload) throws IOException, SAXException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        int wordCount = data.readInt();
+        List<Integer> wordIds = new ArrayList<Integer>();
+
+        for (int i = 0; i < wordCount; i++) {
+            wordIds.add(data.readInt());
+        }
+
+        boolean settings = data.readBoolean();
+
+        // changed words are read back in full from the record, if not deleted
+        try {
+            for (Integer id : wordIds) {
+                if (core.getWordCollection().exists(id)) {
+                    core.deleteWordById(id);
+                } else {
+                    core.clearAllDeclensionsWord(id);
+                }
+            }
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+
+        if (settings) {
+            core.clearSettings();
+        }
+
+        try {
+            core.readXML(data);
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Records current state of core as saved
+     */
+    private void changesSaved() {
+        core.clearChanges();
+        fontName = getFontName();
+
+        try {
+            settingsChecksum = getSettingsChecksum();
+        } catch (IOException e) {
+            // never matches, so settings are written with the next change
+            settingsChecksum = -1;
+        } catch (XMLStreamException e) {
+            settingsChecksum = -1;
+        }
+    }
+
+    private long getSettingsChecksum() throws IOException, XMLStreamException {
+        CheckedOutputStream out = new CheckedOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, new CRC32());
+
+        DictXMLWriter writer = new DictXMLWriter(out);
+        core.writeXML(writer, Collections.<Integer>emptyList(), true);
+        writer.close();
+
+        return out.getChecksum().getValue();
+    }
+
+    private String getFontName() {
+        return core.getFontCon() == null ? "" : core.getFontCon().getName();
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
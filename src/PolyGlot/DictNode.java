@@ -21,7 +21,7 @@
 // This is the type which all nodes and storage types extend.
 package PolyGlot;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -35,8 +35,16 @@ public abstract class DictNode implements Comparable<DictNode> {
     
     protected Integer id = 0;
     
-    // used for alphabetic ordering of nodes
-    private Map<Character, Integer> alphaOrder = new HashMap<Character, Integer>();
+    // used for alphabetic ordering of nodes (shared, never altered through node)
+    private Map<Character, Integer> alphaOrder = Collections.emptyMap();
+    
+    // incremented whenever any alphabetical order is changed, staling sort keys
+    private static volatile int alphaOrderGeneration = 0;
+    
+    // alpha rank of each character of value (-1 where a character is unranked)
+    private int[] sortKey = null;
+    private String sortKeyValue = null;
+    private int sortKeyGeneration = -1;
     
     /**
      * Sets a node equal to the argument node
@@ -44,6 +52,23 @@ public abstract class DictNode implements Comparable<DictNode> {
      */
     abstract public void setEqual(DictNode _node);
     
+    /**
+     * Marks all cached sort keys as stale. Must be called whenever the
+     * contents of an alphabetical order map change.
+     */
+    static void alphaOrderChanged() {
+        alphaOrderGeneration++;
+    }
+    
+    /**
+     * Gets the current generation of alphabetical ordering. Any change in
+     * value means previously established orderings may be invalid.
+     * @return current alpha order generation
+     */
+    static int getAlphaOrderGeneration() {
+        return alphaOrderGeneration;
+    }
+    
     public void setId(Integer _id) {
         id = _id;
     }
@@ -54,6 +79,7 @@ public abstract class DictNode implements Comparable<DictNode> {
     
     public void setAlphaOrder(Map _alphaOrder) {
         alphaOrder = _alphaOrder;
+        sortKey = null;
     }
     
     public String getValue() {
@@ -63,15 +89,69 @@ public abstract class DictNode implements Comparable<DictNode> {
     public void setValue(String conWord) {
         this.value = conWord.trim();
     }
+    
+    /**
+     * Gets collation key of node, rebuilding it only if the value or
+     * alphabetical order has changed since it was last built
+     * @param keyValue current value of node
+     * @return alpha rank of each character in value, -1 for unranked characters
+     */
+    private int[] getSortKey(String keyValue) {
+        final int generation = alphaOrderGeneration;
+        
+        if (sortKey == null || sortKeyValue != keyValue || sortKeyGeneration != generation) {
+            sortKey = buildSortKey(keyValue, alphaOrder);
+            sortKeyValue = keyValue;
+            sortKeyGeneration = generation;
+        }
+        
+        return sortKey;
+    }
+    
+    /**
+     * Builds collation key of a value
+     * @param keyValue value to build key of
+     * @param alphaOrder alphabetical order to rank characters by
+     * @return alpha rank of each character in value, -1 for unranked characters
+     */
+    static int[] buildSortKey(String keyValue, Map<Character, Integer> alphaOrder) {
+        int[] ret = new int[keyValue.length()];
+        
+        for (int i = 0; i < ret.length; i++) {
+            Integer rank = alphaOrder.get(keyValue.charAt(i));
+            ret[i] = rank == null ? -1 : rank;
+        }
+        
+        return ret;
+    }
 
     // implements compareTo in way that custom alpha sorting may be used
     @Override
     public int compareTo(DictNode _compare) {
+        final String comp = _compare.getValue();
+        final String me = this.getValue();
+        
+        if (comp.equals(me) || comp.equals("") || me.equals("")) {
+            return compareValues(me, null, comp, null);
+        }
+        
+        return compareValues(me, this.getSortKey(me), comp, _compare.getSortKey(comp));
+    }
+    
+    /**
+     * Compares two values as compareTo compares nodes holding them, for
+     * values not held by nodes
+     * @param me first value
+     * @param meKey collation key of first value (see buildSortKey)
+     * @param comp second value
+     * @param compKey collation key of second value
+     * @return negative, zero or positive as first value sorts before, with or
+     * after second
+     */
+    static int compareValues(String me, int[] meKey, String comp, int[] compKey) {
         final int BEFORE = -1;
         final int EQUAL = 0;
         final int AFTER = 1;
-        final String comp = _compare.getValue();
-        final String me = this.getValue();
         
         if (comp.equals(me)) {
             return EQUAL;
@@ -84,34 +164,59 @@ public abstract class DictNode implements Comparable<DictNode> {
             return BEFORE;
         }
         
-        Character compChar = comp.charAt(0);
-        Character meChar = me.charAt(0);
-
-        // if no settings,or missing settings for given character, just use default
-        if (alphaOrder.isEmpty() || !alphaOrder.containsKey(meChar) || !alphaOrder.containsKey(compChar)) {
-            return this.getValue().compareToIgnoreCase(_compare.getValue());
-        }
+        final int length = Math.min(meKey.length, compKey.length);
         
-        if(compChar.equals(meChar)) {
-            ConWord compChild = new ConWord();
-            ConWord thisChild = new ConWord();
-            
-            compChild.setAlphaOrder(alphaOrder);
-            thisChild.setAlphaOrder(alphaOrder);
+        for (int i = 0; i < length; i++) {
+            // if missing settings for given character, default ordering used from here on
+            if (meKey[i] == -1 || compKey[i] == -1) {
+                return compareIgnoreCase(me, comp, i);
+            }
             
-            compChild.setValue(_compare.getValue().substring(1));
-            thisChild.setValue(this.getValue().substring(1));
+            if (meKey[i] != compKey[i]) {
+                return meKey[i] < compKey[i] ? BEFORE : AFTER;
+            }
+        }
+        
+        // one value begins with the entirety of the other: shorter comes first
+        return meKey.length < compKey.length ? BEFORE : AFTER;
+    }
+    
+    /**
+     * Case insensitive comparison of two strings from a given index onward
+     * (equivalent to compareToIgnoreCase of the two substrings)
+     * @param me first string
+     * @param comp second string
+     * @param start index to begin comparison at
+     * @return negative, zero or positive as with compareToIgnoreCase
+     */
+    private static int compareIgnoreCase(String me, String comp, int start) {
+        final int meLength = me.length();
+        final int compLength = comp.length();
+        
+        for (int i = start; i < meLength && i < compLength; i++) {
+            char meChar = me.charAt(i);
+            char compChar = comp.charAt(i);
             
-            return thisChild.compareTo(compChild);
-        } else if (alphaOrder.get(comp.charAt(0)) > alphaOrder.get(me.charAt(0))) {
-            return BEFORE;
-        } else {
-            return AFTER;
-        }    
+            if (meChar != compChar) {
+                meChar = Character.toUpperCase(meChar);
+                compChar = Character.toUpperCase(compChar);
+                
+                if (meChar != compChar) {
+                    meChar = Character.toLowerCase(meChar);
+                    compChar = Character.toLowerCase(compChar);
+                    
+                    if (meChar != compChar) {
+                        return meChar - compChar;
+                    }
+                }
+            }
+        }
+        
+        return meLength - compLength;
     }
     
     @Override
     public String toString() {
-        return value;
+        return getValue();
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streams dictionary XML to an output stream as it is written, rather than
+ * building a document in memory first. Output matches that of the DOM
+ * transformer PolyGlot previously saved with: same declaration, empty
+ * elements collapsed, and control characters and characters outside the
+ * basic multilingual plane written as character references. Keeps a digest
+ * of everything written, to verify the saved file against.
+ *
+ * @author draque
+ */
+public class DictXMLWriter {
+
+    private static final String DECLARATION
+            = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private final XMLStreamWriter writer;
+    private final XMLDigest digest = new XMLDigest();
+
+    /**
+     * Writes XML declaration and prepares to stream elements. Stream should
+     * be buffered, as it is written to in small pieces.
+     * @param out stream to write to (not closed by this writer)
+     * @throws IOException on failure to write declaration
+     * @throws XMLStreamException on failure to create writer
+     */
+    public DictXMLWriter(OutputStream out) throws IOException, XMLStreamException {
+        out.write(DECLARATION.getBytes("UTF-8"));
+        writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+    }
+
+    /**
+     * Opens element, to be closed with endElement()
+     * @param name element name
+     * @throws XMLStreamException on write failure
+     */
+    public void startElement(String name) throws XMLStreamException {
+        writer.writeStartElement(name);
+        digest.startElement(name);
+    }
+
+    /**
+     * Closes most recently opened element
+     * @throws XMLStreamException on write failure
+     */
+    public void endElement() throws XMLStreamException {
+        writer.writeEndElement();
+        digest.endElement();
+    }
+
+    /**
+     * Writes element containing only text
+     * @param name element name
+     * @param text text content of element
+     * @throws XMLStreamException on write failure
+     */
+    public void textElement(String name, String text) throws XMLStreamException {
+        digest.startElement(name);
+        digest.characters(text);
+        digest.endElement();
+
+        if (text.length() == 0) {
+            writer.writeEmptyElement(name);
+            return;
+        }
+
+        writer.writeStartElement(name);
+        writeText(text);
+        writer.writeEndElement();
+    }
+
+    /**
+     * @return digest of everything written so far
+     */
+    public XMLDigest getDigest() {
+        return digest;
+    }
+
+    /**
+     * Flushes all written XML to the underlying stream, which is left open
+     * @throws XMLStreamException on write failure
+     */
+    public void close() throws XMLStreamException {
+        writer.flush();
+        writer.close();
+    }
+
+    /**
+     * Writes text, escaping characters the way the DOM transformer did
+     * @param text text to write
+     * @throws XMLStreamException on write failure
+     */
+    private void writeText(String text) throws XMLStreamException {
+        int runStart = 0;
+        int i = 0;
+
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int codePoint = c;
+            int charLength = 1;
+
+            if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+                charLength = 2;
+            }
+
+            if (needsReference(codePoint)) {
+                if (runStart < i) {
+                    writer.writeCharacters(text.substring(runStart, i));
+                }
+
+                writer.writeEntityRef("#" + codePoint);
+                runStart = i + charLength;
+            }
+
+            i += charLength;
+        }
+
+        if (runStart < text.length()) {
+            writer.writeCharacters(runStart == 0 ? text : text.substring(runStart));
+        }
+    }
+
+    private static boolean needsReference(int codePoint) {
+        return (codePoint < 0x20 && codePoint != '\t' && codePoint != '\n')
+                || (codePoint >= 0x7F && codePoint <= 0x9F)
+                || codePoint > 0xFFFF;
+    }
+}
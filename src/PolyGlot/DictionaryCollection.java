@@ -20,8 +20,13 @@
 
 package PolyGlot;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -30,11 +35,20 @@ import java.util.Map;
 public abstract class DictionaryCollection {
 
     protected Map<Character, Integer> alphaOrder;
-    protected final Map nodeMap = new HashMap<Integer, DictNode>();
+    protected Map nodeMap = new HashMap<Integer, DictNode>();
     protected DictNode bufferNode;
 
+    // all nodes of nodeMap, kept in alphabetical order as they are added/removed
+    private final List<DictNode> sortedNodes = new ArrayList<DictNode>();
+    private int sortedGeneration = DictNode.getAlphaOrderGeneration();
     private int highestNodeId = 1;
 
+    // name lookup, kept only by collections which call indexNames
+    private NameIndex nameIndex = null;
+
+    // batches smaller than this are inserted into the sorted list one by one
+    private static final int MIN_MERGE_BATCH = 16;
+
     /**
      * Clears value of collection's current buffer
      *
@@ -68,8 +82,14 @@ public abstract class DictionaryCollection {
         _modNode.setId(_id);
         _modNode.setAlphaOrder(alphaOrder);
         
-        nodeMap.remove(_id);
+        removeSorted((DictNode) nodeMap.remove(_id));
         nodeMap.put(_modNode.getId(), _modNode);
+        addSorted(_modNode);
+
+        if (nameIndex != null) {
+            nameIndex.remove(_id);
+            nameIndex.add(_modNode);
+        }
     }
     
     /**
@@ -100,11 +120,148 @@ public abstract class DictionaryCollection {
                     + " not found.");
         }
 
-        nodeMap.remove(_id);
+        removeSorted((DictNode) nodeMap.remove(_id));
+
+        if (nameIndex != null) {
+            nameIndex.remove(_id);
+        }
+    }
+
+    /**
+     * Removes every node from collection, skipping any bookkeeping deleting
+     * nodes one at a time would trigger
+     */
+    protected void removeAllNodes() {
+        nodeMap.clear();
+        sortedNodes.clear();
+
+        if (nameIndex != null) {
+            nameIndex.clear();
+        }
     }
 
     public void setAlphaOrder(Map _alphaOrder) {
         alphaOrder = _alphaOrder;
+        
+        for (DictNode curNode : sortedNodes) {
+            curNode.setAlphaOrder(_alphaOrder);
+        }
+        
+        // force resort on next access
+        sortedGeneration = -1;
+    }
+    
+    /**
+     * Gets number of nodes in collection
+     * @return node count
+     */
+    public int getNodeCount() {
+        return nodeMap.size();
+    }
+    
+    /**
+     * Gets node at given position in alphabetical order
+     * @param index position of node (0 based)
+     * @return node at position
+     */
+    public Object getNodeAt(int index) {
+        return getSortedNodes().get(index);
+    }
+    
+    /**
+     * Gets all nodes of collection in alphabetical order. This is maintained
+     * as nodes are added, modified and deleted, so no sorting takes place
+     * unless the alphabetical order itself has changed.
+     * @return read only list of sorted nodes
+     */
+    protected List<DictNode> getSortedNodes() {
+        int generation = DictNode.getAlphaOrderGeneration();
+        
+        if (sortedGeneration != generation) {
+            Collections.sort(sortedNodes);
+            sortedGeneration = generation;
+        }
+        
+        return Collections.unmodifiableList(sortedNodes);
+    }
+    
+    /**
+     * Copies all nodes of collection in alphabetical order
+     * @param <N> node class of collection
+     * @param nodeClass node class of collection
+     * @return new list of sorted nodes
+     */
+    protected <N extends DictNode> List<N> copySortedNodes(Class<N> nodeClass) {
+        List<DictNode> sorted = getSortedNodes();
+        List<N> ret = new ArrayList<N>(sorted.size());
+        
+        for (DictNode curNode : sorted) {
+            ret.add(nodeClass.cast(curNode));
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Inserts node into sorted list after any nodes of equal value
+     * @param _node node to insert
+     */
+    private void addSorted(DictNode _node) {
+        List<DictNode> sorted = getSortedNodes();
+        int low = 0;
+        int high = sorted.size();
+        
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            
+            if (sorted.get(mid).compareTo(_node) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        sortedNodes.add(low, _node);
+    }
+    
+    /**
+     * Removes node from sorted list. If the node's value was altered in place
+     * since it was inserted, its position is found by scanning instead.
+     * @param _node node to remove (no action if null)
+     */
+    private void removeSorted(DictNode _node) {
+        if (_node == null) {
+            return;
+        }
+        
+        List<DictNode> sorted = getSortedNodes();
+        int low = 0;
+        int high = sorted.size();
+        
+        // first node not sorting before _node
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            
+            if (sorted.get(mid).compareTo(_node) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        
+        for (int i = low; i < sorted.size() && sorted.get(i).compareTo(_node) == 0; i++) {
+            if (sorted.get(i) == _node) {
+                sortedNodes.remove(i);
+                return;
+            }
+        }
+        
+        for (int i = 0; i < sortedNodes.size(); i++) {
+            if (sortedNodes.get(i) == _node) {
+                sortedNodes.remove(i);
+                return;
+            }
+        }
     }
 
     protected Integer insert(DictNode _buffer) throws Exception {
@@ -125,10 +282,229 @@ public abstract class DictionaryCollection {
         }
 
         nodeMap.put(_id, _buffer);
+        addSorted(_buffer);
 
-        // sets highest word ID, if current id is higher
-        highestNodeId = _id > highestNodeId ? _id : highestNodeId;
+        if (nameIndex != null) {
+            nameIndex.add(_buffer);
+        }
+
+        noteNodeId(_id);
 
         return _id;
     }
+
+    /**
+     * Records an id as given out, so that insert never gives it out again
+     * @param _id id of node inserted
+     */
+    protected void noteNodeId(int _id) {
+        highestNodeId = _id > highestNodeId ? _id : highestNodeId;
+    }
+
+    /**
+     * Starts keeping an index of nodes by value, for findNodeByName. Called
+     * by collections looked up by name often enough to need it.
+     */
+    protected void indexNames() {
+        nameIndex = new NameIndex();
+
+        for (Object curNode : nodeMap.values()) {
+            nameIndex.add((DictNode) curNode);
+        }
+    }
+
+    /**
+     * Finds node by exact (case sensitive) value. Where several nodes share
+     * a value, the one with the lowest id is found.
+     * @param _name value to find
+     * @return found node, null if none or name empty
+     */
+    protected DictNode findNodeByName(String _name) {
+        if (_name.equals("")) {
+            return null;
+        }
+        if (nameIndex == null) {
+            indexNames();
+        }
+
+        return nameIndex.find(_name);
+    }
+
+    /**
+     * Gets next id to be given out by insert
+     * @return next id
+     */
+    protected int getNextNodeId() {
+        return highestNodeId + 1;
+    }
+
+    /**
+     * Inserts a batch of nodes, each with its id already set. Nodes are
+     * inserted as they are, not copied. The node map is grown once for the
+     * whole batch and the batch is merged into the sorted list in one pass,
+     * so nodes end up in the same order as if inserted one at a time.
+     * Nothing is inserted if any id is invalid or already in use.
+     * @param nodes nodes to insert
+     * @throws Exception on duplicate or invalid id
+     */
+    protected void insertBatch(List<? extends DictNode> nodes) throws Exception {
+        Set<Integer> batchIds = new HashSet<Integer>(capacityFor(nodes.size()));
+
+        for (DictNode curNode : nodes) {
+            Integer id = curNode.getId();
+
+            if (id < 1) {
+                throw new Exception("Collection node ID may never be zero or less.");
+            }
+            if (nodeMap.containsKey(id) || !batchIds.add(id)) {
+                throw new Exception("Duplicate ID " + id.toString() + " for collection object: " + curNode.getValue());
+            }
+        }
+
+        // nodeMap is raw, but only ever holds nodes by id
+        @SuppressWarnings("unchecked")
+        Map<Integer, DictNode> typedMap = nodeMap;
+        typedMap = withCapacity(typedMap, nodes.size());
+        nodeMap = typedMap;
+
+        for (DictNode curNode : nodes) {
+            curNode.setAlphaOrder(alphaOrder);
+            typedMap.put(curNode.getId(), curNode);
+
+            if (nameIndex != null) {
+                nameIndex.add(curNode);
+            }
+            noteNodeId(curNode.getId());
+        }
+
+        if (nodes.size() < MIN_MERGE_BATCH) {
+            for (DictNode curNode : nodes) {
+                addSorted(curNode);
+            }
+        } else {
+            mergeSorted(nodes);
+        }
+    }
+
+    /**
+     * Merges nodes into sorted list, each after any nodes of equal value
+     * already present, and in the order given among themselves
+     * @param nodes nodes to merge
+     */
+    private void mergeSorted(List<? extends DictNode> nodes) {
+        List<DictNode> sorted = getSortedNodes();
+        List<DictNode> batch = new ArrayList<DictNode>(nodes);
+
+        // stable, so nodes of equal value keep the order given
+        Collections.sort(batch);
+
+        // commonly the whole batch sorts after what is already there
+        if (sorted.isEmpty() || sorted.get(sorted.size() - 1).compareTo(batch.get(0)) <= 0) {
+            sortedNodes.addAll(batch);
+            return;
+        }
+
+        List<DictNode> merged = new ArrayList<DictNode>(sorted.size() + batch.size());
+        int i = 0;
+        int j = 0;
+
+        while (i < sorted.size() && j < batch.size()) {
+            if (sorted.get(i).compareTo(batch.get(j)) <= 0) {
+                merged.add(sorted.get(i++));
+            } else {
+                merged.add(batch.get(j++));
+            }
+        }
+
+        merged.addAll(sorted.subList(i, sorted.size()));
+        merged.addAll(batch.subList(j, batch.size()));
+        sortedNodes.clear();
+        sortedNodes.addAll(merged);
+    }
+
+    /**
+     * Gets a map holding the entries of map with room for count more, so
+     * that a large batch of puts does not rehash it again and again
+     * @param map map to grow
+     * @param count number of entries about to be added
+     * @return map itself, if batch is small next to it, otherwise a copy
+     */
+    protected static <K, V> Map<K, V> withCapacity(Map<K, V> map, int count) {
+        if (count <= map.size()) {
+            return map;
+        }
+
+        Map<K, V> ret = new HashMap<K, V>(capacityFor(map.size() + count));
+        ret.putAll(map);
+
+        return ret;
+    }
+
+    private static int capacityFor(int count) {
+        return (int) (count / 0.75f) + 1;
+    }
+
+    /**
+     * Nodes by value. Each node is filed under its value as it was when
+     * added, so it can be removed by id even if altered in place since, and
+     * found nodes are checked against their current value.
+     */
+    private class NameIndex {
+        private final Map<String, List<DictNode>> byName = new HashMap<String, List<DictNode>>();
+        private final Map<Integer, String> names = new HashMap<Integer, String>();
+
+        public void add(DictNode node) {
+            List<DictNode> nodes = byName.get(node.getValue());
+
+            if (nodes == null) {
+                nodes = new ArrayList<DictNode>(1);
+                byName.put(node.getValue(), nodes);
+            }
+
+            nodes.add(node);
+            names.put(node.getId(), node.getValue());
+        }
+
+        public void remove(Integer id) {
+            String name = names.remove(id);
+            List<DictNode> nodes = name == null ? null : byName.get(name);
+
+            if (nodes == null) {
+                return;
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                if (nodes.get(i).getId().equals(id)) {
+                    nodes.remove(i);
+                    break;
+                }
+            }
+
+            if (nodes.isEmpty()) {
+                byName.remove(name);
+            }
+        }
+
+        public DictNode find(String name) {
+            List<DictNode> nodes = byName.get(name);
+            DictNode ret = null;
+
+            if (nodes != null) {
+                for (DictNode curNode : nodes) {
+                    if (curNode.getValue().equals(name)
+                            && nodeMap.get(curNode.getId()) == curNode
+                            && (ret == null || curNode.getId() < ret.getId())) {
+                        ret = curNode;
+                    }
+                }
+            }
+
+            return ret;
+        }
+
+        public void clear() {
+            byName.clear();
+            names.clear();
+        }
+    }
 }
@@ -22,6 +22,7 @@ package PolyGlot;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -83,10 +84,24 @@ public class ExcelConReader {
             rowIterator.next();
         }
 
-        while (rowIterator.hasNext()) {
-            processWordRow(rowIterator.next());
+        List<ConWord> words = new ArrayList<ConWord>();
+
+        try {
+            while (rowIterator.hasNext()) {
+                ConWord newWord = processWordRow(rowIterator.next());
+
+                if (newWord != null) {
+                    words.add(newWord);
+                }
+            }
+        } catch (Exception e) {
+            // rows read before a bad row are kept, as when each was inserted as read
+            core.addWords(words);
+            throw e;
         }
 
+        core.addWords(words);
+
         myFile.close();
     }
 
@@ -107,7 +122,13 @@ public class ExcelConReader {
         return ret;
     }
 
-    private void processWordRow(Row row) throws Exception {
+    /**
+     * Reads word from row, creating its type and gender if needed
+     * @param row row to read
+     * @return word read, null if row has no conword
+     * @throws Exception on invalid column entries
+     */
+    private ConWord processWordRow(Row row) throws Exception {
         ConWord newWord = new ConWord();
 
         List<String> columnList;
@@ -132,7 +153,7 @@ public class ExcelConReader {
         
         // if conword is blank, return. Bare minimum for imported word is a conword value.
         if (newWord.getValue().trim().equals("")) {
-            return;
+            return null;
         }
 
         // add definition
@@ -243,7 +264,7 @@ public class ExcelConReader {
             core.getTypes().insert();
         }
 
-        core.addWord(newWord);
+        return newWord;
     }
     
     /**
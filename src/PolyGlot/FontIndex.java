@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the font files in the system font directories by font name, so
+ * that finding the file of a font does not mean loading every font on the
+ * system. Each file is recorded with its modification time and size, and is
+ * only loaded again if either changes. The index is kept in a file in the
+ * user's home directory between runs, and is brought up to date by walking
+ * the font directories only when a font is not found in it (at most once
+ * every REFRESH_INTERVAL milliseconds) or when a file found has changed.
+ *
+ * @author draque
+ */
+public class FontIndex {
+
+    private static final int MAGIC = 0x50474631;
+    private static final long REFRESH_INTERVAL = 30000;
+    private static final int MAX_DEPTH = 8;
+    private static final Pattern FONTCONFIG_DIR
+            = Pattern.compile("<dir(\\s+prefix=\"(\\w+)\")?[^>]*>([^<]+)</dir>");
+    private static FontIndex instance = null;
+
+    private final File indexFile;
+    private final List<File> fontDirs;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private final Map<String, File> byName = new HashMap<String, File>();
+    private boolean loaded = false;
+    private long lastRefresh = 0;
+    private int fontLoadCount = 0;
+
+    /**
+     * @param indexFile file the index is kept in between runs
+     * @param fontDirs directories to index, in order of preference
+     */
+    public FontIndex(File indexFile, List<File> fontDirs) {
+        this.indexFile = indexFile;
+        this.fontDirs = fontDirs;
+    }
+
+    /**
+     * @return index of this system's font directories, kept in user's home
+     * directory
+     */
+    public static synchronized FontIndex getInstance() {
+        if (instance == null) {
+            instance = new FontIndex(new File(System.getProperty("user.home"), ".PolyGlotFonts"),
+                    getSystemFontDirs());
+        }
+
+        return instance;
+    }
+
+    /**
+     * Finds the file of a font by name
+     *
+     * @param fontName name of font
+     * @return font's file, null if not in any font directory
+     */
+    public synchronized File getFontFile(String fontName) {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+
+        File ret = lookup(fontName);
+
+        if (ret == null ? System.currentTimeMillis() - lastRefresh > REFRESH_INTERVAL
+                : !entries.get(ret.getPath()).matches(ret)) {
+            refresh();
+            ret = lookup(fontName);
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return number of font files loaded to read their names (for testing)
+     */
+    synchronized int getFontLoadCount() {
+        return fontLoadCount;
+    }
+
+    private File lookup(String fontName) {
+        File ret = byName.get(fontName);
+
+        if (ret == null) {
+            ret = byName.get(fontName + " Regular");
+        }
+
+        return ret;
+    }
+
+    /**
+     * Walks font directories, loading only new and changed files, then saves
+     * index if anything changed
+     */
+    private void refresh() {
+        Map<String, Entry> oldEntries = new HashMap<String, Entry>(entries);
+        boolean changed = false;
+
+        entries.clear();
+
+        for (File dir : fontDirs) {
+            List<File> files = new ArrayList<File>();
+            listFontFiles(dir, files, 0);
+
+            for (File file : files) {
+                String path = file.getPath();
+
+                if (entries.containsKey(path)) {
+                    continue;
+                }
+
+                Entry entry = oldEntries.remove(path);
+
+                if (entry == null || !entry.matches(file)) {
+                    entry = new Entry(file.lastModified(), file.length(), readFontName(file));
+                    changed = true;
+                }
+
+                entries.put(path, entry);
+            }
+        }
+
+        if (changed || !oldEntries.isEmpty()) {
+            save();
+        }
+
+        rebuildNames();
+        lastRefresh = System.currentTimeMillis();
+    }
+
+    private void rebuildNames() {
+        byName.clear();
+
+        // first file found in preferred directories wins
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            String name = entry.getValue().fontName;
+
+            if (!name.equals("") && !byName.containsKey(name)) {
+                byName.put(name, new File(entry.getKey()));
+            }
+        }
+    }
+
+    private static void listFontFiles(File dir, List<File> files, int depth) {
+        File[] listing = dir.listFiles();
+
+        // depth bounded in case of linked directory loops
+        if (listing == null || depth > MAX_DEPTH) {
+            return;
+        }
+
+        for (File file : listing) {
+            if (file.isDirectory()) {
+                listFontFiles(file, files, depth + 1);
+            } else if (isFontFile(file.getName())) {
+                files.add(file);
+            }
+        }
+    }
+
+    private static boolean isFontFile(String name) {
+        String lower = name.toLowerCase();
+
+        return lower.endsWith(".ttf")
+                || lower.endsWith(".otf")
+                || lower.endsWith(".ttc")
+                || lower.endsWith(".dfont");
+    }
+
+    /**
+     * @param file font file
+     * @return name of font, empty if file could not be loaded (it is still
+     * recorded, so is not loaded again until it changes)
+     */
+    private String readFontName(File file) {
+        fontLoadCount++;
+
+        try {
+            return Font.createFont(Font.TRUETYPE_FONT, file).getName();
+        } catch (FontFormatException e) {
+            return "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(indexFile)));
+
+            try {
+                if (in.readInt() != MAGIC) {
+                    return;
+                }
+
+                int count = in.readInt();
+
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    entries.put(path, new Entry(in.readLong(), in.readLong(), in.readUTF()));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // unreadable index is rebuilt from scratch
+            entries.clear();
+        }
+
+        rebuildNames();
+    }
+
+    /**
+     * Saves index. Failing to is not an error: the index is rebuilt next run.
+     */
+    private void save() {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(entries.size());
+
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().modified);
+                    out.writeLong(entry.getValue().length);
+                    out.writeUTF(entry.getValue().fontName);
+                }
+            } finally {
+                out.close();
+            }
+
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * @return font directories of this system, in order of preference
+     */
+    public static List<File> getSystemFontDirs() {
+        List<File> ret = new ArrayList<File>();
+        String os = System.getProperty("os.name");
+        String home = System.getProperty("user.home");
+
+        if (os.startsWith("Mac")) {
+            ret.add(new File("/Library/Fonts/"));
+            ret.add(new File("/System/Library/Fonts/"));
+            ret.add(new File(home + "/Library/Fonts/"));
+        } else if (os.startsWith("Windows")) {
+            ret.add(new File(System.getenv("WINDIR") + "\\Fonts"));
+        } else {
+            String dataHome = System.getenv("XDG_DATA_HOME");
+
+            if (dataHome == null || dataHome.equals("")) {
+                dataHome = home + "/.local/share";
+            }
+
+            addFontconfigDirs(new File("/etc/fonts/fonts.conf"), home, dataHome, ret);
+            addDir(ret, new File("/usr/share/fonts"));
+            addDir(ret, new File("/usr/local/share/fonts"));
+            addDir(ret, new File(dataHome, "fonts"));
+            addDir(ret, new File(home, ".fonts"));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Adds directories named in fontconfig's configuration file
+     */
+    private static void addFontconfigDirs(File config, String home, String dataHome, List<File> dirs) {
+        if (!config.exists()) {
+            return;
+        }
+
+        try {
+            String text = new String(Files.readAllBytes(config.toPath()), "UTF-8");
+            Matcher matcher = FONTCONFIG_DIR.matcher(text);
+
+            while (matcher.find()) {
+                String prefix = matcher.group(2);
+                String path = matcher.group(3).trim();
+
+                if ("xdg".equals(prefix)) {
+                    addDir(dirs, new File(dataHome, path));
+                } else if (path.startsWith("~")) {
+                    addDir(dirs, new File(home + path.substring(1)));
+                } else if (new File(path).isAbsolute()) {
+                    addDir(dirs, new File(path));
+                }
+            }
+        } catch (IOException e) {
+            // default directories still searched
+        }
+    }
+
+    private static void addDir(List<File> dirs, File dir) {
+        if (!dirs.contains(dir)) {
+            dirs.add(dir);
+        }
+    }
+
+    /**
+     * Indexed font file
+     */
+    private static class Entry {
+        final long modified;
+        final long length;
+        final String fontName;
+
+        Entry(long modified, long length, String fontName) {
+            this.modified = modified;
+            this.length = length;
+            this.fontName = fontName;
+        }
+
+        boolean matches(File file) {
+            return file.lastModified() == modified && file.length() == length;
+        }
+    }
+}
@@ -20,14 +20,9 @@
 
 package PolyGlot;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
@@ -39,6 +34,7 @@ public class GenderCollection extends DictionaryCollection{
     public GenderCollection(DictCore _core){
         bufferNode = new GenderNode();
         core = _core;
+        indexNames();
     }
     
     @Override
@@ -56,27 +52,7 @@ public class GenderCollection extends DictionaryCollection{
      * the gender's appearance in conwords
      */
     public void deleteNodeById(Integer _id) throws Exception {
-        Iterator<ConWord> it;
-        ConWord genderWord = new ConWord();
-        GenderNode delGender = getNodeById(_id);
-
-        genderWord.setGender(delGender.getValue());
-        genderWord.setValue("");
-        genderWord.setDefinition("");
-        genderWord.setWordType("");
-        genderWord.setLocalWord("");
-        genderWord.setPronunciation("");
-
-        it = core.getWordCollection().filteredList(genderWord);
-
-        while (it.hasNext()) {
-            ConWord modWord = it.next();
-
-            modWord.setGender("");
-
-            core.getWordCollection().modifyNode(modWord.getId(), modWord);
-        }
-        
+        core.getWordCollection().replaceGender(getNodeById(_id).getValue(), "");
         super.deleteNodeById(_id);
     }
     
@@ -87,23 +63,7 @@ public class GenderCollection extends DictionaryCollection{
      * @return found gender node, null otherwise
      */
     public GenderNode findGenderByName(String _name) {
-        GenderNode ret = null;
-
-        if (!_name.equals("")) {
-            Iterator<Entry<Integer, GenderNode>> it = nodeMap.entrySet().iterator();
-            Entry<Integer, GenderNode> curEntry;
-
-            while (it.hasNext()) {
-                curEntry = it.next();
-
-                if (curEntry.getValue().getValue().equals(_name)) {
-                    ret = curEntry.getValue();
-                    break;
-                }
-            }
-        }
-
-        return ret;
+        return (GenderNode) findNodeByName(_name);
     }
     
      /**
@@ -155,29 +115,13 @@ public class GenderCollection extends DictionaryCollection{
      * @return 
      */
     public Iterator<GenderNode> getNodeIterator() {
-        List<GenderNode> retList = new ArrayList<GenderNode>(nodeMap.values());
-
-        Collections.sort(retList);
+        List<GenderNode> retList = copySortedNodes(GenderNode.class);
 
         return retList.iterator();
     }
     
     boolean nodeExists(String findType) {
-        boolean ret = false;        
-        Iterator<Map.Entry<Integer, GenderNode>> searchList = nodeMap.entrySet()
-                .iterator();
-        
-        while (searchList.hasNext()) {
-            Map.Entry<Integer, GenderNode> curEntry = searchList.next();
-            GenderNode curType = curEntry.getValue();
-            
-            if (curType.getValue().equals(findType)) {
-                ret = true;
-                break;
-            }
-        }
-        
-        return ret;
+        return findNodeByName(findType) != null;
     }
     
     @Override
@@ -189,58 +133,27 @@ public class GenderCollection extends DictionaryCollection{
      * @throws Exception
      */
     public void modifyNode(Integer id, DictNode modGender) throws Exception {
-        Iterator<ConWord> it;
-        ConWord genderWord = new ConWord();
-
-        genderWord.setGender(getNodeById(id).getValue());
-        genderWord.setValue("");
-        genderWord.setDefinition("");
-        genderWord.setWordType("");
-        genderWord.setLocalWord("");
-        genderWord.setPronunciation("");
-
-        it = core.getWordCollection().filteredList(genderWord);
-
-        while (it.hasNext()) {
-            ConWord modWord = it.next();
-
-            modWord.setGender(modGender.getValue());
-
-            core.getWordCollection().modifyNode(modWord.getId(), modWord);
-        }
-
+        core.getWordCollection().replaceGender(getNodeById(id).getValue(), modGender.getValue());
         super.modifyNode(id, modGender);
     }
     
     /**
-     * Writes all gender information to XML document
-     * @param doc Document to write to
-     * @param rootElement root element of document
+     * Writes all gender information to XML stream
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public void writeXML(Document doc, Element rootElement) {
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
         Iterator<GenderNode> genderLoop = getNodeIterator();
-        Element wordNode;
-        Element wordValue;
 
         // record all genders
         while (genderLoop.hasNext()) {
             GenderNode curGen = genderLoop.next();
 
-            wordNode = doc.createElement(XMLIDs.genderXID);
-            rootElement.appendChild(wordNode);
-
-            wordValue = doc.createElement(XMLIDs.genderIdXID);
-            Integer wordId = curGen.getId();
-            wordValue.appendChild(doc.createTextNode(wordId.toString()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.genderNameXID);
-            wordValue.appendChild(doc.createTextNode(curGen.getValue()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.genderNotesXID);
-            wordValue.appendChild(doc.createTextNode(curGen.getNotes()));
-            wordNode.appendChild(wordValue);
+            writer.startElement(XMLIDs.genderXID);
+            writer.textElement(XMLIDs.genderIdXID, curGen.getId().toString());
+            writer.textElement(XMLIDs.genderNameXID, curGen.getValue());
+            writer.textElement(XMLIDs.genderNotesXID, curGen.getNotes());
+            writer.endElement();
         }
     }
 }
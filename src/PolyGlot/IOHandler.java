@@ -21,27 +21,21 @@ package PolyGlot;
 
 import java.awt.Font;
 import java.awt.FontFormatException;
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.apache.poi.util.IOUtils;
-import org.w3c.dom.Document;
+import javax.xml.stream.XMLStreamException;
+import org.xml.sax.SAXException;
 
 /**
  * This class handles file IO for PolyGlot
@@ -50,82 +44,115 @@ import org.w3c.dom.Document;
  */
 public class IOHandler {
 
+    // embedded fonts by CRC and size, least recently used dropped first
+    private static final int EMBEDDED_FONT_LIMIT = 16;
+    private static final Map<String, Font> embeddedFonts
+            = new LinkedHashMap<String, Font>(EMBEDDED_FONT_LIMIT, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Font> eldest) {
+                    return size() > EMBEDDED_FONT_LIMIT;
+                }
+            };
+
     /**
-     * Gets the dictionary File from the filename of the pgd, whether it's raw
-     * XML or an archive
+     * Gets font from save file if possible, null otherwise. The font is read
+     * straight from the archive, and fonts already read are shared by
+     * content: a font embedded in many files is only loaded once.
      *
-     * @param _filename the filename of the actual file
-     * @return the File object of the dictionary
+     * @param _path The path of the PGD file
+     * @return a Font object if the PGD file is both a zip archive and contains
+     * a font
      * @throws java.io.IOException
+     * @throws java.awt.FontFormatException
      */
-    public static InputStream getDictFile(String _filename) throws IOException {
-        InputStream rawFile = new FileInputStream(_filename);
-
-        if (isFileZipArchive(_filename)) {
-            ZipFile zipFile = new ZipFile(_filename);
-
-            ZipEntry xmlEntry = zipFile.getEntry(XMLIDs.dictFileName);
+    public static Font getFontFrom(String _path) throws IOException, FontFormatException {
+        DictArchive archive = DictArchive.open(_path);
 
-            return zipFile.getInputStream(xmlEntry);
+        try {
+            return getFontFrom(archive);
+        } finally {
+            archive.close();
         }
-
-        return rawFile;
     }
 
     /**
-     * Gets font from save file if possible, null otherwise
+     * Gets font from open save file if possible, null otherwise
      *
-     * @param _path The path of the PGD file
+     * @param archive the PGD file
      * @return a Font object if the PGD file is both a zip archive and contains
      * a font
      * @throws java.io.IOException
      * @throws java.awt.FontFormatException
      */
-    public static Font getFontFrom(String _path) throws IOException, FontFormatException {
-        Font ret = null;
-
-        if (isFileZipArchive(_path)) {
-            ZipFile zipFile = new ZipFile(_path);
+    public static Font getFontFrom(DictArchive archive) throws IOException, FontFormatException {
+        if (!archive.hasEntry(XMLIDs.fontFileName)) {
+            return null;
+        }
 
-            ZipEntry fontEntry = zipFile.getEntry(XMLIDs.fontFileName);
+        return getEmbeddedFont(archive);
+    }
 
-            if (fontEntry != null) {
-                final File tempFile = File.createTempFile("stream2file", ".tmp");
-                tempFile.deleteOnExit();
+    /**
+     * Loads embedded font, or fetches it from the font cache if a font with
+     * the same CRC and size has been loaded before
+     */
+    private static Font getEmbeddedFont(DictArchive archive) throws IOException, FontFormatException {
+        String key = Long.toHexString(archive.getEntryCrc(XMLIDs.fontFileName))
+                + ":" + archive.getEntrySize(XMLIDs.fontFileName);
 
-                FileOutputStream out = new FileOutputStream(tempFile);
-                IOUtils.copy(zipFile.getInputStream(fontEntry), out);
+        synchronized (embeddedFonts) {
+            Font cached = embeddedFonts.get(key);
 
-                ret = Font.createFont(Font.TRUETYPE_FONT, tempFile);
+            if (cached != null) {
+                return cached;
             }
         }
 
+        InputStream in = archive.getEntryStream(XMLIDs.fontFileName);
+        Font ret;
+
+        try {
+            ret = Font.createFont(Font.TRUETYPE_FONT, in);
+        } finally {
+            in.close();
+        }
+
+        synchronized (embeddedFonts) {
+            embeddedFonts.put(key, ret);
+        }
+
         return ret;
     }
 
     /**
-     * Tests whether or not a file is a zip archive
+     * Saves dictionary to file, streaming its XML straight into the archive.
+     * The file is written to a temporary location and verified before
+     * replacing the destination.
      *
-     * @param _fileName the file to test
-     * @return true is passed file is a zip archive
-     * @throws java.io.FileNotFoundException
+     * @param _fileName file to write to
+     * @param core dictionary to write
+     * @throws IOException on failure to write or verify file
+     * @throws XMLStreamException on failure to serialize dictionary
      */
-    public static boolean isFileZipArchive(String _fileName) throws FileNotFoundException, IOException {
-        File file = new File(_fileName);
-
-        // ignore directories and files too small to possibly be archives
-        if (file.isDirectory()
-                || file.length() < 4) {
-            return false;
-        }
-
-        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
-        int test = in.readInt();
-        in.close();
-        return test == 0x504b0304;
+    public static void writeFile(String _fileName, DictCore core) throws IOException, XMLStreamException {
+        writeFile(_fileName, core, false);
     }
 
-    public static void writeFile(String _fileName, Document doc, DictCore core) throws IOException, TransformerException {
+    /**
+     * Saves dictionary to file, streaming its XML straight into the archive.
+     * The file is written to a temporary location and verified before
+     * replacing the destination.
+     *
+     * @param _fileName file to write to
+     * @param core dictionary to write
+     * @param deepVerify if true, verify by loading the written file into a
+     * new DictCore; otherwise check archive integrity and compare a digest of
+     * the XML read back against what was written
+     * @throws IOException on failure to write or verify file
+     * @throws XMLStreamException on failure to serialize dictionary
+     */
+    public static void writeFile(String _fileName, DictCore core, boolean deepVerify)
+            throws IOException, XMLStreamException {
         final String tempFileName = "xxTEMPPGTFILExx";
         String directoryPath;
 
@@ -133,53 +160,37 @@ public class IOHandler {
 
         directoryPath = finalFile.getParentFile().getAbsolutePath();
 
-        TransformerFactory transformerFactory = TransformerFactory
-                .newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        StringWriter writer = new StringWriter();
-        transformer.transform(new DOMSource(doc), new StreamResult(writer));
-
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(writer.getBuffer().toString());
-
         // save file to temp location initially.
         final File f = new File(directoryPath, tempFileName);
-        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(f), Charset.forName("ISO-8859-1"));
-        ZipEntry e = new ZipEntry(XMLIDs.dictFileName);
-        out.putNextEntry(e);
-
-        byte[] data = sb.toString().getBytes("UTF-8");
-        out.write(data, 0, data.length);
-
-        out.closeEntry();
-
-        // embed font in PGD archive if applicable
-        File fontFile = IOHandler.getFontFile(core.getLangFont());
-
-        if (fontFile != null) {
-            byte[] buffer = new byte[1024];
-            FileInputStream fis = new FileInputStream(fontFile);
-            out.putNextEntry(new ZipEntry(XMLIDs.fontFileName));
-            int length;
+        final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(f)),
+                Charset.forName("ISO-8859-1"));
 
-            while ((length = fis.read(buffer)) > 0) {
-                out.write(buffer, 0, length);
-            }
+        XMLDigest written;
 
-            out.closeEntry();
-            fis.close();
+        try {
+            written = writeArchive(out, core);
+        } catch (IOException e) {
+            out.close();
+            f.delete();
+            throw e;
+        } catch (XMLStreamException e) {
+            out.close();
+            f.delete();
+            throw e;
         }
 
-        out.finish();
         out.close();
 
-        // attempt to open file in dummy core. On success, copy file to end
-        // destination, on fail, delete file, and inform user by bubbling error
+        // verify file (deep verification opens it in dummy core). On success,
+        // copy file to end destination, on fail, delete file, and inform user
+        // by bubbling error
         try {
-            DictCore test = new DictCore();
-            test.readFile(f.getAbsolutePath());
-
+            if (deepVerify) {
+                DictCore test = new DictCore();
+                test.readFile(f.getAbsolutePath(), false);
+            } else {
+                verifyArchive(f, written);
+            }
         } catch (Exception ex) {
             f.delete();
 
@@ -196,100 +207,112 @@ public class IOHandler {
     }
 
     /**
-     * gets the file of the current conlang font from the user's system
+     * Writes dictionary XML, then conlang font if any, to archive
      *
-     * @param font the font to find a file for
-     * @return the font's file if found, null otherwise
+     * @param out archive to write to (finished, but not closed)
+     * @param core dictionary to write
+     * @return digest of written XML
+     * @throws IOException on write failure
+     * @throws XMLStreamException on failure to serialize dictionary
      */
-    public static File getFontFile(Font font) {
-        File ret = null;
+    private static XMLDigest writeArchive(ZipOutputStream out, DictCore core) throws IOException, XMLStreamException {
+        out.putNextEntry(new ZipEntry(XMLIDs.dictFileName));
 
-        if (font == null) {
-            return ret;
-        }
+        // XML is written in small pieces; buffer them into large deflater writes
+        BufferedOutputStream xmlOut = new BufferedOutputStream(out, 65536);
+        DictXMLWriter writer = new DictXMLWriter(xmlOut);
+        core.writeXML(writer);
+        writer.close();
+        xmlOut.flush();
 
-        if (System.getProperty("os.name").startsWith("Mac")) {
-            ret = IOHandler.getFontFromLocation("/Library/Fonts/", font);
+        out.closeEntry();
 
-            if (ret == null) {
-                ret = IOHandler.getFontFromLocation("/System/Library/Fonts/", font);
-            }
+        // embed font in PGD archive if applicable
+        File fontFile = IOHandler.getFontFile(core.getLangFont());
+
+        if (fontFile != null) {
+            byte[] buffer = new byte[1024];
+            FileInputStream fis = new FileInputStream(fontFile);
+            out.putNextEntry(new ZipEntry(XMLIDs.fontFileName));
+            int length;
 
-            if (ret == null) {
-                ret = IOHandler.getFontFromLocation(System.getProperty("user.home")
-                        + "/Library/Fonts/", font);
+            while ((length = fis.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
             }
-        } else if (System.getProperty("os.name").startsWith("Windows")) {
-            ret = getFontFromLocation(System.getenv("WINDIR") + "\\Fonts", font);
-        } else {
-            // TODO: figure out how to make this work in Linux, maybe?
+
+            out.closeEntry();
+            fis.close();
         }
 
-        // TODO: Inform user if font cannot be found (mostly a mac issue...)
-        return ret;
+        out.finish();
+
+        return writer.getDigest();
     }
 
     /**
-     * Returns a font's file based on the font and a path
+     * Checks a saved archive without loading it: the central directory must
+     * be readable, every entry must inflate to its recorded CRC, and the
+     * dictionary XML must be well formed with the same digest per section as
+     * was written
      *
-     * @param path path to check for a font
-     * @param font font to check for
-     * @return the font's file, null otherwise
+     * @param file archive to check
+     * @param written digest of XML as written
+     * @throws IOException if archive is unreadable or does not match
+     * @throws SAXException if dictionary XML is not well formed
      */
-    private static File getFontFromLocation(String path, Font font) {
-        File folder = new File(path);
-        File[] listOfFiles = folder.listFiles();
-        File ret = null;
-
-        for (File listOfFile : listOfFiles) {
-            if (listOfFile.isFile()) {
-                File fontFile = loadFont(listOfFile.getPath(), font);
-
-                if (fontFile != null) {
-                    ret = fontFile;
-                    break;
+    private static void verifyArchive(File file, XMLDigest written) throws IOException, SAXException {
+        DictArchive archive = DictArchive.open(file.getPath());
+
+        try {
+            if (!archive.hasEntry(XMLIDs.dictFileName)) {
+                throw new IOException("Saved file contains no dictionary.");
+            }
+
+            byte[] buffer = new byte[8192];
+
+            for (String name : archive.getEntryNames()) {
+                InputStream in = archive.getEntryStream(name);
+
+                try {
+                    if (name.equals(XMLIDs.dictFileName)) {
+                        // the parser may close its input before the end is checked
+                        XMLDigest read = XMLDigest.read(new FilterInputStream(in) {
+                            @Override
+                            public void close() {
+                            }
+                        });
+                        String difference = written.compare(read);
+
+                        if (!difference.equals("")) {
+                            throw new IOException("Saved file failed verification. " + difference);
+                        }
+                    }
+
+                    // entry CRC is checked once the entry is read to its end
+                    while (in.read(buffer) != -1) {
+                        // drain
+                    }
+                } finally {
+                    in.close();
                 }
             }
+        } finally {
+            archive.close();
         }
-
-        return ret;
     }
 
     /**
-     * compares testfont to loaded file. returns file if it represents the font
+     * gets the file of the current conlang font from the user's system
      *
-     * @param path full path of file to test
-     * @param testFont font to test against
-     * @return file if path leads to passed font, null otherwise
+     * @param font the font to find a file for
+     * @return the font's file if found, null otherwise
      */
-    private static File loadFont(String path, Font testFont) {
-        File fontFile = new File(path);
-        File ret = null;
-
-        // unrecgnized types won't be loaded
-        if (path.toLowerCase().endsWith(".ttf")
-                || path.toLowerCase().endsWith(".otf")
-                || path.toLowerCase().endsWith(".ttc")
-                || path.toLowerCase().endsWith(".ttc")
-                || path.toLowerCase().endsWith(".dfont")) {
-            try {
-                Font f = Font.createFont(Font.TRUETYPE_FONT, fontFile);
-
-                // if names match, set ret to return file
-                if (f.getName().equals(testFont.getName())
-                        || f.getName().equals(testFont.getName() + " Regular")) {
-                    ret = fontFile;
-                }
-
-            } catch (FontFormatException e) {
-                // null detected and message bubbled to user elsewhere
-                ret = null;
-            } catch (IOException e) {
-                // null detected and message bubbled to user elsewhere
-                ret = null;
-            }
+    public static File getFontFile(Font font) {
+        if (font == null) {
+            return null;
         }
 
-        return ret;
+        // TODO: Inform user if font cannot be found (mostly a mac issue...)
+        return FontIndex.getInstance().getFontFile(font.getName());
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recalculation of all non overridden word pronunciations in three steps:
+ * creation takes a snapshot of the words and pronunciation guide, compute()
+ * works out pronunciations in parallel (safe to run off the event thread, as
+ * it touches only the snapshot), and apply() writes the results back to the
+ * lexicon in one pass.
+ *
+ * @author draque
+ */
+public class ProcRecalculation {
+
+    // number of words below which a fork join task works rather than splits
+    private static final int CHUNK_SIZE = 256;
+
+    private final ConWordCollection wordCollection;
+    private final PronunciationMatcher matcher;
+    private final int[] ids;
+    private final String[] values;
+    private final String[] results;
+    private boolean complete = false;
+
+    /**
+     * Snapshots words and guide for recalculation
+     * @param _wordCollection words to recalculate pronunciations of
+     * @param _matcher compiled pronunciation guide
+     */
+    public ProcRecalculation(ConWordCollection _wordCollection, PronunciationMatcher _matcher) {
+        int count = 0;
+
+        wordCollection = _wordCollection;
+        matcher = _matcher;
+        ids = new int[wordCollection.getNodeCount()];
+        values = new String[ids.length];
+
+        Iterator<ConWord> it = wordCollection.getNodeIterator();
+
+        while (it.hasNext()) {
+            ConWord curWord = it.next();
+
+            // only runs if word's pronunciation not overridden
+            if (!curWord.isProcOverride()) {
+                ids[count] = curWord.getId();
+                values[count] = curWord.getValue();
+                count++;
+            }
+        }
+
+        results = new String[count];
+    }
+
+    /**
+     * @return number of words to be recalculated
+     */
+    public int getWordCount() {
+        return results.length;
+    }
+
+    /**
+     * Calculates pronunciations of all words in snapshot, across all
+     * available processors
+     * @param monitor monitor to report progress to and check for cancellation
+     * (may be null)
+     * @return true if completed, false if cancelled
+     */
+    public boolean compute(TaskMonitor monitor) {
+        TaskMonitor taskMonitor = monitor == null ? new TaskMonitor() : monitor;
+        ForkJoinPool pool = new ForkJoinPool();
+
+        taskMonitor.setTotal(results.length);
+
+        try {
+            pool.invoke(new RecalcTask(0, results.length, taskMonitor));
+        } finally {
+            pool.shutdown();
+        }
+
+        complete = !taskMonitor.isCancelled();
+
+        return complete;
+    }
+
+    /**
+     * Sets calculated pronunciations on words. Words changed or overridden
+     * since the snapshot was taken are left alone. Must be called from the
+     * same thread as any other changes to the lexicon.
+     * @throws Exception if calculation was not completed
+     */
+    public void apply() throws Exception {
+        if (!complete) {
+            throw new Exception("Pronunciation recalculation incomplete or cancelled.");
+        }
+
+        wordCollection.applyPronunciations(ids, values, results);
+    }
+
+    /**
+     * Calculates pronunciations of a range of the snapshot, splitting in two
+     * while range is large
+     */
+    private class RecalcTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int start;
+        private final int end;
+        private final TaskMonitor monitor;
+
+        public RecalcTask(int _start, int _end, TaskMonitor _monitor) {
+            start = _start;
+            end = _end;
+            monitor = _monitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (monitor.isCancelled()) {
+                return;
+            }
+
+            if (end - start > CHUNK_SIZE) {
+                int middle = (start + end) >>> 1;
+
+                invokeAll(new RecalcTask(start, middle, monitor),
+                        new RecalcTask(middle, end, monitor));
+            } else {
+                for (int i = start; i < end; i++) {
+                    results[i] = matcher.getPronunciation(values[i]);
+                }
+
+                monitor.worked(end - start);
+            }
+        }
+    }
+}
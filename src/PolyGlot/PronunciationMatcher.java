@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pronunciation guide compiled for matching words against. Guide entries are
+ * tried in order at each position of a word, the first entry which leads to
+ * a full match of the word winning. Plain text guides are held in a trie,
+ * regex guides as precompiled patterns. Results for each position of a word
+ * are remembered, so no position is ever matched twice.
+ *
+ * Instances are immutable once built, and may be shared between threads.
+ *
+ * @author draque
+ */
+public class PronunciationMatcher {
+
+    private static final int UNKNOWN = -2;
+    private static final int FAILED = -1;
+
+    private final PronunciationNode[] nodes;
+    private final String[] values;
+    private final String[] pronunciations;
+    private final boolean regexDisabled;
+    private final boolean ignoreCase;
+
+    // plain text matching
+    private final String[] compareValues;
+    private final TrieNode trie;
+    private final boolean trieUsable;
+
+    // regex matching: compiled pattern, or error to throw once pattern is reached
+    private final Pattern[] patterns;
+    private final PatternSyntaxException[] patternErrors;
+    // patterns without trailing .* (null for starting patterns) to match only
+    // as far as needed, usable where the word has no line breaks for . to miss
+    private final Pattern[] prefixPatterns;
+    private final boolean[] startingPatterns;
+    // patterns free of regex syntax, compared directly as text
+    private final boolean[] literalPatterns;
+    // matchers are reused from word to word, one set per thread
+    private final ThreadLocal<Matcher[]> threadMatchers;
+
+    /**
+     * Compiles pronunciation guide
+     * @param guide guide entries in order of priority
+     * @param _regexDisabled true to match guide values as plain text
+     * @param _ignoreCase true to ignore case in plain text matching
+     */
+    public PronunciationMatcher(List<PronunciationNode> guide, boolean _regexDisabled, boolean _ignoreCase) {
+        int size = guide.size();
+
+        nodes = guide.toArray(new PronunciationNode[size]);
+        values = new String[size];
+        pronunciations = new String[size];
+        regexDisabled = _regexDisabled;
+        ignoreCase = _ignoreCase;
+
+        for (int i = 0; i < size; i++) {
+            values[i] = nodes[i].getValue();
+            pronunciations[i] = nodes[i].getPronunciation();
+        }
+
+        if (regexDisabled) {
+            boolean sameLengths = true;
+            compareValues = new String[size];
+            trie = new TrieNode();
+
+            for (int i = 0; i < size; i++) {
+                compareValues[i] = ignoreCase ? values[i].toLowerCase() : values[i];
+                sameLengths = sameLengths && compareValues[i].length() == values[i].length();
+                trie.add(compareValues[i], i);
+            }
+
+            trieUsable = sameLengths;
+
+            patterns = null;
+            patternErrors = null;
+            prefixPatterns = null;
+            startingPatterns = null;
+            literalPatterns = null;
+            threadMatchers = null;
+        } else {
+            compareValues = null;
+            trie = null;
+            trieUsable = false;
+            patterns = new Pattern[size];
+            patternErrors = new PatternSyntaxException[size];
+            prefixPatterns = new Pattern[size];
+            startingPatterns = new boolean[size];
+            literalPatterns = new boolean[size];
+            threadMatchers = new ThreadLocal<Matcher[]>() {
+                @Override
+                protected Matcher[] initialValue() {
+                    return new Matcher[nodes.length * 2];
+                }
+            };
+
+            for (int i = 0; i < size; i++) {
+                String pattern = values[i];
+                startingPatterns[i] = pattern.startsWith("^");
+                literalPatterns[i] = isLiteral(pattern);
+
+                // make starting pattern if not already, and have it return the character group
+                if (!startingPatterns[i]) {
+                    pattern = "^(" + pattern + ").*";
+                }
+
+                try {
+                    patterns[i] = Pattern.compile(pattern);
+
+                    if (!startingPatterns[i]) {
+                        prefixPatterns[i] = Pattern.compile("^(" + values[i] + ")");
+                    }
+                } catch (PatternSyntaxException e) {
+                    if (patterns[i] == null) {
+                        patternErrors[i] = e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests whether this matcher was compiled from the guide as it currently
+     * stands, including any changes made to guide entries in place
+     * @param guide current guide entries
+     * @param _regexDisabled current regex setting
+     * @param _ignoreCase current ignore case setting
+     * @return true if matcher is still valid for guide
+     */
+    public boolean isCurrent(List<PronunciationNode> guide, boolean _regexDisabled, boolean _ignoreCase) {
+        if (regexDisabled != _regexDisabled || guide.size() != nodes.length
+                || (regexDisabled && ignoreCase != _ignoreCase)) {
+            return false;
+        }
+
+        for (int i = 0; i < nodes.length; i++) {
+            PronunciationNode curNode = guide.get(i);
+
+            if (curNode != nodes[i]
+                    || !curNode.getValue().equals(values[i])
+                    || !curNode.getPronunciation().equals(pronunciations[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns pronunciation of a given word
+     * @param base word to find pronunciation of
+     * @return pronunciation string. If no perfect match found, empty string
+     */
+    public String getPronunciation(String base) {
+        StringBuilder ret = new StringBuilder();
+
+        for (int index : match(base, true)) {
+            ret.append(pronunciations[index]).append(" ");
+        }
+
+        return ret.toString();
+    }
+
+    /**
+     * Returns guide entries making up pronunciation of a given word
+     * @param base word to find pronunciation objects of
+     * @param isFirst false if base is not the start of a word (starting patterns skipped)
+     * @return pronunciation object list. If no perfect match found, empty
+     */
+    public List<PronunciationNode> getPronunciationElements(String base, boolean isFirst) {
+        List<PronunciationNode> ret = new ArrayList<PronunciationNode>();
+
+        for (int index : match(base, isFirst)) {
+            ret.add(nodes[index]);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Matches word against guide
+     * @param base word to match
+     * @param isFirst false if base is not the start of a word
+     * @return indices of guide entries matching word, empty if no full match
+     */
+    private int[] match(String base, boolean isFirst) {
+        int length = base.length();
+
+        if (length == 0 || nodes.length == 0) {
+            return new int[0];
+        }
+
+        // choice[p] = guide entry chosen at position p, next[p] = following position
+        int[] choice = new int[length];
+        int[] next = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            choice[i] = UNKNOWN;
+        }
+
+        if (regexDisabled) {
+            String compare = base;
+            boolean useTrie = trieUsable;
+
+            if (ignoreCase) {
+                compare = base.toLowerCase();
+
+                // lowercasing changing lengths or dependant on context means
+                // substrings must be lowercased individually, as they always have been
+                useTrie = useTrie && compare.length() == length && base.indexOf('\u03A3') == -1;
+            }
+
+            matchText(base, compare, useTrie, 0, choice, next);
+        } else {
+            boolean lineBreaks = false;
+
+            for (int i = 0; i < length && !lineBreaks; i++) {
+                char c = base.charAt(i);
+                lineBreaks = c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+            }
+
+            Matcher[] matchers = threadMatchers.get();
+            Matcher[] wordMatchers = new Matcher[nodes.length];
+            int offset = lineBreaks ? 0 : nodes.length;
+
+            // first half of cached matchers are for full patterns, second for prefixes
+            for (int i = 0; i < nodes.length; i++) {
+                wordMatchers[i] = matchers[offset + i];
+
+                if (wordMatchers[i] != null) {
+                    wordMatchers[i].reset(base);
+                }
+            }
+
+            matchRegex(base, isFirst ? 0 : -1, 0, !lineBreaks, choice, next, wordMatchers);
+
+            for (int i = 0; i < nodes.length; i++) {
+                matchers[offset + i] = wordMatchers[i];
+            }
+        }
+
+        int count = 0;
+
+        for (int pos = 0; pos < length && choice[pos] >= 0; pos = next[pos]) {
+            count++;
+        }
+
+        int[] ret = new int[count];
+
+        for (int i = 0, pos = 0; i < count; i++) {
+            ret[i] = choice[pos];
+            pos = next[pos];
+        }
+
+        return ret;
+    }
+
+    /**
+     * Finds first guide entry at position which leads to a full match
+     * @return true if remainder of word from position is fully matched
+     */
+    private boolean matchText(String base, String compare, boolean useTrie, int pos, int[] choice, int[] next) {
+        int length = base.length();
+
+        if (pos == length) {
+            return true;
+        }
+        if (choice[pos] != UNKNOWN) {
+            return choice[pos] != FAILED;
+        }
+
+        choice[pos] = FAILED;
+
+        if (useTrie) {
+            // every guide value matching at this position, tried in guide order
+            List<int[]> found = new ArrayList<int[]>();
+            TrieNode curTrie = trie;
+
+            for (int i = pos; i < length && curTrie != null; i++) {
+                curTrie = curTrie.children.get(compare.charAt(i));
+
+                if (curTrie != null && curTrie.index != -1) {
+                    found.add(new int[]{curTrie.index, i + 1});
+                }
+            }
+
+            while (!found.isEmpty()) {
+                int best = 0;
+
+                for (int i = 1; i < found.size(); i++) {
+                    if (found.get(i)[0] < found.get(best)[0]) {
+                        best = i;
+                    }
+                }
+
+                int[] candidate = found.remove(best);
+
+                if (matchText(base, compare, useTrie, candidate[1], choice, next)) {
+                    choice[pos] = candidate[0];
+                    next[pos] = candidate[1];
+                    break;
+                }
+            }
+        } else {
+            for (int i = 0; i < nodes.length; i++) {
+                int end = pos + values[i].length();
+
+                // do not overstep string, and never match nothing
+                if (end > length || end == pos) {
+                    continue;
+                }
+
+                String comp = base.substring(pos, end);
+
+                if (ignoreCase) {
+                    comp = comp.toLowerCase();
+                }
+
+                if (comp.equals(compareValues[i])
+                        && matchText(base, compare, useTrie, end, choice, next)) {
+                    choice[pos] = i;
+                    next[pos] = end;
+                    break;
+                }
+            }
+        }
+
+        return choice[pos] != FAILED;
+    }
+
+    /**
+     * Finds first guide pattern at position which leads to a full match
+     * @param start position of start of word (-1 if base is not the start)
+     * @param usePrefix true if patterns may be matched without trailing .*
+     * @return true if remainder of word from position is fully matched
+     */
+    private boolean matchRegex(String base, int start, int pos, boolean usePrefix,
+            int[] choice, int[] next, Matcher[] matchers) {
+        int length = base.length();
+
+        if (pos == length) {
+            return true;
+        }
+        if (choice[pos] != UNKNOWN) {
+            return choice[pos] != FAILED;
+        }
+
+        choice[pos] = FAILED;
+
+        for (int i = 0; i < nodes.length; i++) {
+            // skip if set as starting characters, but later in word
+            if (startingPatterns[i] && pos != start) {
+                continue;
+            }
+
+            if (patternErrors[i] != null) {
+                throw patternErrors[i];
+            }
+
+            boolean prefix = usePrefix && prefixPatterns[i] != null;
+
+            if (prefix && literalPatterns[i]) {
+                int end = pos + values[i].length();
+
+                if (end > pos && base.startsWith(values[i], pos)
+                        && matchRegex(base, start, end, usePrefix, choice, next, matchers)) {
+                    choice[pos] = i;
+                    next[pos] = end;
+                    break;
+                }
+
+                continue;
+            }
+
+            if (matchers[i] == null) {
+                matchers[i] = prefix ? prefixPatterns[i].matcher(base) : patterns[i].matcher(base);
+            }
+
+            // region bounds are opaque and anchoring: same as matching substring
+            Matcher matcher = matchers[i].region(pos, length);
+
+            if (prefix ? !matcher.lookingAt() : !matcher.matches()) {
+                continue;
+            }
+
+            String leadingChars = matcher.group(1);
+
+            // a pattern matching nothing never advances
+            if (leadingChars == null || leadingChars.length() == 0) {
+                continue;
+            }
+
+            int end = pos + leadingChars.length();
+
+            if (matchRegex(base, start, end, usePrefix, choice, next, matchers)) {
+                choice[pos] = i;
+                next[pos] = end;
+                break;
+            }
+        }
+
+        return choice[pos] != FAILED;
+    }
+
+    /**
+     * Tests whether a pattern contains no regex syntax, matching only itself
+     * @param pattern pattern to test
+     * @return true if pattern is plain text
+     */
+    private static boolean isLiteral(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("\\^$.|?*+()[]{}".indexOf(pattern.charAt(i)) != -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Node of plain text guide trie. Index is the first guide entry ending at
+     * this node, -1 if none.
+     */
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<Character, TrieNode>();
+        private int index = -1;
+
+        public void add(String value, int _index) {
+            TrieNode curNode = this;
+
+            for (int i = 0; i < value.length(); i++) {
+                TrieNode child = curNode.children.get(value.charAt(i));
+
+                if (child == null) {
+                    child = new TrieNode();
+                    curNode.children.put(value.charAt(i), child);
+                }
+
+                curNode = child;
+            }
+
+            // empty values are never matched
+            if (curNode != this && curNode.index == -1) {
+                curNode.index = _index;
+            }
+        }
+    }
+}
@@ -22,10 +22,7 @@ package PolyGlot;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
@@ -40,6 +37,7 @@ public class PronunciationMgr {
     }
 
     private List<PronunciationNode> pronunciations = new ArrayList<PronunciationNode>();
+    private PronunciationMatcher matcher = null;
 
     /**
      * Sets list of pronunciations
@@ -159,15 +157,7 @@ public class PronunciationMgr {
      * returned
      */
     public String getPronunciation(String base) {
-        String ret = "";
-
-        Iterator<PronunciationNode> procCycle = getPronunciationElements(base, true).iterator();
-        while (procCycle.hasNext()) {
-            PronunciationNode curProc = procCycle.next();
-            ret += curProc.getPronunciation() + " ";
-        }
-
-        return ret;
+        return getMatcher().getPronunciation(base);
     }
 
     /**
@@ -179,99 +169,42 @@ public class PronunciationMgr {
      * string returned
      */
     public List<PronunciationNode> getPronunciationElements(String base, boolean isFirst) {
-        List<PronunciationNode> ret = new ArrayList<PronunciationNode>();
-        Iterator<PronunciationNode> finder = getPronunciations();
-
-        // return blank for empty string
-        if (base.length() == 0 || !finder.hasNext()) {
-            return ret;
-        }
-
-        while (finder.hasNext()) {
-            PronunciationNode curNode = finder.next();
-            String pattern = curNode.getValue();
-
-            // split logic here to use either string comparison or regex matching
-            if (core.getPropertiesManager().isDisableProcRegex()) {
-                // do not overstep string
-                if (pattern.length() > base.length()) {
-                    continue;
-                }
-
-                // capture string to compare based on pattern length
-                String comp = base.substring(0, curNode.getValue().length());
-                
-                if (core.getPropertiesManager().isIgnoreCase()) {
-                    comp = comp.toLowerCase();
-                    pattern = pattern.toLowerCase();
-                }
-                
-                if (comp.equals(pattern)) {
-                    List<PronunciationNode> temp
-                            = getPronunciationElements(base.substring(pattern.length(), base.length()), false);
-
-                    // if lengths are equal, success! return. If unequal and no further match found-failure
-                    if (pattern.length() == base.length() || !temp.isEmpty()) {
-                        ret.add(curNode);
-                        ret.addAll(temp);
-                        break;
-                    }
-                }
-            } else {
-                // skip if set as starting characters, but later in word
-                if (pattern.startsWith("^") && !isFirst) {
-                    continue;
-                }
-
-                // make starting pattern if not already, and have it return the character group
-                if (!pattern.startsWith("^")) {
-                    pattern = "^(" + pattern + ").*";
-                }
-
-                Pattern findString = Pattern.compile(pattern);
-                Matcher matcher = findString.matcher(base);
+        return getMatcher().getPronunciationElements(base, isFirst);
+    }
 
-                if (matcher.matches()) {
-                    String leadingChars = matcher.group(1);
-                    List<PronunciationNode> temp
-                            = getPronunciationElements(base.substring(leadingChars.length(), base.length()), false);
+    /**
+     * Gets pronunciation guide compiled for matching, recompiling only if the
+     * guide or its matching settings have changed since last compiled. The
+     * returned matcher is unaffected by later changes to the guide.
+     *
+     * @return compiled pronunciation guide
+     */
+    public PronunciationMatcher getMatcher() {
+        boolean regexDisabled = core.getPropertiesManager().isDisableProcRegex();
+        boolean ignoreCase = core.getPropertiesManager().isIgnoreCase();
 
-                    // if lengths are equal, success! return. If unequal and no further match found-failure
-                    if (leadingChars.length() == base.length() || !temp.isEmpty()) {
-                        ret.add(curNode);
-                        ret.addAll(temp);
-                        break;
-                    }
-                }
-            }
+        if (matcher == null || !matcher.isCurrent(pronunciations, regexDisabled, ignoreCase)) {
+            matcher = new PronunciationMatcher(pronunciations, regexDisabled, ignoreCase);
         }
 
-        return ret;
+        return matcher;
     }
     
     /**
-     * Writes all pronunciation information to XML document
-     * @param doc Document to write to
-     * @param rootElement root element of document
+     * Writes all pronunciation information to XML stream
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public void writeXML(Document doc, Element rootElement) {
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
         Iterator<PronunciationNode> procGuide = getPronunciations();
-        Element wordNode;
-        Element wordValue;
         
         while (procGuide.hasNext()) {
             PronunciationNode curNode = procGuide.next();
 
-            wordNode = doc.createElement(XMLIDs.proGuideXID);
-            rootElement.appendChild(wordNode);
-
-            wordValue = doc.createElement(XMLIDs.proGuideBaseXID);
-            wordValue.appendChild(doc.createTextNode(curNode.getValue()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.proGuidePhonXID);
-            wordValue.appendChild(doc.createTextNode(curNode.getPronunciation()));
-            wordNode.appendChild(wordValue);
+            writer.startElement(XMLIDs.proGuideXID);
+            writer.textElement(XMLIDs.proGuideBaseXID, curNode.getValue());
+            writer.textElement(XMLIDs.proGuidePhonXID, curNode.getPronunciation());
+            writer.endElement();
         }
     }
 }
@@ -23,8 +23,7 @@ package PolyGlot;
 import java.awt.Font;
 import java.util.HashMap;
 import java.util.Map;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
@@ -164,6 +163,8 @@ public class PropertiesManager {
         for (int i = 0; i < order.length(); i++) {
             alphaOrder.put(order.charAt(i), i);
         }
+        
+        DictNode.alphaOrderChanged();
     }
 
     /**
@@ -252,72 +253,46 @@ public class PropertiesManager {
     }
     
     /**
-     * Writes all dictionary properties to XML document
-     * @param doc Document to write dictionary properties to
-     * @param rootElement root element of document
+     * Writes all dictionary properties to XML stream
+     * @param writer XML stream to write dictionary properties to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public void writeXML(Document doc, Element rootElement) {
-        Element wordValue;
-        
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
         // store font for Conlang words
-        wordValue = doc.createElement(XMLIDs.fontConXID);
         Font curFont = getFontCon();
-        wordValue.appendChild(doc.createTextNode(curFont == null ? "" : curFont.getName()));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.fontConXID, curFont == null ? "" : curFont.getName());
 
         // store font style
-        wordValue = doc.createElement(XMLIDs.langPropFontStyleXID);
-        wordValue.appendChild(doc.createTextNode(getFontStyle().toString()));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropFontStyleXID, getFontStyle().toString());
 
         // store font for Local words
-        wordValue = doc.createElement(XMLIDs.langPropFontSizeXID);
-        wordValue.appendChild(doc.createTextNode(getFontSize().toString()));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropFontSizeXID, getFontSize().toString());
 
         // store name for conlang
-        wordValue = doc.createElement(XMLIDs.langPropLangNameXID);
-        wordValue.appendChild(doc.createTextNode(getLangName()));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropLangNameXID, getLangName());
 
         // store alpha order for conlang
-        wordValue = doc.createElement(XMLIDs.langPropAlphaOrderXID);
-        wordValue.appendChild(doc.createTextNode(getAlphaPlainText()));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropAlphaOrderXID, getAlphaPlainText());
 
         // store option to autopopulate pronunciations
-        wordValue = doc.createElement(XMLIDs.proAutoPopXID);
-        wordValue.appendChild(doc.createTextNode(isProAutoPop() ? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.proAutoPopXID, isProAutoPop() ? "T" : "F");
 
         // store option for mandatory Types
-        wordValue = doc.createElement(XMLIDs.langPropTypeMandatoryXID);
-        wordValue.appendChild(doc.createTextNode(isTypesMandatory() ? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropTypeMandatoryXID, isTypesMandatory() ? "T" : "F");
 
         // store option for mandatory Local word
-        wordValue = doc.createElement(XMLIDs.langPropLocalMandatoryXID);
-        wordValue.appendChild(doc.createTextNode(isLocalMandatory() ? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropLocalMandatoryXID, isLocalMandatory() ? "T" : "F");
 
         // store option for unique local word
-        wordValue = doc.createElement(XMLIDs.langPropLocalUniquenessXID);
-        wordValue.appendChild(doc.createTextNode(isLocalUniqueness() ? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropLocalUniquenessXID, isLocalUniqueness() ? "T" : "F");
 
         // store option for unique conwords
-        wordValue = doc.createElement(XMLIDs.langPropWordUniquenessXID);
-        wordValue.appendChild(doc.createTextNode(isWordUniqueness() ? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropWordUniquenessXID, isWordUniqueness() ? "T" : "F");
         
         // store option for ignoring case
-        wordValue = doc.createElement(XMLIDs.langPropIgnoreCase);
-        wordValue.appendChild(doc.createTextNode(isIgnoreCase() ? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropIgnoreCase, isIgnoreCase() ? "T" : "F");
         
         // store option for disabling regex or pronunciations
-        wordValue = doc.createElement(XMLIDs.langPropDisableProcRegex);
-        wordValue.appendChild(doc.createTextNode(isDisableProcRegex()? "T" : "F"));
-        rootElement.appendChild(wordValue);
+        writer.textElement(XMLIDs.langPropDisableProcRegex, isDisableProcRegex() ? "T" : "F");
     }
 }
@@ -47,8 +47,10 @@ import javax.swing.JOptionPane;
 import javax.swing.JScrollBar;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
+import javax.swing.ProgressMonitor;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
@@ -58,8 +60,7 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
 import javax.swing.text.DefaultEditorKit;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
+import javax.xml.stream.XMLStreamException;
 import org.simplericity.macify.eawt.*;
 
 /**
@@ -395,6 +396,7 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
         mnuFile = new javax.swing.JMenu();
         mnuSave = new javax.swing.JMenuItem();
         mnuSaveAs = new javax.swing.JMenuItem();
+        mnuSaveFull = new javax.swing.JMenuItem();
         mnuOpen = new javax.swing.JMenuItem();
         mnuNew = new javax.swing.JMenuItem();
         jSeparator2 = new javax.swing.JPopupMenu.Separator();
@@ -404,6 +406,7 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
         jSeparator1 = new javax.swing.JPopupMenu.Separator();
         mnuImportExcel = new javax.swing.JMenuItem();
         mnuExcelExport = new javax.swing.JMenuItem();
+        mnuGenerateDeclensions = new javax.swing.JMenuItem();
         jSeparator4 = new javax.swing.JPopupMenu.Separator();
         mnuThesaurus = new javax.swing.JMenuItem();
         mnuTranslation = new javax.swing.JMenuItem();
@@ -1390,6 +1393,15 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
         });
         mnuFile.add(mnuSaveAs);
 
+        mnuSaveFull.setText("Save Full");
+        mnuSaveFull.setToolTipText("Save your current dictionary in full, compacting its journal of changes into the file");
+        mnuSaveFull.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuSaveFullActionPerformed(evt);
+            }
+        });
+        mnuFile.add(mnuSaveFull);
+
         mnuOpen.setText("Open");
         mnuOpen.setToolTipText("Open a PolyGlot dictionary");
         mnuOpen.addActionListener(new java.awt.event.ActionListener() {
@@ -1449,6 +1461,15 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
             }
         });
         mnuTools.add(mnuExcelExport);
+
+        mnuGenerateDeclensions.setText("Generate All Declensions");
+        mnuGenerateDeclensions.setToolTipText("Generates declensions of all words which do not have the autodeclension override set");
+        mnuGenerateDeclensions.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuGenerateDeclensionsActionPerformed(evt);
+            }
+        });
+        mnuTools.add(mnuGenerateDeclensions);
         mnuTools.add(jSeparator4);
 
         mnuThesaurus.setText("Thesaurus");
@@ -1542,10 +1563,16 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
 
     private void mnuSaveAsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuSaveAsActionPerformed
         if (saveFileAs()) {
-            saveFile();
+            doWrite(curFileName, true);
         }
     }//GEN-LAST:event_mnuSaveAsActionPerformed
 
+    private void mnuSaveFullActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuSaveFullActionPerformed
+        if (!curFileName.equals("") || saveFileAs()) {
+            doWrite(curFileName, true);
+        }
+    }//GEN-LAST:event_mnuSaveFullActionPerformed
+
     private void mnuNewActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuNewActionPerformed
         newFile();
     }//GEN-LAST:event_mnuNewActionPerformed
@@ -1714,6 +1741,10 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
         recalcAllProcs();
     }//GEN-LAST:event_btnRecalcProcActionPerformed
 
+    private void mnuGenerateDeclensionsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuGenerateDeclensionsActionPerformed
+        generateAllDeclensions();
+    }//GEN-LAST:event_mnuGenerateDeclensionsActionPerformed
+
     private void btnConjDeclActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnConjDeclActionPerformed
         viewDeclensionSetup((Integer) scrToCoreTypes.get(lstTypesList.getSelectedIndex()));
     }//GEN-LAST:event_btnConjDeclActionPerformed
@@ -1749,7 +1780,7 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
     @Override
     public void dispose() {
         // only exit if save/cancel test is passed
-        if (!saveOrCancelTest()) {
+        if (!closeFile()) {
             return;
         }
 
@@ -1833,15 +1864,157 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
         return ret;
     }
 
+    /**
+     * Recalculates pronunciations in the background, with progress shown and
+     * the option to cancel. Results are only applied if run to completion.
+     */
     private void recalcAllProcs() {
+        final ScrDictInterface parent = this;
+        final ProcRecalculation recalc = core.prepareProcRecalc();
+
+        runWithProgress("Recalculating pronunciations...", recalc.getWordCount(), new BackgroundTask() {
+            @Override
+            public boolean compute(TaskMonitor monitor) {
+                return recalc.compute(monitor);
+            }
+        }, new BackgroundCompletion() {
+            @Override
+            public void completed(boolean finished) throws Exception {
+                if (finished) {
+                    recalc.apply();
+                    InfoBox.info("Success", "Pronunciation recalculation successfully completed.", parent);
+                } else {
+                    InfoBox.info("Cancelled", "Pronunciation recalculation cancelled. No pronunciations changed.", parent);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                InfoBox.error("Recauculation Error", "Unable to recalculate pronunciations: "
+                        + e.getLocalizedMessage(), parent);
+            }
+        });
+    }
+
+    /**
+     * Generates declensions of all words in the background, with progress
+     * shown and the option to cancel. Results are only applied if run to
+     * completion.
+     */
+    private void generateAllDeclensions() {
+        final ScrDictInterface parent = this;
+        final DeclensionGeneration generation;
+
         try {
-            core.recalcAllProcs();
+            generation = core.prepareDeclensionGeneration();
         } catch (Exception e) {
-            InfoBox.error("Recauculation Error", "Unable to recalculate pronunciations: "
-                    + e.getLocalizedMessage(), this);
+            InfoBox.error("Declension Generation Error", "Unable to generate declensions: "
+                    + e.getLocalizedMessage(), parent);
+            return;
         }
 
-        InfoBox.info("Success", "Pronunciation recalculation successfully completed.", this);
+        runWithProgress("Generating declensions...", generation.getWordCount(), new BackgroundTask() {
+            @Override
+            public boolean compute(TaskMonitor monitor) {
+                return generation.compute(monitor);
+            }
+        }, new BackgroundCompletion() {
+            @Override
+            public void completed(boolean finished) throws Exception {
+                if (finished) {
+                    int wordCount = generation.apply();
+                    InfoBox.info("Success", "Declensions generated for " + wordCount + " words.", parent);
+                } else {
+                    InfoBox.info("Cancelled", "Declension generation cancelled. No declensions changed.", parent);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                InfoBox.error("Declension Generation Error", "Unable to generate declensions: "
+                        + e.getLocalizedMessage(), parent);
+            }
+        });
+    }
+
+    /**
+     * Runs task in the background, with a progress monitor polled for
+     * cancellation, and passes its result to completion once it ends
+     *
+     * @param title title of progress monitor
+     * @param total number of units of work in task
+     * @param task task to run off the event dispatch thread
+     * @param completion called on the event dispatch thread when task ends
+     */
+    private void runWithProgress(String title, int total, final BackgroundTask task,
+            final BackgroundCompletion completion) {
+        final TaskMonitor monitor = new TaskMonitor();
+        final ProgressMonitor progress = new ProgressMonitor(this, title, null, 0, total);
+
+        // polls background progress, passing on any cancellation
+        final Timer progressTimer = new Timer(200, new java.awt.event.ActionListener() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                if (progress.isCanceled()) {
+                    monitor.cancel();
+                }
+
+                progress.setProgress(monitor.getDone());
+            }
+        });
+
+        final SwingWorker<Boolean, Object> worker = new SwingWorker<Boolean, Object>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return task.compute(monitor);
+            }
+
+            //Runs on the event-dispatching thread.
+            @Override
+            protected void done() {
+                progressTimer.stop();
+                progress.close();
+
+                try {
+                    completion.completed(get());
+                } catch (Exception e) {
+                    completion.failed(e);
+                }
+            }
+        };
+
+        progressTimer.start();
+        worker.execute();
+    }
+
+    /**
+     * Work run in the background by runWithProgress
+     */
+    private interface BackgroundTask {
+
+        /**
+         * @param monitor monitor to report progress to and check for cancellation
+         * @return true if run to completion, false if cancelled
+         * @throws Exception on failure
+         */
+        boolean compute(TaskMonitor monitor) throws Exception;
+    }
+
+    /**
+     * Receives the result of work run in the background by runWithProgress
+     */
+    private interface BackgroundCompletion {
+
+        /**
+         * @param finished true if task ran to completion, false if cancelled
+         * @throws Exception on failure to use the result
+         */
+        void completed(boolean finished) throws Exception;
+
+        /**
+         * @param e failure of task, or of completed
+         */
+        void failed(Exception e);
     }
 
     private void addProcGuide() {
@@ -2516,8 +2689,38 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
         return true;
     }
 
-    private void newFile() {
+    /**
+     * Closes current dictionary, giving user option to save it first. Changes
+     * saved only to the journal of its file are then compacted into the
+     * file, so the file is complete on its own once closed.
+     *
+     * @return true to signal continue, false to signal stop
+     */
+    private boolean closeFile() {
         if (!saveOrCancelTest()) {
+            return false;
+        }
+
+        if (!curFileName.equals("") && core.needsCompacting(curFileName)) {
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+            try {
+                core.compactFile(curFileName);
+            } catch (Exception e) {
+                InfoBox.error("Compaction Error", "Unable to write " + curFileName
+                        + " in full. Saved changes remain in "
+                        + curFileName + DictJournal.EXTENSION
+                        + ", and are applied when it is next opened.\n\n" + e.getMessage(), this);
+            } finally {
+                setCursor(Cursor.getDefaultCursor());
+            }
+        }
+
+        return true;
+    }
+
+    private void newFile() {
+        if (!closeFile()) {
             return;
         }
 
@@ -2546,16 +2749,18 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
             saveFileAs();
         }
 
-        return doWrite(curFileName);
+        return doWrite(curFileName, false);
     }
 
     /**
      * sends the write command to the core in a new thread
      *
      * @param _fileName path to write to
+     * @param full whether to write the file in full, rather than appending
+     * changes to its journal where possible
      * @return returns success
      */
-    private boolean doWrite(final String _fileName) {
+    private boolean doWrite(final String _fileName, final boolean full) {
         final ScrDictInterface parent = this;
         boolean ret;
 
@@ -2571,10 +2776,12 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
             @Override
             protected Object doInBackground() throws Exception {
                 try {
-                    core.writeFile(_fileName);
-                } catch (ParserConfigurationException e) {
-                    parent.setSaveError("Unable to save to file: " + curFileName + "\n\n" + e.getMessage());
-                } catch (TransformerException e) {
+                    if (full) {
+                        core.writeFile(_fileName);
+                    } else {
+                        core.saveFile(_fileName);
+                    }
+                } catch (XMLStreamException e) {
                     parent.setSaveError("Unable to save to file: " + curFileName + "\n\n" + e.getMessage());
                 } catch (FileNotFoundException e) {
                     parent.setSaveError("Unable to write file: " + e.getMessage());
@@ -2617,7 +2824,7 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
 
     private void openFile() {
         // only open another if save/cancel test is passed
-        if (!saveOrCancelTest()) {
+        if (!closeFile()) {
             return;
         }
 
@@ -3687,6 +3894,7 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
     private javax.swing.JMenuItem mnuExcelExport;
     private javax.swing.JMenuItem mnuExit;
     private javax.swing.JMenu mnuFile;
+    private javax.swing.JMenuItem mnuGenerateDeclensions;
     private javax.swing.JMenu mnuHelp;
     private javax.swing.JMenuItem mnuImportExcel;
     private javax.swing.JMenuItem mnuLangStats;
@@ -3696,6 +3904,7 @@ public class ScrDictInterface extends PFrame implements ApplicationListener {
     private javax.swing.JMenuItem mnuQuickEntry;
     private javax.swing.JMenuItem mnuSave;
     private javax.swing.JMenuItem mnuSaveAs;
+    private javax.swing.JMenuItem mnuSaveFull;
     private javax.swing.JMenuItem mnuThesaurus;
     private javax.swing.JMenu mnuTools;
     private javax.swing.JMenuItem mnuTranslation;
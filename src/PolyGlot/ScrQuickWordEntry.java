@@ -21,6 +21,7 @@ package PolyGlot;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.util.Collections;
 import java.util.Iterator;
 
 /**
@@ -172,7 +173,7 @@ public class ScrQuickWordEntry extends PDialog {
             word.setGender(cmbGender.getSelectedItem().toString());
             word.setWordType(cmbType.getSelectedItem().toString());
             
-            core.addWord(word);
+            core.addWords(Collections.singletonList(word));
             blankWord();
             txtConWord.requestFocus();
         } catch (Exception e) {
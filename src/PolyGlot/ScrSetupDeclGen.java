@@ -88,7 +88,7 @@ public class ScrSetupDeclGen extends PDialog {
         
         for (DeclensionGenRule curRule : typeRules) {
             try {
-                "TESTVAL".replaceAll(curRule.getRegex(), "");
+                curRule.getRegexPattern();
             } catch (Exception e) {
                 userMessage += "\nProblem with word match regex in rule " + curRule.getName() + ": " + e.getMessage();
                 ret = false;
@@ -100,7 +100,7 @@ public class ScrSetupDeclGen extends PDialog {
                         throw new Exception ("Java regex does not regognize the regex pattern \"$&\"");
                     }
                     
-                    "TESTVAL".replaceAll(curTransform.regex, curTransform.replaceText);
+                    curTransform.getPattern().matcher("TESTVAL").replaceAll(curTransform.replaceText);
                 } catch (Exception e) {
                     userMessage += "\nProblem with transform in rule " + curRule.getName() 
                             + " transform " + curTransform.regex + ": " + e.getMessage();
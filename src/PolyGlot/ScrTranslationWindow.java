@@ -21,6 +21,8 @@
 package PolyGlot;
 
 import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -31,6 +33,7 @@ import java.util.Map.Entry;
 import javax.swing.DefaultListModel;
 import javax.swing.JOptionPane;
 import javax.swing.JTextField;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
@@ -39,6 +42,9 @@ import javax.swing.event.DocumentListener;
  * @author draque
  */
 public class ScrTranslationWindow extends PFrame {
+    // maximum number of suggestions displayed for any search
+    private static final int MAX_SUGGESTIONS = 200;
+    
     private final DictCore core;
     public final ScrDictInterface parent;
     private boolean curPopulating = false;
@@ -50,6 +56,14 @@ public class ScrTranslationWindow extends PFrame {
     private boolean curTranslating = false;
     private final List<PFrame> childFrames = new ArrayList<PFrame>();
     
+    // search is run once typing pauses; each keystroke cancels the pending search
+    private final Timer searchTimer = new Timer(150, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            populateMatchList();
+        }
+    });
+    
     // list of related indexes, the first being 
     List<Entry<Integer, Integer>> links = new ArrayList<Entry<Integer, Integer>>();
     
@@ -163,6 +177,7 @@ public class ScrTranslationWindow extends PFrame {
     
     @Override
     public void dispose() {
+        searchTimer.stop();
         killAllChildren();
         
         this.setVisible(false);
@@ -170,7 +185,7 @@ public class ScrTranslationWindow extends PFrame {
     }
         
     private void populateMatchList() {
-        List<ConWord> printMe = core.getSuggestedTransWords(txtSearchText.getText());
+        List<ConWord> printMe = core.getSuggestedTransWords(txtSearchText.getText(), MAX_SUGGESTIONS);
                 
         matchListModel.clear();
         
@@ -212,20 +227,22 @@ public class ScrTranslationWindow extends PFrame {
     }
     
     private void setupListeners() {
+        searchTimer.setRepeats(false);
+        
         txtSearchText.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void changedUpdate(DocumentEvent e) {
-                populateMatchList();
+                searchTimer.restart();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
-                populateMatchList();
+                searchTimer.restart();
             }
 
             @Override
             public void insertUpdate(DocumentEvent e) {
-                populateMatchList();
+                searchTimer.restart();
             }
         });
         
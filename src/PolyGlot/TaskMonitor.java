@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks progress of a long running task which may be worked on by several
+ * threads at once, and allows it to be cancelled from any thread.
+ *
+ * @author draque
+ */
+public class TaskMonitor {
+
+    private final AtomicInteger done = new AtomicInteger(0);
+    private volatile int total = 0;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param _total number of units of work in task
+     */
+    public void setTotal(int _total) {
+        total = _total;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Records units of work completed
+     * @param units number of units just completed
+     */
+    public void worked(int units) {
+        done.addAndGet(units);
+    }
+
+    /**
+     * @return number of units of work completed so far
+     */
+    public int getDone() {
+        return done.get();
+    }
+
+    /**
+     * Requests that task stop as soon as possible
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -22,8 +22,7 @@ package PolyGlot;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 
 /**
  * This is the manager class for dictionary thesaurus entries
@@ -50,6 +49,14 @@ public class ThesaurusManager {
         return thesRoot;
     }
     
+    /**
+     * Removes all thesaurus entries
+     */
+    void clear() {
+        thesRoot = null;
+        buffer = null;
+    }
+    
     /**
      * This deletes words from the word list that no longer exist in the lexicon
      * @param thes thesaurus entry to clean
@@ -103,45 +110,40 @@ public class ThesaurusManager {
     }
     
     /**
-     * returns Element containing all thesaurus data to be saved to XML
-     * @param doc the document this is to be inserted into
-     * @return an element containing all thesaurus data
+     * Writes thesaurus to XML stream
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public Element writeToSaveXML(Document doc) {
-        return writeToSaveXML(doc, thesRoot);
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
+        writeXML(writer, thesRoot);
     }
     
     /**
      * this is the recursive function that completes the work of its overridden method
-     * @param doc the document this is to be inserted into
-     * @param curNode node to build element for
-     * @return an element containing all thesaurus data
+     * @param writer XML stream to write to
+     * @param curNode node to write element for
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    private Element writeToSaveXML(Document doc, ThesNode curNode) {
-        Element curElement = doc.createElement(XMLIDs.thesNodeXID);
-        
+    private void writeXML(DictXMLWriter writer, ThesNode curNode) throws XMLStreamException {
         if (curNode == null) {
-            return curElement;
+            writer.textElement(XMLIDs.thesNodeXID, "");
+            return;
         }
 
+        writer.startElement(XMLIDs.thesNodeXID);
+
         // save name
-        Element property = doc.createElement(XMLIDs.thesNameXID);
-        property.appendChild(doc.createTextNode(curNode.getValue()));
-        curElement.appendChild(property);
+        writer.textElement(XMLIDs.thesNameXID, curNode.getValue());
         
         // save notes
-        property = doc.createElement(XMLIDs.thesNotesXID);
-        property.appendChild(doc.createTextNode(curNode.getNotes()));
-        curElement.appendChild(property);
+        writer.textElement(XMLIDs.thesNotesXID, curNode.getNotes());
         
         // save words
         Iterator<ConWord> wordIt = curNode.getWords();
         while (wordIt.hasNext()) {
             ConWord curWord = wordIt.next();
             
-            property = doc.createElement(XMLIDs.thesWordXID);
-            property.appendChild(doc.createTextNode(curWord.getId().toString()));
-            curElement.appendChild(property);
+            writer.textElement(XMLIDs.thesWordXID, curWord.getId().toString());
         }
         
         // save subnodes
@@ -149,9 +151,9 @@ public class ThesaurusManager {
         while (thesIt.hasNext()) {
             ThesNode curChild = thesIt.next();
             
-            curElement.appendChild(writeToSaveXML(doc, curChild));
+            writeXML(writer, curChild);
         }
         
-        return curElement;
+        writer.endElement();
     }
 }
@@ -20,14 +20,9 @@
 
 package PolyGlot;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLStreamException;
 
 /**
  *
@@ -48,6 +43,7 @@ public class TypeCollection extends DictionaryCollection {
     
     public TypeCollection() {
         bufferNode = new TypeNode();
+        indexNames();
     }
 
     /**
@@ -82,23 +78,7 @@ public class TypeCollection extends DictionaryCollection {
      * @return found type node, null otherwise
      */
     public TypeNode findTypeByName(String _name) {
-        TypeNode ret = null;
-
-        if (!_name.equals("")) {
-            Iterator<Entry<Integer, TypeNode>> it = nodeMap.entrySet().iterator();
-            Entry<Integer, TypeNode> curEntry;
-
-            while (it.hasNext()) {
-                curEntry = it.next();
-
-                if (curEntry.getValue().getValue().equals(_name)) {
-                    ret = curEntry.getValue();
-                    break;
-                }
-            }
-        }
-
-        return ret;
+        return (TypeNode) findNodeByName(_name);
     }
 
     /**
@@ -156,75 +136,35 @@ public class TypeCollection extends DictionaryCollection {
      * @return
      */
     public Iterator<TypeNode> getNodeIterator() {
-        List<TypeNode> retList = new ArrayList<TypeNode>(nodeMap.values());
-
-        Collections.sort(retList);
+        List<TypeNode> retList = copySortedNodes(TypeNode.class);
 
         return retList.iterator();
     }
 
     boolean nodeExists(String findType) {
-        boolean ret = false;
-        Iterator<Map.Entry<Integer, TypeNode>> searchList = nodeMap.entrySet()
-                .iterator();
-
-        while (searchList.hasNext()) {
-            Map.Entry<Integer, TypeNode> curEntry = searchList.next();
-            TypeNode curType = curEntry.getValue();
-
-            if (curType.getValue().equals(findType)) {
-                ret = true;
-                break;
-            }
-        }
-
-        return ret;
+        return findNodeByName(findType) != null;
     }
     
     /**
-     * Writes all type information to XML document
-     * @param doc Document to write to
-     * @param rootElement root element of document
+     * Writes all type information to XML stream
+     * @param writer XML stream to write to
+     * @throws javax.xml.stream.XMLStreamException on write failure
      */
-    public void writeXML(Document doc, Element rootElement) {
+    public void writeXML(DictXMLWriter writer) throws XMLStreamException {
         Iterator<TypeNode> typeLoop = getNodeIterator();
-        Element wordNode;
-        Element wordValue;
         
         while (typeLoop.hasNext()) {
             TypeNode curType = typeLoop.next();
 
-            wordNode = doc.createElement(XMLIDs.wordClassXID);
-            rootElement.appendChild(wordNode);
-
-            wordValue = doc.createElement(XMLIDs.wordClassIdXID);
-            Integer wordId = curType.getId();
-            wordValue.appendChild(doc.createTextNode(wordId.toString()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordClassNameXID);
-            wordValue.appendChild(doc.createTextNode(curType.getValue()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordClassNotesXID);
-            wordValue.appendChild(doc.createTextNode(curType.getNotes()));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordClassDefManXID);
-            wordValue.appendChild(doc.createTextNode(curType.isDefMandatory() ? "T" : "F"));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordClassGenderManXID);
-            wordValue.appendChild(doc.createTextNode(curType.isGenderMandatory() ? "T" : "F"));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordClassPlurManXID);
-            wordValue.appendChild(doc.createTextNode(curType.isPluralMandatory() ? "T" : "F"));
-            wordNode.appendChild(wordValue);
-
-            wordValue = doc.createElement(XMLIDs.wordClassProcManXID);
-            wordValue.appendChild(doc.createTextNode(curType.isProcMandatory() ? "T" : "F"));
-            wordNode.appendChild(wordValue);
+            writer.startElement(XMLIDs.wordClassXID);
+            writer.textElement(XMLIDs.wordClassIdXID, curType.getId().toString());
+            writer.textElement(XMLIDs.wordClassNameXID, curType.getValue());
+            writer.textElement(XMLIDs.wordClassNotesXID, curType.getNotes());
+            writer.textElement(XMLIDs.wordClassDefManXID, curType.isDefMandatory() ? "T" : "F");
+            writer.textElement(XMLIDs.wordClassGenderManXID, curType.isGenderMandatory() ? "T" : "F");
+            writer.textElement(XMLIDs.wordClassPlurManXID, curType.isPluralMandatory() ? "T" : "F");
+            writer.textElement(XMLIDs.wordClassProcManXID, curType.isProcMandatory() ? "T" : "F");
+            writer.endElement();
         }
     }
 }
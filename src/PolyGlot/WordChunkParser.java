@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Parses the words of a large dictionary's XML on all available processors.
+ * The word records are found by scanning the raw bytes (markup characters
+ * never appear unescaped in text) and split into chunks, each parsed by its
+ * own SAX parser into ConWord objects. The rest of the document is parsed as
+ * usual, with a placeholder element where the words were; on reaching it,
+ * the handler waits for the chunks and inserts their words in file order.
+ *
+ * Documents the byte scan can not safely split (non UTF-8 encoding,
+ * comments or CDATA, words not in one run, or pre 0.7.5 plurals, which are
+ * stored as declensions) are not split at all.
+ *
+ * @author draque
+ */
+public class WordChunkParser {
+
+    // XML below this length is not worth splitting
+    static final long MIN_LENGTH = 4 * 1024 * 1024;
+    static final int CHUNK_WORDS = 4096;
+    static final String PLACEHOLDER_XID = "parsedWords";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] WORD_START = bytes("<" + XMLIDs.wordXID + ">");
+    private static final byte[] WORD_END = bytes("</" + XMLIDs.wordXID + ">");
+    private static final byte[] PLURAL_START = bytes("<" + XMLIDs.wordPlurXID + ">");
+    private static final byte[] COMMENT_START = bytes("<!--");
+    private static final byte[] CDATA_START = bytes("<![CDATA[");
+    private static final byte[] CHUNK_ROOT_START = bytes("<" + XMLIDs.dictionaryXID + ">");
+    private static final byte[] CHUNK_ROOT_END = bytes("</" + XMLIDs.dictionaryXID + ">");
+    private static final byte[] PLACEHOLDER = bytes("<" + PLACEHOLDER_XID + "/>");
+
+    private final byte[] xml;
+    private final int wordsStart;
+    private final int wordsEnd;
+    private final int[] chunkStarts;
+    private final List<Future<List<ConWord>>> results = new ArrayList<Future<List<ConWord>>>();
+    private ForkJoinPool pool = null;
+
+    private WordChunkParser(byte[] _xml, int _wordsStart, int _wordsEnd, int[] _chunkStarts) {
+        xml = _xml;
+        wordsStart = _wordsStart;
+        wordsEnd = _wordsEnd;
+        chunkStarts = _chunkStarts;
+    }
+
+    /**
+     * @param length length of dictionary XML in bytes
+     * @return true if XML of this length is worth splitting on this machine
+     */
+    public static boolean isWorthSplitting(long length) {
+        return length >= MIN_LENGTH && length <= Integer.MAX_VALUE
+                && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Finds word records of dictionary XML and splits them into chunks
+     *
+     * @param xml whole dictionary XML
+     * @return parser of XML's words, null if XML can not be split
+     */
+    public static WordChunkParser split(byte[] xml) {
+        return split(xml, CHUNK_WORDS);
+    }
+
+    /**
+     * @param xml whole dictionary XML
+     * @param chunkWords number of words per chunk
+     * @return parser of XML's words, null if XML can not be split into at
+     * least two chunks
+     */
+    static WordChunkParser split(byte[] xml, int chunkWords) {
+        if (!isUtf8(xml) || indexOf(xml, COMMENT_START, 0) != -1
+                || indexOf(xml, CDATA_START, 0) != -1) {
+            return null;
+        }
+
+        int start = indexOf(xml, WORD_START, 0);
+
+        if (start == -1) {
+            return null;
+        }
+
+        List<Integer> chunkStarts = new ArrayList<Integer>();
+        int pos = start;
+        int count = 0;
+
+        // words are one run of records, separated by whitespace at most
+        while (startsWith(xml, WORD_START, pos)) {
+            if (count % chunkWords == 0) {
+                chunkStarts.add(pos);
+            }
+
+            int end = indexOf(xml, WORD_END, pos);
+
+            if (end == -1) {
+                return null;
+            }
+
+            pos = skipWhitespace(xml, end + WORD_END.length);
+            count++;
+        }
+
+        if (chunkStarts.size() < 2 || indexOf(xml, WORD_START, pos) != -1
+                || indexOf(xml, PLURAL_START, start, pos) != -1) {
+            return null;
+        }
+
+        int[] starts = new int[chunkStarts.size()];
+
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = chunkStarts.get(i);
+        }
+
+        return new WordChunkParser(xml, start, pos, starts);
+    }
+
+    /**
+     * @return number of chunks words are split into
+     */
+    public int getChunkCount() {
+        return chunkStarts.length;
+    }
+
+    /**
+     * Starts parsing all chunks in the background
+     */
+    public void start() {
+        pool = new ForkJoinPool();
+
+        for (int i = 0; i < chunkStarts.length; i++) {
+            final int chunkStart = chunkStarts[i];
+            final int chunkEnd = i + 1 < chunkStarts.length ? chunkStarts[i + 1] : wordsEnd;
+
+            results.add(pool.submit(new Callable<List<ConWord>>() {
+                @Override
+                public List<ConWord> call() throws Exception {
+                    return parseChunk(chunkStart, chunkEnd);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Stops background parsing, if not already finished
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return document with words replaced by placeholder element
+     */
+    public InputStream getRemainder() {
+        return concat(new ByteArrayInputStream(xml, 0, wordsStart),
+                new ByteArrayInputStream(PLACEHOLDER),
+                new ByteArrayInputStream(xml, wordsEnd, xml.length - wordsEnd));
+    }
+
+    /**
+     * Waits for all chunks to be parsed
+     *
+     * @return words of all chunks, in file order
+     * @throws SAXException if any chunk could not be parsed
+     */
+    public List<ConWord> getWords() throws SAXException {
+        List<ConWord> ret = new ArrayList<ConWord>();
+
+        try {
+            for (Future<List<ConWord>> result : results) {
+                ret.addAll(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SAXException) {
+                throw (SAXException) e.getCause();
+            }
+
+            throw new SAXException(e.getCause() instanceof Exception
+                    ? (Exception) e.getCause() : e);
+        }
+
+        return ret;
+    }
+
+    private List<ConWord> parseChunk(int start, int end) throws Exception {
+        List<ConWord> ret = new ArrayList<ConWord>();
+
+        SAXParserFactory.newInstance().newSAXParser().parse(
+                concat(new ByteArrayInputStream(CHUNK_ROOT_START),
+                        new ByteArrayInputStream(xml, start, end - start),
+                        new ByteArrayInputStream(CHUNK_ROOT_END)),
+                CustHandlerFactory.getWordChunkHandler(ret));
+
+        return ret;
+    }
+
+    private static InputStream concat(InputStream... streams) {
+        Vector<InputStream> all = new Vector<InputStream>();
+        Collections.addAll(all, streams);
+
+        return new SequenceInputStream(all.elements());
+    }
+
+    /**
+     * @return true if XML declares no encoding, or UTF-8
+     */
+    private static boolean isUtf8(byte[] xml) {
+        int declarationEnd = indexOf(xml, bytes("?>"), 0);
+
+        if (declarationEnd == -1 || declarationEnd > 200) {
+            return true;
+        }
+
+        String declaration = new String(xml, 0, declarationEnd, UTF8).toLowerCase();
+        int encoding = declaration.indexOf("encoding");
+
+        return encoding == -1 || declaration.indexOf("utf-8", encoding) != -1;
+    }
+
+    private static int skipWhitespace(byte[] xml, int pos) {
+        while (pos < xml.length && (xml[pos] == ' ' || xml[pos] == '\n'
+                || xml[pos] == '\r' || xml[pos] == '\t')) {
+            pos++;
+        }
+
+        return pos;
+    }
+
+    private static boolean startsWith(byte[] xml, byte[] pattern, int pos) {
+        if (pos + pattern.length > xml.length) {
+            return false;
+        }
+
+        for (int i = 0; i < pattern.length; i++) {
+            if (xml[pos + i] != pattern[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int indexOf(byte[] xml, byte[] pattern, int from) {
+        return indexOf(xml, pattern, from, xml.length);
+    }
+
+    /**
+     * @return position of first match starting in [from, to), -1 if none
+     */
+    private static int indexOf(byte[] xml, byte[] pattern, int from, int to) {
+        int last = Math.min(to, xml.length - pattern.length + 1);
+
+        for (int i = from; i < last; i++) {
+            if (xml[i] == pattern[0] && startsWith(xml, pattern, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(UTF8);
+    }
+}
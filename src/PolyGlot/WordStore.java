@@ -0,0 +1,913 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store of the words of a ConWordCollection. Each word takes a slot,
+ * and each of its values is kept in a column indexed by slot: ids as plain
+ * ints, value, local word and pronunciation as one record of length prefixed
+ * strings in a shared byte arena (a byte per character where all characters
+ * fit in Latin-1, two otherwise), definitions in a DefinitionArena off the
+ * heap, types and genders as the collection's shared names and overrides as
+ * bits. No object is kept per word.
+ *
+ * Words are handed out as ConWord views reading and writing through to their
+ * slot. At most one view per slot is kept (weakly, so views no longer used
+ * are dropped), so that fetching a word twice gives the same object. A view
+ * is detached, taking copies of its values with it, when its word is removed
+ * or replaced. Slots of removed words are reused, and space of replaced
+ * records is reclaimed by copying live records to a new arena once most of
+ * the arena is unused.
+ *
+ * @author draque
+ */
+final class WordStore {
+
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+    private static final long NO_DEFINITION = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_COMPACT_TEXT = 1 << 16;
+
+    // batches smaller than this are inserted into alphabetical order one by one
+    private static final int MIN_MERGE_BATCH = 16;
+
+    // columns by slot; free slots have id 0
+    private int[] ids = new int[MIN_CAPACITY];
+    private int[] textRefs = new int[MIN_CAPACITY];
+    private long[] definitionRefs = newDefinitionRefs(MIN_CAPACITY);
+    private SharedName[] types = new SharedName[MIN_CAPACITY];
+    private SharedName[] genders = new SharedName[MIN_CAPACITY];
+    private ViewRef[] views = new ViewRef[MIN_CAPACITY];
+    private final BitSet procOverrides = new BitSet();
+    private final BitSet declensionOverrides = new BitSet();
+    private int slotCount = 0;
+    private int[] freeSlots = new int[MIN_CAPACITY];
+    private int freeCount = 0;
+
+    // slot of each word plus one (0 where empty), open addressed by id
+    private int[] slotsById = new int[MIN_CAPACITY * 2];
+
+    // slots in alphabetical order
+    private int[] order = new int[MIN_CAPACITY];
+    private int size = 0;
+    private Map<Character, Integer> alphaOrder = Collections.emptyMap();
+    private int orderGeneration = DictNode.getAlphaOrderGeneration();
+
+    private byte[] text = new byte[MIN_CAPACITY * 16];
+    private int textLength = 0;
+    private int deadText = 0;
+    private DefinitionArena definitions = new DefinitionArena();
+
+    private final ReferenceQueue<ConWord> deadViews = new ReferenceQueue<ConWord>();
+
+    /**
+     * @return number of words stored
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param id id of word
+     * @return slot of word, -1 if none
+     */
+    int slotOf(int id) {
+        int mask = slotsById.length - 1;
+
+        for (int i = hash(id, mask); slotsById[i] != 0; i = (i + 1) & mask) {
+            if (ids[slotsById[i] - 1] == id) {
+                return slotsById[i] - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param index position in alphabetical order (0 based)
+     * @return slot of word at position
+     */
+    int getSlotAt(int index) {
+        ensureSorted();
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return order[index];
+    }
+
+    /**
+     * @return ids of all words, ascending
+     */
+    int[] getIds() {
+        int[] ret = new int[slotCount - freeCount];
+        int count = 0;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] != 0) {
+                ret[count++] = ids[slot];
+            }
+        }
+
+        Arrays.sort(ret);
+
+        return ret;
+    }
+
+    /**
+     * Gets the view of a word, the same object for as long as any holder
+     * keeps it
+     * @param slot slot of word
+     * @return view of word
+     */
+    ConWord getView(int slot) {
+        expungeViews();
+
+        ViewRef ref = views[slot];
+        ConWord ret = ref == null ? null : ref.get();
+
+        if (ret == null) {
+            ret = new ConWord();
+            ret.bind(this, slot);
+            ret.setAlphaOrder(alphaOrder);
+            views[slot] = new ViewRef(ret, slot, deadViews);
+        }
+
+        return ret;
+    }
+
+    /**
+     * @return views of all words in alphabetical order
+     */
+    List<ConWord> getViews() {
+        ensureSorted();
+
+        List<ConWord> ret = new ArrayList<ConWord>(size);
+
+        for (int i = 0; i < size; i++) {
+            ret.add(getView(order[i]));
+        }
+
+        return ret;
+    }
+
+    int getId(int slot) {
+        return ids[slot];
+    }
+
+    String getValue(int slot) {
+        return readString(textRefs[slot]);
+    }
+
+    void setValue(int slot, String value) {
+        setText(slot, value, getLocalWord(slot), getPronunciation(slot));
+    }
+
+    String getLocalWord(int slot) {
+        return readString(stringEnd(textRefs[slot]));
+    }
+
+    void setLocalWord(int slot, String localWord) {
+        setText(slot, getValue(slot), localWord, getPronunciation(slot));
+    }
+
+    String getPronunciation(int slot) {
+        return readString(stringEnd(stringEnd(textRefs[slot])));
+    }
+
+    void setPronunciation(int slot, String pronunciation) {
+        setText(slot, getValue(slot), getLocalWord(slot), pronunciation);
+    }
+
+    String getDefinition(int slot) {
+        long ref = definitionRefs[slot];
+
+        return ref == NO_DEFINITION ? "" : definitions.load(ref);
+    }
+
+    void setDefinition(int slot, String definition) {
+        releaseDefinition(slot);
+        definitionRefs[slot] = storeDefinition(definition);
+        compactDefinitions();
+    }
+
+    SharedName getWordTypeName(int slot) {
+        return types[slot];
+    }
+
+    void setWordTypeName(int slot, SharedName wordType) {
+        types[slot] = wordType;
+    }
+
+    SharedName getGenderName(int slot) {
+        return genders[slot];
+    }
+
+    void setGenderName(int slot, SharedName gender) {
+        genders[slot] = gender;
+    }
+
+    boolean isProcOverride(int slot) {
+        return procOverrides.get(slot);
+    }
+
+    void setProcOverride(int slot, boolean procOverride) {
+        procOverrides.set(slot, procOverride);
+    }
+
+    boolean isOverrideAutoDeclen(int slot) {
+        return declensionOverrides.get(slot);
+    }
+
+    void setOverrideAutoDeclen(int slot, boolean autoDeclensionOverride) {
+        declensionOverrides.set(slot, autoDeclensionOverride);
+    }
+
+    /**
+     * Sets alphabetical order of words, which are resorted on next access
+     * @param _alphaOrder alphabetical order
+     */
+    void setAlphaOrder(Map<Character, Integer> _alphaOrder) {
+        alphaOrder = _alphaOrder;
+        orderGeneration = -1;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            ConWord view = views[slot] == null ? null : views[slot].get();
+
+            if (view != null) {
+                view.setAlphaOrder(_alphaOrder);
+            }
+        }
+    }
+
+    /**
+     * Stores a word, which from then on is the view of its slot
+     * @param word word to store, with id set, not a view of any store
+     */
+    void insert(ConWord word) {
+        addSorted(fill(word));
+    }
+
+    /**
+     * Stores a batch of words, each from then on the view of its slot.
+     * Words are placed in alphabetical order as if stored one at a time.
+     * @param words words to store, with ids set, not views of any store
+     */
+    void insertAll(List<ConWord> words) {
+        int[] batch = new int[words.size()];
+
+        ensureSlots(slotCount + batch.length);
+
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = fill(words.get(i));
+        }
+
+        if (batch.length < MIN_MERGE_BATCH) {
+            for (int slot : batch) {
+                addSorted(slot);
+            }
+        } else {
+            mergeSorted(batch);
+        }
+
+        // drop spare capacity once the store has grown by a large share
+        if (batch.length * 4 >= size) {
+            trim();
+        }
+    }
+
+    /**
+     * Replaces the values of a stored word with those of another, which from
+     * then on is the view of the word's slot. The word's previous view, if
+     * any, is detached.
+     * @param slot slot of word
+     * @param word word holding new values, either the view of slot or a word
+     * not a view of any store
+     */
+    void replace(int slot, ConWord word) {
+        expungeViews();
+
+        ConWord view = views[slot] == null ? null : views[slot].get();
+
+        if (view != word) {
+            if (view != null) {
+                view.unbind();
+            }
+
+            // a view of this slot already holds its values in the slot
+            if (!word.isViewOf(this, slot)) {
+                deadText += recordLength(textRefs[slot]);
+                write(slot, word);
+                word.bind(this, slot);
+            }
+
+            views[slot] = new ViewRef(word, slot, deadViews);
+        }
+
+        removeSorted(slot);
+        addSorted(slot);
+        compactText();
+        compactDefinitions();
+    }
+
+    /**
+     * Removes a word, detaching its view, if any
+     * @param slot slot of word
+     */
+    void remove(int slot) {
+        expungeViews();
+
+        ConWord view = views[slot] == null ? null : views[slot].get();
+
+        if (view != null) {
+            view.unbind();
+        }
+
+        removeSorted(slot);
+        removeSlotOf(ids[slot]);
+        deadText += recordLength(textRefs[slot]);
+        releaseDefinition(slot);
+        ids[slot] = 0;
+        types[slot] = null;
+        genders[slot] = null;
+        views[slot] = null;
+        procOverrides.clear(slot);
+        declensionOverrides.clear(slot);
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+
+        freeSlots[freeCount++] = slot;
+        compactText();
+        compactDefinitions();
+    }
+
+    /**
+     * Detaches a view from its slot, leaving the word itself in place
+     * @param view view to detach
+     */
+    void detach(ConWord view) {
+        int slot = view.getSlot();
+
+        if (views[slot] != null && views[slot].get() == view) {
+            views[slot] = null;
+        }
+
+        view.unbind();
+    }
+
+    /**
+     * Removes all words, detaching their views
+     */
+    void clear() {
+        for (int slot = 0; slot < slotCount; slot++) {
+            ConWord view = views[slot] == null ? null : views[slot].get();
+
+            if (view != null) {
+                view.unbind();
+            }
+        }
+
+        ids = new int[MIN_CAPACITY];
+        textRefs = new int[MIN_CAPACITY];
+        definitionRefs = newDefinitionRefs(MIN_CAPACITY);
+        types = new SharedName[MIN_CAPACITY];
+        genders = new SharedName[MIN_CAPACITY];
+        views = new ViewRef[MIN_CAPACITY];
+        procOverrides.clear();
+        declensionOverrides.clear();
+        slotCount = 0;
+        freeCount = 0;
+        slotsById = new int[MIN_CAPACITY * 2];
+        order = new int[MIN_CAPACITY];
+        size = 0;
+        text = new byte[MIN_CAPACITY * 16];
+        textLength = 0;
+        deadText = 0;
+        definitions = new DefinitionArena();
+    }
+
+    /**
+     * Takes a free slot for a word and writes its values there, binding the
+     * word to the slot as its view. The slot is not yet placed in order.
+     */
+    private int fill(ConWord word) {
+        int slot;
+
+        expungeViews();
+
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            ensureSlots(slotCount + 1);
+            slot = slotCount++;
+        }
+
+        ids[slot] = word.getId();
+        write(slot, word);
+        addSlotOf(slot);
+        word.bind(this, slot);
+        views[slot] = new ViewRef(word, slot, deadViews);
+
+        return slot;
+    }
+
+    // word must not be a view of this store
+    private void write(int slot, ConWord word) {
+        textRefs[slot] = appendRecord(word.getValue(), word.getLocalWord(), word.getPronunciation());
+        releaseDefinition(slot);
+        definitionRefs[slot] = storeDefinition(word.getDefinition());
+        types[slot] = word.getWordTypeName();
+        genders[slot] = word.getGenderName();
+        procOverrides.set(slot, word.isProcOverride());
+        declensionOverrides.set(slot, word.isOverrideAutoDeclen());
+    }
+
+    private static long[] newDefinitionRefs(int capacity) {
+        long[] ret = new long[capacity];
+        Arrays.fill(ret, NO_DEFINITION);
+
+        return ret;
+    }
+
+    private void ensureSlots(int count) {
+        if (count <= ids.length) {
+            return;
+        }
+
+        resizeSlots(Math.max(count, ids.length * 2));
+    }
+
+    private void resizeSlots(int capacity) {
+        int oldCapacity = ids.length;
+
+        ids = Arrays.copyOf(ids, capacity);
+        textRefs = Arrays.copyOf(textRefs, capacity);
+        definitionRefs = Arrays.copyOf(definitionRefs, capacity);
+        types = Arrays.copyOf(types, capacity);
+        genders = Arrays.copyOf(genders, capacity);
+        views = Arrays.copyOf(views, capacity);
+
+        if (capacity > oldCapacity) {
+            Arrays.fill(definitionRefs, oldCapacity, capacity, NO_DEFINITION);
+        }
+    }
+
+    /**
+     * Drops spare capacity of columns, order and text arena
+     */
+    private void trim() {
+        int capacity = Math.max(slotCount, MIN_CAPACITY);
+
+        if (capacity < ids.length) {
+            resizeSlots(capacity);
+        }
+        if (Math.max(size, MIN_CAPACITY) < order.length) {
+            order = Arrays.copyOf(order, Math.max(size, MIN_CAPACITY));
+        }
+        if (textLength < text.length) {
+            text = Arrays.copyOf(text, Math.max(textLength, MIN_CAPACITY));
+        }
+    }
+
+    private static int hash(int id, int mask) {
+        int h = id * 0x9E3779B9;
+
+        return (h ^ h >>> 16) & mask;
+    }
+
+    private void addSlotOf(int slot) {
+        // rehashing takes in every stored word, this one included
+        if ((slotCount - freeCount) * 2 > slotsById.length) {
+            rehash(slotsById.length * 2);
+            return;
+        }
+
+        int mask = slotsById.length - 1;
+        int i = hash(ids[slot], mask);
+
+        while (slotsById[i] != 0) {
+            i = (i + 1) & mask;
+        }
+
+        slotsById[i] = slot + 1;
+    }
+
+    // removes entry by shifting later entries of its probe run back over it
+    private void removeSlotOf(int id) {
+        int mask = slotsById.length - 1;
+        int i = hash(id, mask);
+
+        while (ids[slotsById[i] - 1] != id) {
+            i = (i + 1) & mask;
+        }
+
+        for (int j = (i + 1) & mask; slotsById[j] != 0; j = (j + 1) & mask) {
+            int home = hash(ids[slotsById[j] - 1], mask);
+
+            // entry at j may move to i only if its home is not after i on its run
+            if (j > i ? (home <= i || home > j) : (home <= i && home > j)) {
+                slotsById[i] = slotsById[j];
+                i = j;
+            }
+        }
+
+        slotsById[i] = 0;
+    }
+
+    private void rehash(int capacity) {
+        slotsById = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] != 0) {
+                int i = hash(ids[slot], mask);
+
+                while (slotsById[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+
+                slotsById[i] = slot + 1;
+            }
+        }
+    }
+
+    private void expungeViews() {
+        for (Object ref = deadViews.poll(); ref != null; ref = deadViews.poll()) {
+            ViewRef view = (ViewRef) ref;
+
+            // slot may have been given a new view, or reused, since
+            if (view.slot < views.length && views[view.slot] == view) {
+                views[view.slot] = null;
+            }
+        }
+    }
+
+    /**
+     * Resorts all words if the alphabetical order has changed since they
+     * were last sorted
+     */
+    private void ensureSorted() {
+        int generation = DictNode.getAlphaOrderGeneration();
+
+        if (orderGeneration == generation) {
+            return;
+        }
+
+        Integer[] sorted = new Integer[size];
+        String[] values = new String[slotCount];
+        int[][] keys = new int[slotCount][];
+
+        for (int i = 0; i < size; i++) {
+            sorted[i] = order[i];
+            loadKey(order[i], values, keys);
+        }
+
+        // stable, so words of equal value keep their order
+        Arrays.sort(sorted, keyComparator(values, keys));
+
+        for (int i = 0; i < size; i++) {
+            order[i] = sorted[i];
+        }
+
+        orderGeneration = generation;
+    }
+
+    /**
+     * Inserts slot into alphabetical order after any words of equal value
+     */
+    private void addSorted(int slot) {
+        ensureSorted();
+
+        String value = getValue(slot);
+        int[] key = DictNode.buildSortKey(value, alphaOrder);
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            String midValue = getValue(order[mid]);
+
+            if (DictNode.compareValues(midValue, DictNode.buildSortKey(midValue, alphaOrder),
+                    value, key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        ensureOrder(size + 1);
+        System.arraycopy(order, low, order, low + 1, size - low);
+        order[low] = slot;
+        size++;
+    }
+
+    /**
+     * Merges slots into alphabetical order, each after any words of equal
+     * value already present, and in the order given among themselves
+     */
+    private void mergeSorted(int[] batch) {
+        ensureSorted();
+
+        String[] values = new String[slotCount];
+        int[][] keys = new int[slotCount][];
+        Integer[] sortedBatch = new Integer[batch.length];
+
+        for (int i = 0; i < batch.length; i++) {
+            sortedBatch[i] = batch[i];
+            loadKey(batch[i], values, keys);
+        }
+
+        Comparator<Integer> comparator = keyComparator(values, keys);
+        Arrays.sort(sortedBatch, comparator);
+        ensureOrder(size + batch.length);
+
+        // commonly the whole batch sorts after what is already there
+        if (size > 0) {
+            loadKey(order[size - 1], values, keys);
+        }
+        if (size == 0 || comparator.compare(order[size - 1], sortedBatch[0]) <= 0) {
+            for (Integer slot : sortedBatch) {
+                order[size++] = slot;
+            }
+
+            return;
+        }
+
+        int[] merged = new int[order.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < size && j < sortedBatch.length) {
+            loadKey(order[i], values, keys);
+
+            if (comparator.compare(order[i], sortedBatch[j]) <= 0) {
+                merged[count++] = order[i++];
+            } else {
+                merged[count++] = sortedBatch[j++];
+            }
+        }
+
+        while (i < size) {
+            merged[count++] = order[i++];
+        }
+        while (j < sortedBatch.length) {
+            merged[count++] = sortedBatch[j++];
+        }
+
+        order = merged;
+        size = count;
+    }
+
+    private void removeSorted(int slot) {
+        for (int i = 0; i < size; i++) {
+            if (order[i] == slot) {
+                System.arraycopy(order, i + 1, order, i, size - i - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    private void ensureOrder(int count) {
+        if (count > order.length) {
+            order = Arrays.copyOf(order, Math.max(count, order.length * 2));
+        }
+    }
+
+    private void loadKey(int slot, String[] values, int[][] keys) {
+        if (values[slot] == null) {
+            values[slot] = getValue(slot);
+            keys[slot] = DictNode.buildSortKey(values[slot], alphaOrder);
+        }
+    }
+
+    private static Comparator<Integer> keyComparator(final String[] values, final int[][] keys) {
+        return new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return DictNode.compareValues(values[o1], keys[o1], values[o2], keys[o2]);
+            }
+        };
+    }
+
+    private void setText(int slot, String value, String localWord, String pronunciation) {
+        deadText += recordLength(textRefs[slot]);
+        textRefs[slot] = appendRecord(value, localWord, pronunciation);
+        compactText();
+    }
+
+    /**
+     * Appends value, local word and pronunciation of a word to text arena
+     * @return position of record
+     */
+    private int appendRecord(String value, String localWord, String pronunciation) {
+        int ret = textLength;
+        long maxLength = 15L + 2L * (value.length() + localWord.length() + pronunciation.length());
+
+        if (textLength + maxLength > text.length) {
+            long capacity = Math.max(textLength + maxLength, text.length * 2L);
+
+            // arena positions are ints
+            if (capacity > Integer.MAX_VALUE - 8) {
+                capacity = textLength + maxLength;
+            }
+
+            text = Arrays.copyOf(text, (int) capacity);
+        }
+
+        putString(value);
+        putString(localWord);
+        putString(pronunciation);
+
+        return ret;
+    }
+
+    // header holds length and whether characters take two bytes (low bit)
+    private void putString(String value) {
+        int length = value.length();
+        boolean wide = false;
+
+        for (int i = 0; i < length && !wide; i++) {
+            wide = value.charAt(i) > 0xFF;
+        }
+
+        int header = length << 1 | (wide ? 1 : 0);
+
+        while (header > 0x7F) {
+            text[textLength++] = (byte) (header & 0x7F | 0x80);
+            header >>>= 7;
+        }
+
+        text[textLength++] = (byte) header;
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (wide) {
+                text[textLength++] = (byte) (c >>> 8);
+            }
+
+            text[textLength++] = (byte) c;
+        }
+    }
+
+    private int readHeader(int pos) {
+        int ret = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = text[pos++];
+            ret |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return ret;
+    }
+
+    private static int headerSize(int header) {
+        int ret = 1;
+
+        while (header > 0x7F) {
+            header >>>= 7;
+            ret++;
+        }
+
+        return ret;
+    }
+
+    private int stringEnd(int pos) {
+        int header = readHeader(pos);
+
+        return pos + headerSize(header) + ((header >>> 1) << (header & 1));
+    }
+
+    private String readString(int pos) {
+        int header = readHeader(pos);
+        int start = pos + headerSize(header);
+        int length = header >>> 1;
+
+        if (length == 0) {
+            return "";
+        }
+        if ((header & 1) == 0) {
+            return new String(text, start, length, LATIN1);
+        }
+
+        char[] chars = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ((text[start + i * 2] & 0xFF) << 8 | (text[start + i * 2 + 1] & 0xFF));
+        }
+
+        return new String(chars);
+    }
+
+    private int recordLength(int ref) {
+        return stringEnd(stringEnd(stringEnd(ref))) - ref;
+    }
+
+    /**
+     * Copies live records to a new arena, once most of the current one is
+     * taken by records since replaced or removed
+     */
+    private void compactText() {
+        if (deadText < MIN_COMPACT_TEXT || deadText * 2 < textLength) {
+            return;
+        }
+
+        byte[] packed = new byte[Math.max(textLength - deadText, MIN_CAPACITY)];
+        int length = 0;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] != 0) {
+                int recordLength = recordLength(textRefs[slot]);
+
+                System.arraycopy(text, textRefs[slot], packed, length, recordLength);
+                textRefs[slot] = length;
+                length += recordLength;
+            }
+        }
+
+        text = packed;
+        textLength = length;
+        deadText = 0;
+    }
+
+    private long storeDefinition(String definition) {
+        return definition.equals("") ? NO_DEFINITION : definitions.store(definition);
+    }
+
+    private void releaseDefinition(int slot) {
+        if (definitionRefs[slot] != NO_DEFINITION) {
+            definitions.release(definitionRefs[slot]);
+            definitionRefs[slot] = NO_DEFINITION;
+        }
+    }
+
+    /**
+     * Copies definitions of all words to a new arena, once enough definitions
+     * have been replaced or removed that the current one is mostly unused
+     */
+    private void compactDefinitions() {
+        if (!definitions.needsCompaction()) {
+            return;
+        }
+
+        DefinitionArena arena = new DefinitionArena();
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (ids[slot] != 0 && definitionRefs[slot] != NO_DEFINITION) {
+                definitionRefs[slot] = arena.store(definitions.load(definitionRefs[slot]));
+            }
+        }
+
+        definitions = arena;
+    }
+
+    /**
+     * Weak reference to the view of a slot
+     */
+    private static final class ViewRef extends WeakReference<ConWord> {
+
+        private final int slot;
+
+        public ViewRef(ConWord view, int _slot, ReferenceQueue<ConWord> queue) {
+            super(view, queue);
+            slot = _slot;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Record counts and content hashes for each section of a dictionary XML
+ * file, where a section is every child of the root element with a given
+ * name. Built from the events DictXMLWriter writes, and again from a SAX
+ * pass over the saved file, so that a save can be verified without loading
+ * it into a new DictCore.
+ *
+ * @author draque
+ */
+public class XMLDigest {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, long[]> sections = new TreeMap<String, long[]>();
+    private long[] curSection = null;
+    private int depth = 0;
+
+    /**
+     * Records opening of an element
+     * @param name element name
+     */
+    public void startElement(String name) {
+        if (depth == 1) {
+            curSection = sections.get(name);
+
+            if (curSection == null) {
+                // record count, then hash
+                curSection = new long[]{0, FNV_OFFSET};
+                sections.put(name, curSection);
+            }
+
+            curSection[0]++;
+        }
+
+        depth++;
+        hash('<');
+        hash(name);
+    }
+
+    /**
+     * Records text within current element. Text may arrive in any number of
+     * pieces.
+     * @param text text characters
+     * @param start start of text in array
+     * @param length length of text
+     */
+    public void characters(char[] text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            hash(text[i]);
+        }
+    }
+
+    /**
+     * Records text within current element
+     * @param text text to record
+     */
+    public void characters(String text) {
+        hash(text);
+    }
+
+    /**
+     * Records closing of most recently opened element
+     */
+    public void endElement() {
+        hash('>');
+        depth--;
+
+        if (depth == 1) {
+            curSection = null;
+        }
+    }
+
+    /**
+     * Describes first difference from another digest
+     * @param other digest to compare against
+     * @return description of difference, empty if digests match
+     */
+    public String compare(XMLDigest other) {
+        for (Entry<String, long[]> e : sections.entrySet()) {
+            long[] otherSection = other.sections.get(e.getKey());
+            long count = otherSection == null ? 0 : otherSection[0];
+
+            if (count != e.getValue()[0]) {
+                return "Section " + e.getKey() + ": " + e.getValue()[0]
+                        + " records written, " + count + " read back.";
+            }
+            if (otherSection[1] != e.getValue()[1]) {
+                return "Section " + e.getKey() + ": content read back differs from content written.";
+            }
+        }
+
+        for (String name : other.sections.keySet()) {
+            if (!sections.containsKey(name)) {
+                return "Section " + name + ": read back, but never written.";
+            }
+        }
+
+        return "";
+    }
+
+    /**
+     * Builds digest of an XML stream with a SAX pass, without building any
+     * dictionary objects
+     * @param in stream to read (the parser may close it)
+     * @return digest of stream
+     * @throws IOException on read failure
+     * @throws SAXException if stream is not well formed XML
+     */
+    public static XMLDigest read(InputStream in) throws IOException, SAXException {
+        final XMLDigest ret = new XMLDigest();
+
+        DefaultHandler handler = new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                ret.startElement(qName);
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) {
+                ret.endElement();
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                ret.characters(ch, start, length);
+            }
+        };
+
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(in), handler);
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+
+        return ret;
+    }
+
+    private void hash(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash(text.charAt(i));
+        }
+    }
+
+    private void hash(char c) {
+        if (curSection != null) {
+            curSection[1] = (curSection[1] ^ c) * FNV_PRIME;
+        }
+    }
+}
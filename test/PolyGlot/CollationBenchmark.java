@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Stand alone benchmark comparing custom alphabetical sorting of words using
+ * cached collation keys against the original recursive comparison. Not run
+ * as part of the unit tests; run main() directly.
+ *
+ * @author draque
+ */
+public class CollationBenchmark {
+    private static final String ALPHABET = "aábcdeéfghiíjklmnñoópqrstuúvwxyz";
+
+    public static void main(String[] args) {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        PropertiesManager props = new PropertiesManager();
+        props.setAlphaOrder(ALPHABET);
+        // properties hold their alphabet as a raw map of characters to ranks
+        @SuppressWarnings("unchecked")
+        final Map<Character, Integer> alphaOrder = props.getAlphaOrder();
+
+        List<ConWord> words = buildWords(wordCount, alphaOrder);
+
+        Comparator<ConWord> legacy = new Comparator<ConWord>() {
+            @Override
+            public int compare(ConWord o1, ConWord o2) {
+                return legacyCompare(o1.getValue(), o2.getValue(), alphaOrder);
+            }
+        };
+
+        List<ConWord> legacySorted = new ArrayList<ConWord>(words);
+        List<ConWord> keySorted = new ArrayList<ConWord>(words);
+        Collections.sort(legacySorted, legacy);
+        Collections.sort(keySorted);
+
+        for (int i = 0; i < wordCount; i++) {
+            if (!legacySorted.get(i).getValue().equals(keySorted.get(i).getValue())) {
+                throw new IllegalStateException("Sort order differs at " + i + ": "
+                        + legacySorted.get(i).getValue() + " / " + keySorted.get(i).getValue());
+            }
+        }
+
+        for (int i = 0; i < rounds; i++) {
+            List<ConWord> sortMe = new ArrayList<ConWord>(words);
+            long start = System.nanoTime();
+            Collections.sort(sortMe, legacy);
+            long legacyTime = System.nanoTime() - start;
+
+            sortMe = new ArrayList<ConWord>(words);
+            start = System.nanoTime();
+            Collections.sort(sortMe);
+            long keyTime = System.nanoTime() - start;
+
+            System.out.println("round " + i + ": recursive " + legacyTime / 1000000
+                    + "ms, collation key " + keyTime / 1000000 + "ms");
+        }
+    }
+
+    private static List<ConWord> buildWords(int count, Map<Character, Integer> alphaOrder) {
+        Random random = new Random(42);
+        List<ConWord> ret = new ArrayList<ConWord>();
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = 3 + random.nextInt(10);
+
+            for (int j = 0; j < length; j++) {
+                value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            // a share of words sharing prefixes and containing unordered characters
+            if (i % 7 == 0) {
+                value.insert(0, "ka");
+            }
+            if (i % 11 == 0) {
+                value.append('Z');
+            }
+
+            ConWord word = new ConWord();
+            word.setValue(value.toString());
+            word.setAlphaOrder(alphaOrder);
+            word.setId(i);
+            ret.add(word);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Copy of the original recursive DictNode comparison, creating new nodes
+     * for each character compared
+     */
+    private static int legacyCompare(String me, String comp, Map<Character, Integer> alphaOrder) {
+        if (comp.equals(me)) {
+            return 0;
+        }
+        if (comp.equals("")) {
+            return 1;
+        }
+        if (me.equals("")) {
+            return -1;
+        }
+
+        Character compChar = comp.charAt(0);
+        Character meChar = me.charAt(0);
+
+        if (alphaOrder.isEmpty() || !alphaOrder.containsKey(meChar) || !alphaOrder.containsKey(compChar)) {
+            return me.compareToIgnoreCase(comp);
+        }
+
+        if (compChar.equals(meChar)) {
+            return legacyCompare(me.substring(1).trim(), comp.substring(1).trim(), alphaOrder);
+        } else if (alphaOrder.get(compChar) > alphaOrder.get(meChar)) {
+            return -1;
+        } else {
+            return 1;
+        }
+    }
+}
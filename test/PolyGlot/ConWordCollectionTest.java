@@ -6,6 +6,10 @@
 
 package PolyGlot;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import org.junit.AfterClass;
@@ -157,4 +161,452 @@ public class ConWordCollectionTest {
         fail("The test case is a prototype.");
     }*/
     
+    /**
+     * Test that ordering of getNodeIterator and getNodeAt is maintained
+     * through inserts, modifications and deletions, of class ConWordCollection.
+     */
+    @Test
+    public void testSortedOrderMaintained() throws Exception {
+        System.out.println("sortedOrderMaintained");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        String[] values = {"delta", "alpha", "charlie", "bravo", "alpha", "echo"};
+        
+        for (String value : values) {
+            ConWord word = new ConWord();
+            word.setValue(value);
+            core.addWord(word);
+        }
+        
+        assertOrder(instance, "alpha", "alpha", "bravo", "charlie", "delta", "echo");
+        
+        // modify in place, as the lexicon does
+        ConWord charlie = (ConWord) instance.getNodeAt(3);
+        charlie.setValue("aardvark");
+        instance.modifyNode(charlie.getId(), charlie);
+        assertOrder(instance, "aardvark", "alpha", "alpha", "bravo", "delta", "echo");
+        
+        instance.deleteNodeById(((ConWord) instance.getNodeAt(4)).getId());
+        assertOrder(instance, "aardvark", "alpha", "alpha", "bravo", "echo");
+        
+        // changing alphabetical order resorts collection
+        core.getPropertiesManager().setAlphaOrder("edcba");
+        assertOrder(instance, "echo", "bravo", "aardvark", "alpha", "alpha");
+    }
+    
+    /**
+     * Test of addAll, of class ConWordCollection. Batches large enough to be
+     * merged must sort exactly as words added one at a time.
+     */
+    @Test
+    public void testAddAll() throws Exception {
+        System.out.println("addAll");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        DictCore single = new DictCore();
+        String[] first = {"delta", "alpha", "charlie"};
+        List<ConWord> batch = new ArrayList<ConWord>();
+        
+        for (String value : first) {
+            ConWord word = new ConWord();
+            word.setValue(value);
+            core.addWord(word);
+            single.addWord(word);
+        }
+        
+        for (int i = 0; i < 40; i++) {
+            ConWord word = new ConWord();
+            word.setValue((char) ('a' + i % 5) + "lpha");
+            word.setLocalWord("local" + i);
+            batch.add(word);
+            single.addWord(word);
+        }
+        
+        List<Integer> ids = core.addWords(batch);
+        assertEquals(40, ids.size());
+        assertEquals(ids.get(0) + 39, (int) ids.get(39));
+        assertSame(batch.get(5), instance.getNodeById(ids.get(5)));
+        
+        Iterator<ConWord> expected = single.getWordCollection().getNodeIterator();
+        Iterator<ConWord> it = instance.getNodeIterator();
+        
+        while (expected.hasNext()) {
+            ConWord expWord = expected.next();
+            ConWord word = it.next();
+            assertEquals(expWord.getValue(), word.getValue());
+            assertEquals(expWord.getLocalWord(), word.getLocalWord());
+        }
+        
+        assertFalse(it.hasNext());
+        assertTrue(instance.containsWord("alpha"));
+        assertFalse(instance.containsLocalMultiples("local1"));
+        
+        ConWord filter = new ConWord();
+        filter.setValue("dlp");
+        filter.setLocalWord("local3");
+        assertFilter(instance, filter, "dlpha", "dlpha", "dlpha");
+        
+        // nothing inserted where any id clashes
+        ConWord clash = new ConWord();
+        clash.setValue("clash");
+        clash.setId(ids.get(0));
+        ConWord fresh = new ConWord();
+        fresh.setValue("fresh");
+        fresh.setId(1000);
+        
+        try {
+            instance.insertBatch(Arrays.asList(fresh, clash));
+            fail("Duplicate id inserted.");
+        } catch (Exception e) {
+            // expected
+        }
+        
+        assertFalse(instance.exists(1000));
+        assertEquals(43, instance.getNodeCount());
+    }
+    
+    /**
+     * Test of filteredList method after words are modified and deleted, of
+     * class ConWordCollection.
+     */
+    @Test
+    public void testFilteredListAfterChanges() throws Exception {
+        System.out.println("filteredListAfterChanges");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        String[] values = {"kalamar", "kalit", "tuvok", "makal"};
+        
+        for (String value : values) {
+            ConWord word = new ConWord();
+            word.setValue(value);
+            word.setWordType("noun");
+            core.addWord(word);
+        }
+        
+        ConWord filter = new ConWord();
+        filter.setValue("kal");
+        assertFilter(instance, filter, "kalamar", "kalit", "makal");
+        
+        ConWord tuvok = (ConWord) instance.getNodeAt(3);
+        tuvok.setValue("tukalo");
+        tuvok.setWordType("verb");
+        instance.modifyNode(tuvok.getId(), tuvok);
+        ConWord kalit = (ConWord) instance.getNodeAt(1);
+        instance.deleteNodeById(kalit.getId());
+        assertFilter(instance, filter, "kalamar", "makal", "tukalo");
+        
+        filter.setValue("");
+        filter.setWordType("VERB");
+        assertFilter(instance, filter);
+        core.getPropertiesManager().setIgnoreCase(true);
+        assertFilter(instance, filter, "tukalo");
+    }
+    
+    /**
+     * Test of filteredList and getSuggestedTransWords on words read from
+     * file, which arrive out of id order
+     */
+    @Test
+    public void testFilteredListAfterLoad() throws Exception {
+        System.out.println("filteredListAfterLoad");
+        DictCore core = new DictCore();
+        String[] values = {"tuvok", "makal", "kalit", "kalamar"};
+        
+        for (String value : values) {
+            ConWord word = new ConWord();
+            word.setValue(value);
+            word.setDefinition("about " + value);
+            core.addWord(word);
+        }
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictXMLWriter writer = new DictXMLWriter(out);
+        core.writeXML(writer);
+        writer.close();
+        DictCore loaded = new DictCore();
+        loaded.readXML(new ByteArrayInputStream(out.toByteArray()));
+        ConWordCollection instance = loaded.getWordCollection();
+        
+        ConWord filter = new ConWord();
+        filter.setValue("kal");
+        assertFilter(instance, filter, "kalamar", "kalit", "makal");
+        assertSuggestions(instance.getSuggestedTransWords("tuvok"), "tuvok");
+    }
+    
+    /**
+     * Tests filtering and suggestions over words with widely spaced ids,
+     * inserted out of id order and then modified
+     */
+    @Test
+    public void testFilteredListSparseIds() throws Exception {
+        System.out.println("filteredListSparseIds");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        int[] ids = {2000000000, 70000, 5, 300, 1};
+        String[] values = {"kalamar", "makal", "kalit", "tuvok", "Kalit"};
+        
+        for (int i = 0; i < ids.length; i++) {
+            instance.getBufferWord().setValue(values[i]);
+            instance.getBufferWord().setDefinition("about " + values[i]);
+            instance.insert(ids[i]);
+        }
+        
+        ConWord filter = new ConWord();
+        filter.setValue("kal");
+        assertFilter(instance, filter, "kalamar", "kalit", "makal");
+        assertSuggestions(instance.getSuggestedTransWords("kalamar"), "kalamar");
+        
+        ConWord modified = new ConWord();
+        modified.setEqual(instance.getNodeById(300));
+        modified.setValue("tukal");
+        instance.modifyNode(300, modified);
+        modified = new ConWord();
+        modified.setEqual(instance.getNodeById(70000));
+        modified.setValue("mako");
+        instance.modifyNode(70000, modified);
+        
+        assertFilter(instance, filter, "kalamar", "kalit", "tukal");
+        assertSuggestions(instance.getSuggestedTransWords("tukal"), "tukal");
+    }
+    
+    /**
+     * Tests that definitions of words read back as set through inserts,
+     * modifications, deletes and the reclaiming of replaced definitions, and
+     * that words leaving the collection keep their definitions
+     */
+    @Test
+    public void testDefinitions() throws Exception {
+        System.out.println("definitions");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        String[] definitions = {"a boat", "", "\u00f1and\u00fa, \u00e9t\u00e9 \ud83d\udea2", "of hills"};
+        List<ConWord> words = new ArrayList<ConWord>();
+        
+        for (int i = 0; i < definitions.length; i++) {
+            ConWord word = new ConWord();
+            word.setValue("word" + i);
+            word.setDefinition(definitions[i]);
+            words.add(word);
+        }
+        
+        List<Integer> ids = instance.addAll(words);
+        
+        for (int i = 0; i < definitions.length; i++) {
+            assertEquals(definitions[i], instance.getNodeById(ids.get(i)).getDefinition());
+        }
+        
+        ConWord deleted = instance.getNodeById(ids.get(0));
+        instance.deleteNodeById(ids.get(0));
+        assertEquals("a boat", deleted.getDefinition());
+        
+        ConWord replaced = instance.getNodeById(ids.get(3));
+        ConWord modified = new ConWord();
+        modified.setEqual(replaced);
+        modified.setDefinition("of distant hills");
+        instance.modifyNode(ids.get(3), modified);
+        assertEquals("of hills", replaced.getDefinition());
+        assertEquals("of distant hills", instance.getNodeById(ids.get(3)).getDefinition());
+        
+        // replace definitions until their space must be reclaimed
+        StringBuilder gloss = new StringBuilder();
+        
+        while (gloss.length() < 8192) {
+            gloss.append("used of things seen from afar ");
+        }
+        
+        for (int round = 0; round < 200; round++) {
+            ConWord word = instance.getNodeById(ids.get(round % 2 + 1));
+            word.setDefinition(gloss.toString() + round);
+            instance.modifyNode(word.getId(), word);
+        }
+        
+        assertEquals(gloss.toString() + 198, instance.getNodeById(ids.get(1)).getDefinition());
+        assertEquals(gloss.toString() + 199, instance.getNodeById(ids.get(2)).getDefinition());
+        assertEquals("of distant hills", instance.getNodeById(ids.get(3)).getDefinition());
+        assertSuggestions(instance.getSuggestedTransWords("distant"), "word3");
+    }
+
+    /**
+     * Tests that words handed out by the collection are the same object each
+     * time, read and write through to the collection while in it, and keep
+     * their values once deleted or replaced, even after their space in the
+     * collection is reused
+     */
+    @Test
+    public void testWordViews() throws Exception {
+        System.out.println("wordViews");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        String[] values = {"\u0436ar", "alpha", "delta", "charlie"};
+
+        for (String value : values) {
+            ConWord word = new ConWord();
+            word.setValue(value);
+            word.setLocalWord("local " + value);
+            word.setWordType("noun");
+            core.addWord(word);
+        }
+
+        ConWord alpha = (ConWord) instance.getNodeAt(0);
+        int alphaId = alpha.getId();
+        assertSame(alpha, instance.getNodeById(alphaId));
+        assertEquals("\u0436ar", ((ConWord) instance.getNodeAt(3)).getValue());
+
+        alpha.setLocalWord("first");
+        alpha.setProcOverride(true);
+        assertEquals("first", instance.getNodeById(alphaId).getLocalWord());
+        assertTrue(instance.getNodeById(alphaId).isProcOverride());
+
+        alpha.setValue("echo");
+        instance.modifyNode(alphaId, alpha);
+        assertSame(alpha, instance.getNodeById(alphaId));
+        assertEquals("echo", ((ConWord) instance.getNodeAt(2)).getValue());
+        assertEquals("first", ((ConWord) instance.getNodeAt(2)).getLocalWord());
+
+        ConWord delta = instance.getNodeById(((ConWord) instance.getNodeAt(1)).getId());
+        ConWord replacement = new ConWord();
+        replacement.setValue("bravo");
+        instance.modifyNode(delta.getId(), replacement);
+        assertSame(replacement, instance.getNodeById(delta.getId()));
+        delta.setValue("detached");
+        assertEquals("bravo", instance.getNodeById(replacement.getId()).getValue());
+
+        instance.deleteNodeById(alphaId);
+
+        ConWord fresh = new ConWord();
+        fresh.setValue("foxtrot");
+        fresh.setLocalWord("fresh");
+        core.addWord(fresh);
+
+        assertEquals("echo", alpha.getValue());
+        assertEquals("first", alpha.getLocalWord());
+        assertEquals("noun", alpha.getWordType());
+        assertTrue(alpha.isProcOverride());
+        assertEquals("detached", delta.getValue());
+        assertEquals("local delta", delta.getLocalWord());
+        assertFalse(instance.exists(alphaId));
+        assertEquals(4, instance.getNodeCount());
+
+        String[] expResult = {"bravo", "charlie", "foxtrot", "\u0436ar"};
+
+        for (int i = 0; i < expResult.length; i++) {
+            assertEquals(expResult[i], ((ConWord) instance.getNodeAt(i)).getValue());
+        }
+    }
+
+    /**
+     * Test of getSuggestedTransWords method, of class ConWordCollection.
+     */
+    @Test
+    public void testGetSuggestedTransWords() throws Exception {
+        System.out.println("getSuggestedTransWords");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        String[][] words = {{"zorat", "a boat"}, {"dog", "loyal animal"},
+            {"bigdog", "large animal"}, {"hund", "word for a dog"},
+            {"Dog", "capitalized"}, {"kuta", "dog"}};
+        
+        for (String[] values : words) {
+            ConWord word = new ConWord();
+            word.setValue(values[0]);
+            word.setDefinition(values[1]);
+            core.addWord(word);
+        }
+        
+        assertSuggestions(instance.getSuggestedTransWords("dog"), "dog", "bigdog", "kuta", "hund");
+        assertSuggestions(instance.getSuggestedTransWords("dog", 2), "dog", "bigdog");
+        assertSuggestions(instance.getSuggestedTransWords("oa"), "zorat");
+        
+        core.getPropertiesManager().setIgnoreCase(true);
+        assertSuggestions(instance.getSuggestedTransWords("DOG"), "dog", "Dog", "bigdog", "kuta", "hund");
+        assertSuggestions(instance.getSuggestedTransWords(""));
+    }
+    
+    private void assertSuggestions(List<ConWord> result, String... expResult) {
+        assertEquals(expResult.length, result.size());
+        
+        for (int i = 0; i < expResult.length; i++) {
+            assertEquals(expResult[i], result.get(i).getValue());
+        }
+    }
+    
+    /**
+     * Test of recalcAllProcs method and its cancellation, of class
+     * ConWordCollection.
+     */
+    @Test
+    public void testRecalcAllProcs() throws Exception {
+        System.out.println("recalcAllProcs");
+        DictCore core = new DictCore();
+        ConWordCollection instance = core.getWordCollection();
+        PronunciationNode proc = new PronunciationNode();
+        proc.setValue("[a-z]");
+        proc.setPronunciation("x");
+        core.getPronunciationMgr().addPronunciation(proc);
+        
+        for (int i = 0; i < 1000; i++) {
+            ConWord word = new ConWord();
+            word.setValue("ab" + (char) ('a' + i % 26));
+            word.setProcOverride(i == 0);
+            core.addWord(word);
+        }
+        
+        ProcRecalculation cancelled = instance.prepareProcRecalc();
+        TaskMonitor monitor = new TaskMonitor();
+        monitor.cancel();
+        assertFalse(cancelled.compute(monitor));
+        
+        try {
+            cancelled.apply();
+            fail("Cancelled recalculation applied.");
+        } catch (Exception e) {
+            // expected
+        }
+        
+        instance.recalcAllProcs();
+        Iterator<ConWord> it = instance.getNodeIterator();
+        
+        while (it.hasNext()) {
+            ConWord word = it.next();
+            assertEquals(word.isProcOverride() ? "" : "x x x ", word.getPronunciation());
+        }
+        
+        ConWord filter = new ConWord();
+        filter.setPronunciation("x x x");
+        assertEquals(999, countIterator(instance.filteredList(filter)));
+    }
+    
+    private int countIterator(Iterator<ConWord> it) {
+        int ret = 0;
+        
+        while (it.hasNext()) {
+            it.next();
+            ret++;
+        }
+        
+        return ret;
+    }
+    
+    private void assertFilter(ConWordCollection instance, ConWord filter, String... expResult) throws Exception {
+        Iterator<ConWord> it = instance.filteredList(filter);
+        
+        for (String value : expResult) {
+            assertEquals(value, it.next().getValue());
+        }
+        
+        assertFalse(it.hasNext());
+    }
+    
+    private void assertOrder(ConWordCollection instance, String... expResult) {
+        Iterator<ConWord> it = instance.getNodeIterator();
+        
+        assertEquals(expResult.length, instance.getNodeCount());
+        
+        for (int i = 0; i < expResult.length; i++) {
+            assertEquals(expResult[i], it.next().getValue());
+            assertEquals(expResult[i], ((ConWord) instance.getNodeAt(i)).getValue());
+        }
+        
+        assertFalse(it.hasNext());
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.List;
+
+/**
+ * Stand alone benchmark of declension generation across a lexicon, comparing
+ * the original per call regex compilation against precompiled rules, one
+ * word at a time and in bulk. Not run as part of the unit tests; run main()
+ * directly.
+ *
+ * @author draque
+ */
+public class DeclensionBenchmark {
+    private static final String[] SUFFIXES = {"a", "o", "e", "i"};
+
+    public static void main(String[] args) throws Exception {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        DictCore core = new DictCore();
+        DeclensionManager decMan = core.getDeclensionManager();
+        TypeNode noun = new TypeNode();
+        noun.setValue("noun");
+        int typeId = core.getTypes().addNode(noun);
+
+        String[] dimNames = {"nom", "acc", "gen", "dat"};
+        DeclensionNode caseNode = decMan.addDeclensionToTemplate(typeId, "case");
+        DeclensionNode numberNode = decMan.addDeclensionToTemplate(typeId, "number");
+
+        for (String dimName : dimNames) {
+            DeclensionDimension dim = new DeclensionDimension();
+            dim.setValue(dimName);
+            caseNode.addDimension(dim);
+        }
+
+        DeclensionDimension dim = new DeclensionDimension();
+        dim.setValue("sg");
+        numberNode.addDimension(dim);
+        dim.setValue("pl");
+        numberNode.addDimension(dim);
+
+        // one rule per stem ending for every combination
+        List<DeclensionPair> pairs = decMan.getAllCombinedIds(typeId);
+
+        for (int i = 0; i < pairs.size(); i++) {
+            for (String suffix : SUFFIXES) {
+                DeclensionGenRule rule = new DeclensionGenRule(typeId, pairs.get(i).combinedId);
+                rule.setRegex(".*" + suffix);
+                rule.addTransform(new DeclensionGenTransform(suffix + "$", suffix + "n" + i));
+                decMan.addDeclensionGenRule(rule);
+            }
+        }
+
+        for (int i = 0; i < wordCount; i++) {
+            ConWord word = new ConWord();
+            word.setValue("w" + Integer.toString(i, 36) + SUFFIXES[i % SUFFIXES.length]);
+            word.setWordType("noun");
+            core.addWord(word);
+        }
+
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            long legacyForms = 0;
+
+            for (int i = 0; i < core.getWordCollection().getNodeCount(); i++) {
+                ConWord word = (ConWord) core.getWordCollection().getNodeAt(i);
+
+                for (DeclensionPair pair : pairs) {
+                    legacyForms += legacyDeclineWord(decMan, typeId, pair.combinedId, word.getValue()).length();
+                }
+            }
+
+            long legacyTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long compiledForms = 0;
+
+            for (int i = 0; i < core.getWordCollection().getNodeCount(); i++) {
+                ConWord word = (ConWord) core.getWordCollection().getNodeAt(i);
+
+                for (DeclensionPair pair : pairs) {
+                    compiledForms += decMan.declineWord(typeId, pair.combinedId, word.getValue()).length();
+                }
+            }
+
+            long compiledTime = System.nanoTime() - start;
+
+            if (legacyForms != compiledForms) {
+                throw new IllegalStateException("Generated forms differ: " + legacyForms + " / " + compiledForms);
+            }
+
+            start = System.nanoTime();
+            DeclensionGeneration generation = core.prepareDeclensionGeneration();
+            generation.compute(null);
+            generation.apply();
+            long bulkTime = System.nanoTime() - start;
+
+            System.out.println("round " + round + ": per call compile " + legacyTime / 1000000
+                    + "ms, precompiled " + compiledTime / 1000000
+                    + "ms, bulk generation (applied) " + bulkTime / 1000000 + "ms");
+        }
+    }
+
+    /**
+     * Copy of the original declineWord, filtering all rules and compiling
+     * each regex on every call
+     */
+    private static String legacyDeclineWord(DeclensionManager decMan, int typeId, String combinedId, String base) {
+        String ret = "";
+
+        for (DeclensionGenRule curRule : decMan.getDeclensionRules(typeId)) {
+            if (!curRule.getCombinationId().equals(combinedId)) {
+                continue;
+            }
+
+            if (base.matches(curRule.getRegex())) {
+                for (DeclensionGenTransform curTrans : curRule.getTransforms()) {
+                    base = base.replaceAll(curTrans.regex, curTrans.replaceText);
+                    ret = base;
+                }
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class DeclensionManagerTest {
+
+    private static DeclensionNode makeNode(String value, String combinedId) {
+        DeclensionNode ret = new DeclensionNode(-1);
+        ret.setValue(value);
+        ret.setCombinedDimId(combinedId);
+        return ret;
+    }
+
+    /**
+     * Tests lookup of word declensions by combined id through adds, updates
+     * and deletes
+     */
+    @Test
+    public void testGetDeclensionByCombinedId() {
+        System.out.println("getDeclensionByCombinedId");
+
+        DeclensionManager instance = new DeclensionManager();
+        instance.addDeclensionToWord(1, 1, makeNode("a", ",1,"));
+        instance.addDeclensionToWord(1, 2, makeNode("b", ",2,"));
+        instance.addDeclensionToWord(2, 3, makeNode("c", ",1,"));
+
+        assertEquals("a", instance.getDeclensionByCombinedId(1, ",1,").getValue());
+        assertEquals("b", instance.getDeclensionByCombinedId(1, ",2,").getValue());
+        assertEquals("c", instance.getDeclensionByCombinedId(2, ",1,").getValue());
+        assertNull(instance.getDeclensionByCombinedId(1, ",3,"));
+        assertNull(instance.getDeclensionByCombinedId(3, ",1,"));
+
+        instance.updateDeclensionWord(1, 1, makeNode("a2", ",3,"));
+        assertNull(instance.getDeclensionByCombinedId(1, ",1,"));
+        assertEquals("a2", instance.getDeclensionByCombinedId(1, ",3,").getValue());
+
+        // update keeps position, re-add moves to end
+        List<DeclensionNode> decs = instance.getDeclensionListWord(1);
+        assertEquals("a2", decs.get(0).getValue());
+        instance.addDeclensionToWord(1, 1, makeNode("a3", ",3,"));
+        decs = instance.getDeclensionListWord(1);
+        assertEquals(2, decs.size());
+        assertEquals("b", decs.get(0).getValue());
+        assertEquals("a3", decs.get(1).getValue());
+
+        instance.deleteDeclensionFromWord(1, 2);
+        assertNull(instance.getDeclensionByCombinedId(1, ",2,"));
+        assertEquals(1, instance.getDeclensionListWord(1).size());
+
+        instance.clearAllDeclensionsWord(1);
+        assertNull(instance.getDeclensionByCombinedId(1, ",3,"));
+        assertTrue(instance.getDeclensionListWord(1).isEmpty());
+    }
+
+    /**
+     * Tests that the earliest of several declensions sharing a combined id is
+     * found, and that a later one takes over when it is removed
+     */
+    @Test
+    public void testDuplicateCombinedIds() {
+        System.out.println("duplicate combined ids");
+
+        DeclensionManager instance = new DeclensionManager();
+        instance.addDeclensionToWord(1, 1, makeNode("a", ",1,"));
+        instance.addDeclensionToWord(1, 2, makeNode("b", ",1,"));
+
+        assertEquals("a", instance.getDeclensionByCombinedId(1, ",1,").getValue());
+
+        instance.deleteDeclensionFromWord(1, 1);
+        assertEquals("b", instance.getDeclensionByCombinedId(1, ",1,").getValue());
+
+        instance.deleteDeclensionFromWord(1, 2);
+        assertNull(instance.getDeclensionByCombinedId(1, ",1,"));
+    }
+
+    /**
+     * Tests that deprecated declensions are found under their new ids
+     */
+    @Test
+    public void testDeprecateAllDeclensions() {
+        System.out.println("deprecateAllDeclensions");
+
+        DeclensionManager instance = new DeclensionManager();
+        instance.addDeclensionToWord(1, -1, makeNode("a", ",1,"));
+        instance.deprecateAllDeclensions();
+
+        assertNull(instance.getDeclensionByCombinedId(1, ",1,"));
+        assertEquals("a", instance.getDeclensionByCombinedId(1, "D,1,").getValue());
+    }
+
+    /**
+     * Tests direct template lookup, and that adding a template leaves word
+     * declensions with the same id alone
+     */
+    @Test
+    public void testTemplates() {
+        System.out.println("templates");
+
+        DeclensionManager instance = new DeclensionManager();
+        instance.addDeclensionToWord(5, 1, makeNode("word", ",1,"));
+        DeclensionNode tense = instance.addDeclensionToTemplate(5, "tense");
+        DeclensionNode number = instance.addDeclensionToTemplate(5, "number");
+        instance.addDeclensionToTemplate(5, 1, makeNode("case", ""));
+
+        assertEquals("word", instance.getDeclensionByCombinedId(5, ",1,").getValue());
+        assertEquals("tense", instance.getDeclension(5, tense.getId()).getValue());
+        assertEquals("number", instance.getDeclensionTemplate(5, number.getId()).getValue());
+        assertNull(instance.getDeclension(6, tense.getId()));
+
+        List<DeclensionNode> templates = instance.getDeclensionListTemplate(5);
+        assertEquals(3, templates.size());
+        assertEquals("tense", templates.get(0).getValue());
+        assertEquals("number", templates.get(1).getValue());
+        assertEquals("case", templates.get(2).getValue());
+
+        instance.deleteDeclensionFromTemplate(5, tense.getId());
+        assertNull(instance.getDeclension(5, tense.getId()));
+        assertEquals(2, instance.getDeclensionListTemplate(5).size());
+    }
+
+    private static DeclensionGenRule makeRule(int typeId, String combinedId, String regex,
+            String transRegex, String replaceText) {
+        DeclensionGenRule ret = new DeclensionGenRule(typeId, combinedId);
+        ret.setRegex(regex);
+        ret.addTransform(new DeclensionGenTransform(transRegex, replaceText));
+        return ret;
+    }
+
+    /**
+     * Tests that only rules of the given type and combined id are applied,
+     * in the order they were added
+     */
+    @Test
+    public void testDeclineWord() {
+        System.out.println("declineWord");
+
+        DeclensionManager instance = new DeclensionManager();
+        instance.addDeclensionGenRule(makeRule(1, ",1,", ".*a", "a$", "o"));
+        instance.addDeclensionGenRule(makeRule(1, ",2,", ".*a", "a$", "e"));
+        instance.addDeclensionGenRule(makeRule(2, ",1,", ".*", "$", "x"));
+        instance.addDeclensionGenRule(makeRule(1, ",1,", ".*o", "o$", "os"));
+
+        assertEquals("gatos", instance.declineWord(1, ",1,", "gata"));
+        assertEquals("gate", instance.declineWord(1, ",2,", "gata"));
+        assertEquals("gatax", instance.declineWord(2, ",1,", "gata"));
+        assertEquals("", instance.declineWord(1, ",3,", "gata"));
+        assertEquals("", instance.declineWord(1, ",2,", "gato"));
+
+        // edited regex takes effect
+        DeclensionGenRule rule = instance.getDeclensionRules(1).get(1);
+        rule.setRegex(".*o");
+        assertEquals("", instance.declineWord(1, ",2,", "gata"));
+        rule.getTransforms().get(0).regex = "o$";
+        assertEquals("gate", instance.declineWord(1, ",2,", "gato"));
+    }
+
+    /**
+     * Tests removal of rules singly and by type
+     */
+    @Test
+    public void testDeleteDeclensionGenRules() {
+        System.out.println("deleteDeclensionGenRule/wipeDeclensionGenRules");
+
+        DeclensionManager instance = new DeclensionManager();
+        DeclensionGenRule first = makeRule(1, ",1,", ".*", "$", "a");
+        instance.addDeclensionGenRule(first);
+        instance.addDeclensionGenRule(makeRule(1, ",1,", ".*", "$", "b"));
+        instance.addDeclensionGenRule(makeRule(1, ",2,", ".*", "$", "c"));
+        instance.addDeclensionGenRule(makeRule(2, ",1,", ".*", "$", "d"));
+
+        instance.deleteDeclensionGenRule(first);
+        assertEquals("xb", instance.declineWord(1, ",1,", "x"));
+
+        instance.wipeDeclensionGenRules(1);
+        assertTrue(instance.getDeclensionRules(1).isEmpty());
+        assertEquals("", instance.declineWord(1, ",1,", "x"));
+        assertEquals("", instance.declineWord(1, ",2,", "x"));
+        assertEquals("xd", instance.declineWord(2, ",1,", "x"));
+    }
+
+    /**
+     * Tests generation of declensions across the lexicon
+     */
+    @Test
+    public void testDeclensionGeneration() throws Exception {
+        System.out.println("DeclensionGeneration");
+
+        DictCore core = new DictCore();
+        DeclensionManager instance = core.getDeclensionManager();
+        TypeNode verb = new TypeNode();
+        verb.setValue("verb");
+        int typeId = core.getTypes().addNode(verb);
+
+        DeclensionNode tense = instance.addDeclensionToTemplate(typeId, "tense");
+        DeclensionDimension dim = new DeclensionDimension();
+        dim.setValue("past");
+        String pastId = "," + tense.addDimension(dim) + ",";
+        dim.setValue("present");
+        String presentId = "," + tense.addDimension(dim) + ",";
+        DeclensionGenRule pastRule = makeRule(typeId, pastId, ".*", "$", "ed");
+        instance.addDeclensionGenRule(pastRule);
+
+        ConWord walk = new ConWord();
+        walk.setValue("walk");
+        walk.setWordType("verb");
+        int walkId = core.addWord(walk);
+        instance.addDeclensionToWord(walkId, -1, makeNode("old", pastId));
+
+        ConWord jump = new ConWord();
+        jump.setValue("jump");
+        jump.setWordType("verb");
+        jump.setOverrideAutoDeclen(true);
+        int jumpId = core.addWord(jump);
+
+        ConWord cat = new ConWord();
+        cat.setValue("cat");
+        int catId = core.addWord(cat);
+
+        DeclensionGeneration cancelled = core.prepareDeclensionGeneration();
+        TaskMonitor monitor = new TaskMonitor();
+        monitor.cancel();
+        assertFalse(cancelled.compute(monitor));
+
+        try {
+            cancelled.apply();
+            fail("Cancelled generation applied.");
+        } catch (Exception e) {
+            // expected
+        }
+
+        DeclensionGeneration generation = core.prepareDeclensionGeneration();
+        assertEquals(1, generation.getWordCount());
+
+        // rules edited after the snapshot do not affect generation
+        pastRule.setRegex("x.*");
+        pastRule.getTransforms().get(0).regex = "k$";
+        pastRule.getTransforms().get(0).replaceText = "ks";
+        assertTrue(generation.compute(null));
+        assertEquals(1, generation.apply());
+
+        assertEquals("walked", instance.getDeclensionByCombinedId(walkId, pastId).getValue());
+        assertNull(instance.getDeclensionByCombinedId(walkId, presentId));
+        assertEquals(1, instance.getDeclensionListWord(walkId).size());
+        assertTrue(instance.getDeclensionListWord(jumpId).isEmpty());
+        assertTrue(instance.getDeclensionListWord(catId).isEmpty());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class DictArchiveTest {
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int count;
+
+        while ((count = in.read(buffer)) != -1) {
+            ret.write(buffer, 0, count);
+        }
+
+        in.close();
+        return ret.toByteArray();
+    }
+
+    private static byte[] makeContents(int length) {
+        StringBuilder ret = new StringBuilder();
+        Random random = new Random(7);
+
+        while (ret.length() < length) {
+            ret.append("<word>").append(random.nextInt(1000)).append("</word>");
+        }
+
+        return ret.toString().getBytes();
+    }
+
+    /**
+     * Tests reading of deflated and stored entries, and of raw XML files
+     */
+    @Test
+    public void testRead() throws Exception {
+        System.out.println("DictArchive read");
+
+        byte[] dict = makeContents(200000);
+        byte[] font = new byte[5000];
+        new Random(3).nextBytes(font);
+        CRC32 fontCrc = new CRC32();
+        fontCrc.update(font);
+
+        File file = File.createTempFile("archive", ".pgd");
+        File rawFile = File.createTempFile("archive", ".xml");
+
+        try {
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+            out.putNextEntry(new ZipEntry(XMLIDs.dictFileName));
+            out.write(dict);
+            out.closeEntry();
+            ZipEntry fontEntry = new ZipEntry(XMLIDs.fontFileName);
+            fontEntry.setMethod(ZipEntry.STORED);
+            fontEntry.setSize(font.length);
+            fontEntry.setCrc(fontCrc.getValue());
+            out.putNextEntry(fontEntry);
+            out.write(font);
+            out.closeEntry();
+            out.close();
+
+            DictArchive archive = DictArchive.open(file.getPath());
+
+            try {
+                assertTrue(archive.isArchive());
+                assertEquals(file.length(), archive.getLength());
+                assertEquals(2, archive.getEntryNames().size());
+                assertEquals(XMLIDs.dictFileName, archive.getEntryNames().get(0));
+                assertEquals(fontCrc.getValue(), archive.getEntryCrc(XMLIDs.fontFileName));
+                assertEquals(font.length, archive.getEntrySize(XMLIDs.fontFileName));
+                assertArrayEquals(dict, readAll(archive.getDictStream()));
+                assertArrayEquals(font, readAll(archive.getEntryStream(XMLIDs.fontFileName)));
+                // entries may be read again
+                assertArrayEquals(dict, readAll(archive.getDictStream()));
+                assertNull(archive.getEntryStream("missing"));
+                assertEquals(-1, archive.getEntryCrc("missing"));
+            } finally {
+                archive.close();
+            }
+
+            assertEquals(archive.getDictCrc(), DictArchive.getDictCrc(file));
+
+            FileOutputStream rawOut = new FileOutputStream(rawFile);
+            rawOut.write(dict);
+            rawOut.close();
+            archive = DictArchive.open(rawFile.getPath());
+
+            try {
+                assertFalse(archive.isArchive());
+                assertEquals(-1, archive.getDictCrc());
+                assertArrayEquals(dict, readAll(archive.getDictStream()));
+            } finally {
+                archive.close();
+            }
+        } finally {
+            file.delete();
+            rawFile.delete();
+        }
+    }
+
+    /**
+     * Tests that damage to an entry's contents is caught once it is read to
+     * its end
+     */
+    @Test
+    public void testCorruptEntry() throws Exception {
+        System.out.println("DictArchive corrupt entry");
+
+        byte[] font = new byte[5000];
+        CRC32 fontCrc = new CRC32();
+        fontCrc.update(font);
+        File file = File.createTempFile("archive", ".pgd");
+
+        try {
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+            ZipEntry fontEntry = new ZipEntry(XMLIDs.fontFileName);
+            fontEntry.setMethod(ZipEntry.STORED);
+            fontEntry.setSize(font.length);
+            fontEntry.setCrc(fontCrc.getValue());
+            out.putNextEntry(fontEntry);
+            out.write(font);
+            out.closeEntry();
+            out.close();
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.seek(100);
+            raf.write(1);
+            raf.close();
+
+            DictArchive archive = DictArchive.open(file.getPath());
+
+            try {
+                assertFalse(archive.hasEntry(XMLIDs.dictFileName));
+                readAll(archive.getEntryStream(XMLIDs.fontFileName));
+                fail("Damaged entry read without error.");
+            } catch (IOException e) {
+                // expected
+            } finally {
+                archive.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class DictCacheTest {
+
+    /**
+     * Tests that reading the cache gives the same dictionary as reading the
+     * file itself
+     */
+    @Test
+    public void testReadMatchesFile() throws Exception {
+        System.out.println("DictCache");
+
+        File dictFile = File.createTempFile("cache", ".pgd");
+        File cacheFile = DictCache.getFile(dictFile.getAbsolutePath());
+
+        try {
+            DictFixture.build(50).writeFile(dictFile.getAbsolutePath());
+            assertTrue(cacheFile.exists());
+
+            DictCore fromFile = new DictCore();
+            fromFile.readFile(dictFile.getAbsolutePath(), false);
+
+            DictCore fromCache = new DictCore();
+            assertTrue(readCache(dictFile, fromCache));
+
+            assertTrue(Arrays.equals(DictFixture.toXML(fromFile), DictFixture.toXML(fromCache)));
+            assertEquals("fixture", fromCache.getPropertiesManager().getLangName());
+        } finally {
+            dictFile.delete();
+            cacheFile.delete();
+        }
+    }
+
+    /**
+     * Tests that a damaged or stale cache is ignored in favor of the file,
+     * and rewritten
+     */
+    @Test
+    public void testMismatchIgnored() throws Exception {
+        System.out.println("DictCache mismatch");
+
+        File dictFile = File.createTempFile("cache", ".pgd");
+        File cacheFile = DictCache.getFile(dictFile.getAbsolutePath());
+
+        try {
+            DictCore core = DictFixture.build(50);
+            core.writeFile(dictFile.getAbsolutePath());
+            byte[] cache = java.nio.file.Files.readAllBytes(cacheFile.toPath());
+
+            RandomAccessFile damage = new RandomAccessFile(cacheFile, "rw");
+            damage.seek(cache.length / 2);
+            damage.write(cache[cache.length / 2] ^ 0xff);
+            damage.close();
+
+            assertFalse(readCache(dictFile, new DictCore()));
+
+            DictCore loaded = new DictCore();
+            loaded.readFile(dictFile.getAbsolutePath());
+            assertEquals(50, loaded.getWordCollection().getNodeCount());
+            assertTrue(Arrays.equals(cache, java.nio.file.Files.readAllBytes(cacheFile.toPath())));
+
+            // cache of a different file
+            DictCore other = new DictCore();
+            ConWord word = new ConWord();
+            word.setValue("other");
+            other.addWord(word);
+            File otherFile = File.createTempFile("cache", ".pgd");
+            File otherCache = DictCache.getFile(otherFile.getAbsolutePath());
+
+            try {
+                other.writeFile(otherFile.getAbsolutePath());
+                java.nio.file.Files.copy(otherCache.toPath(), cacheFile.toPath(),
+                        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                otherFile.delete();
+                otherCache.delete();
+            }
+
+            assertFalse(readCache(dictFile, new DictCore()));
+        } finally {
+            dictFile.delete();
+            cacheFile.delete();
+        }
+    }
+
+    private static boolean readCache(File dictFile, DictCore core) throws Exception {
+        DictArchive archive = DictArchive.open(dictFile.getAbsolutePath());
+
+        try {
+            return DictCache.read(dictFile.getAbsolutePath(), archive, core);
+        } finally {
+            archive.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Dictionary shared by tests of reading and writing dictionaries, with words
+ * covering every word value, declensions with and without notes, and a
+ * thesaurus entry
+ *
+ * @author draque
+ */
+class DictFixture {
+
+    private DictFixture() {
+    }
+
+    /**
+     * @param wordCount number of words to create (at least 8)
+     * @return new dictionary
+     * @throws Exception on failure to build
+     */
+    static DictCore build(int wordCount) throws Exception {
+        DictCore core = new DictCore();
+        core.getPropertiesManager().setAlphaOrder("abcdefghijklmnopqrstuvwxyzé");
+        core.getPropertiesManager().setLangName("fixture");
+
+        TypeNode noun = new TypeNode();
+        noun.setValue("noun");
+        int nounId = core.getTypes().addNode(noun);
+        core.getDeclensionManager().addDeclensionToTemplate(nounId, "case");
+
+        for (int i = 0; i < wordCount; i++) {
+            ConWord word = new ConWord();
+            word.setValue("word" + (char) ('a' + i % 26) + i);
+            word.setLocalWord(i % 2 == 0 ? "" : "lócal " + i);
+            word.setDefinition("definition of " + i + (i % 3 == 0 ? "\nwith & <entities>" : ""));
+            word.setWordType(i % 3 == 0 ? "noun" : "");
+            word.setProcOverride(i % 5 == 0);
+            word.setOverrideAutoDeclen(i % 7 == 0);
+            int id = core.addWord(word);
+
+            if (i % 4 == 0) {
+                DeclensionNode dec = new DeclensionNode(-1);
+                dec.setValue("declined " + i);
+                dec.setNotes(i % 8 == 0 ? "" : "notes " + i);
+                dec.setCombinedDimId(",1,");
+                core.addDeclensionToWord(id, -1, dec);
+            }
+        }
+
+        ThesNode root = core.getThesManager().getRoot();
+        ThesNode child = new ThesNode(root, "things", core.getThesManager());
+        root.addNode(child);
+        child.addWord(core.getWordById(7));
+
+        return core;
+    }
+
+    /**
+     * @param core dictionary to write
+     * @return dictionary written as XML
+     * @throws Exception on failure to write
+     */
+    static byte[] toXML(DictCore core) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictXMLWriter writer = new DictXMLWriter(out);
+        core.writeXML(writer);
+        writer.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class DictJournalTest {
+
+    private static ConWord makeWord(String value, String definition) {
+        ConWord ret = new ConWord();
+        ret.setValue(value);
+        ret.setDefinition(definition);
+        return ret;
+    }
+
+    private static byte[] readAll(File file) throws Exception {
+        return java.nio.file.Files.readAllBytes(file.toPath());
+    }
+
+    /**
+     * Tests that saves after the first only append to the journal, and that
+     * loading applies the journal on top of the dictionary file
+     */
+    @Test
+    public void testIncrementalSave() throws Exception {
+        System.out.println("DictJournal");
+
+        File dictFile = File.createTempFile("journal", ".pgd");
+        File journalFile = new File(dictFile.getAbsolutePath() + DictJournal.EXTENSION);
+
+        try {
+            DictCore core = new DictCore();
+            int keepId = core.addWord(makeWord("keep", "old"));
+            int dropId = core.addWord(makeWord("drop", "gone"));
+            core.writeFile(dictFile.getAbsolutePath());
+            byte[] snapshot = readAll(dictFile);
+
+            // nothing changed, nothing written
+            core.saveFile(dictFile.getAbsolutePath());
+            assertFalse(journalFile.exists());
+
+            ConWord modified = makeWord("keep", "new");
+            core.modifyWord(keepId, modified);
+            core.deleteWordById(dropId);
+            int addId = core.addWord(makeWord("add", "added"));
+            DeclensionNode dec = new DeclensionNode(-1);
+            dec.setValue("adds");
+            dec.setCombinedDimId(",1,");
+            core.addDeclensionToWord(addId, -1, dec);
+            core.saveFile(dictFile.getAbsolutePath());
+
+            assertTrue(journalFile.exists());
+            assertTrue(Arrays.equals(snapshot, readAll(dictFile)));
+
+            TypeNode type = new TypeNode();
+            type.setValue("noun");
+            core.getTypes().addNode(type);
+            core.getPropertiesManager().setLangName("journaled");
+            core.saveFile(dictFile.getAbsolutePath());
+            assertTrue(Arrays.equals(snapshot, readAll(dictFile)));
+
+            DictCore loaded = new DictCore();
+            loaded.readFile(dictFile.getAbsolutePath());
+
+            assertEquals("new", loaded.getWordById(keepId).getDefinition());
+            assertFalse(loaded.getWordCollection().exists(dropId));
+            assertEquals("added", loaded.getWordById(addId).getDefinition());
+            assertEquals("adds", loaded.getDeclensionManager().getDeclensionByCombinedId(addId, ",1,").getValue());
+            assertNotNull(loaded.getTypes().findTypeByName("noun"));
+            assertEquals("journaled", loaded.getPropertiesManager().getLangName());
+
+            // further saves continue the journal of the loaded file
+            loaded.deleteWordById(keepId);
+            loaded.saveFile(dictFile.getAbsolutePath());
+            assertTrue(Arrays.equals(snapshot, readAll(dictFile)));
+
+            DictCore reloaded = new DictCore();
+            reloaded.readFile(dictFile.getAbsolutePath());
+            assertFalse(reloaded.getWordCollection().exists(keepId));
+            assertTrue(reloaded.getWordCollection().exists(addId));
+            assertEquals(1, reloaded.getTypes().getNodeCount());
+
+            // writing in full folds journal into file
+            reloaded.writeFile(dictFile.getAbsolutePath());
+            assertFalse(journalFile.exists());
+
+            DictCore compacted = new DictCore();
+            compacted.readFile(dictFile.getAbsolutePath());
+            assertFalse(compacted.getWordCollection().exists(keepId));
+            assertEquals("adds", compacted.getDeclensionManager().getDeclensionByCombinedId(addId, ",1,").getValue());
+        } finally {
+            dictFile.delete();
+            journalFile.delete();
+        }
+    }
+
+    /**
+     * Tests that a record torn by a crash mid save is dropped, and that the
+     * next save replaces it
+     */
+    @Test
+    public void testTornRecord() throws Exception {
+        System.out.println("DictJournal torn record");
+
+        File dictFile = File.createTempFile("journal", ".pgd");
+        File journalFile = new File(dictFile.getAbsolutePath() + DictJournal.EXTENSION);
+
+        try {
+            DictCore core = new DictCore();
+            int firstId = core.addWord(makeWord("first", ""));
+            core.writeFile(dictFile.getAbsolutePath());
+
+            int secondId = core.addWord(makeWord("second", ""));
+            core.saveFile(dictFile.getAbsolutePath());
+
+            FileOutputStream out = new FileOutputStream(journalFile, true);
+            out.write(new byte[]{0, 0, 1, 0, 1, 2, 3, 4, 5});
+            out.close();
+
+            DictCore loaded = new DictCore();
+            loaded.readFile(dictFile.getAbsolutePath());
+            assertTrue(loaded.getWordCollection().exists(firstId));
+            assertTrue(loaded.getWordCollection().exists(secondId));
+
+            int thirdId = loaded.addWord(makeWord("third", ""));
+            loaded.saveFile(dictFile.getAbsolutePath());
+
+            DictCore reloaded = new DictCore();
+            reloaded.readFile(dictFile.getAbsolutePath());
+            assertTrue(reloaded.getWordCollection().exists(secondId));
+            assertEquals("third", reloaded.getWordById(thirdId).getValue());
+        } finally {
+            dictFile.delete();
+            journalFile.delete();
+        }
+    }
+
+    /**
+     * Tests that properties cleared since the file was written stay cleared
+     * once the journal is replayed
+     */
+    @Test
+    public void testClearedProperties() throws Exception {
+        System.out.println("DictJournal cleared properties");
+
+        File dictFile = File.createTempFile("journal", ".pgd");
+        File journalFile = new File(dictFile.getAbsolutePath() + DictJournal.EXTENSION);
+
+        try {
+            DictCore core = new DictCore();
+            core.addWord(makeWord("word", ""));
+            core.getPropertiesManager().setLangName("Elvish");
+            core.getPropertiesManager().setAlphaOrder("abc");
+            core.writeFile(dictFile.getAbsolutePath());
+
+            core.getPropertiesManager().setLangName("");
+            core.getPropertiesManager().setAlphaOrder("");
+            core.saveFile(dictFile.getAbsolutePath());
+            assertTrue(journalFile.exists());
+
+            DictCore loaded = new DictCore();
+            loaded.readFile(dictFile.getAbsolutePath());
+            assertEquals("", loaded.getPropertiesManager().getLangName());
+            assertEquals("", loaded.getPropertiesManager().getAlphaPlainText());
+            assertTrue(loaded.getPropertiesManager().getAlphaOrder().isEmpty());
+        } finally {
+            dictFile.delete();
+            journalFile.delete();
+            DictCache.getFile(dictFile.getAbsolutePath()).delete();
+        }
+    }
+
+    /**
+     * Tests that compacting folds saved changes into the file, and leaves
+     * out changes not yet saved
+     */
+    @Test
+    public void testCompactFile() throws Exception {
+        System.out.println("DictJournal compact");
+
+        File dictFile = File.createTempFile("journal", ".pgd");
+        File journalFile = new File(dictFile.getAbsolutePath() + DictJournal.EXTENSION);
+
+        try {
+            DictCore core = new DictCore();
+            int firstId = core.addWord(makeWord("first", ""));
+            core.writeFile(dictFile.getAbsolutePath());
+            assertFalse(core.needsCompacting(dictFile.getAbsolutePath()));
+
+            int savedId = core.addWord(makeWord("saved", ""));
+            core.saveFile(dictFile.getAbsolutePath());
+            assertTrue(journalFile.exists());
+            assertTrue(core.needsCompacting(dictFile.getAbsolutePath()));
+            assertFalse(core.needsCompacting(dictFile.getAbsolutePath() + ".other"));
+
+            int unsavedId = core.addWord(makeWord("unsaved", ""));
+            core.compactFile(dictFile.getAbsolutePath());
+            assertFalse(journalFile.exists());
+            assertFalse(core.needsCompacting(dictFile.getAbsolutePath()));
+
+            DictCore loaded = new DictCore();
+            loaded.readFile(dictFile.getAbsolutePath(), false);
+            assertTrue(loaded.getWordCollection().exists(firstId));
+            assertTrue(loaded.getWordCollection().exists(savedId));
+            assertFalse(loaded.getWordCollection().exists(unsavedId));
+
+            // saving after compacting writes in full, unsaved word included
+            core.saveFile(dictFile.getAbsolutePath());
+            assertFalse(journalFile.exists());
+            loaded = new DictCore();
+            loaded.readFile(dictFile.getAbsolutePath(), false);
+            assertTrue(loaded.getWordCollection().exists(unsavedId));
+        } finally {
+            dictFile.delete();
+            journalFile.delete();
+            DictCache.getFile(dictFile.getAbsolutePath()).delete();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ *
+ * @author draque
+ */
+public class DictXMLWriterTest {
+
+    private static final String[] VALUES = {"", "plain", "a&b<c>d\"e'f", "x\r\ny\tz",
+        "\uD83D\uDE00\u00e9", "\u0001\u001f\u007f\u0085\u009f ", "]]>", " "};
+
+    /**
+     * Tests that streamed output matches that of the DOM transformer files
+     * were previously saved with
+     */
+    @Test
+    public void testMatchesDomOutput() throws Exception {
+        System.out.println("DictXMLWriter");
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElement("dictionary");
+        doc.appendChild(root);
+
+        Element parent = doc.createElement("parent");
+        root.appendChild(parent);
+
+        for (String value : VALUES) {
+            Element child = doc.createElement("child");
+            child.appendChild(doc.createTextNode(value));
+            parent.appendChild(child);
+        }
+
+        StringWriter domOut = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(domOut));
+
+        ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+        DictXMLWriter writer = new DictXMLWriter(streamOut);
+        writer.startElement("dictionary");
+        writer.startElement("parent");
+
+        for (String value : VALUES) {
+            writer.textElement("child", value);
+        }
+
+        writer.endElement();
+        writer.endElement();
+        writer.close();
+
+        assertEquals(domOut.toString(), streamOut.toString("UTF-8"));
+    }
+
+    /**
+     * Tests that the digest kept while writing matches one read back from the
+     * written XML, and that altered content or records are caught
+     */
+    @Test
+    public void testDigest() throws Exception {
+        System.out.println("XMLDigest");
+
+        ByteArrayOutputStream streamOut = new ByteArrayOutputStream();
+        DictXMLWriter writer = new DictXMLWriter(streamOut);
+        writer.startElement("dictionary");
+        writer.textElement("version", "1");
+        writer.startElement("parent");
+
+        // control characters below 0x20 can be written, but not read back
+        for (String value : VALUES) {
+            writer.textElement("child", value.replaceAll("[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f]", ""));
+        }
+
+        writer.endElement();
+        writer.startElement("parent");
+        writer.endElement();
+        writer.endElement();
+        writer.close();
+
+        String xml = streamOut.toString("UTF-8");
+        XMLDigest written = writer.getDigest();
+
+        assertEquals("", written.compare(XMLDigest.read(new ByteArrayInputStream(streamOut.toByteArray()))));
+
+        String altered = xml.replace("plain", "plane");
+        assertFalse(written.compare(read(altered)).equals(""));
+
+        String dropped = xml.replace("<parent></parent>", "");
+        assertTrue(written.compare(read(dropped)).contains("2 records written, 1 read back"));
+
+        String added = xml.replace("<version>", "<extra/><version>");
+        assertFalse(written.compare(read(added)).equals(""));
+    }
+
+    private static XMLDigest read(String xml) throws Exception {
+        return XMLDigest.read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Stand alone benchmark timing lexicon filtering through the word index
+ * against a plain scan of every word. Not run as part of the unit tests; run
+ * main() directly.
+ *
+ * @author draque
+ */
+public class FilterBenchmark {
+    private static final String LETTERS = "aeioubdfgklmnprstvz";
+    private static final String[] TYPES = {"noun", "verb", "adjective", "adverb", "particle"};
+    private static final String[] GENDERS = {"", "masculine", "feminine", "neuter"};
+    private static final String[] GLOSS = {"water", "river", "stone", "to walk",
+        "to speak", "red", "the", "house", "mother", "bright", "quickly", "fire",
+        "of", "small", "a", "mountain", "sky", "Eat", "bird", "old"};
+
+    public static void main(String[] args) throws Exception {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        DictCore core = new DictCore();
+        Random random = new Random(42);
+
+        for (int i = 0; i < wordCount; i++) {
+            ConWord word = new ConWord();
+            word.setValue(randomWord(random, 4 + random.nextInt(6)));
+            word.setLocalWord(GLOSS[random.nextInt(GLOSS.length)] + random.nextInt(1000));
+            word.setDefinition(GLOSS[random.nextInt(GLOSS.length)] + " "
+                    + GLOSS[random.nextInt(GLOSS.length)] + " " + randomWord(random, 7));
+            word.setPronunciation(randomWord(random, 5));
+            word.setWordType(TYPES[random.nextInt(TYPES.length)]);
+            word.setGender(GENDERS[random.nextInt(GENDERS.length)]);
+            core.addWord(word);
+        }
+
+        List<ConWord> filters = new ArrayList<ConWord>();
+        filters.add(filter("kal", "", "", ""));
+        filters.add(filter("tavo", "", "", ""));
+        filters.add(filter("", "mountain", "", ""));
+        filters.add(filter("", "EAT", "", ""));
+        filters.add(filter("", "", "verb", ""));
+        filters.add(filter("bi", "", "noun", "neuter"));
+        filters.add(filter("ma", "sky", "", "feminine"));
+
+        for (boolean ignoreCase : new boolean[]{false, true}) {
+            core.getPropertiesManager().setIgnoreCase(ignoreCase);
+
+            for (ConWord filter : filters) {
+                List<Integer> expected = scanFilter(core, filter);
+                List<Integer> result = new ArrayList<Integer>();
+                Iterator<ConWord> it = core.getWordCollection().filteredList(filter);
+
+                while (it.hasNext()) {
+                    result.add(it.next().getId());
+                }
+
+                if (!expected.equals(result)) {
+                    throw new IllegalStateException("Filter results differ for " + describe(filter));
+                }
+
+                long start = System.nanoTime();
+                for (int i = 0; i < 10; i++) {
+                    scanFilter(core, filter);
+                }
+                long scanTime = (System.nanoTime() - start) / 10;
+
+                start = System.nanoTime();
+                for (int i = 0; i < 10; i++) {
+                    core.getWordCollection().filteredList(filter);
+                }
+                long indexTime = (System.nanoTime() - start) / 10;
+
+                System.out.println((ignoreCase ? "ignore case " : "match case ") + describe(filter)
+                        + ": " + result.size() + " words, scan " + scanTime / 1000 + "us, index "
+                        + indexTime / 1000 + "us");
+            }
+        }
+    }
+
+    private static ConWord filter(String value, String definition, String type, String gender) {
+        ConWord ret = new ConWord();
+        ret.setValue(value);
+        ret.setDefinition(definition);
+        ret.setWordType(type);
+        ret.setGender(gender);
+        return ret;
+    }
+
+    private static String describe(ConWord filter) {
+        return "[" + filter.getValue() + "|" + filter.getDefinition() + "|"
+                + filter.getWordType() + "|" + filter.getGender() + "]";
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder ret = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            ret.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+
+        return ret.toString();
+    }
+
+    /**
+     * Equivalent of filtering by testing every word, lowercasing each field
+     * of each word when ignoring case
+     */
+    private static List<Integer> scanFilter(DictCore core, ConWord _filter) {
+        boolean ignoreCase = core.getPropertiesManager().isIgnoreCase();
+        List<ConWord> matches = new ArrayList<ConWord>();
+        Iterator<ConWord> it = core.getWordIterator();
+        String fDefinition = ignoreCase ? _filter.getDefinition().toLowerCase() : _filter.getDefinition();
+        String fType = ignoreCase ? _filter.getWordType().toLowerCase() : _filter.getWordType();
+        String fValue = ignoreCase ? _filter.getValue().toLowerCase() : _filter.getValue();
+        String fGender = ignoreCase ? _filter.getGender().toLowerCase() : _filter.getGender();
+
+        while (it.hasNext()) {
+            ConWord curWord = it.next();
+            String definition = ignoreCase ? curWord.getDefinition().toLowerCase() : curWord.getDefinition();
+            String type = ignoreCase ? curWord.getWordType().toLowerCase() : curWord.getWordType();
+            String value = ignoreCase ? curWord.getValue().toLowerCase() : curWord.getValue();
+            String gender = ignoreCase ? curWord.getGender().toLowerCase() : curWord.getGender();
+
+            if ((fDefinition.equals("") || definition.contains(fDefinition))
+                    && (fType.equals("") || type.equals(fType))
+                    && (fValue.equals("") || value.contains(fValue))
+                    && (fGender.equals("") || gender.equals(fGender))) {
+                matches.add(curWord);
+            }
+        }
+
+        Collections.sort(matches);
+        List<Integer> ret = new ArrayList<Integer>();
+
+        for (ConWord curWord : matches) {
+            ret.add(curWord.getId());
+        }
+
+        return ret;
+    }
+}
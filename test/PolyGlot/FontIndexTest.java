@@ -0,0 +1,90 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class FontIndexTest {
+
+    private static final File SAMPLE_FONT = new File("/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf");
+
+    /**
+     * Tests that fonts are found by name, and that font files are only loaded
+     * when new or changed, including across runs
+     */
+    @Test
+    public void testGetFontFile() throws Exception {
+        System.out.println("getFontFile");
+
+        // needs a real font to index
+        Assume.assumeTrue(SAMPLE_FONT.exists());
+
+        File dir = Files.createTempDirectory("fontindex").toFile();
+        File subDir = new File(dir, "truetype");
+        subDir.mkdir();
+        File fontFile = new File(subDir, "sample.ttf");
+        Files.copy(SAMPLE_FONT.toPath(), fontFile.toPath());
+        File badFile = new File(dir, "bad.otf");
+        FileOutputStream out = new FileOutputStream(badFile);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        File indexFile = new File(dir, "index");
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(dir);
+
+        try {
+            String fontName = Font.createFont(Font.TRUETYPE_FONT, fontFile).getName();
+
+            FontIndex instance = new FontIndex(indexFile, dirs);
+            assertEquals(fontFile, instance.getFontFile(fontName));
+            assertEquals(2, instance.getFontLoadCount());
+            assertEquals(fontFile, instance.getFontFile(fontName));
+            assertNull(instance.getFontFile("No Such Font"));
+            assertEquals(2, instance.getFontLoadCount());
+            assertTrue(indexFile.exists());
+
+            // next run finds font from saved index alone
+            instance = new FontIndex(indexFile, dirs);
+            assertEquals(fontFile, instance.getFontFile(fontName));
+            assertEquals(0, instance.getFontLoadCount());
+
+            // a miss rescans, but only loads files that changed
+            instance = new FontIndex(indexFile, dirs);
+            assertNull(instance.getFontFile("No Such Font"));
+            assertEquals(0, instance.getFontLoadCount());
+
+            // changed file is reloaded
+            assertTrue(fontFile.setLastModified(fontFile.lastModified() - 10000));
+            instance = new FontIndex(indexFile, dirs);
+            assertEquals(fontFile, instance.getFontFile(fontName));
+            assertEquals(1, instance.getFontLoadCount());
+
+            // removed file is dropped
+            assertTrue(fontFile.delete());
+            instance = new FontIndex(indexFile, dirs);
+            assertNull(instance.getFontFile(fontName));
+        } finally {
+            fontFile.delete();
+            subDir.delete();
+            badFile.delete();
+            indexFile.delete();
+            dir.delete();
+        }
+    }
+}
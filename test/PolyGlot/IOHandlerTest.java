@@ -0,0 +1,72 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class IOHandlerTest {
+
+    private static final File SAMPLE_FONT = new File("/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf");
+
+    private static File writeArchive(byte[] font) throws Exception {
+        File ret = File.createTempFile("iohandler", ".pgd");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(ret));
+        out.putNextEntry(new ZipEntry(XMLIDs.dictFileName));
+        out.write("<dictionary/>".getBytes("UTF-8"));
+        out.closeEntry();
+
+        if (font != null) {
+            out.putNextEntry(new ZipEntry(XMLIDs.fontFileName));
+            out.write(font);
+            out.closeEntry();
+        }
+
+        out.close();
+        return ret;
+    }
+
+    /**
+     * Tests that embedded fonts are read from the archive, and that a font
+     * embedded in several files is only loaded once
+     */
+    @Test
+    public void testGetFontFrom() throws Exception {
+        System.out.println("getFontFrom");
+
+        // needs a real font to embed
+        Assume.assumeTrue(SAMPLE_FONT.exists());
+
+        byte[] font = Files.readAllBytes(SAMPLE_FONT.toPath());
+        File first = writeArchive(font);
+        File second = writeArchive(font);
+        File none = writeArchive(null);
+
+        try {
+            Font firstFont = IOHandler.getFontFrom(first.getPath());
+            assertEquals(Font.createFont(Font.TRUETYPE_FONT, SAMPLE_FONT).getName(),
+                    firstFont.getName());
+            assertSame(firstFont, IOHandler.getFontFrom(second.getPath()));
+            assertNull(IOHandler.getFontFrom(none.getPath()));
+        } finally {
+            first.delete();
+            second.delete();
+            none.delete();
+        }
+    }
+}
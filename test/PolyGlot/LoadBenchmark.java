@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Stand alone benchmark comparing sequential loading of a large dictionary
+ * against loading with its words parsed in parallel chunks. Not run as part
+ * of the unit tests; run main() directly.
+ *
+ * @author draque
+ */
+public class LoadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        DictCore core = new DictCore();
+        core.getPropertiesManager().setAlphaOrder("abcdefghijklmnopqrstuvwxyz");
+
+        for (int i = 0; i < wordCount; i++) {
+            ConWord word = new ConWord();
+            word.setValue("word" + (char) ('a' + i % 26) + i);
+            word.setLocalWord("local " + i);
+            word.setDefinition("definition of word number " + i);
+            core.addWord(word);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictXMLWriter writer = new DictXMLWriter(out);
+        core.writeXML(writer);
+        writer.close();
+        byte[] xml = out.toByteArray();
+
+        System.out.println(wordCount + " words, " + xml.length / 1024 + "KB, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            new DictCore().readXML(new ByteArrayInputStream(xml));
+            long sequentialTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            new DictCore().readXML(WordChunkParser.split(xml));
+            long chunkedTime = System.nanoTime() - start;
+
+            System.out.println("round " + i + ": sequential " + sequentialTime / 1000000
+                    + "ms, chunked " + chunkedTime / 1000000 + "ms");
+        }
+    }
+}
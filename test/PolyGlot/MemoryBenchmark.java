@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Stand alone benchmark measuring the heap retained by the words of a large
+ * dictionary once loaded, including their alphabetical order and search
+ * index, and the memory kept outside the heap for their definitions. Not run
+ * as part of the unit tests; run main() directly, ideally with a fixed heap
+ * size (-Xms/-Xmx) so that collections settle.
+ *
+ * @author draque
+ */
+public class MemoryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int glossLength = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        StringBuilder gloss = new StringBuilder();
+
+        // optional glossary style text lengthening every definition
+        while (gloss.length() < glossLength) {
+            gloss.append(" used of things seen from afar, as ships and hills");
+        }
+
+        DictCore core = new DictCore();
+        core.getPropertiesManager().setAlphaOrder("abcdefghijklmnopqrstuvwxyz");
+
+        for (int i = 0; i < wordCount; i++) {
+            ConWord word = new ConWord();
+            word.setValue("word" + (char) ('a' + i % 26) + i);
+            word.setLocalWord("local " + i);
+            word.setDefinition("definition of word number " + i + gloss);
+            word.setPronunciation("wurd" + i);
+            word.setWordType(i % 3 == 0 ? "noun" : "verb");
+            word.setGender(i % 2 == 0 ? "masculine" : "feminine");
+            core.addWord(word);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictXMLWriter writer = new DictXMLWriter(out);
+        core.writeXML(writer);
+        writer.close();
+        byte[] xml = out.toByteArray();
+        out = null;
+        core = null;
+
+        // the file's contents are dropped once loaded, so count them as freed
+        long before = usedMemory() - xml.length;
+        long directBefore = directMemory();
+        DictCore loaded = new DictCore();
+        loaded.readXML(new ByteArrayInputStream(xml));
+        xml = null;
+
+        // sorting and filtering build lazily kept structures, count them too
+        loaded.getWordCollection().getNodeIterator();
+        ConWord filter = new ConWord();
+        filter.setValue("word");
+        loaded.getWordCollection().filteredList(filter);
+
+        long retained = usedMemory() - before;
+        long direct = directMemory() - directBefore;
+
+        System.out.println(loaded.getWordCollection().getNodeCount() + " words: "
+                + retained / 1024 + "KB retained, " + retained / wordCount + " bytes per word, "
+                + direct / 1024 + "KB outside heap");
+    }
+
+    private static long directMemory() {
+        long ret = 0;
+
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            ret += pool.getMemoryUsed();
+        }
+
+        return ret;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2014, Draque Thompson, draquemail@gmail.com
+ * All rights reserved.
+ *
+ * Licensed under: Creative Commons Attribution-NonCommercial 4.0 International Public License
+ * See LICENSE.TXT included with this code to read the full license agreement.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package PolyGlot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand alone benchmark timing pronunciation of a lexicon with the compiled
+ * pronunciation guide against the original recursive matching, which
+ * compiled every pattern at every step. Not run as part of the unit tests;
+ * run main() directly.
+ *
+ * @author draque
+ */
+public class ProcBenchmark {
+    private static final String LETTERS = "aeioubdfghklmnprstvz";
+    private static final String[][] REGEX_GUIDE = {{"^(h).*", "∅"}, {"[aeiou]{2}", "VV"},
+        {"sh", "ʃ"}, {"ng", "ŋ"}, {"a", "a"}, {"e", "e"}, {"i", "i"}, {"o", "o"},
+        {"u", "u"}, {"[bdg]", "D"}, {"[fhsvz]", "F"}, {"[klmnprt]", "C"}};
+
+    public static void main(String[] args) {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        Random random = new Random(42);
+        List<String> words = new ArrayList<String>();
+
+        for (int i = 0; i < wordCount; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(10);
+
+            for (int j = 0; j < length; j++) {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+
+            words.add(word.toString());
+        }
+
+        for (boolean regexDisabled : new boolean[]{false, true}) {
+            DictCore core = new DictCore();
+            List<PronunciationNode> guide = new ArrayList<PronunciationNode>();
+
+            core.getPropertiesManager().setDisableProcRegex(regexDisabled);
+
+            if (regexDisabled) {
+                for (String pair : new String[]{"sh", "ng", "aa", "ai", "ou", "ba", "da", "ka", "ta"}) {
+                    guide.add(newNode(pair, pair.toUpperCase()));
+                }
+                for (char letter : LETTERS.toCharArray()) {
+                    guide.add(newNode(String.valueOf(letter), String.valueOf(letter)));
+                }
+            } else {
+                for (String[] pair : REGEX_GUIDE) {
+                    guide.add(newNode(pair[0], pair[1]));
+                }
+            }
+
+            core.getPronunciationMgr().setPronunciations(guide);
+
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                List<String> legacy = new ArrayList<String>();
+                for (String word : words) {
+                    legacy.add(legacyPronunciation(core, guide, word));
+                }
+                long legacyTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<String> compiled = new ArrayList<String>();
+                for (String word : words) {
+                    compiled.add(core.getPronunciation(word));
+                }
+                long compiledTime = System.nanoTime() - start;
+
+                if (!legacy.equals(compiled)) {
+                    throw new IllegalStateException("Pronunciations differ");
+                }
+
+                System.out.println((regexDisabled ? "plain text" : "regex") + " guide, " + wordCount
+                        + " words: recursive " + legacyTime / 1000000 + "ms, compiled "
+                        + compiledTime / 1000000 + "ms");
+            }
+        }
+
+        backtrackCase();
+    }
+
+    /**
+     * Times a word which can never fully match, but may be split many ways
+     * before finding so
+     */
+    private static void backtrackCase() {
+        DictCore core = new DictCore();
+        List<PronunciationNode> guide = new ArrayList<PronunciationNode>();
+        StringBuilder word = new StringBuilder();
+
+        core.getPropertiesManager().setDisableProcRegex(true);
+        guide.add(newNode("a", "A"));
+        guide.add(newNode("aa", "AA"));
+        core.getPronunciationMgr().setPronunciations(guide);
+
+        for (int i = 0; i < 30; i++) {
+            word.append('a');
+        }
+        word.append('b');
+
+        long start = System.nanoTime();
+        legacyPronunciation(core, guide, word.toString());
+        long legacyTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        core.getPronunciation(word.toString());
+        long compiledTime = System.nanoTime() - start;
+
+        System.out.println("unmatchable word of " + word.length() + " characters: recursive "
+                + legacyTime / 1000000 + "ms, compiled " + compiledTime / 1000000 + "ms");
+    }
+
+    private static PronunciationNode newNode(String value, String pronunciation) {
+        PronunciationNode ret = new PronunciationNode();
+        ret.setValue(value);
+        ret.setPronunciation(pronunciation);
+        return ret;
+    }
+
+    private static String legacyPronunciation(DictCore core, List<PronunciationNode> guide, String base) {
+        String ret = "";
+
+        for (PronunciationNode curProc : legacyElements(core, guide, base, true)) {
+            ret += curProc.getPronunciation() + " ";
+        }
+
+        return ret;
+    }
+
+    /**
+     * Copy of the original recursive PronunciationMgr matching
+     */
+    private static List<PronunciationNode> legacyElements(DictCore core, List<PronunciationNode> guide,
+            String base, boolean isFirst) {
+        List<PronunciationNode> ret = new ArrayList<PronunciationNode>();
+
+        if (base.length() == 0) {
+            return ret;
+        }
+
+        for (PronunciationNode curNode : guide) {
+            String pattern = curNode.getValue();
+
+            if (core.getPropertiesManager().isDisableProcRegex()) {
+                if (pattern.length() > base.length()) {
+                    continue;
+                }
+
+                String comp = base.substring(0, curNode.getValue().length());
+
+                if (core.getPropertiesManager().isIgnoreCase()) {
+                    comp = comp.toLowerCase();
+                    pattern = pattern.toLowerCase();
+                }
+
+                if (comp.equals(pattern)) {
+                    List<PronunciationNode> temp
+                            = legacyElements(core, guide, base.substring(pattern.length()), false);
+
+                    if (pattern.length() == base.length() || !temp.isEmpty()) {
+                        ret.add(curNode);
+                        ret.addAll(temp);
+                        break;
+                    }
+                }
+            } else {
+                if (pattern.startsWith("^") && !isFirst) {
+                    continue;
+                }
+
+                if (!pattern.startsWith("^")) {
+                    pattern = "^(" + pattern + ").*";
+                }
+
+                Matcher matcher = Pattern.compile(pattern).matcher(base);
+
+                if (matcher.matches()) {
+                    String leadingChars = matcher.group(1);
+                    List<PronunciationNode> temp
+                            = legacyElements(core, guide, base.substring(leadingChars.length()), false);
+
+                    if (leadingChars.length() == base.length() || !temp.isEmpty()) {
+                        ret.add(curNode);
+                        ret.addAll(temp);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+}
@@ -58,7 +58,7 @@ public class PronunciationMgrTest {
     public void testSetPronunciations() {
         System.out.println("setPronunciations/getPronunciations");
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         instance.setPronunciations(_pronunciations);
         
         Iterator<PronunciationNode> it = instance.getPronunciations();
@@ -91,7 +91,7 @@ public class PronunciationMgrTest {
         node.setValue("2");
         node.setPronunciation("2p");
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         instance.setPronunciations(_pronunciations);
         
         int result = instance.getProcIndex(node);
@@ -112,11 +112,11 @@ public class PronunciationMgrTest {
         node.setValue("2");
         node.setPronunciation("2p");
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         
         instance.setPronunciations(_pronunciations);
         
-        instance.moveProcUp(node);
+        instance.moveProcUp(instance.getProcIndex(node));
                 
         int result = instance.getProcIndex(node);
         
@@ -136,11 +136,11 @@ public class PronunciationMgrTest {
         node.setValue("2");
         node.setPronunciation("2p");
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         
         instance.setPronunciations(_pronunciations);
         
-        instance.moveProcDown(node);
+        instance.moveProcDown(instance.getProcIndex(node));
                 
         int result = instance.getProcIndex(node);
         
@@ -159,7 +159,7 @@ public class PronunciationMgrTest {
         node.setValue("2");
         node.setPronunciation("2p");
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         
         instance.setPronunciations(_pronunciations);
         
@@ -180,7 +180,7 @@ public class PronunciationMgrTest {
         node.setValue("4");
         node.setPronunciation("4p");
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         
         instance.setPronunciations(_pronunciations);
         
@@ -199,7 +199,7 @@ public class PronunciationMgrTest {
         String expResult = "1p 2p 3p ";
         PronunciationNode node = new PronunciationNode();
         
-        PronunciationMgr instance = new PronunciationMgr();
+        PronunciationMgr instance = new PronunciationMgr(new DictCore());
         
         instance.setPronunciations(_pronunciations);
         
@@ -207,4 +207,84 @@ public class PronunciationMgrTest {
         
         assertEquals(expResult, result);
     }    
+
+    /**
+     * Test of getPronunciation method needing to backtrack, of class
+     * PronunciationMgr.
+     */
+    @Test
+    public void testGetPronunciationBacktrack() {
+        System.out.println("getPronunciationBacktrack");
+        DictCore core = new DictCore();
+        PronunciationMgr instance = core.getPronunciationMgr();
+        
+        instance.addPronunciation(newNode("ab", "X"));
+        instance.addPronunciation(newNode("a", "A"));
+        instance.addPronunciation(newNode("bc", "Y"));
+        
+        // "ab" leaves "c", which matches nothing, so "a" + "bc" wins
+        assertEquals("A Y ", instance.getPronunciation("abc"));
+        assertEquals("X ", instance.getPronunciation("ab"));
+        assertEquals("", instance.getPronunciation("abd"));
+        assertEquals("", instance.getPronunciation(""));
+    }
+    
+    /**
+     * Test of getPronunciation method with plain text guides and case, of
+     * class PronunciationMgr.
+     */
+    @Test
+    public void testGetPronunciationPlainText() {
+        System.out.println("getPronunciationPlainText");
+        DictCore core = new DictCore();
+        PronunciationMgr instance = core.getPronunciationMgr();
+        
+        core.getPropertiesManager().setDisableProcRegex(true);
+        instance.addPronunciation(newNode("a.", "DOT"));
+        instance.addPronunciation(newNode("A", "BIG"));
+        instance.addPronunciation(newNode("a", "small"));
+        
+        assertEquals("DOT BIG small ", instance.getPronunciation("a.Aa"));
+        assertEquals("", instance.getPronunciation("ab"));
+        
+        core.getPropertiesManager().setIgnoreCase(true);
+        assertEquals("DOT BIG BIG ", instance.getPronunciation("a.Aa"));
+        
+        // changes to guide in place are picked up
+        instance.getPronunciations().next().setValue("b");
+        assertEquals("BIG DOT ", instance.getPronunciation("ab"));
+    }
+    
+    /**
+     * Test of getPronunciation method with regex guides, of class
+     * PronunciationMgr.
+     */
+    @Test
+    public void testGetPronunciationRegex() {
+        System.out.println("getPronunciationRegex");
+        DictCore core = new DictCore();
+        PronunciationMgr instance = core.getPronunciationMgr();
+        
+        instance.addPronunciation(newNode("^(h).*", "START-H"));
+        instance.addPronunciation(newNode("[aeiou]+", "V"));
+        instance.addPronunciation(newNode("h", "H"));
+        instance.addPronunciation(newNode("[a-z]", "C"));
+        
+        assertEquals("START-H V C ", instance.getPronunciation("heat"));
+        assertEquals("C V H V ", instance.getPronunciation("tahe"));
+        assertEquals("", instance.getPronunciation("te5"));
+        
+        List<PronunciationNode> elements = instance.getPronunciationElements("heat", true);
+        assertEquals(3, elements.size());
+        assertEquals("^(h).*", elements.get(0).getValue());
+    }
+    
+    private PronunciationNode newNode(String value, String pronunciation) {
+        PronunciationNode ret = new PronunciationNode();
+        
+        ret.setValue(value);
+        ret.setPronunciation(pronunciation);
+        
+        return ret;
+    }
 }
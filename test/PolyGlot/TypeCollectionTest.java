@@ -0,0 +1,253 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.util.Iterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author draque
+ */
+public class TypeCollectionTest {
+
+    private static TypeNode makeType(String value) {
+        TypeNode ret = new TypeNode();
+        ret.setValue(value);
+        return ret;
+    }
+
+    /**
+     * Tests lookup of types by name through adds, modifications and deletes
+     */
+    @Test
+    public void testFindTypeByName() throws Exception {
+        System.out.println("findTypeByName");
+
+        DictCore core = new DictCore();
+        TypeCollection instance = core.getTypes();
+        int nounId = instance.addNode(makeType("noun"));
+        int verbId = instance.addNode(makeType("verb"));
+
+        assertEquals(nounId, (int) instance.findTypeByName("noun").getId());
+        assertEquals(verbId, (int) instance.findTypeByName("verb").getId());
+        assertNull(instance.findTypeByName("Noun"));
+        assertNull(instance.findTypeByName(""));
+        assertTrue(instance.nodeExists("verb"));
+        assertFalse(instance.nodeExists("adverb"));
+
+        core.modifyType(verbId, makeType("action"));
+        assertNull(instance.findTypeByName("verb"));
+        assertEquals(verbId, (int) instance.findTypeByName("action").getId());
+
+        // lowest id found among duplicates, the next taking over on delete
+        int dupId = instance.addNode(makeType("noun"));
+        assertEquals(nounId, (int) instance.findTypeByName("noun").getId());
+        instance.deleteNodeById(nounId);
+        assertEquals(dupId, (int) instance.findTypeByName("noun").getId());
+
+        core.clearSettings();
+        assertNull(instance.findTypeByName("noun"));
+        assertFalse(instance.nodeExists("action"));
+    }
+
+    /**
+     * Tests lookup of genders by name through adds, modifications and deletes
+     */
+    @Test
+    public void testFindGenderByName() throws Exception {
+        System.out.println("findGenderByName");
+
+        DictCore core = new DictCore();
+        GenderCollection instance = core.getGenders();
+        GenderNode gender = new GenderNode();
+        gender.setValue("masculine");
+        int genderId = instance.addNode(gender);
+
+        assertEquals(genderId, (int) instance.findGenderByName("masculine").getId());
+
+        gender = new GenderNode();
+        gender.setValue("feminine");
+        core.modifyGender(genderId, gender);
+        assertNull(instance.findGenderByName("masculine"));
+        assertTrue(instance.nodeExists("feminine"));
+
+        instance.deleteNodeById(genderId);
+        assertNull(instance.findGenderByName("feminine"));
+    }
+
+    private static int addWord(DictCore core, String value, String type, String gender) throws Exception {
+        ConWord word = new ConWord();
+        word.setValue(value);
+        word.setWordType(type);
+        word.setGender(gender);
+        return core.addWord(word);
+    }
+
+    private static int countFiltered(DictCore core, String type, String gender) throws Exception {
+        ConWord filter = new ConWord();
+        filter.setWordType(type);
+        filter.setGender(gender);
+        Iterator<ConWord> it = core.filteredWordList(filter);
+        int ret = 0;
+
+        while (it.hasNext()) {
+            it.next();
+            ret++;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Tests that renaming a type renames it in exactly the words of that
+     * type, and that the renamed words are found under the new name
+     */
+    @Test
+    public void testModifyTypeCascade() throws Exception {
+        System.out.println("modifyType cascade");
+
+        DictCore core = new DictCore();
+        int nounId = core.getTypes().addNode(makeType("noun"));
+        int first = addWord(core, "kala", "noun", "");
+        int second = addWord(core, "tuvo", "noun", "");
+        int verb = addWord(core, "mako", "verb", "");
+        int upper = addWord(core, "zeta", "Noun", "");
+        core.clearChanges();
+
+        core.modifyType(nounId, makeType("thing"));
+
+        assertEquals("thing", core.getWordById(first).getWordType());
+        assertEquals("thing", core.getWordById(second).getWordType());
+        assertEquals("verb", core.getWordById(verb).getWordType());
+        assertEquals("Noun", core.getWordById(upper).getWordType());
+        assertEquals(2, countFiltered(core, "thing", ""));
+        assertEquals(0, countFiltered(core, "noun", ""));
+        assertEquals(2, core.getChangedWordIds().size());
+        assertEquals(4, core.getWordCollection().getNodeCount());
+
+        // with case ignored, types matching regardless of case are renamed
+        core.getPropertiesManager().setIgnoreCase(true);
+        int thingId = core.getTypes().findTypeByName("thing").getId();
+        addWord(core, "abba", "THING", "");
+        core.modifyType(thingId, makeType("object"));
+        assertEquals(3, countFiltered(core, "object", ""));
+        assertEquals("Noun", core.getWordById(upper).getWordType());
+    }
+
+    /**
+     * Tests that genders are renamed in and cleared from their words
+     */
+    @Test
+    public void testGenderCascade() throws Exception {
+        System.out.println("gender cascade");
+
+        DictCore core = new DictCore();
+        GenderNode gender = new GenderNode();
+        gender.setValue("masculine");
+        int genderId = core.getGenders().addNode(gender);
+        int first = addWord(core, "kala", "", "masculine");
+        int other = addWord(core, "tuvo", "", "feminine");
+
+        gender = new GenderNode();
+        gender.setValue("male");
+        core.modifyGender(genderId, gender);
+        assertEquals("male", core.getWordById(first).getGender());
+        assertEquals(1, countFiltered(core, "", "male"));
+
+        core.getGenders().deleteNodeById(genderId);
+        assertEquals("", core.getWordById(first).getGender());
+        assertEquals("feminine", core.getWordById(other).getGender());
+        assertEquals(0, countFiltered(core, "", "male"));
+        assertEquals(1, countFiltered(core, "", "feminine"));
+    }
+
+    /**
+     * Tests that words of a collection carry one shared name per type, and
+     * that renaming onto a type already carried by words merges the two
+     */
+    @Test
+    public void testSharedTypeNames() throws Exception {
+        System.out.println("shared type names");
+
+        DictCore core = new DictCore();
+        int nounId = core.getTypes().addNode(makeType("noun"));
+        int first = addWord(core, "kala", "noun", "");
+        int second = addWord(core, "tuvo", "noun", "");
+        int thing = addWord(core, "mako", "thing", "");
+        ConWordCollection words = core.getWordCollection();
+
+        assertSame(words.getNodeById(first).getWordTypeName(),
+                words.getNodeById(second).getWordTypeName());
+
+        // words handed out are copies, and changing them leaves stored words alone
+        ConWord filter = new ConWord();
+        filter.setWordType("noun");
+        ConWord copy = words.filteredList(filter).next();
+        copy.setWordType("verb");
+        assertEquals("noun", words.getNodeById(copy.getId()).getWordType());
+
+        core.modifyType(nounId, makeType("thing"));
+        assertSame(words.getNodeById(thing).getWordTypeName(),
+                words.getNodeById(first).getWordTypeName());
+        assertEquals(3, countFiltered(core, "thing", ""));
+        assertEquals(0, countFiltered(core, "noun", ""));
+
+        // words modified afterward join the shared name again
+        ConWord modified = new ConWord();
+        modified.setEqual(words.getNodeById(second));
+        modified.setWordType("noun");
+        words.modifyNode(second, modified);
+        modified = new ConWord();
+        modified.setEqual(words.getNodeById(second));
+        modified.setWordType("thing");
+        words.modifyNode(second, modified);
+        assertSame(words.getNodeById(thing).getWordTypeName(),
+                words.getNodeById(second).getWordTypeName());
+        assertEquals(3, countFiltered(core, "thing", ""));
+    }
+
+    /**
+     * Tests that renaming a type leaves words outside the collection alone:
+     * copies handed out, deleted words and words replaced by modification
+     */
+    @Test
+    public void testDetachedWordsNotRenamed() throws Exception {
+        System.out.println("detached words not renamed");
+
+        DictCore core = new DictCore();
+        int nounId = core.getTypes().addNode(makeType("noun"));
+        int deleted = addWord(core, "kala", "noun", "");
+        int replaced = addWord(core, "tuvo", "noun", "");
+        addWord(core, "mako", "noun", "");
+        ConWordCollection words = core.getWordCollection();
+
+        ConWord filter = new ConWord();
+        filter.setWordType("noun");
+        ConWord copy = words.filteredList(filter).next();
+        ConWord setEqualCopy = new ConWord();
+        setEqualCopy.setEqual(words.getNodeById(replaced));
+
+        ConWord deletedWord = words.getNodeById(deleted);
+        words.deleteNodeById(deleted);
+
+        ConWord replacedWord = words.getNodeById(replaced);
+        ConWord modified = new ConWord();
+        modified.setEqual(replacedWord);
+        words.modifyNode(replaced, modified);
+
+        core.modifyType(nounId, makeType("thing"));
+
+        assertEquals("noun", copy.getWordType());
+        assertEquals("noun", setEqualCopy.getWordType());
+        assertEquals("noun", deletedWord.getWordType());
+        assertEquals("noun", replacedWord.getWordType());
+        assertEquals("thing", words.getNodeById(replaced).getWordType());
+        assertEquals(2, countFiltered(core, "thing", ""));
+    }
+}
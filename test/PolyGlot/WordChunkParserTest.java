@@ -0,0 +1,108 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package PolyGlot;
+
+import java.io.ByteArrayInputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ *
+ * @author draque
+ */
+public class WordChunkParserTest {
+
+    /**
+     * Tests that reading words in chunks gives the same dictionary as reading
+     * them in sequence
+     */
+    @Test
+    public void testReadInChunks() throws Exception {
+        System.out.println("WordChunkParser");
+
+        byte[] xml = DictFixture.toXML(DictFixture.build(1000));
+
+        WordChunkParser chunks = WordChunkParser.split(xml, 64);
+        assertNotNull(chunks);
+        assertEquals(16, chunks.getChunkCount());
+
+        DictCore chunked = new DictCore();
+        chunked.readXML(chunks);
+        DictCore sequential = new DictCore();
+        sequential.readXML(new ByteArrayInputStream(xml));
+
+        assertEquals(1000, chunked.getWordCollection().getNodeCount());
+        assertArrayEquals(DictFixture.toXML(sequential), DictFixture.toXML(chunked));
+        assertArrayEquals(xml, DictFixture.toXML(chunked));
+    }
+
+    /**
+     * Tests that XML is not split where a byte scan can not find its words
+     * safely
+     */
+    @Test
+    public void testUnsplittable() throws Exception {
+        System.out.println("WordChunkParser unsplittable");
+
+        assertNull(WordChunkParser.split(DictFixture.toXML(DictFixture.build(50)), 64));
+        assertNull(WordChunkParser.split(DictFixture.toXML(new DictCore()), 64));
+
+        String xml = new String(DictFixture.toXML(DictFixture.build(200)), "UTF-8");
+        assertNotNull(WordChunkParser.split(xml.getBytes("UTF-8"), 64));
+        assertNull(WordChunkParser.split(xml.replace("<thesNode>", "<!-- x --><thesNode>")
+                .getBytes("UTF-8"), 64));
+    }
+
+    /**
+     * Tests that a malformed word in any chunk fails the load, as it does
+     * when read in sequence
+     */
+    @Test
+    public void testMalformedWord() throws Exception {
+        System.out.println("WordChunkParser malformed word");
+
+        String xml = new String(DictFixture.toXML(DictFixture.build(200)), "UTF-8");
+        xml = xml.replace("<conWord>wordq146</conWord>", "<conWord></conWord>");
+
+        WordChunkParser chunks = WordChunkParser.split(xml.getBytes("UTF-8"), 64);
+        assertNotNull(chunks);
+
+        try {
+            new DictCore().readXML(chunks);
+            fail("Malformed word loaded.");
+        } catch (SAXException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that a word without an id is given the same new id whether its
+     * chunk is read in parallel or the words are read in sequence
+     */
+    @Test
+    public void testWordWithoutId() throws Exception {
+        System.out.println("WordChunkParser word without id");
+
+        String xml = new String(DictFixture.toXML(DictFixture.build(200)), "UTF-8");
+        assertTrue(xml.contains("<wordId>150</wordId>"));
+        byte[] bytes = xml.replace("<wordId>150</wordId>", "").getBytes("UTF-8");
+
+        WordChunkParser chunks = WordChunkParser.split(bytes, 64);
+        assertNotNull(chunks);
+
+        DictCore chunked = new DictCore();
+        chunked.readXML(chunks);
+        DictCore sequential = new DictCore();
+        sequential.readXML(new ByteArrayInputStream(bytes));
+
+        assertEquals(200, chunked.getWordCollection().getNodeCount());
+        assertNotNull(chunked.getWordById(201));
+        assertEquals(sequential.getWordById(201).getValue(), chunked.getWordById(201).getValue());
+        assertArrayEquals(DictFixture.toXML(sequential), DictFixture.toXML(chunked));
+    }
+}